@@ -27,15 +27,37 @@ public class AgentConfig {
         if (executor.corePoolSize < 1) {
             throw new IllegalStateException("agent.executor.core-pool-size must be at least 1");
         }
+        if (rest.maxResponseBytes < 1 || rest.summaryHeadBytes < 0 || rest.summaryTailBytes < 0) {
+            throw new IllegalStateException("agent.rest limits must be positive");
+        }
+        if (drain.graceSeconds < 0) {
+            throw new IllegalStateException("agent.drain.grace-seconds must not be negative");
+        }
+        if (heartbeat.pulseInterval < 0) {
+            throw new IllegalStateException("agent.heartbeat.pulse-interval must not be negative");
+        }
+        if (lease.ttl <= heartbeat.interval) {
+            throw new IllegalStateException("agent.lease.ttl must be longer than agent.heartbeat.interval");
+        }
+        if (spool.batchSize < 1) {
+            throw new IllegalStateException("agent.spool.batch-size must be at least 1");
+        }
         log.info("Agent config validated: queue={}, maxConcurrentJobs={}", queueName, executor.maxConcurrentJobs);
     }
     private Heartbeat heartbeat = new Heartbeat();
     private Executor executor = new Executor();
+    private Rest rest = new Rest();
+    private Spool spool = new Spool();
+    private Pool pool = new Pool();
+    private Drain drain = new Drain();
+    private Lease lease = new Lease();
 
     @Data
     public static class Heartbeat {
         private long interval = 10000;
         private long timeout = 60000;
+        /** Lightweight liveness pulse for the Scheduler's failure detector (0 = off) */
+        private long pulseInterval = 500;
     }
 
     @Data
@@ -46,4 +68,45 @@ public class AgentConfig {
         private int maxConcurrentJobs = 10;
         private String threadNamePrefix = "job-executor-";
     }
+
+    /** Limits for streamed REST job responses */
+    @Data
+    public static class Rest {
+        private long maxResponseBytes = 50L * 1024 * 1024;
+        private int summaryHeadBytes = 4096;
+        private int summaryTailBytes = 4096;
+    }
+
+    /** Local write-ahead spool for results sent to the Scheduler */
+    @Data
+    public static class Spool {
+        private String directory = "spool";
+        private long drainInterval = 2000;
+        private int batchSize = 100;
+    }
+
+    /** Server pool membership: shared pool queue and optional work stealing from siblings */
+    @Data
+    public static class Pool {
+        private String name;
+        private boolean stealEnabled = false;
+        private int stealMinBacklog = 2;
+
+        public boolean isMember() {
+            return name != null && !name.isBlank();
+        }
+    }
+
+    /** Drain mode: how often the control key is polled and the slack added to in-flight deadlines */
+    @Data
+    public static class Drain {
+        private long pollInterval = 2000;
+        private int graceSeconds = 30;
+    }
+
+    /** Per-task execution leases, renewed with every heartbeat */
+    @Data
+    public static class Lease {
+        private long ttl = 30000;
+    }
 }
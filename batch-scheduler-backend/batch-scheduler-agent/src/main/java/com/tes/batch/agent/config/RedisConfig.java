@@ -3,10 +3,13 @@ package com.tes.batch.agent.config;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.tes.batch.common.util.MessageCodec;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
@@ -21,15 +24,41 @@ public class RedisConfig {
         return objectMapper;
     }
 
+    @Bean
+    public MessageCodec messageCodec(ObjectMapper redisObjectMapper,
+                                     @Value("${agent.redis.codec:smile}") String format,
+                                     @Value("${agent.redis.compression-threshold-bytes:8192}") int compressionThresholdBytes) {
+        MessageCodec.Format writeFormat;
+        try {
+            writeFormat = MessageCodec.Format.valueOf(format.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Unknown agent.redis.codec: " + format);
+        }
+        return new MessageCodec(redisObjectMapper, writeFormat, compressionThresholdBytes);
+    }
+
     @Bean
     public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory,
-                                                       ObjectMapper redisObjectMapper) {
+                                                       ObjectMapper redisObjectMapper,
+                                                       MessageCodec messageCodec) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
         template.setKeySerializer(new StringRedisSerializer());
-        template.setValueSerializer(new GenericJackson2JsonRedisSerializer(redisObjectMapper));
+        // [P10] Queue messages and results go through the binary codec, deflated when large;
+        // hash values stay JSON since they are small and read field by field
+        template.setValueSerializer(new MessageCodecRedisSerializer(messageCodec));
         template.setHashKeySerializer(new StringRedisSerializer());
         template.setHashValueSerializer(new GenericJackson2JsonRedisSerializer(redisObjectMapper));
         return template;
     }
+
+    /**
+     * Subscriber for the Scheduler -> agent control channel
+     */
+    @Bean
+    public RedisMessageListenerContainer controlListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
 }
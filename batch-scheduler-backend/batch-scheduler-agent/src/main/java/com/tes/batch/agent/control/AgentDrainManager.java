@@ -0,0 +1,256 @@
+package com.tes.batch.agent.control;
+
+import com.tes.batch.agent.config.AgentConfig;
+import com.tes.batch.common.dto.JobMessage;
+import com.tes.batch.common.dto.WorkflowMessage;
+import com.tes.batch.common.util.MapParameters;
+import com.tes.batch.common.util.WorkflowDag;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Drain mode for rolling restarts.
+ * A drain request (Redis key agent:drain:{queue} or the drain actuator endpoint) stops the
+ * listeners from taking new messages, lets in-flight work finish within its own maxDuration
+ * budget, and then shuts the agent down. The exit waits for the queue consumers to stop first,
+ * so a message popped just as the drain started is registered and finished, not lost.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AgentDrainManager {
+
+    public static final String DRAIN_KEY_PREFIX = "agent:drain:";
+
+    private static final Duration DEFAULT_MAX_DURATION = Duration.ofMinutes(5);
+    /** A consumer notices the drain after its current BRPOP (5s) and the message it is handing off */
+    private static final long CONSUMER_STOP_TIMEOUT_MS = 30000;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final AgentConfig agentConfig;
+    private final ApplicationContext applicationContext;
+
+    /** In-flight task id -> epoch millis by which it must have finished */
+    private final Map<String, Long> inFlight = new ConcurrentHashMap<>();
+    /** Queue consumer threads, which stop taking messages once draining */
+    private final List<Thread> consumers = new CopyOnWriteArrayList<>();
+    private volatile boolean draining;
+    private volatile boolean drained;
+    private volatile long drainStartedAt;
+
+    /**
+     * A drain request left over from before this process started belongs to the previous instance
+     */
+    @PostConstruct
+    public void clearStaleRequest() {
+        try {
+            redisTemplate.delete(drainKey());
+        } catch (Exception e) {
+            log.warn("Failed to clear drain request on startup: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${agent.drain.poll-interval:2000}")
+    public void checkDrainRequest() {
+        if (draining) {
+            return;
+        }
+        try {
+            if (Boolean.TRUE.equals(redisTemplate.hasKey(drainKey()))) {
+                startDrain("redis control key");
+            }
+        } catch (Exception e) {
+            log.debug("Failed to check drain request: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Enter drain mode. Returns false if the agent is already draining.
+     */
+    public synchronized boolean startDrain(String source) {
+        if (draining) {
+            return false;
+        }
+        draining = true;
+        drainStartedAt = System.currentTimeMillis();
+        log.info("Drain requested via {}: {} task(s) in flight, no new messages will be taken", source, inFlight.size());
+
+        Thread waiter = new Thread(this::awaitInFlightAndExit, "agent-drain");
+        waiter.setDaemon(true);
+        waiter.start();
+        return true;
+    }
+
+    public boolean isDraining() {
+        return draining;
+    }
+
+    /**
+     * True once in-flight work is done and the agent is about to exit; heartbeats stop here
+     */
+    public boolean isDrained() {
+        return drained;
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * A queue consumer thread; the agent only exits after it has stopped
+     */
+    public void registerConsumer(Thread consumer) {
+        consumers.add(consumer);
+    }
+
+    /**
+     * Track a job from the moment it is taken off the queue
+     */
+    public void register(JobMessage message) {
+        inFlight.put(message.getTaskId(), System.currentTimeMillis() + jobBudget(message).toMillis());
+    }
+
+    /**
+     * Track a workflow run; its budget is the longest dependency chain of job budgets
+     */
+    public void register(WorkflowMessage message) {
+        List<JobMessage> jobs = new ArrayList<>();
+        List<List<String>> groups = new ArrayList<>();
+        Map<String, List<String>> dependsOn = new HashMap<>();
+        if (message.getPriorityGroups() != null) {
+            message.getPriorityGroups().stream()
+                    .sorted(Comparator.comparing(WorkflowMessage.PriorityGroup::getPriority,
+                            Comparator.nullsLast(Comparator.naturalOrder())))
+                    .forEach(group -> {
+                        List<String> jobIds = new ArrayList<>();
+                        if (group.getJobs() != null) {
+                            for (JobMessage job : group.getJobs()) {
+                                jobs.add(job);
+                                jobIds.add(job.getJobId());
+                                if (job.getDependsOn() != null) {
+                                    dependsOn.put(job.getJobId(), job.getDependsOn());
+                                }
+                            }
+                        }
+                        groups.add(jobIds);
+                    });
+        }
+        long[] weights = new long[jobs.size()];
+        for (int i = 0; i < weights.length; i++) {
+            // A map step runs its tasks in waves of maxParallelism
+            weights[i] = jobBudget(jobs.get(i)).toMillis() * MapParameters.waves(jobs.get(i));
+        }
+        WorkflowDag dag = WorkflowDag.build(groups, dependsOn);
+        long budget = 0;
+        if (dag.isAcyclic()) {
+            for (long rank : dag.criticalPathRanks(weights)) {
+                budget = Math.max(budget, rank);
+            }
+        }
+        inFlight.put(workflowKey(message), System.currentTimeMillis() + budget);
+    }
+
+    public void complete(JobMessage message) {
+        inFlight.remove(message.getTaskId());
+    }
+
+    public void complete(WorkflowMessage message) {
+        inFlight.remove(workflowKey(message));
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("draining", draining);
+        status.put("inFlight", inFlight.size());
+        if (draining) {
+            status.put("drainStartedAt", drainStartedAt);
+            status.put("deadline", currentDeadline());
+        }
+        return status;
+    }
+
+    /**
+     * Attempts x maxDuration plus retry delays and any execution delay
+     */
+    private Duration jobBudget(JobMessage message) {
+        Duration maxDuration = message.getMaxDuration() != null ? message.getMaxDuration() : DEFAULT_MAX_DURATION;
+        int attempts = message.getRetryCount() != null ? Math.max(1, message.getRetryCount()) : 1;
+        long retryDelay = message.getRetryDelay() != null ? Math.max(0, message.getRetryDelay()) : 0;
+        long executionDelay = message.getExecutionDelay() != null ? Math.max(0, message.getExecutionDelay()) : 0;
+        return maxDuration.multipliedBy(attempts)
+                .plusSeconds(retryDelay * (attempts - 1) + executionDelay);
+    }
+
+    private long currentDeadline() {
+        long deadline = drainStartedAt;
+        for (long taskDeadline : inFlight.values()) {
+            deadline = Math.max(deadline, taskDeadline);
+        }
+        return deadline + agentConfig.getDrain().getGraceSeconds() * 1000L;
+    }
+
+    private void awaitInFlightAndExit() {
+        try {
+            // Messages popped before the consumers noticed the drain are registered as in flight
+            for (Thread consumer : consumers) {
+                consumer.join(CONSUMER_STOP_TIMEOUT_MS);
+                if (consumer.isAlive()) {
+                    log.warn("Queue consumer {} did not stop within {}ms", consumer.getName(), CONSUMER_STOP_TIMEOUT_MS);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                long deadline = currentDeadline();
+                if (System.currentTimeMillis() > deadline) {
+                    log.warn("Drain deadline passed with {} task(s) still running: {}", inFlight.size(), inFlight.keySet());
+                    break;
+                }
+                log.info("Draining: waiting for {} in-flight task(s)", inFlight.size());
+                Thread.sleep(Math.min(10000, Math.max(1000, deadline - System.currentTimeMillis())));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        markDrained();
+        log.info("Drain completed in {}ms, shutting down agent", System.currentTimeMillis() - drainStartedAt);
+        int exitCode = SpringApplication.exit(applicationContext, () -> 0);
+        System.exit(exitCode);
+    }
+
+    /**
+     * Tell the Scheduler right away instead of letting the heartbeat expire
+     */
+    private void markDrained() {
+        drained = true;
+        try {
+            redisTemplate.opsForHash().put("agent:info:" + agentConfig.getQueueName(), "status", "DRAINED");
+            redisTemplate.delete("agent:health:" + agentConfig.getQueueName());
+        } catch (Exception e) {
+            log.warn("Failed to publish drained state: {}", e.getMessage());
+        }
+    }
+
+    private String drainKey() {
+        return DRAIN_KEY_PREFIX + agentConfig.getQueueName();
+    }
+
+    private static String workflowKey(WorkflowMessage message) {
+        return "workflow:" + message.getWorkflowRunId();
+    }
+}
@@ -0,0 +1,33 @@
+package com.tes.batch.agent.control;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Actuator endpoint for drain mode: GET /actuator/drain for status, POST to start draining.
+ * Not exposed over HTTP unless added to management.endpoints.web.exposure.include, since the
+ * actuator port has no authentication.
+ */
+@Component
+@RequiredArgsConstructor
+@Endpoint(id = "drain")
+public class DrainEndpoint {
+
+    private final AgentDrainManager drainManager;
+
+    @ReadOperation
+    public Map<String, Object> status() {
+        return drainManager.status();
+    }
+
+    @WriteOperation
+    public Map<String, Object> drain() {
+        drainManager.startDrain("actuator");
+        return drainManager.status();
+    }
+}
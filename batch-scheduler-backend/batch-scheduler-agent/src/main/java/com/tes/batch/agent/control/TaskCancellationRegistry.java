@@ -0,0 +1,279 @@
+package com.tes.batch.agent.control;
+
+import com.tes.batch.agent.config.AgentConfig;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Cancellation of running tasks, tracked per attempt (taskId and attempt number).
+ * The Scheduler sets a marker key (task:cancel:{taskId}) and publishes "cancel:{taskId}" on the
+ * agent's control channel (agent:control:{queue}, plus agent:control:pool:{pool} for pool members).
+ * The channel gives immediate delivery; the marker is polled for tracked tasks so a message missed
+ * during a reconnect, or sent before the task was picked up, still takes effect.
+ *
+ * When an attempt's execution lease lapses the Scheduler has already retried or failed it, so that
+ * attempt alone is abandoned: "cancel:{taskId}:{attempt}" and task:cancel:{taskId}:{attempt}, or the
+ * local {@link TaskLeaseManager} once the task overstays its time limit. An abandoned attempt is stopped
+ * like a cancelled one, its thread is interrupted, and its outcome is not reported. A later attempt of
+ * the same task, possibly on this agent, is not affected.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TaskCancellationRegistry implements MessageListener {
+
+    public static final String CONTROL_CHANNEL_PREFIX = "agent:control:";
+    public static final String CANCEL_MARKER_PREFIX = "task:cancel:";
+    private static final String CANCEL_COMMAND = "cancel:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer controlListenerContainer;
+    private final AgentConfig agentConfig;
+
+    /** Tracked attempts by {taskId}:{attempt} */
+    private final Map<String, TrackedTask> tasks = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void subscribe() {
+        List<ChannelTopic> topics = new ArrayList<>();
+        topics.add(new ChannelTopic(CONTROL_CHANNEL_PREFIX + agentConfig.getQueueName()));
+        if (agentConfig.getPool().isMember()) {
+            topics.add(new ChannelTopic(CONTROL_CHANNEL_PREFIX + "pool:" + agentConfig.getPool().getName()));
+        }
+        controlListenerContainer.addMessageListener(this, topics);
+        log.info("Subscribed to control channel(s): {}", topics);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String command = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (!command.startsWith(CANCEL_COMMAND)) {
+            log.warn("Unknown control command: {}", command);
+            return;
+        }
+        String target = command.substring(CANCEL_COMMAND.length());
+        int separator = target.lastIndexOf(':');
+        if (separator > 0) {
+            try {
+                abandon(target.substring(0, separator), Integer.parseInt(target.substring(separator + 1)));
+            } catch (NumberFormatException e) {
+                log.warn("Unknown control command: {}", command);
+            }
+        } else {
+            cancel(target);
+        }
+    }
+
+    /**
+     * Start tracking an attempt so cancel requests for it are honoured; call on the thread that runs it
+     */
+    public void track(String taskId, int attempt) {
+        if (taskId != null) {
+            tasks.computeIfAbsent(key(taskId, attempt), k -> new TrackedTask(taskId, attempt, Thread.currentThread()));
+        }
+    }
+
+    public void untrack(String taskId, int attempt) {
+        TrackedTask task = taskId != null ? tasks.remove(key(taskId, attempt)) : null;
+        if (task != null) {
+            synchronized (task) {
+                task.thread = null;
+            }
+        }
+    }
+
+    /**
+     * Action that stops the task's current work (kill a process, dispose a request).
+     * Runs immediately if the task was already cancelled.
+     */
+    public void onCancel(String taskId, int attempt, Runnable action) {
+        TrackedTask task = find(taskId, attempt);
+        if (task == null) {
+            return;
+        }
+        task.action.set(action);
+        if (task.cancelled.getCount() == 0 && task.action.compareAndSet(action, null)) {
+            action.run();
+        }
+    }
+
+    public void clearOnCancel(String taskId, int attempt) {
+        TrackedTask task = find(taskId, attempt);
+        if (task != null) {
+            task.action.set(null);
+        }
+    }
+
+    public boolean isCancelled(String taskId, int attempt) {
+        TrackedTask task = find(taskId, attempt);
+        return task != null && task.cancelled.getCount() == 0;
+    }
+
+    /**
+     * True if the attempt was abandoned after its lease lapsed; its outcome must not be reported
+     */
+    public boolean isAbandoned(String taskId, int attempt) {
+        TrackedTask task = find(taskId, attempt);
+        return task != null && task.abandoned;
+    }
+
+    /**
+     * Check the markers directly, for tasks that have not started yet
+     */
+    public boolean isCancelRequested(String taskId, int attempt) {
+        if (isCancelled(taskId, attempt)) {
+            return true;
+        }
+        if (taskId == null) {
+            return false;
+        }
+        try {
+            return Boolean.TRUE.equals(redisTemplate.hasKey(CANCEL_MARKER_PREFIX + taskId))
+                    || Boolean.TRUE.equals(redisTemplate.hasKey(CANCEL_MARKER_PREFIX + key(taskId, attempt)));
+        } catch (Exception e) {
+            log.debug("Failed to check cancel marker for {}: {}", taskId, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Sleep that ends early on cancellation. Returns true if the task was cancelled.
+     */
+    public boolean sleep(String taskId, int attempt, long millis) throws InterruptedException {
+        TrackedTask task = find(taskId, attempt);
+        if (task == null) {
+            Thread.sleep(millis);
+            return false;
+        }
+        return task.cancelled.await(millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Cancel every tracked attempt of the task
+     */
+    public void cancel(String taskId) {
+        if (taskId == null) {
+            return;
+        }
+        for (TrackedTask task : tasks.values()) {
+            if (taskId.equals(task.taskId)) {
+                cancel(task);
+            }
+        }
+    }
+
+    /**
+     * Stop one attempt whose lease lapsed and interrupt its thread; a hung executor gets no say in the outcome
+     */
+    public void abandon(String taskId, int attempt) {
+        TrackedTask task = find(taskId, attempt);
+        if (task == null || task.abandoned) {
+            return;
+        }
+        log.warn("Abandoning task {} attempt {}: its execution lease lapsed", taskId, attempt);
+        task.abandoned = true;
+        cancel(task);
+        synchronized (task) {
+            if (task.thread != null) {
+                task.thread.interrupt();
+            }
+        }
+    }
+
+    private void cancel(TrackedTask task) {
+        if (task.cancelled.getCount() == 0) {
+            return;
+        }
+        log.info("Cancelling task {} attempt {}", task.taskId, task.attempt);
+        task.cancelled.countDown();
+        Runnable action = task.action.getAndSet(null);
+        if (action != null) {
+            try {
+                action.run();
+            } catch (Exception e) {
+                log.error("Cancel action failed for task {}", task.taskId, e);
+            }
+        }
+    }
+
+    /**
+     * Fallback for missed control messages: check the markers of all tracked tasks in one round trip
+     */
+    @Scheduled(fixedDelayString = "${agent.cancel.poll-interval:5000}")
+    public void pollCancelMarkers() {
+        List<TrackedTask> pending = tasks.values().stream()
+                .filter(task -> task.cancelled.getCount() > 0)
+                .toList();
+        if (pending.isEmpty()) {
+            return;
+        }
+        try {
+            List<Object> exists = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                    for (TrackedTask task : pending) {
+                        ops.hasKey(CANCEL_MARKER_PREFIX + task.taskId);
+                        ops.hasKey(CANCEL_MARKER_PREFIX + key(task.taskId, task.attempt));
+                    }
+                    return null;
+                }
+            });
+            for (int i = 0; i < pending.size(); i++) {
+                TrackedTask task = pending.get(i);
+                if (Boolean.TRUE.equals(exists.get(2 * i + 1))) {
+                    abandon(task.taskId, task.attempt);
+                } else if (Boolean.TRUE.equals(exists.get(2 * i))) {
+                    cancel(task);
+                }
+            }
+        } catch (Exception e) {
+            log.debug("Failed to poll cancel markers: {}", e.getMessage());
+        }
+    }
+
+    private TrackedTask find(String taskId, int attempt) {
+        return taskId != null ? tasks.get(key(taskId, attempt)) : null;
+    }
+
+    private static String key(String taskId, int attempt) {
+        return taskId + ":" + attempt;
+    }
+
+    private static class TrackedTask {
+        private final String taskId;
+        private final int attempt;
+        private final CountDownLatch cancelled = new CountDownLatch(1);
+        private final AtomicReference<Runnable> action = new AtomicReference<>();
+        private volatile boolean abandoned;
+        /** Thread running the attempt, cleared by untrack so a pooled thread is not interrupted later */
+        private Thread thread;
+
+        private TrackedTask(String taskId, int attempt, Thread thread) {
+            this.taskId = taskId;
+            this.attempt = attempt;
+            this.thread = thread;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.tes.batch.agent.control;
+
+import com.tes.batch.agent.config.AgentConfig;
+import com.tes.batch.common.dto.JobMessage;
+import com.tes.batch.common.util.MessageCodec;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Execution leases of running tasks.
+ * While a task executes, task:lease:{taskId}:{attempt} exists with a short TTL (agent.lease.ttl),
+ * renewed for all tasks in one pipeline per heartbeat, and task:lease-msg:{taskId} holds the
+ * task's message a little longer. If the agent dies, or a task runs past its own time limit
+ * (a hung thread), the lease lapses and the Scheduler retries the message elsewhere or fails the run.
+ * A task past its time limit is abandoned through {@link TaskCancellationRegistry} when its lease is let go,
+ * so the hung attempt is stopped and does not report over the retry.
+ * A finished task deletes both keys, which the Scheduler ignores.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TaskLeaseManager {
+
+    public static final String LEASE_PREFIX = "task:lease:";
+    public static final String LEASE_MESSAGE_PREFIX = "task:lease-msg:";
+    /** The message outlives its lease so the Scheduler can still read it on expiry */
+    private static final long MESSAGE_EXTRA_TTL_MS = 5 * 60 * 1000L;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final MessageCodec messageCodec;
+    private final AgentConfig agentConfig;
+    private final TaskCancellationRegistry cancellations;
+
+    /** Leases by {taskId}:{attempt}; a retry may land on this agent while the lapsed attempt still runs */
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+
+    /**
+     * Take the lease for the message's current attempt
+     */
+    public void acquire(JobMessage message) {
+        if (message.getTaskId() == null) {
+            return;
+        }
+        int attempt = message.getAttempt() != null ? message.getAttempt() : 0;
+        long ttl = agentConfig.getLease().getTtl();
+        // Renewal stops once the task overstays its own time limit
+        long renewUntil = message.getMaxDurationSeconds() != null
+                ? System.currentTimeMillis() + message.getMaxDurationSeconds() * 1000L + ttl
+                : Long.MAX_VALUE;
+        Lease lease = new Lease(message.getTaskId(), attempt, bytes(LEASE_PREFIX + message.getTaskId() + ":" + attempt),
+                bytes(LEASE_MESSAGE_PREFIX + message.getTaskId()), renewUntil);
+        leases.put(message.getTaskId() + ":" + attempt, lease);
+
+        byte[] owner = bytes(agentConfig.getQueueName());
+        byte[] payload = messageCodec.encode(message);
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.stringCommands().set(lease.key, owner, Expiration.milliseconds(ttl),
+                        RedisStringCommands.SetOption.upsert());
+                connection.stringCommands().set(lease.messageKey, payload, Expiration.milliseconds(ttl + MESSAGE_EXTRA_TTL_MS),
+                        RedisStringCommands.SetOption.upsert());
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Failed to acquire execution lease for task {}: {}", message.getTaskId(), e.getMessage());
+        }
+    }
+
+    public void release(String taskId, int attempt) {
+        Lease lease = taskId != null ? leases.remove(taskId + ":" + attempt) : null;
+        if (lease == null) {
+            return;
+        }
+        try {
+            // After a lapse the message key belongs to the retry, if the Scheduler started one
+            redisTemplate.execute((RedisCallback<Long>) connection -> lease.lapsed
+                    ? connection.keyCommands().del(lease.key)
+                    : connection.keyCommands().del(lease.key, lease.messageKey));
+        } catch (Exception e) {
+            log.warn("Failed to release execution lease for task {}: {}", taskId, e.getMessage());
+        }
+    }
+
+    /**
+     * Extend all live leases in one round trip; called with every heartbeat
+     */
+    public void renew() {
+        if (leases.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<Lease> live = new ArrayList<>();
+        for (Lease lease : leases.values()) {
+            if (now <= lease.renewUntil) {
+                live.add(lease);
+            } else if (!lease.lapsed) {
+                lease.lapsed = true;
+                log.warn("Task {} is past its time limit and still running; letting its execution lease lapse",
+                        lease.taskId);
+                cancellations.abandon(lease.taskId, lease.attempt);
+            }
+        }
+        if (live.isEmpty()) {
+            return;
+        }
+        long ttl = agentConfig.getLease().getTtl();
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Lease lease : live) {
+                    connection.keyCommands().pExpire(lease.key, ttl);
+                    connection.keyCommands().pExpire(lease.messageKey, ttl + MESSAGE_EXTRA_TTL_MS);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Failed to renew {} execution lease(s): {}", live.size(), e.getMessage());
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static class Lease {
+        private final String taskId;
+        private final int attempt;
+        private final byte[] key;
+        private final byte[] messageKey;
+        private final long renewUntil;
+        private volatile boolean lapsed;
+
+        private Lease(String taskId, int attempt, byte[] key, byte[] messageKey, long renewUntil) {
+            this.taskId = taskId;
+            this.attempt = attempt;
+            this.key = key;
+            this.messageKey = messageKey;
+            this.renewUntil = renewUntil;
+        }
+    }
+}
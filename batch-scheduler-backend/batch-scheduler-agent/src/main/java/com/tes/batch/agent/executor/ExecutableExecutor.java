@@ -1,5 +1,6 @@
 package com.tes.batch.agent.executor;
 
+import com.tes.batch.agent.control.TaskCancellationRegistry;
 import com.tes.batch.common.dto.JobMessage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -22,6 +23,7 @@ import java.util.regex.Pattern;
 public class ExecutableExecutor {
 
     private final StringRedisTemplate redisTemplate;
+    private final TaskCancellationRegistry cancellations;
     private static final String LOG_CHANNEL_PREFIX = "job:log:";
     private static final String LOG_BUFFER_PREFIX = "job:log:buffer:";
     private static final int LOG_BUFFER_MAX_SIZE = 1000;  // Keep last 1000 lines
@@ -43,6 +45,7 @@ public class ExecutableExecutor {
     public String execute(JobMessage message) {
         String command = message.getJobAction();
         String taskId = message.getTaskId();
+        int attempt = message.getAttempt() != null ? message.getAttempt() : 0;
         Duration timeout = message.getMaxDuration() != null ? message.getMaxDuration() : Duration.ofMinutes(5);
         String logChannel = LOG_CHANNEL_PREFIX + taskId;
 
@@ -65,6 +68,7 @@ public class ExecutableExecutor {
 
         try {
             Process process = processBuilder.start();
+            cancellations.onCancel(taskId, attempt, () -> destroyProcessTree(process));
 
             // Read output in a separate thread to prevent blocking
             StringBuilder output = new StringBuilder();
@@ -98,22 +102,19 @@ public class ExecutableExecutor {
             boolean completed = process.waitFor(timeout.toSeconds(), TimeUnit.SECONDS);
 
             if (!completed) {
-                // [H5] Kill entire process tree (children first, then parent)
-                try {
-                    process.toHandle().descendants().forEach(ph -> {
-                        try { ph.destroyForcibly(); } catch (Exception ignored) {}
-                    });
-                } catch (Exception ignored) {}
-                // Close streams before destroying process to unblock output reader
-                try { process.getInputStream().close(); } catch (Exception ignored) {}
-                try { process.getOutputStream().close(); } catch (Exception ignored) {}
-                try { process.getErrorStream().close(); } catch (Exception ignored) {}
-                process.destroyForcibly();
+                destroyProcessTree(process);
                 outputReader.join(10000);
                 publishLog(logChannel, "[END]");
                 throw new JobTimeoutException("Command timed out after " + timeout);
             }
 
+            if (cancellations.isCancelled(taskId, attempt)) {
+                outputReader.join(10000);
+                publishLog(logChannel, "[CANCELLED]");
+                publishLog(logChannel, "[END]");
+                throw new JobCancelledException("Command cancelled by user");
+            }
+
             // Wait for output reader to finish
             outputReader.join(30000);
             if (outputReader.isAlive()) {
@@ -135,7 +136,7 @@ public class ExecutableExecutor {
             // Return only last N lines as summary (full log is in Redis buffer)
             return getLastLines(result, OUTPUT_SUMMARY_LINES);
 
-        } catch (JobTimeoutException e) {
+        } catch (JobTimeoutException | JobCancelledException e) {
             throw e;
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -145,9 +146,27 @@ public class ExecutableExecutor {
             log.error("Command execution failed: {}", maskSensitiveData(command), e);
             publishLog(logChannel, "[END]");
             throw new RuntimeException("Command execution failed: " + e.getMessage(), e);
+        } finally {
+            cancellations.clearOnCancel(taskId, attempt);
         }
     }
 
+    /**
+     * [H5] Kill entire process tree (children first, then parent)
+     */
+    private void destroyProcessTree(Process process) {
+        try {
+            process.toHandle().descendants().forEach(ph -> {
+                try { ph.destroyForcibly(); } catch (Exception ignored) {}
+            });
+        } catch (Exception ignored) {}
+        // Close streams before destroying process to unblock output reader
+        try { process.getInputStream().close(); } catch (Exception ignored) {}
+        try { process.getOutputStream().close(); } catch (Exception ignored) {}
+        try { process.getErrorStream().close(); } catch (Exception ignored) {}
+        process.destroyForcibly();
+    }
+
     /**
      * Get last N lines from a string
      */
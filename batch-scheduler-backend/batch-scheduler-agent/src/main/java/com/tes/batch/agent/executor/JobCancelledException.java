@@ -0,0 +1,11 @@
+package com.tes.batch.agent.executor;
+
+/**
+ * Exception thrown when a running job is cancelled by the Scheduler
+ */
+public class JobCancelledException extends RuntimeException {
+
+    public JobCancelledException(String message) {
+        super(message);
+    }
+}
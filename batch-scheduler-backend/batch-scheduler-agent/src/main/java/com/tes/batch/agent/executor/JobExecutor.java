@@ -45,6 +45,7 @@ public class JobExecutor {
             return JobResult.builder()
                     .jobId(message.getJobId())
                     .taskId(message.getTaskId())
+                    .workflowRunId(message.getWorkflowRunId())
                     .status(TaskStatus.SUCCESS)
                     .output(output)
                     .startTime(startTime)
@@ -52,11 +53,25 @@ public class JobExecutor {
                     .retryAttempt(message.getRetryCount())
                     .build();
 
+        } catch (JobCancelledException e) {
+            log.info("Job cancelled: {}", message.getJobId());
+            return JobResult.builder()
+                    .jobId(message.getJobId())
+                    .taskId(message.getTaskId())
+                    .workflowRunId(message.getWorkflowRunId())
+                    .status(TaskStatus.CANCELLED)
+                    .error(e.getMessage())
+                    .startTime(startTime)
+                    .endTime(System.currentTimeMillis())
+                    .retryAttempt(message.getRetryCount())
+                    .build();
+
         } catch (JobTimeoutException e) {
             log.error("Job timeout: {}", message.getJobId(), e);
             return JobResult.builder()
                     .jobId(message.getJobId())
                     .taskId(message.getTaskId())
+                    .workflowRunId(message.getWorkflowRunId())
                     .status(TaskStatus.TIMEOUT)
                     .error(e.getMessage())
                     .startTime(startTime)
@@ -69,6 +84,7 @@ public class JobExecutor {
             return JobResult.builder()
                     .jobId(message.getJobId())
                     .taskId(message.getTaskId())
+                    .workflowRunId(message.getWorkflowRunId())
                     .status(TaskStatus.FAILED)
                     .error(e.getMessage())
                     .startTime(startTime)
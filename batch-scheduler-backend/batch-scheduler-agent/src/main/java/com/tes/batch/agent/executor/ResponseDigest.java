@@ -0,0 +1,186 @@
+package com.tes.batch.agent.executor;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.function.Consumer;
+
+/**
+ * Incremental digest of a streamed response body.
+ * Tracks size and SHA-256, keeps a bounded head/tail sample and emits complete lines to a sink,
+ * so the full body never has to be held in memory.
+ * Samples are decoded as UTF-8 only at character boundaries, so a cut never leaves U+FFFD behind.
+ */
+class ResponseDigest {
+
+    private static final int MAX_LINE_LENGTH = 10_000;
+
+    private final long maxBytes;
+    private final int headLimit;
+    private final byte[] tail;
+    private final MessageDigest sha256;
+    private final Consumer<String> lineSink;
+
+    private final ByteArrayOutputStream head;
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+    private int tailPos;
+    private long tailCount;
+    private long totalBytes;
+    private boolean capped;
+
+    ResponseDigest(long maxBytes, int headBytes, int tailBytes, Consumer<String> lineSink) {
+        this.maxBytes = maxBytes;
+        this.headLimit = Math.max(0, headBytes);
+        this.tail = new byte[Math.max(0, tailBytes)];
+        this.head = new ByteArrayOutputStream(Math.min(headLimit, 8192));
+        this.lineSink = lineSink;
+        try {
+            this.sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Consume one chunk. Bytes beyond the cap are dropped and mark the digest as capped.
+     */
+    void update(ByteBuffer chunk) {
+        long room = maxBytes - totalBytes;
+        if (chunk.remaining() > room) {
+            capped = true;
+        }
+        int len = (int) Math.min(chunk.remaining(), Math.max(0, room));
+        if (len == 0) {
+            return;
+        }
+        byte[] bytes = new byte[len];
+        chunk.get(bytes);
+        totalBytes += len;
+        sha256.update(bytes);
+
+        int offset = 0;
+        if (head.size() < headLimit) {
+            offset = Math.min(len, headLimit - head.size());
+            head.write(bytes, 0, offset);
+        }
+        for (int i = offset; i < len && tail.length > 0; i++) {
+            tail[tailPos] = bytes[i];
+            tailPos = (tailPos + 1) % tail.length;
+        }
+        tailCount += len - offset;
+
+        if (lineSink != null) {
+            int start = 0;
+            for (int i = 0; i < len; i++) {
+                if (bytes[i] == '\n') {
+                    appendLine(bytes, start, i - start);
+                    flushLine();
+                    start = i + 1;
+                }
+            }
+            appendLine(bytes, start, len - start);
+        }
+    }
+
+    boolean isCapped() {
+        return capped;
+    }
+
+    long getTotalBytes() {
+        return totalBytes;
+    }
+
+    String head() {
+        byte[] bytes = head.toByteArray();
+        return new String(bytes, 0, completeLength(bytes, bytes.length), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Emit any trailing partial line to the sink.
+     */
+    void finish() {
+        if (lineSink != null && line.size() > 0) {
+            flushLine();
+        }
+    }
+
+    /**
+     * Bounded textual summary of the body: the whole body if it fits in head + tail,
+     * otherwise size, hash and head/tail samples.
+     */
+    String summary() {
+        byte[] tailBytes = tailBytes();
+        if (!capped && tailCount <= tail.length) {
+            // Head and tail are contiguous: decode them as one so no character is split between them
+            ByteArrayOutputStream body = new ByteArrayOutputStream(head.size() + tailBytes.length);
+            body.writeBytes(head.toByteArray());
+            body.writeBytes(tailBytes);
+            return body.toString(StandardCharsets.UTF_8);
+        }
+        int tailStart = leadingContinuationBytes(tailBytes);
+        int tailEnd = capped ? completeLength(tailBytes, tailBytes.length) : tailBytes.length;
+        return "[response " + totalBytes + " bytes" + (capped ? ", capped at " + maxBytes : "")
+                + ", sha256=" + HexFormat.of().formatHex(sha256.digest()) + "]\n"
+                + head()
+                + "\n... (" + Math.max(0, tailCount - tail.length) + " bytes omitted) ...\n"
+                + new String(tailBytes, tailStart, Math.max(0, tailEnd - tailStart), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Length of the longest prefix of bytes[0, len) that does not end inside a multibyte UTF-8 character
+     */
+    static int completeLength(byte[] bytes, int len) {
+        int lead = len - 1;
+        while (lead >= 0 && len - lead <= 3 && (bytes[lead] & 0xC0) == 0x80) {
+            lead--;
+        }
+        if (lead < 0) {
+            return len;
+        }
+        int b = bytes[lead] & 0xFF;
+        int charLength = b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : b >= 0xC0 ? 2 : 1;
+        return len - lead < charLength ? lead : len;
+    }
+
+    /**
+     * Continuation bytes at the start of a sample, the rest of a character cut off in front of it
+     */
+    static int leadingContinuationBytes(byte[] bytes) {
+        int i = 0;
+        while (i < bytes.length && i < 3 && (bytes[i] & 0xC0) == 0x80) {
+            i++;
+        }
+        return i;
+    }
+
+    private byte[] tailBytes() {
+        int size = (int) Math.min(tailCount, tail.length);
+        byte[] out = new byte[size];
+        int start = tailCount <= tail.length ? 0 : tailPos;
+        for (int i = 0; i < size; i++) {
+            out[i] = tail[(start + i) % tail.length];
+        }
+        return out;
+    }
+
+    private void appendLine(byte[] bytes, int off, int len) {
+        int room = MAX_LINE_LENGTH - line.size();
+        if (room > 0 && len > 0) {
+            line.write(bytes, off, Math.min(room, len));
+        }
+    }
+
+    private void flushLine() {
+        // A line cut at MAX_LINE_LENGTH may end inside a character
+        byte[] bytes = line.toByteArray();
+        String text = new String(bytes, 0, completeLength(bytes, bytes.length), StandardCharsets.UTF_8);
+        line.reset();
+        if (text.endsWith("\r")) {
+            text = text.substring(0, text.length() - 1);
+        }
+        lineSink.accept(text);
+    }
+}
@@ -2,24 +2,41 @@ package com.tes.batch.agent.executor;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tes.batch.agent.config.AgentConfig;
+import com.tes.batch.agent.control.TaskCancellationRegistry;
 import com.tes.batch.common.dto.JobMessage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.net.InetAddress;
 import java.net.URI;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Executor for REST API type jobs with real-time log streaming
+ * Executor for REST API type jobs with real-time log streaming.
+ * Response lines are collected per chunk on the reactor-netty event loop and published from a
+ * bounded-elastic thread, one pipelined Redis round trip per chunk, so blocking Redis calls never
+ * stall the event loop shared by all in-flight exchanges.
  */
 @Slf4j
 @Component
@@ -29,25 +46,29 @@ public class RestApiExecutor {
     private final WebClient.Builder webClientBuilder;
     private final ObjectMapper objectMapper;
     private final StringRedisTemplate redisTemplate;
+    private final AgentConfig agentConfig;
+    private final TaskCancellationRegistry cancellations;
 
     private static final String LOG_CHANNEL_PREFIX = "job:log:";
     private static final String LOG_BUFFER_PREFIX = "job:log:buffer:";
     private static final int LOG_BUFFER_MAX_SIZE = 1000;
     private static final int LOG_BUFFER_TTL_HOURS = 24;
+    private static final int ERROR_BODY_MAX_BYTES = 500;
 
     /**
      * Execute REST API call with real-time log streaming
      *
      * @param message Job message containing URL and body
-     * @return Response body as string
+     * @return Bounded summary of the response body
      */
     public String execute(JobMessage message) {
         String action = message.getJobAction();
         String body = message.getJobBody();
         String headersJson = message.getJobHeaders();
         String taskId = message.getTaskId();
+        int attempt = message.getAttempt() != null ? message.getAttempt() : 0;
         Duration timeout = message.getMaxDuration() != null ? message.getMaxDuration() : Duration.ofMinutes(5);
-        String logChannel = LOG_CHANNEL_PREFIX + taskId;
+        LogStream logStream = new LogStream(taskId);
 
         // Parse method and URL from action
         HttpMethod method = determineMethod(action);
@@ -85,30 +106,41 @@ public class RestApiExecutor {
                 }
             }
 
-            Mono<String> responseMono;
-
-            if (body != null && !body.isEmpty() && (method == HttpMethod.POST || method == HttpMethod.PUT || method == HttpMethod.PATCH)) {
-                responseMono = requestSpec
-                        .bodyValue(body)
-                        .retrieve()
-                        .onStatus(status -> status.is4xxClientError() || status.is5xxServerError(),
-                                clientResponse -> clientResponse.bodyToMono(String.class)
-                                        .defaultIfEmpty("")
-                                        .flatMap(errorBody -> Mono.error(new RuntimeException(
-                                                "HTTP " + clientResponse.statusCode().value() + ": " + truncateForLog(errorBody, 500)))))
-                        .bodyToMono(String.class);
-            } else {
-                responseMono = requestSpec
-                        .retrieve()
-                        .onStatus(status -> status.is4xxClientError() || status.is5xxServerError(),
-                                clientResponse -> clientResponse.bodyToMono(String.class)
-                                        .defaultIfEmpty("")
-                                        .flatMap(errorBody -> Mono.error(new RuntimeException(
-                                                "HTTP " + clientResponse.statusCode().value() + ": " + truncateForLog(errorBody, 500)))))
-                        .bodyToMono(String.class);
-            }
-
-            String response = responseMono
+            WebClient.RequestHeadersSpec<?> exchangeSpec =
+                    body != null && !body.isEmpty() && (method == HttpMethod.POST || method == HttpMethod.PUT || method == HttpMethod.PATCH)
+                            ? requestSpec.bodyValue(body)
+                            : requestSpec;
+
+            // [P9] Stream the body as DataBuffer chunks: lines go to the log channel as they arrive,
+            // only a bounded digest (size, hash, head/tail) is kept for the job result
+            AgentConfig.Rest limits = agentConfig.getRest();
+            List<String> lines = new ArrayList<>();
+            ResponseDigest digest = new ResponseDigest(limits.getMaxResponseBytes(),
+                    limits.getSummaryHeadBytes(), limits.getSummaryTailBytes(), lines::add);
+
+            Mono<String> responseMono = exchangeSpec
+                    .retrieve()
+                    .onStatus(status -> status.is4xxClientError() || status.is5xxServerError(),
+                            clientResponse -> readErrorBody(clientResponse)
+                                    .flatMap(errorBody -> Mono.error(new RuntimeException(
+                                            "HTTP " + clientResponse.statusCode().value() + ": " + errorBody))))
+                    .bodyToFlux(DataBuffer.class)
+                    .map(buffer -> {
+                        consume(buffer, digest);
+                        return drain(lines);
+                    })
+                    .takeUntil(batch -> digest.isCapped())
+                    // Redis calls block; publish the chunk's lines off the event loop, in order
+                    .publishOn(Schedulers.boundedElastic())
+                    .doOnNext(logStream::publish)
+                    .then(Mono.fromSupplier(() -> {
+                        digest.finish();
+                        logStream.publish(drain(lines));
+                        return digest.summary();
+                    }));
+
+            // Subscribe through a future so a cancel request can dispose the in-flight exchange
+            CompletableFuture<String> responseFuture = responseMono
                     .timeout(timeout)
                     .onErrorResume(e -> {
                         if (e instanceof java.util.concurrent.TimeoutException) {
@@ -116,49 +148,126 @@ public class RestApiExecutor {
                         }
                         return Mono.error(e);
                     })
-                    .block(timeout.plus(Duration.ofSeconds(5)));
+                    .toFuture();
+            cancellations.onCancel(taskId, attempt, () -> responseFuture.cancel(true));
+
+            String response;
+            try {
+                response = responseFuture.get(timeout.plusSeconds(5).toMillis(), TimeUnit.MILLISECONDS);
+            } catch (CancellationException e) {
+                log.info("REST API call cancelled: {} {}", method, url);
+                logStream.publish(List.of("[CANCELLED]", "[END]"));
+                throw new JobCancelledException("REST API call cancelled by user");
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : new RuntimeException(e.getCause());
+            } catch (java.util.concurrent.TimeoutException e) {
+                responseFuture.cancel(true);
+                throw new JobTimeoutException("REST API call timed out after " + timeout);
+            }
 
-            log.info("REST API call completed successfully: {} {}", method, url);
-            // Publish response (truncated if too long)
-            if (response != null) {
-                publishLog(logChannel, truncateForLog(response, 2000));
+            if (digest.isCapped()) {
+                log.warn("REST API response exceeded {} bytes, remainder discarded: {} {}",
+                        limits.getMaxResponseBytes(), method, url);
+                logStream.publish("[response truncated at " + limits.getMaxResponseBytes() + " bytes]");
             }
-            publishLog(logChannel, "[END]");
+            log.info("REST API call completed successfully: {} {} ({} bytes)", method, url, digest.getTotalBytes());
+            logStream.publish("[END]");
 
             return response;
 
+        } catch (JobCancelledException e) {
+            throw e;
         } catch (JobTimeoutException e) {
-            publishLog(logChannel, "[END]");
+            logStream.publish("[END]");
             throw e;
         } catch (Exception e) {
             log.error("REST API call failed: {} {}", method, url, e);
-            publishLog(logChannel, "[END]");
+            logStream.publish("[END]");
             throw new RuntimeException("REST API call failed: " + e.getMessage(), e);
+        } finally {
+            cancellations.clearOnCancel(taskId, attempt);
         }
     }
 
     /**
-     * Publish log line to Redis channel and buffer for late subscribers
+     * Feed one chunk into the digest and always release the pooled buffer
      */
-    private void publishLog(String channel, String message) {
-        try {
-            // Publish to Pub/Sub for real-time subscribers (raw output without timestamp)
-            redisTemplate.convertAndSend(channel, message);
+    private void consume(DataBuffer buffer, ResponseDigest digest) {
+        try (DataBuffer.ByteBufferIterator it = buffer.readableByteBuffers()) {
+            while (it.hasNext()) {
+                digest.update(it.next());
+            }
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+
+    /**
+     * Read at most ERROR_BODY_MAX_BYTES of an error response body
+     */
+    private Mono<String> readErrorBody(ClientResponse clientResponse) {
+        ResponseDigest digest = new ResponseDigest(ERROR_BODY_MAX_BYTES, ERROR_BODY_MAX_BYTES, 0, null);
+        return clientResponse.bodyToFlux(DataBuffer.class)
+                .doOnNext(buffer -> consume(buffer, digest))
+                .takeUntil(buffer -> digest.isCapped())
+                .then(Mono.fromSupplier(() -> digest.head() + (digest.isCapped() ? "... (truncated)" : "")));
+    }
+
+    private static List<String> drain(List<String> lines) {
+        if (lines.isEmpty()) {
+            return List.of();
+        }
+        List<String> batch = new ArrayList<>(lines);
+        lines.clear();
+        return batch;
+    }
 
-            // Also store in a LIST for late subscribers (buffer)
-            String bufferKey = channel.replace(LOG_CHANNEL_PREFIX, LOG_BUFFER_PREFIX);
-            redisTemplate.opsForList().rightPush(bufferKey, message);
+    /**
+     * Log output of one run: the Pub/Sub channel for live subscribers and a bounded list for late ones
+     */
+    private final class LogStream {
+        private final String channel;
+        private final String bufferKey;
+        private volatile boolean expirySet;
+
+        private LogStream(String taskId) {
+            this.channel = LOG_CHANNEL_PREFIX + taskId;
+            this.bufferKey = LOG_BUFFER_PREFIX + taskId;
+        }
 
-            // Trim buffer to max size
-            redisTemplate.opsForList().trim(bufferKey, -LOG_BUFFER_MAX_SIZE, -1);
+        void publish(String line) {
+            publish(List.of(line));
+        }
 
-            // Set TTL if not already set
-            if (Boolean.FALSE.equals(redisTemplate.hasKey(bufferKey + ":ttl"))) {
-                redisTemplate.expire(bufferKey, Duration.ofHours(LOG_BUFFER_TTL_HOURS));
-                redisTemplate.opsForValue().set(bufferKey + ":ttl", "1", Duration.ofHours(LOG_BUFFER_TTL_HOURS));
+        /**
+         * Publish lines in one pipelined round trip; the buffer's TTL is set once per run
+         */
+        void publish(List<String> lines) {
+            if (lines.isEmpty()) {
+                return;
+            }
+            boolean setExpiry = !expirySet;
+            try {
+                redisTemplate.executePipelined(new SessionCallback<Object>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                        RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                        for (String line : lines) {
+                            ops.convertAndSend(channel, line);
+                        }
+                        ops.opsForList().rightPushAll(bufferKey, lines);
+                        ops.opsForList().trim(bufferKey, -LOG_BUFFER_MAX_SIZE, -1);
+                        if (setExpiry) {
+                            ops.expire(bufferKey, Duration.ofHours(LOG_BUFFER_TTL_HOURS));
+                        }
+                        return null;
+                    }
+                });
+                expirySet = true;
+            } catch (Exception e) {
+                log.warn("Failed to publish {} log line(s) to Redis: {}", lines.size(), e.getMessage());
             }
-        } catch (Exception e) {
-            log.warn("Failed to publish log to Redis: {}", e.getMessage());
         }
     }
 
@@ -221,15 +330,6 @@ public class RestApiExecutor {
         return headerName != null && SENSITIVE_HEADERS.contains(headerName.toLowerCase());
     }
 
-    /**
-     * Truncate string for logging
-     */
-    private String truncateForLog(String str, int maxLength) {
-        if (str == null) return "null";
-        if (str.length() <= maxLength) return str;
-        return str.substring(0, maxLength) + "... (truncated, total " + str.length() + " chars)";
-    }
-
     /**
      * Parse headers from JSON string.
      * Supports two formats:
@@ -1,36 +1,54 @@
 package com.tes.batch.agent.executor;
 
+import com.tes.batch.agent.control.TaskCancellationRegistry;
 import com.tes.batch.agent.state.TaskStateReporter;
 import com.tes.batch.common.dto.JobMessage;
 import com.tes.batch.common.dto.JobResult;
 import com.tes.batch.common.dto.WorkflowMessage;
 import com.tes.batch.common.enums.TaskStatus;
+import com.tes.batch.common.util.MapParameters;
+import com.tes.batch.common.util.WorkflowDag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.UUID;
 import java.util.concurrent.*;
 
 /**
- * Executes workflows with priority group-based DAG execution
+ * Executes workflows as a DAG of jobs.
+ * Each job starts as soon as its own dependencies have finished (see {@link WorkflowDag});
+ * workflows without explicit dependencies run group by group exactly as before.
+ * Map steps fan their job out over their parameters and complete when all tasks have (see {@link MapRun}).
  */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class WorkflowExecutor {
 
+    /** Per-job wall-clock limit inside a workflow */
+    private static final long JOB_TIME_LIMIT_MS = TimeUnit.HOURS.toMillis(2);
+    private static final long DEFAULT_JOB_WEIGHT_SECONDS = 3600;
+
     private final JobExecutor jobExecutor;
     private final TaskStateReporter stateReporter;
     private final ExecutorService jobExecutorService;
+    private final TaskCancellationRegistry cancellations;
 
     /**
      * Execute a workflow
-     * - Priority groups are executed sequentially (lowest priority first)
-     * - Jobs within the same priority group are executed in parallel
+     * - A job becomes ready when all of its dependencies have completed
+     * - Ready jobs are started in critical-path order (longest remaining chain first)
+     * - A failed job (unless its own or its group's result is ignored) blocks its dependents
+     *   and fails the workflow; independent branches still run to completion
      */
     public void executeWorkflow(WorkflowMessage workflowMessage) {
         log.info("Starting workflow execution: {} (runId: {})",
@@ -39,37 +57,22 @@ public class WorkflowExecutor {
         long startTime = System.currentTimeMillis();
 
         try {
-            // Sort priority groups by priority (ascending)
-            List<WorkflowMessage.PriorityGroup> sortedGroups =
-                    workflowMessage.getPriorityGroups().stream()
-                            .sorted(Comparator.comparing(WorkflowMessage.PriorityGroup::getPriority))
-                            .toList();
-
-            // Execute each priority group sequentially
-            for (WorkflowMessage.PriorityGroup group : sortedGroups) {
-                log.info("Executing priority group {} for workflow {}",
-                        group.getPriority(), workflowMessage.getWorkflowName());
-
-                boolean groupSuccess = executePriorityGroup(group, workflowMessage.getWorkflowRunId());
-
-                // If group failed and ignoreResult is false, stop workflow
-                if (!groupSuccess && !Boolean.TRUE.equals(group.getIgnoreResult())) {
-                    log.error("Priority group {} failed, stopping workflow {}",
-                            group.getPriority(), workflowMessage.getWorkflowName());
-
-                    stateReporter.reportWorkflowResult(
-                            workflowMessage.getWorkflowId(),
-                            workflowMessage.getWorkflowRunId(),
-                            TaskStatus.FAILED,
-                            "Priority group " + group.getPriority() + " failed",
-                            startTime,
-                            System.currentTimeMillis()
-                    );
-                    return;
-                }
+            String failure = executeDag(workflowMessage);
+
+            if (failure != null) {
+                log.error("{}, stopping workflow {}", failure, workflowMessage.getWorkflowName());
+                stateReporter.reportWorkflowResult(
+                        workflowMessage.getWorkflowId(),
+                        workflowMessage.getWorkflowRunId(),
+                        TaskStatus.FAILED,
+                        failure,
+                        startTime,
+                        System.currentTimeMillis()
+                );
+                return;
             }
 
-            // All groups completed successfully
+            // All jobs completed successfully
             log.info("Workflow completed successfully: {}", workflowMessage.getWorkflowName());
             stateReporter.reportWorkflowResult(
                     workflowMessage.getWorkflowId(),
@@ -94,111 +97,237 @@ public class WorkflowExecutor {
     }
 
     /**
-     * Execute all jobs in a priority group in parallel
+     * Run all jobs of the workflow in dependency order.
+     * Returns the failure message, or null if the workflow succeeded.
      */
-    private boolean executePriorityGroup(WorkflowMessage.PriorityGroup group, Long workflowRunId) {
-        List<CompletableFuture<JobResult>> futures = new ArrayList<>();
+    private String executeDag(WorkflowMessage workflowMessage) throws InterruptedException {
+        Long workflowRunId = workflowMessage.getWorkflowRunId();
 
-        for (JobMessage job : group.getJobs()) {
-            CompletableFuture<JobResult> future = CompletableFuture.supplyAsync(() -> {
-                try {
-                    // Apply execution delay if specified
-                    if (job.getExecutionDelay() != null && job.getExecutionDelay() > 0) {
-                        log.info("Applying execution delay of {} seconds for job {}",
-                                job.getExecutionDelay(), job.getJobId());
-                        Thread.sleep(job.getExecutionDelay() * 1000L);
-                    }
+        // Sort priority groups by priority (ascending); this is the order implicit edges follow
+        List<WorkflowMessage.PriorityGroup> sortedGroups =
+                workflowMessage.getPriorityGroups().stream()
+                        .sorted(Comparator.comparing(WorkflowMessage.PriorityGroup::getPriority))
+                        .toList();
 
-                    // Set workflow run ID if not already set
-                    if (job.getWorkflowRunId() == null) {
-                        job.setWorkflowRunId(workflowRunId);
+        List<Node> nodes = new ArrayList<>();
+        List<List<String>> groupJobIds = new ArrayList<>();
+        Map<String, List<String>> dependsOn = new HashMap<>();
+        for (WorkflowMessage.PriorityGroup group : sortedGroups) {
+            List<String> jobIds = new ArrayList<>();
+            if (group.getJobs() != null) {
+                for (JobMessage job : group.getJobs()) {
+                    nodes.add(new Node(job, group));
+                    jobIds.add(job.getJobId());
+                    if (job.getDependsOn() != null) {
+                        dependsOn.put(job.getJobId(), job.getDependsOn());
                     }
+                }
+            }
+            groupJobIds.add(jobIds);
+        }
 
-                    // Generate task ID if not set
-                    if (job.getTaskId() == null) {
-                        job.setTaskId(generateTaskId(job.getJobId(), workflowRunId));
-                    }
+        WorkflowDag dag = WorkflowDag.build(groupJobIds, dependsOn);
+        if (!dag.isAcyclic()) {
+            return "Job dependencies contain a cycle involving: " + dag.cycleJobIds();
+        }
 
-                    // Report job started
-                    stateReporter.reportStarted(job.getJobId(), job.getTaskId());
+        long[] weights = new long[nodes.size()];
+        for (int i = 0; i < nodes.size(); i++) {
+            JobMessage job = nodes.get(i).job;
+            long duration = job.getMaxDurationSeconds() != null ? job.getMaxDurationSeconds() : DEFAULT_JOB_WEIGHT_SECONDS;
+            long delay = job.getExecutionDelay() != null ? Math.max(0, job.getExecutionDelay()) : 0;
+            weights[i] = duration * MapParameters.waves(job) + delay;
+        }
+        long[] ranks = dag.criticalPathRanks(weights);
 
-                    // Execute job
-                    JobResult result = jobExecutor.execute(job);
+        int[] waitingOn = new int[nodes.size()];
+        PriorityQueue<Integer> ready = new PriorityQueue<>(
+                Comparator.<Integer>comparingLong(i -> -ranks[i]).thenComparingInt(i -> i));
+        for (int i = 0; i < nodes.size(); i++) {
+            waitingOn[i] = dag.predecessors(i).size();
+            if (waitingOn[i] == 0) {
+                ready.add(i);
+            }
+        }
 
-                    // Report result
-                    stateReporter.reportResult(result);
+        // Ready jobs with an execution delay wait here (by due time) without occupying a pool thread
+        PriorityQueue<long[]> delayed = new PriorityQueue<>(Comparator.comparingLong(entry -> entry[0]));
+        BlockingQueue<Integer> completions = new LinkedBlockingQueue<>();
+        boolean[] blocked = new boolean[nodes.size()];
+        int running = 0;
+        String failure = null;
 
-                    return result;
+        while (!ready.isEmpty() || !delayed.isEmpty() || running > 0) {
+            long now = System.currentTimeMillis();
+            while (!delayed.isEmpty() && delayed.peek()[0] <= now) {
+                ready.add((int) delayed.poll()[1]);
+            }
 
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    return createFailedResult(job, workflowRunId, "Job interrupted: " + e.getMessage());
-                } catch (Exception e) {
-                    log.error("Job execution failed in workflow: {}", job.getJobId(), e);
-                    JobResult failResult = createFailedResult(job, workflowRunId, e.getMessage());
-                    stateReporter.reportResult(failResult);
-                    return failResult;
+            // Start everything that is ready, highest critical-path rank first
+            while (!ready.isEmpty()) {
+                int index = ready.poll();
+                Node node = nodes.get(index);
+                Integer delaySeconds = node.job.getExecutionDelay();
+                if (!node.delayed && delaySeconds != null && delaySeconds > 0) {
+                    log.info("Applying execution delay of {} seconds for job {}", delaySeconds, node.job.getJobId());
+                    node.delayed = true;
+                    delayed.add(new long[]{now + delaySeconds * 1000L, index});
+                    continue;
+                }
+                log.info("Starting job {} (priority group {}, critical path {}s) in workflow {}",
+                        node.job.getJobId(), node.group.getPriority(), ranks[index], workflowMessage.getWorkflowName());
+                node.startedAt = System.currentTimeMillis();
+                node.future = node.isMap()
+                        ? new MapRun(node.job, workflowRunId).start()
+                        : CompletableFuture.supplyAsync(() -> runJob(node.job, workflowRunId), jobExecutorService);
+                node.future.whenComplete((result, error) -> completions.add(index));
+                running++;
+            }
+
+            // [H8] The coordinator only waits on completions, never on a pool thread, so a
+            // saturated shared pool cannot deadlock it
+            long waitMs = TimeUnit.MINUTES.toMillis(1);
+            if (!delayed.isEmpty()) {
+                waitMs = Math.max(1, Math.min(waitMs, delayed.peek()[0] - System.currentTimeMillis()));
+            }
+            Integer completed = completions.poll(waitMs, TimeUnit.MILLISECONDS);
+            if (completed == null && running == 0) {
+                continue; // only waiting for a delayed job to become due
+            }
+            List<Integer> finished = completed != null ? List.of(completed) : expireOverdueJobs(nodes, workflowRunId);
+            for (int index : finished) {
+                Node node = nodes.get(index);
+                if (node.settled) {
+                    continue; // late completion of a job already failed by the time limit
+                }
+                node.settled = true;
+                if (node.result == null) {
+                    node.result = resultOf(node, workflowRunId);
                 }
-            }, jobExecutorService);
+                running--;
 
-            futures.add(future);
+                if (isFailure(node.result) && !node.ignoresFailure()) {
+                    log.warn("Job {} failed in priority group {}, blocking its dependents",
+                            node.job.getJobId(), node.group.getPriority());
+                    if (failure == null) {
+                        failure = "Priority group " + node.group.getPriority() + " failed (job " + node.job.getJobId() + ")";
+                    }
+                    block(dag, index, blocked);
+                    continue;
+                }
+                for (int succ : dag.successors(index)) {
+                    if (--waitingOn[succ] == 0 && !blocked[succ]) {
+                        ready.add(succ);
+                    }
+                }
+            }
         }
 
-        // [H8] Wait for all jobs simultaneously using allOf to prevent deadlock
-        // Sequential get() on shared thread pool can deadlock when all threads are waiting
-        try {
-            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
-                    .get(2, TimeUnit.HOURS);
-        } catch (TimeoutException | ExecutionException | InterruptedException ignored) {
-            // Individual results are checked below
-            if (ignored instanceof InterruptedException) {
-                Thread.currentThread().interrupt();
+        if (failure != null) {
+            int notStarted = 0;
+            for (boolean b : blocked) {
+                if (b) {
+                    notStarted++;
+                }
+            }
+            if (notStarted > 0) {
+                failure += ", " + notStarted + " dependent job(s) not started";
             }
         }
+        return failure;
+    }
 
-        List<JobResult> results = new ArrayList<>();
-        for (int i = 0; i < futures.size(); i++) {
-            CompletableFuture<JobResult> future = futures.get(i);
-            JobMessage job = group.getJobs().get(i);
+    /**
+     * Execute one job of the workflow on the current (pool) thread
+     */
+    private JobResult runJob(JobMessage job, Long workflowRunId) {
+        try {
+            // Set workflow run ID if not already set
+            if (job.getWorkflowRunId() == null) {
+                job.setWorkflowRunId(workflowRunId);
+            }
+
+            // Generate task ID if not set
+            if (job.getTaskId() == null) {
+                job.setTaskId(generateTaskId(job.getJobId(), workflowRunId));
+            }
+
+            // Report job started
+            stateReporter.reportStarted(job.getJobId(), job.getTaskId());
+
+            // Execute job
+            JobResult result;
+            int attempt = job.getAttempt() != null ? job.getAttempt() : 0;
+            cancellations.track(job.getTaskId(), attempt);
             try {
-                if (future.isDone()) {
-                    results.add(future.get());
-                } else {
-                    future.cancel(true);
-                    log.error("Job {} timed out in workflow (2h limit)", job.getJobId());
-                    JobResult timeoutResult = createFailedResult(job, workflowRunId, "Job execution timed out (2h limit)");
-                    stateReporter.reportResult(timeoutResult);
-                    results.add(timeoutResult);
-                }
-            } catch (ExecutionException e) {
-                log.error("Job {} threw exception in workflow", job.getJobId(), e.getCause());
-                JobResult failResult = createFailedResult(job, workflowRunId, e.getCause().getMessage());
-                stateReporter.reportResult(failResult);
-                results.add(failResult);
-            } catch (Exception e) {
-                results.add(createFailedResult(job, workflowRunId, e.getMessage()));
+                result = jobExecutor.execute(job);
+            } finally {
+                cancellations.untrack(job.getTaskId(), attempt);
             }
+
+            // Report result
+            stateReporter.reportResult(result);
+
+            return result;
+
+        } catch (Exception e) {
+            log.error("Job execution failed in workflow: {}", job.getJobId(), e);
+            JobResult failResult = createFailedResult(job, workflowRunId, e.getMessage());
+            stateReporter.reportResult(failResult);
+            return failResult;
         }
+    }
 
-        // Check if any job failed (excluding jobs that should be ignored)
-        List<JobMessage> jobs = group.getJobs();
-        boolean hasFailure = false;
-        for (int i = 0; i < results.size(); i++) {
-            JobResult result = results.get(i);
-            JobMessage job = jobs.get(i);
+    private JobResult resultOf(Node node, Long workflowRunId) {
+        try {
+            return node.future.get();
+        } catch (ExecutionException e) {
+            log.error("Job {} threw exception in workflow", node.job.getJobId(), e.getCause());
+            JobResult failResult = createFailedResult(node.job, workflowRunId, e.getCause().getMessage());
+            stateReporter.reportResult(failResult);
+            return failResult;
+        } catch (Exception e) {
+            return createFailedResult(node.job, workflowRunId, e.getMessage());
+        }
+    }
 
-            if ((result.getStatus() == TaskStatus.FAILED || result.getStatus() == TaskStatus.TIMEOUT)
-                    && !Boolean.TRUE.equals(job.getIgnoreResult())) {
-                hasFailure = true;
-                break;
+    /**
+     * Fail jobs running past the per-job limit; returns their indexes
+     */
+    private List<Integer> expireOverdueJobs(List<Node> nodes, Long workflowRunId) {
+        long now = System.currentTimeMillis();
+        List<Integer> expired = new ArrayList<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+            // A map step is bounded by its tasks' own limits
+            if (node.future == null || node.settled || node.future.isDone() || node.isMap()
+                    || now - node.startedAt < JOB_TIME_LIMIT_MS) {
+                continue;
             }
+            node.future.cancel(true);
+            log.error("Job {} timed out in workflow (2h limit)", node.job.getJobId());
+            JobResult timeoutResult = createFailedResult(node.job, workflowRunId, "Job execution timed out (2h limit)");
+            stateReporter.reportResult(timeoutResult);
+            node.result = timeoutResult;
+            expired.add(i);
         }
+        return expired;
+    }
 
-        if (hasFailure) {
-            log.warn("Some jobs failed in priority group {}", group.getPriority());
+    private void block(WorkflowDag dag, int failed, boolean[] blocked) {
+        Deque<Integer> stack = new ArrayDeque<>(dag.successors(failed));
+        while (!stack.isEmpty()) {
+            int node = stack.pop();
+            if (!blocked[node]) {
+                blocked[node] = true;
+                stack.addAll(dag.successors(node));
+            }
         }
+    }
 
-        return !hasFailure;
+    private static boolean isFailure(JobResult result) {
+        return result.getStatus() == TaskStatus.FAILED || result.getStatus() == TaskStatus.TIMEOUT
+                || result.getStatus() == TaskStatus.CANCELLED;
     }
 
     /** [F6] UUID-based task ID to prevent collision in parallel execution */
@@ -215,4 +344,116 @@ public class WorkflowExecutor {
                 .endTime(System.currentTimeMillis())
                 .build();
     }
+
+    /**
+     * One map step: its tasks run on the shared pool, at most maxParallelism at a time, each started
+     * from the completion of an earlier one, so no thread waits for the step. The future completes
+     * with the join result, which is also reported for the step's own task ID.
+     */
+    private class MapRun {
+        private final JobMessage step;
+        private final Long workflowRunId;
+        private final List<JobMessage> tasks;
+        private final JobResult[] results;
+        private final int parallelism;
+        private final CompletableFuture<JobResult> joined = new CompletableFuture<>();
+        private long startTime;
+        private int next;
+        private int done;
+
+        private MapRun(JobMessage step, Long workflowRunId) {
+            this.step = step;
+            this.workflowRunId = workflowRunId;
+            this.tasks = step.getMapTasks();
+            this.results = new JobResult[tasks.size()];
+            this.parallelism = step.getMaxParallelism() != null && step.getMaxParallelism() > 0
+                    ? step.getMaxParallelism() : tasks.size();
+        }
+
+        private CompletableFuture<JobResult> start() {
+            if (step.getWorkflowRunId() == null) {
+                step.setWorkflowRunId(workflowRunId);
+            }
+            startTime = System.currentTimeMillis();
+            stateReporter.reportStarted(step.getJobId(), step.getTaskId());
+            fill();
+            return joined;
+        }
+
+        /** Start tasks until maxParallelism are running */
+        private synchronized void fill() {
+            while (next < tasks.size() && next - done < parallelism) {
+                int index = next++;
+                JobMessage task = tasks.get(index);
+                try {
+                    CompletableFuture.supplyAsync(() -> runJob(task, workflowRunId), jobExecutorService)
+                            .whenComplete((result, error) -> finished(index, result, error));
+                } catch (RejectedExecutionException e) {
+                    JobResult failResult = createFailedResult(task, workflowRunId, "Map task rejected: " + e.getMessage());
+                    stateReporter.reportResult(failResult);
+                    finished(index, failResult, null);
+                }
+            }
+        }
+
+        private synchronized void finished(int index, JobResult result, Throwable error) {
+            results[index] = result != null ? result
+                    : createFailedResult(tasks.get(index), workflowRunId, error != null ? error.getMessage() : null);
+            if (++done == tasks.size()) {
+                join();
+            } else {
+                fill();
+            }
+        }
+
+        private void join() {
+            List<String> failedParams = new ArrayList<>();
+            for (int i = 0; i < tasks.size(); i++) {
+                if (results[i].getStatus() != TaskStatus.SUCCESS) {
+                    failedParams.add(tasks.get(i).getMapParam());
+                }
+            }
+            long endTime = System.currentTimeMillis();
+            JobResult result = JobResult.builder()
+                    .jobId(step.getJobId())
+                    .taskId(step.getTaskId())
+                    .status(failedParams.isEmpty() ? TaskStatus.SUCCESS : TaskStatus.FAILED)
+                    .output(MapParameters.summarize(tasks.size(), failedParams))
+                    .error(failedParams.isEmpty() ? null
+                            : failedParams.size() + " of " + tasks.size() + " map task(s) failed")
+                    .startTime(startTime)
+                    .endTime(endTime)
+                    .durationMs(endTime - startTime)
+                    .workflowRunId(workflowRunId)
+                    .build();
+            log.info("Map step {} joined: {}/{} task(s) succeeded",
+                    step.getJobId(), tasks.size() - failedParams.size(), tasks.size());
+            stateReporter.reportResult(result);
+            joined.complete(result);
+        }
+    }
+
+    private static class Node {
+        private final JobMessage job;
+        private final WorkflowMessage.PriorityGroup group;
+        private CompletableFuture<JobResult> future;
+        private long startedAt;
+        private JobResult result;
+        private boolean settled;
+        /** Execution delay already waited out */
+        private boolean delayed;
+
+        private Node(JobMessage job, WorkflowMessage.PriorityGroup group) {
+            this.job = job;
+            this.group = group;
+        }
+
+        private boolean ignoresFailure() {
+            return Boolean.TRUE.equals(job.getIgnoreResult()) || Boolean.TRUE.equals(group.getIgnoreResult());
+        }
+
+        private boolean isMap() {
+            return job.getMapTasks() != null && !job.getMapTasks().isEmpty();
+        }
+    }
 }
@@ -1,12 +1,20 @@
 package com.tes.batch.agent.health;
 
 import com.tes.batch.agent.config.AgentConfig;
+import com.tes.batch.agent.config.ConcurrencyManager;
+import com.tes.batch.agent.control.AgentDrainManager;
+import com.tes.batch.agent.control.TaskLeaseManager;
+import com.tes.batch.common.constant.AgentChannels;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -18,13 +26,23 @@ import java.util.concurrent.TimeUnit;
 public class AgentHeartbeat {
 
     private final RedisTemplate<String, Object> redisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
     private final AgentConfig agentConfig;
+    private final ConcurrencyManager concurrencyManager;
+    private final ThreadPoolTaskExecutor jobTaskExecutor;
+    private final AgentDrainManager drainManager;
+    private final TaskLeaseManager leaseManager;
+
+    public static final String POOL_MEMBERS_PREFIX = "pool:members:";
 
     /**
      * Send heartbeat every 10 seconds (configurable)
      */
     @Scheduled(fixedRateString = "${agent.heartbeat.interval:10000}")
     public void sendHeartbeat() {
+        if (drainManager.isDrained()) {
+            return;
+        }
         try {
             String healthKey = "agent:health:" + agentConfig.getQueueName();
             long timestamp = System.currentTimeMillis();
@@ -35,19 +53,55 @@ public class AgentHeartbeat {
 
             // Also store agent info
             String infoKey = "agent:info:" + agentConfig.getQueueName();
-            java.util.Map<String, Object> agentInfo = java.util.Map.of(
-                    "serverId", agentConfig.getServerId(),
-                    "queueName", agentConfig.getQueueName(),
-                    "lastHeartbeat", timestamp,
-                    "status", "ONLINE"
-            );
+            java.util.Map<String, Object> agentInfo = new java.util.HashMap<>();
+            agentInfo.put("serverId", agentConfig.getServerId());
+            agentInfo.put("queueName", agentConfig.getQueueName());
+            agentInfo.put("lastHeartbeat", timestamp);
+            // DRAINING tells the Scheduler to stop routing new work here
+            agentInfo.put("status", drainManager.isDraining() ? "DRAINING" : "ONLINE");
+            agentInfo.put("inFlight", drainManager.getInFlightCount());
+            if (agentConfig.getPool().isMember()) {
+                agentInfo.put("poolName", agentConfig.getPool().getName());
+            }
+            putLoadMetrics(agentInfo);
             redisTemplate.opsForHash().putAll(infoKey, agentInfo);
             redisTemplate.expire(infoKey, agentConfig.getHeartbeat().getTimeout(), TimeUnit.MILLISECONDS);
 
+            // Advertise pool membership so idle siblings can find this queue for work stealing
+            if (agentConfig.getPool().isMember()) {
+                String membersKey = POOL_MEMBERS_PREFIX + agentConfig.getPool().getName();
+                redisTemplate.opsForSet().add(membersKey, agentConfig.getQueueName());
+                redisTemplate.expire(membersKey, agentConfig.getHeartbeat().getTimeout() * 2, TimeUnit.MILLISECONDS);
+            }
+
+            leaseManager.renew();
+
+            // Tells the Scheduler right away; it tracks health from these events instead of polling
+            stringRedisTemplate.convertAndSend(AgentChannels.HEARTBEAT_CHANNEL, agentConfig.getQueueName());
+
             log.debug("Heartbeat sent: {}", agentConfig.getQueueName());
 
         } catch (Exception e) {
             log.error("Failed to send heartbeat", e);
         }
     }
+
+    /**
+     * Live load figures used by the Scheduler for least-loaded server selection
+     */
+    private void putLoadMetrics(java.util.Map<String, Object> agentInfo) {
+        agentInfo.put("activeJobs", concurrencyManager.getActiveJobCount());
+        agentInfo.put("availablePermits", concurrencyManager.getAvailablePermits());
+        agentInfo.put("maxConcurrentJobs", agentConfig.getExecutor().getMaxConcurrentJobs());
+        agentInfo.put("executorQueueSize", jobTaskExecutor.getQueueSize());
+
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        agentInfo.put("cpuCount", os.getAvailableProcessors());
+        agentInfo.put("loadAverage", os.getSystemLoadAverage());
+        if (os instanceof com.sun.management.OperatingSystemMXBean sunOs) {
+            agentInfo.put("freeMemoryBytes", sunOs.getFreeMemorySize());
+        } else {
+            agentInfo.put("freeMemoryBytes", Runtime.getRuntime().freeMemory());
+        }
+    }
 }
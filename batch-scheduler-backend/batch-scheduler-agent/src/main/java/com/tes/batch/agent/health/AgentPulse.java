@@ -0,0 +1,77 @@
+package com.tes.batch.agent.health;
+
+import com.tes.batch.agent.config.AgentConfig;
+import com.tes.batch.agent.control.AgentDrainManager;
+import com.tes.batch.common.constant.AgentChannels;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sub-second liveness pulse: publishes the queue name on agent:pulse every agent.heartbeat.pulse-interval.
+ * The Scheduler's phi-accrual failure detector learns the arrival rhythm from these and suspects the
+ * agent as soon as a pulse is overdue. Runs on its own thread so slow @Scheduled tasks cannot delay it;
+ * the full heartbeat ({@link AgentHeartbeat}) still carries load metrics at its own interval.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AgentPulse {
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final AgentConfig agentConfig;
+    private final AgentDrainManager drainManager;
+
+    private ScheduledExecutorService pulseExecutor;
+    private volatile boolean failing;
+
+    @PostConstruct
+    public void start() {
+        long interval = agentConfig.getHeartbeat().getPulseInterval();
+        if (interval <= 0) {
+            log.info("Agent pulse disabled");
+            return;
+        }
+        pulseExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "agent-pulse");
+            thread.setDaemon(true);
+            return thread;
+        });
+        pulseExecutor.scheduleAtFixedRate(this::pulse, 0, interval, TimeUnit.MILLISECONDS);
+        log.info("Agent pulse started: every {}ms on {}", interval, AgentChannels.PULSE_CHANNEL);
+    }
+
+    private void pulse() {
+        // A drained agent is going away; going quiet lets the Scheduler notice at once
+        if (drainManager.isDrained()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.convertAndSend(AgentChannels.PULSE_CHANNEL, agentConfig.getQueueName());
+            if (failing) {
+                failing = false;
+                log.info("Agent pulse recovered");
+            }
+        } catch (Exception e) {
+            // Log once per outage, not twice a second
+            if (!failing) {
+                failing = true;
+                log.warn("Failed to publish agent pulse: {}", e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (pulseExecutor != null) {
+            pulseExecutor.shutdownNow();
+        }
+    }
+}
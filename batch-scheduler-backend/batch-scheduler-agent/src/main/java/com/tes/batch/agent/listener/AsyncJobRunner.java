@@ -1,6 +1,9 @@
 package com.tes.batch.agent.listener;
 
 import com.tes.batch.agent.config.ConcurrencyManager;
+import com.tes.batch.agent.control.AgentDrainManager;
+import com.tes.batch.agent.control.TaskCancellationRegistry;
+import com.tes.batch.agent.control.TaskLeaseManager;
 import com.tes.batch.agent.executor.JobExecutor;
 import com.tes.batch.agent.state.TaskStateReporter;
 import com.tes.batch.common.dto.JobMessage;
@@ -15,6 +18,10 @@ import org.springframework.stereotype.Component;
  * Separate bean for async job execution to avoid Spring @Async self-invocation issue.
  * When @Async is called from within the same class, Spring AOP proxy is bypassed
  * and the method runs synchronously. This class ensures proper async execution.
+ * Each call runs one attempt; retries and execution delays are parked in {@link DelayedJobQueue}
+ * instead of slept, so waiting holds neither a worker thread nor a concurrency permit.
+ * An attempt abandoned after its execution lease lapsed reports nothing: the Scheduler already
+ * retried or failed it.
  */
 @Slf4j
 @Component
@@ -24,9 +31,35 @@ public class AsyncJobRunner {
     private final JobExecutor jobExecutor;
     private final TaskStateReporter stateReporter;
     private final ConcurrencyManager concurrencyManager;
+    private final AgentDrainManager drainManager;
+    private final TaskCancellationRegistry cancellations;
+    private final DelayedJobQueue delayedJobQueue;
+    private final TaskLeaseManager leases;
 
     @Async("jobTaskExecutor")
     public void executeJobAsync(JobMessage jobMessage) {
+        int attempt = jobMessage.getAttempt() != null ? jobMessage.getAttempt() : 0;
+        cancellations.track(jobMessage.getTaskId(), attempt);
+        try {
+            runJob(jobMessage);
+        } finally {
+            cancellations.untrack(jobMessage.getTaskId(), attempt);
+            drainManager.complete(jobMessage);
+        }
+    }
+
+    private void runJob(JobMessage jobMessage) {
+        int attempt = jobMessage.getAttempt() != null ? jobMessage.getAttempt() : 0;
+
+        // Workflow steps carry their workflow delay, and attempts retried after a lapsed lease the job's retry delay;
+        // park the message until it is due
+        if (jobMessage.getExecutionDelay() != null && jobMessage.getExecutionDelay() > 0) {
+            log.info("Applying execution delay of {} seconds for job {}", jobMessage.getExecutionDelay(), jobMessage.getJobId());
+            long delayMs = jobMessage.getExecutionDelay() * 1000L;
+            jobMessage.setExecutionDelay(null);
+            park(jobMessage, delayMs, attempt);
+            return;
+        }
         try {
             concurrencyManager.acquire();
         } catch (InterruptedException e) {
@@ -35,6 +68,13 @@ public class AsyncJobRunner {
             return;
         }
         try {
+            // Cancelled while queued, parked or waiting for a permit: confirm without running
+            if (cancellations.isCancelRequested(jobMessage.getTaskId(), attempt)) {
+                log.info("Job {} was cancelled before it started", jobMessage.getJobId());
+                reportCancelled(jobMessage, attempt);
+                return;
+            }
+
             log.info("Starting job execution: {} (active: {}/{})", jobMessage.getJobId(),
                     concurrencyManager.getActiveJobCount(),
                     concurrencyManager.getActiveJobCount() + concurrencyManager.getAvailablePermits());
@@ -43,86 +83,110 @@ public class AsyncJobRunner {
             if (maxAttempts < 1) maxAttempts = 1;
             int retryDelaySeconds = jobMessage.getRetryDelay() != null ? jobMessage.getRetryDelay() : 0;
 
-            stateReporter.reportStarted(jobMessage.getJobId(), jobMessage.getTaskId());
-
-            JobResult lastResult = null;
-
-            for (int attempt = 0; attempt < maxAttempts; attempt++) {
-                try {
-                    if (attempt > 0) {
-                        log.info("Retry attempt {}/{} for job {} after {}s delay",
-                                attempt, maxAttempts - 1, jobMessage.getJobId(), retryDelaySeconds);
-                    }
-
-                    JobResult result = jobExecutor.execute(jobMessage);
-                    result.setRetryAttempt(attempt);
-                    lastResult = result;
-
-                    if (result.getStatus() == TaskStatus.SUCCESS) {
-                        log.info("Job {} succeeded on attempt {}", jobMessage.getJobId(), attempt);
-                        stateReporter.reportResult(result);
-                        return;
-                    }
-
-                    if (attempt < maxAttempts - 1) {
-                        log.warn("Job {} failed on attempt {}/{}, will retry in {}s. Error: {}",
-                                jobMessage.getJobId(), attempt, maxAttempts - 1, retryDelaySeconds,
-                                result.getError() != null ? result.getError() : "Unknown error");
-
-                        result.setStatus(TaskStatus.RETRY);
-                        stateReporter.reportResult(result);
-
-                        if (retryDelaySeconds > 0) {
-                            Thread.sleep(retryDelaySeconds * 1000L);
-                        }
-                    } else {
-                        log.error("Job {} failed after {} attempts. Final error: {}",
-                                jobMessage.getJobId(), maxAttempts,
-                                result.getError() != null ? result.getError() : "Unknown error");
-                        stateReporter.reportResult(result);
-                        return;
-                    }
-
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    log.error("Job {} interrupted during retry delay", jobMessage.getJobId());
-                    reportFailure(jobMessage, attempt, "Interrupted during retry: " + e.getMessage());
+            if (attempt == 0) {
+                stateReporter.reportStarted(jobMessage.getJobId(), jobMessage.getTaskId());
+            } else {
+                log.info("Retry attempt {}/{} for job {} after {}s delay",
+                        attempt, maxAttempts - 1, jobMessage.getJobId(), retryDelaySeconds);
+            }
+
+            leases.acquire(jobMessage);
+            try {
+                JobResult result = jobExecutor.execute(jobMessage);
+                result.setRetryAttempt(attempt);
+                if (cancellations.isAbandoned(jobMessage.getTaskId(), attempt)) {
+                    log.warn("Job {} attempt {} ended after its lease lapsed; discarding its {} result",
+                            jobMessage.getJobId(), attempt, result.getStatus());
                     return;
-                } catch (Exception e) {
-                    log.error("Job {} execution error on attempt {}: {}",
-                            jobMessage.getJobId(), attempt, e.getMessage());
-
-                    if (attempt >= maxAttempts - 1) {
-                        reportFailure(jobMessage, attempt, e.getMessage());
-                        return;
-                    }
-
-                    reportRetry(jobMessage, attempt, e.getMessage());
-
-                    if (retryDelaySeconds > 0) {
-                        try {
-                            Thread.sleep(retryDelaySeconds * 1000L);
-                        } catch (InterruptedException ie) {
-                            Thread.currentThread().interrupt();
-                            reportFailure(jobMessage, attempt, "Interrupted: " + ie.getMessage());
-                            return;
-                        }
-                    }
                 }
-            }
 
-            if (lastResult != null) {
-                stateReporter.reportResult(lastResult);
+                if (result.getStatus() == TaskStatus.CANCELLED) {
+                    stateReporter.reportResult(result);
+                    return;
+                }
+
+                if (result.getStatus() == TaskStatus.SUCCESS) {
+                    log.info("Job {} succeeded on attempt {}", jobMessage.getJobId(), attempt);
+                    stateReporter.reportResult(result);
+                    return;
+                }
+
+                if (attempt < maxAttempts - 1) {
+                    log.warn("Job {} failed on attempt {}/{}, will retry in {}s. Error: {}",
+                            jobMessage.getJobId(), attempt, maxAttempts - 1, retryDelaySeconds,
+                            result.getError() != null ? result.getError() : "Unknown error");
+
+                    result.setStatus(TaskStatus.RETRY);
+                    stateReporter.reportResult(result);
+                    scheduleRetry(jobMessage, attempt, retryDelaySeconds);
+                } else {
+                    log.error("Job {} failed after {} attempts. Final error: {}",
+                            jobMessage.getJobId(), maxAttempts,
+                            result.getError() != null ? result.getError() : "Unknown error");
+                    stateReporter.reportResult(result);
+                }
+
+            } catch (Exception e) {
+                log.error("Job {} execution error on attempt {}: {}",
+                        jobMessage.getJobId(), attempt, e.getMessage());
+                if (cancellations.isAbandoned(jobMessage.getTaskId(), attempt)) {
+                    return;
+                }
+
+                if (attempt >= maxAttempts - 1) {
+                    reportFailure(jobMessage, attempt, e.getMessage());
+                    return;
+                }
+
+                reportRetry(jobMessage, attempt, e.getMessage());
+                scheduleRetry(jobMessage, attempt, retryDelaySeconds);
+            } finally {
+                leases.release(jobMessage.getTaskId(), attempt);
             }
         } finally {
             concurrencyManager.release();
         }
     }
 
+    /**
+     * Re-queue the job for its next attempt after the retry delay; the permit is released meanwhile
+     */
+    private void scheduleRetry(JobMessage jobMessage, int attempt, int retryDelaySeconds) {
+        if (cancellations.isCancelled(jobMessage.getTaskId(), attempt)) {
+            reportCancelled(jobMessage, attempt);
+            return;
+        }
+        jobMessage.setAttempt(attempt + 1);
+        park(jobMessage, retryDelaySeconds * 1000L, attempt);
+    }
+
+    private void park(JobMessage jobMessage, long delayMs, int attempt) {
+        try {
+            delayedJobQueue.schedule(jobMessage, delayMs);
+        } catch (Exception e) {
+            log.error("Failed to park job {} for {}ms", jobMessage.getJobId(), delayMs, e);
+            reportFailure(jobMessage, attempt, "Could not schedule delayed execution: " + e.getMessage());
+        }
+    }
+
+    private void reportCancelled(JobMessage jobMessage, int retryAttempt) {
+        JobResult cancelResult = JobResult.builder()
+                .jobId(jobMessage.getJobId())
+                .taskId(jobMessage.getTaskId())
+                .workflowRunId(jobMessage.getWorkflowRunId())
+                .status(TaskStatus.CANCELLED)
+                .error("Cancelled by user")
+                .endTime(System.currentTimeMillis())
+                .retryAttempt(retryAttempt)
+                .build();
+        stateReporter.reportResult(cancelResult);
+    }
+
     private void reportFailure(JobMessage jobMessage, int retryAttempt, String errorMessage) {
         JobResult failResult = JobResult.builder()
                 .jobId(jobMessage.getJobId())
                 .taskId(jobMessage.getTaskId())
+                .workflowRunId(jobMessage.getWorkflowRunId())
                 .status(TaskStatus.FAILED)
                 .error(errorMessage)
                 .endTime(System.currentTimeMillis())
@@ -135,6 +199,7 @@ public class AsyncJobRunner {
         JobResult retryResult = JobResult.builder()
                 .jobId(jobMessage.getJobId())
                 .taskId(jobMessage.getTaskId())
+                .workflowRunId(jobMessage.getWorkflowRunId())
                 .status(TaskStatus.RETRY)
                 .error(errorMessage)
                 .endTime(System.currentTimeMillis())
@@ -1,6 +1,7 @@
 package com.tes.batch.agent.listener;
 
 import com.tes.batch.agent.config.ConcurrencyManager;
+import com.tes.batch.agent.control.AgentDrainManager;
 import com.tes.batch.agent.executor.WorkflowExecutor;
 import com.tes.batch.common.dto.WorkflowMessage;
 import lombok.RequiredArgsConstructor;
@@ -18,9 +19,18 @@ public class AsyncWorkflowRunner {
 
     private final WorkflowExecutor workflowExecutor;
     private final ConcurrencyManager concurrencyManager;
+    private final AgentDrainManager drainManager;
 
     @Async("jobTaskExecutor")
     public void executeWorkflowAsync(WorkflowMessage workflowMessage) {
+        try {
+            runWorkflow(workflowMessage);
+        } finally {
+            drainManager.complete(workflowMessage);
+        }
+    }
+
+    private void runWorkflow(WorkflowMessage workflowMessage) {
         try {
             concurrencyManager.acquire();
         } catch (InterruptedException e) {
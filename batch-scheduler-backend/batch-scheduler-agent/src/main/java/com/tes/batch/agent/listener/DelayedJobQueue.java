@@ -0,0 +1,80 @@
+package com.tes.batch.agent.listener;
+
+import com.tes.batch.agent.config.AgentConfig;
+import com.tes.batch.common.dto.JobMessage;
+import com.tes.batch.common.util.MessageCodec;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Delayed delivery of job messages: retries and workflow execution delays are parked in a sorted
+ * set (job:delayed:{queue}) scored by due time instead of being slept out on a worker thread.
+ * A mover promotes due messages to the front of the agent's own job queue, where the listener
+ * picks them up like any other message. Parked messages survive an agent restart.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DelayedJobQueue {
+
+    public static final String DELAYED_PREFIX = "job:delayed:";
+    private static final String QUEUE_PREFIX = "job:queue:";
+    private static final int PROMOTE_BATCH_SIZE = 100;
+
+    /** Move up to ARGV[2] members due by ARGV[1] from KEYS[1] to the consuming end of list KEYS[2] */
+    private static final RedisScript<Long> PROMOTE_SCRIPT = new DefaultRedisScript<>("""
+            local due = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, tonumber(ARGV[2]))
+            for _, member in ipairs(due) do
+                redis.call('ZREM', KEYS[1], member)
+                redis.call('RPUSH', KEYS[2], member)
+            end
+            return #due
+            """, Long.class);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final MessageCodec messageCodec;
+    private final AgentConfig agentConfig;
+
+    /**
+     * Deliver the message to this agent's queue again after delayMs
+     */
+    public void schedule(JobMessage message, long delayMs) {
+        byte[] value = messageCodec.encode(message);
+        long dueAt = System.currentTimeMillis() + Math.max(0, delayMs);
+        redisTemplate.execute((RedisCallback<Boolean>) connection ->
+                connection.zSetCommands().zAdd(delayedKey().getBytes(StandardCharsets.UTF_8), dueAt, value));
+        log.debug("Parked job {} (task {}) for {}ms", message.getJobId(), message.getTaskId(), delayMs);
+    }
+
+    @Scheduled(fixedDelayString = "${agent.delayed.poll-interval:1000}")
+    public void promoteDue() {
+        try {
+            List<String> keys = List.of(delayedKey(), QUEUE_PREFIX + agentConfig.getQueueName());
+            Long moved;
+            do {
+                moved = stringRedisTemplate.execute(PROMOTE_SCRIPT, keys,
+                        String.valueOf(System.currentTimeMillis()), String.valueOf(PROMOTE_BATCH_SIZE));
+                if (moved != null && moved > 0) {
+                    log.debug("Promoted {} delayed job message(s)", moved);
+                }
+            } while (moved != null && moved >= PROMOTE_BATCH_SIZE);
+        } catch (Exception e) {
+            log.debug("Failed to promote delayed job messages: {}", e.getMessage());
+        }
+    }
+
+    private String delayedKey() {
+        return DELAYED_PREFIX + agentConfig.getQueueName();
+    }
+}
@@ -1,16 +1,24 @@
 package com.tes.batch.agent.listener;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tes.batch.agent.config.AgentConfig;
+import com.tes.batch.agent.control.AgentDrainManager;
+import com.tes.batch.agent.config.ConcurrencyManager;
+import com.tes.batch.agent.health.AgentHeartbeat;
 import com.tes.batch.common.dto.JobMessage;
+import com.tes.batch.common.util.MessageCodec;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Component;
 
-import java.util.concurrent.TimeUnit;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Listens for job messages from Redis List (BRPOP) and delegates to AsyncJobRunner
@@ -22,31 +30,50 @@ public class JobMessageListener {
 
     private final RedisTemplate<String, Object> redisTemplate;
     private final AgentConfig agentConfig;
-    private final ObjectMapper objectMapper;
+    private final MessageCodec messageCodec;
     private final AsyncJobRunner asyncJobRunner;
+    private final AgentDrainManager drainManager;
+    private final ConcurrencyManager concurrencyManager;
+
+    private static final String QUEUE_PREFIX = "job:queue:";
+    private static final String POOL_QUEUE_PREFIX = "pool:";
+    private static final int POP_TIMEOUT_SECONDS = 5;
 
     private Thread consumerThread;
     private volatile boolean running = true;
 
     @PostConstruct
     public void startListening() {
-        String listKey = "job:queue:" + agentConfig.getQueueName();
+        String listKey = QUEUE_PREFIX + agentConfig.getQueueName();
+        // Own queue first, then the shared pool queue (BRPOP checks keys in order)
+        byte[][] rawKeys = agentConfig.getPool().isMember()
+                ? new byte[][]{rawKey(listKey), rawKey(QUEUE_PREFIX + POOL_QUEUE_PREFIX + agentConfig.getPool().getName())}
+                : new byte[][]{rawKey(listKey)};
 
         consumerThread = new Thread(() -> {
-            log.info("Started job queue consumer on list: {}", listKey);
+            log.info("Started job queue consumer on list: {}{}", listKey,
+                    agentConfig.getPool().isMember() ? " (pool: " + agentConfig.getPool().getName() + ")" : "");
             long backoffMs = 2000;
             while (running && !Thread.currentThread().isInterrupted()) {
+                if (drainManager.isDraining()) {
+                    log.info("Agent is draining, job queue consumer stops taking messages");
+                    break;
+                }
                 try {
-                    Object message = redisTemplate.opsForList().rightPop(listKey, 5, TimeUnit.SECONDS);
+                    byte[] message = popNext(rawKeys);
+                    if (message == null) {
+                        message = trySteal();
+                    }
                     if (message != null) {
                         try {
-                            JobMessage jobMessage = objectMapper.convertValue(message, JobMessage.class);
+                            JobMessage jobMessage = messageCodec.decode(message, JobMessage.class);
                             log.info("Received job message: jobId={}", jobMessage.getJobId());
+                            drainManager.register(jobMessage);
                             asyncJobRunner.executeJobAsync(jobMessage);
                         } catch (Exception processingError) {
                             log.error("Failed to process job message, sending to dead-letter queue", processingError);
                             try {
-                                redisTemplate.opsForList().leftPush(listKey + ":dead-letter", message);
+                                pushRaw(listKey + ":dead-letter", message);
                             } catch (Exception dlqError) {
                                 log.error("Failed to send to dead-letter queue", dlqError);
                             }
@@ -70,9 +97,65 @@ public class JobMessageListener {
             log.info("Job queue consumer stopped");
         }, "job-queue-consumer");
         consumerThread.setDaemon(false);
+        drainManager.registerConsumer(consumerThread);
         consumerThread.start();
     }
 
+    /**
+     * BRPOP across the agent's own queue and its pool queue
+     */
+    private byte[] popNext(byte[][] rawKeys) {
+        List<byte[]> popped = redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                connection.listCommands().bRPop(POP_TIMEOUT_SECONDS, rawKeys));
+        if (popped == null || popped.size() < 2) {
+            return null;
+        }
+        return popped.get(1);
+    }
+
+    /**
+     * Work stealing: when idle, take a job from a pool sibling whose private queue has a backlog
+     */
+    private byte[] trySteal() {
+        AgentConfig.Pool pool = agentConfig.getPool();
+        if (!pool.isMember() || !pool.isStealEnabled() || concurrencyManager.getActiveJobCount() > 0) {
+            return null;
+        }
+        Set<Object> members = redisTemplate.opsForSet().members(AgentHeartbeat.POOL_MEMBERS_PREFIX + pool.getName());
+        if (members == null || members.isEmpty()) {
+            return null;
+        }
+        List<Object> siblings = new ArrayList<>(members);
+        Collections.shuffle(siblings);
+        for (Object sibling : siblings) {
+            if (agentConfig.getQueueName().equals(sibling)) {
+                continue;
+            }
+            String siblingKey = QUEUE_PREFIX + sibling;
+            Long backlog = redisTemplate.opsForList().size(siblingKey);
+            if (backlog != null && backlog >= pool.getStealMinBacklog()) {
+                byte[] message = redisTemplate.execute((RedisCallback<byte[]>) connection ->
+                        connection.listCommands().rPop(rawKey(siblingKey)));
+                if (message != null) {
+                    log.info("Stole job from sibling queue {} (backlog {})", siblingKey, backlog);
+                    return message;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Messages are kept as received (raw codec bytes), so undecodable ones reach the dead-letter queue intact
+     */
+    private void pushRaw(String key, byte[] value) {
+        redisTemplate.execute((RedisCallback<Long>) connection -> connection.listCommands().lPush(rawKey(key), value));
+    }
+
+    private static byte[] rawKey(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
     @PreDestroy
     public void stopListening() {
         running = false;
@@ -1,16 +1,19 @@
 package com.tes.batch.agent.listener;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tes.batch.agent.config.AgentConfig;
+import com.tes.batch.agent.control.AgentDrainManager;
 import com.tes.batch.common.dto.WorkflowMessage;
+import com.tes.batch.common.util.MessageCodec;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Component;
 
-import java.util.concurrent.TimeUnit;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 /**
  * Listens for workflow messages from Redis List (BRPOP) and delegates to AsyncWorkflowRunner
@@ -22,8 +25,9 @@ public class WorkflowMessageListener {
 
     private final RedisTemplate<String, Object> redisTemplate;
     private final AgentConfig agentConfig;
-    private final ObjectMapper objectMapper;
+    private final MessageCodec messageCodec;
     private final AsyncWorkflowRunner asyncWorkflowRunner;
+    private final AgentDrainManager drainManager;
 
     private Thread consumerThread;
     private volatile boolean running = true;
@@ -31,23 +35,31 @@ public class WorkflowMessageListener {
     @PostConstruct
     public void startListening() {
         String listKey = "workflow:queue:" + agentConfig.getQueueName();
+        byte[] rawListKey = listKey.getBytes(StandardCharsets.UTF_8);
 
         consumerThread = new Thread(() -> {
             log.info("Started workflow queue consumer on list: {}", listKey);
             long backoffMs = 2000;
             while (running && !Thread.currentThread().isInterrupted()) {
+                if (drainManager.isDraining()) {
+                    log.info("Agent is draining, workflow queue consumer stops taking messages");
+                    break;
+                }
                 try {
-                    Object message = redisTemplate.opsForList().rightPop(listKey, 5, TimeUnit.SECONDS);
+                    byte[] message = popRaw(rawListKey);
                     if (message != null) {
                         try {
-                            WorkflowMessage workflowMessage = objectMapper.convertValue(message, WorkflowMessage.class);
+                            WorkflowMessage workflowMessage = messageCodec.decode(message, WorkflowMessage.class);
                             log.info("Received workflow message: workflowId={}, runId={}",
                                     workflowMessage.getWorkflowId(), workflowMessage.getWorkflowRunId());
+                            drainManager.register(workflowMessage);
                             asyncWorkflowRunner.executeWorkflowAsync(workflowMessage);
                         } catch (Exception processingError) {
                             log.error("Failed to process workflow message, sending to dead-letter queue", processingError);
                             try {
-                                redisTemplate.opsForList().leftPush(listKey + ":dead-letter", message);
+                                byte[] deadLetterKey = (listKey + ":dead-letter").getBytes(StandardCharsets.UTF_8);
+                                redisTemplate.execute((RedisCallback<Long>) connection ->
+                                        connection.listCommands().lPush(deadLetterKey, message));
                             } catch (Exception dlqError) {
                                 log.error("Failed to send to dead-letter queue", dlqError);
                             }
@@ -71,9 +83,19 @@ public class WorkflowMessageListener {
             log.info("Workflow queue consumer stopped");
         }, "workflow-queue-consumer");
         consumerThread.setDaemon(false);
+        drainManager.registerConsumer(consumerThread);
         consumerThread.start();
     }
 
+    /**
+     * BRPOP returning the raw value, decoded by the caller straight into WorkflowMessage
+     */
+    private byte[] popRaw(byte[] rawListKey) {
+        List<byte[]> popped = redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                connection.listCommands().bRPop(5, rawListKey));
+        return popped != null && popped.size() >= 2 ? popped.get(1) : null;
+    }
+
     @PreDestroy
     public void stopListening() {
         running = false;
@@ -0,0 +1,393 @@
+package com.tes.batch.agent.state;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.tes.batch.agent.config.AgentConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-ahead spool for results sent to the Scheduler.
+ * Every result is appended (and fsynced) to a local file before {@link #append} returns; concurrent
+ * appends share one fsync. A background drainer pushes unsent entries to Redis in order and in
+ * batches, so neither disk nor Redis latency is paid under a shared lock by job threads, and a
+ * Redis outage delays results instead of losing them. Delivery is at-least-once.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ResultSpool {
+
+    private static final String SPOOL_FILE = "results.spool";
+    private static final String OFFSET_FILE = "results.offset";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final AgentConfig agentConfig;
+
+    /** Guards writes to the spool file and its truncation */
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock drainLock = new ReentrantLock();
+    private final Object syncLock = new Object();
+    /** Wakes the drainer when something was appended */
+    private final Semaphore appended = new Semaphore(0);
+    /** Entries that could not be written to disk nor pushed directly; kept for the drainer */
+    private final Queue<Entry> unspooled = new ConcurrentLinkedQueue<>();
+
+    private Path spoolFile;
+    private Path offsetFile;
+    private FileChannel appendChannel;
+    /** Number of entries written to the spool file, and how many of them are known to be fsynced */
+    private volatile long appendedCount;
+    private long syncedCount;
+    /** Byte offset in the spool file up to which entries have been delivered */
+    private volatile long deliveredOffset;
+    private Thread drainer;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void init() throws IOException {
+        Path dir = Path.of(agentConfig.getSpool().getDirectory());
+        Files.createDirectories(dir);
+        spoolFile = dir.resolve(SPOOL_FILE);
+        offsetFile = dir.resolve(OFFSET_FILE);
+        if (!Files.exists(spoolFile)) {
+            Files.createFile(spoolFile);
+        }
+        repairTornTail();
+        deliveredOffset = readOffset();
+        long pending = Files.size(spoolFile) - deliveredOffset;
+        if (pending > 0) {
+            log.warn("Result spool has {} undelivered bytes from a previous run, replaying", pending);
+        }
+        appendChannel = FileChannel.open(spoolFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+        running = true;
+        drainer = new Thread(this::drainLoop, "result-spool-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+        log.info("Result spool initialized: {}", spoolFile.toAbsolutePath());
+    }
+
+    /**
+     * Stop the drainer and make a last delivery attempt for anything still pending
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (drainer != null) {
+            drainer.interrupt();
+            try {
+                drainer.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (hasPending() && !drain()) {
+            log.warn("Result spool still has undelivered entries at shutdown; they are replayed on the next start");
+        }
+        try {
+            appendChannel.close();
+        } catch (IOException e) {
+            log.debug("Failed to close result spool: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Durably record a message destined for the given Redis list.
+     */
+    public void append(String listKey, Object payload) {
+        ObjectNode entry = objectMapper.createObjectNode();
+        entry.put("key", listKey);
+        entry.set("payload", objectMapper.valueToTree(payload));
+        byte[] line;
+        try {
+            line = (objectMapper.writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to serialize spool entry for " + listKey, e);
+        }
+
+        long count;
+        appendLock.lock();
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(line);
+            while (buffer.hasRemaining()) {
+                appendChannel.write(buffer);
+            }
+            count = ++appendedCount;
+        } catch (IOException e) {
+            count = -1;
+            log.error("Failed to append to result spool, pushing directly: {}", e.getMessage());
+        } finally {
+            appendLock.unlock();
+        }
+
+        if (count < 0) {
+            pushDirectly(listKey, payload);
+        } else {
+            sync(count);
+        }
+        appended.release();
+    }
+
+    /**
+     * Disk failure: push right away, or keep the entry in memory for the drainer if Redis is down too
+     */
+    private void pushDirectly(String listKey, Object payload) {
+        try {
+            redisTemplate.opsForList().leftPush(listKey, payload);
+        } catch (Exception e) {
+            log.error("Failed to push result to {} directly, keeping it in memory until Redis is back: {}",
+                    listKey, e.getMessage());
+            unspooled.add(new Entry(listKey, payload, -1));
+        }
+    }
+
+    /**
+     * fsync up to the given entry; one force covers every entry written before it, so appends
+     * waiting here at the same time share it
+     */
+    private void sync(long count) {
+        synchronized (syncLock) {
+            if (syncedCount >= count) {
+                return;
+            }
+            long target = appendedCount;
+            try {
+                appendChannel.force(false);
+                syncedCount = target;
+            } catch (IOException e) {
+                // Written to the page cache; the drainer still delivers it unless the host crashes first
+                log.error("Failed to fsync result spool: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Replay undelivered entries in order. Returns true when the spool is fully drained.
+     * Stops at the first Redis failure and leaves the rest for the next attempt.
+     */
+    public boolean drain() {
+        drainLock.lock();
+        try {
+            if (!drainUnspooled()) {
+                return false;
+            }
+            int batchSize = agentConfig.getSpool().getBatchSize();
+            while (true) {
+                List<Entry> batch = readBatch(batchSize);
+                if (batch.isEmpty()) {
+                    compactIfDrained();
+                    return true;
+                }
+                try {
+                    pushInOrder(batch);
+                } catch (Exception e) {
+                    log.warn("Result spool drain paused, Redis unavailable: {}", e.getMessage());
+                    return false;
+                }
+                deliveredOffset = batch.get(batch.size() - 1).endOffset;
+                writeOffset(deliveredOffset);
+            }
+        } catch (IOException e) {
+            log.error("Failed to read result spool", e);
+            return false;
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    private boolean drainUnspooled() {
+        Entry entry;
+        while ((entry = unspooled.peek()) != null) {
+            try {
+                redisTemplate.opsForList().leftPush(entry.key, entry.payload);
+            } catch (Exception e) {
+                log.warn("Result spool drain paused, Redis unavailable: {}", e.getMessage());
+                return false;
+            }
+            unspooled.poll();
+        }
+        return true;
+    }
+
+    /**
+     * Delivers new entries as soon as they are appended; after a Redis failure it retries every
+     * agent.spool.drain-interval instead
+     */
+    private void drainLoop() {
+        long interval = agentConfig.getSpool().getDrainInterval();
+        boolean delivered = true;
+        while (running) {
+            try {
+                if (delivered) {
+                    appended.tryAcquire(interval, TimeUnit.MILLISECONDS);
+                } else {
+                    Thread.sleep(interval);
+                }
+                appended.drainPermits();
+                if (hasPending()) {
+                    delivered = drain();
+                    if (delivered) {
+                        log.debug("Result spool drained");
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                delivered = false;
+                log.error("Result spool drainer failed", e);
+            }
+        }
+    }
+
+    public boolean hasPending() {
+        if (!unspooled.isEmpty()) {
+            return true;
+        }
+        try {
+            return Files.size(spoolFile) > deliveredOffset;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * LPUSH consecutive entries for the same list in one call.
+     * LPUSH k v1 v2 keeps v1 closest to the BRPOP end, so order is preserved.
+     */
+    private void pushInOrder(List<Entry> batch) {
+        int i = 0;
+        while (i < batch.size()) {
+            String key = batch.get(i).key;
+            List<Object> values = new ArrayList<>();
+            while (i < batch.size() && batch.get(i).key.equals(key)) {
+                values.add(batch.get(i).payload);
+                i++;
+            }
+            redisTemplate.opsForList().leftPushAll(key, values);
+            log.debug("Delivered {} spooled result(s) to {}", values.size(), key);
+        }
+    }
+
+    private List<Entry> readBatch(int batchSize) throws IOException {
+        List<Entry> batch = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(spoolFile, StandardOpenOption.READ);
+             InputStream in = new BufferedInputStream(Channels.newInputStream(channel.position(deliveredOffset)))) {
+            long position = deliveredOffset;
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while (batch.size() < batchSize && (b = in.read()) != -1) {
+                position++;
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                long endOffset = position;
+                String text = line.toString(StandardCharsets.UTF_8);
+                line.reset();
+                try {
+                    JsonNode node = objectMapper.readTree(text);
+                    Object payload = objectMapper.treeToValue(node.get("payload"), Object.class);
+                    batch.add(new Entry(node.get("key").asText(), payload, endOffset));
+                } catch (Exception e) {
+                    log.error("Skipping corrupt result spool entry ending at offset {}", endOffset);
+                    if (batch.isEmpty()) {
+                        deliveredOffset = endOffset;
+                    }
+                }
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Truncate the spool once everything has been delivered so it does not grow unbounded.
+     */
+    private void compactIfDrained() throws IOException {
+        if (deliveredOffset == 0) {
+            return;
+        }
+        appendLock.lock();
+        try {
+            if (appendChannel.size() == deliveredOffset) {
+                appendChannel.truncate(0);
+                appendChannel.force(true);
+                deliveredOffset = 0;
+                writeOffset(0);
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Drop a partial last line left by a crash mid-append so the next append starts on a fresh line.
+     */
+    private void repairTornTail() throws IOException {
+        try (FileChannel channel = FileChannel.open(spoolFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            long end = size;
+            ByteBuffer one = ByteBuffer.allocate(1);
+            while (end > 0) {
+                one.clear();
+                channel.read(one, end - 1);
+                if (one.get(0) == '\n') {
+                    break;
+                }
+                end--;
+            }
+            if (end < size) {
+                log.warn("Truncating {} bytes of torn result spool entry", size - end);
+                channel.truncate(end);
+                channel.force(true);
+            }
+        }
+    }
+
+    private long readOffset() {
+        try {
+            if (Files.exists(offsetFile)) {
+                long offset = Long.parseLong(Files.readString(offsetFile).trim());
+                return Math.min(offset, Files.size(spoolFile));
+            }
+        } catch (Exception e) {
+            log.warn("Invalid result spool offset file, replaying from start: {}", e.getMessage());
+        }
+        return 0;
+    }
+
+    private void writeOffset(long offset) throws IOException {
+        Path tmp = offsetFile.resolveSibling(OFFSET_FILE + ".tmp");
+        Files.writeString(tmp, Long.toString(offset));
+        Files.move(tmp, offsetFile, java.nio.file.StandardCopyOption.REPLACE_EXISTING,
+                java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private record Entry(String key, Object payload, long endOffset) {
+    }
+}
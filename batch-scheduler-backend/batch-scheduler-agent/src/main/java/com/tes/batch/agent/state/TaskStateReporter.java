@@ -4,7 +4,6 @@ import com.tes.batch.agent.config.AgentConfig;
 import com.tes.batch.common.dto.JobResult;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
 /**
@@ -15,35 +14,20 @@ import org.springframework.stereotype.Service;
 @RequiredArgsConstructor
 public class TaskStateReporter {
 
-    private final RedisTemplate<String, Object> redisTemplate;
     private final AgentConfig agentConfig;
+    private final ResultSpool resultSpool;
 
     private static final String RESULT_LIST_KEY = "job:result";
 
-    private static final int MAX_RETRIES = 3;
-    private static final long RETRY_DELAY_MS = 1000;
-
     /**
-     * Report job execution result to Scheduler via Redis List (with retry)
+     * Report job execution result to Scheduler via Redis List.
+     * The result is spooled to disk and pushed by the spool drainer; if Redis is unreachable it is delivered later.
      */
     public void reportResult(JobResult result) {
-        for (int attempt = 1; attempt <= MAX_RETRIES; attempt++) {
-            try {
-                redisTemplate.opsForList().leftPush(RESULT_LIST_KEY, result);
-                log.info("Reported job result: {} - {}", result.getJobId(), result.getStatus());
-                return;
-            } catch (Exception e) {
-                if (attempt < MAX_RETRIES) {
-                    log.warn("Failed to report job result (attempt {}/{}): {}", attempt, MAX_RETRIES, result.getJobId());
-                    try { Thread.sleep(RETRY_DELAY_MS * attempt); } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        break;
-                    }
-                } else {
-                    log.error("Failed to report job result after {} attempts: {}", MAX_RETRIES, result.getJobId(), e);
-                }
-            }
-        }
+        // Identify the executing agent (pool queue / stolen jobs run elsewhere than targeted)
+        result.setQueueName(agentConfig.getQueueName());
+        resultSpool.append(RESULT_LIST_KEY, result);
+        log.info("Reported job result: {} - {}", result.getJobId(), result.getStatus());
     }
 
     /**
@@ -70,7 +54,7 @@ public class TaskStateReporter {
                 "errorMessage", errorMessage != null ? errorMessage : "",
                 "endTime", System.currentTimeMillis()
         );
-        pushWithRetry(listKey, message, "workflow " + workflowRunId);
+        pushDurably(listKey, message, "workflow " + workflowRunId);
     }
 
     /**
@@ -88,29 +72,14 @@ public class TaskStateReporter {
         message.put("startTime", startTime);
         message.put("endTime", endTime);
         message.put("durationMs", endTime - startTime);
-        pushWithRetry(listKey, message, "workflow " + workflowId + " (runId: " + workflowRunId + ")");
+        pushDurably(listKey, message, "workflow " + workflowId + " (runId: " + workflowRunId + ")");
     }
 
     /**
-     * Push to Redis List with retry logic
+     * Spool for the drainer, which pushes to the Redis List and retries until delivered
      */
-    private void pushWithRetry(String listKey, Object message, String description) {
-        for (int attempt = 1; attempt <= MAX_RETRIES; attempt++) {
-            try {
-                redisTemplate.opsForList().leftPush(listKey, message);
-                log.info("Reported result for {}", description);
-                return;
-            } catch (Exception e) {
-                if (attempt < MAX_RETRIES) {
-                    log.warn("Failed to report result (attempt {}/{}): {}", attempt, MAX_RETRIES, description);
-                    try { Thread.sleep(RETRY_DELAY_MS * attempt); } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        break;
-                    }
-                } else {
-                    log.error("Failed to report result after {} attempts: {}", MAX_RETRIES, description, e);
-                }
-            }
-        }
+    private void pushDurably(String listKey, Object message, String description) {
+        resultSpool.append(listKey, message);
+        log.info("Reported result for {}", description);
     }
 }
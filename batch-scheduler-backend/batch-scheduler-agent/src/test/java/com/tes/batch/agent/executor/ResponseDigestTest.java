@@ -0,0 +1,108 @@
+package com.tes.batch.agent.executor;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResponseDigestTest {
+
+    @Test
+    void bodyThatFitsIsReturnedWhole() {
+        // 3-byte Hangul characters straddle the 4-byte head boundary
+        String body = "배치 작업 완료";
+        ResponseDigest digest = digest(1000, 4, 100, null, body, 1);
+
+        assertEquals(body, digest.summary());
+    }
+
+    @Test
+    void bodySplitIntoSingleBytesStillDecodes() {
+        String body = "결과: 성공\n다음 단계";
+        ResponseDigest digest = digest(1000, 5, 100, null, body, 1);
+
+        assertEquals(body, digest.summary());
+    }
+
+    @Test
+    void truncatedSamplesAreCutAtCharacterBoundaries() {
+        String body = "가".repeat(1000);
+        ResponseDigest digest = digest(10_000, 10, 10, null, body, 7);
+
+        String summary = digest.summary();
+        assertFalse(summary.contains("�"), summary);
+        assertTrue(summary.contains("\n가가가\n"), summary);
+        assertTrue(summary.endsWith("\n가가가"), summary);
+        assertTrue(summary.contains("sha256=" + sha256(body)), summary);
+    }
+
+    @Test
+    void cappedBodyEndsAtCharacterBoundary() {
+        String body = "나".repeat(100);
+        ResponseDigest digest = digest(50, 10, 10, null, body, 64);
+
+        assertTrue(digest.isCapped());
+        assertEquals(50, digest.getTotalBytes());
+        String summary = digest.summary();
+        assertFalse(summary.contains("�"), summary);
+        assertTrue(summary.startsWith("[response 50 bytes, capped at 50"), summary);
+    }
+
+    @Test
+    void emitsCompleteLinesAndTrailingPartialLine() {
+        List<String> lines = new ArrayList<>();
+        ResponseDigest digest = digest(1000, 100, 100, lines::add, "first\r\nsecond\n마지막", 3);
+        assertEquals(List.of("first", "second"), lines);
+
+        digest.finish();
+        assertEquals(List.of("first", "second", "마지막"), lines);
+    }
+
+    @Test
+    void longLineIsCutAtCharacterBoundary() {
+        List<String> lines = new ArrayList<>();
+        digest(100_000, 0, 0, lines::add, "a" + "다".repeat(5000) + "\n", 4096);
+
+        assertEquals(1, lines.size());
+        assertFalse(lines.get(0).contains("�"));
+        assertEquals(1 + 3333, lines.get(0).length());
+    }
+
+    @Test
+    void completeLengthDropsPartialCharacter() {
+        byte[] bytes = "a가".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(4, ResponseDigest.completeLength(bytes, 4));
+        assertEquals(1, ResponseDigest.completeLength(bytes, 3));
+        assertEquals(1, ResponseDigest.completeLength(bytes, 2));
+        assertEquals(1, ResponseDigest.completeLength(bytes, 1));
+        assertEquals(2, ResponseDigest.leadingContinuationBytes(new byte[]{bytes[2], bytes[3], 'b'}));
+    }
+
+    private static ResponseDigest digest(long maxBytes, int headBytes, int tailBytes,
+                                         java.util.function.Consumer<String> sink, String body, int chunkSize) {
+        ResponseDigest digest = new ResponseDigest(maxBytes, headBytes, tailBytes, sink);
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < bytes.length; i += chunkSize) {
+            digest.update(ByteBuffer.wrap(bytes, i, Math.min(chunkSize, bytes.length - i)));
+        }
+        return digest;
+    }
+
+    private static String sha256(String body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(body.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.tes.batch.agent.state;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tes.batch.agent.config.AgentConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.ListOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ResultSpoolTest {
+
+    @TempDir
+    Path dir;
+
+    /** Every LPUSH that reached Redis, as "key=payloads" in call order */
+    private final List<String> pushed = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicBoolean redisDown = new AtomicBoolean();
+    private ResultSpool spool;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+        ListOperations<String, Object> listOps = mock(ListOperations.class);
+        when(redisTemplate.opsForList()).thenReturn(listOps);
+        doAnswer(invocation -> {
+            if (redisDown.get()) {
+                throw new RedisConnectionFailureException("down");
+            }
+            Collection<?> values = invocation.getArgument(1);
+            pushed.add(invocation.getArgument(0) + "=" + values);
+            return (long) values.size();
+        }).when(listOps).leftPushAll(anyString(), anyCollection());
+
+        AgentConfig config = new AgentConfig();
+        config.getSpool().setDirectory(dir.toString());
+        // The drainer only runs when an append wakes it; the tests drive delivery themselves
+        config.getSpool().setDrainInterval(3_600_000);
+        config.getSpool().setBatchSize(2);
+        spool = new ResultSpool(redisTemplate, new ObjectMapper(), config);
+    }
+
+    @AfterEach
+    void tearDown() {
+        spool.shutdown();
+    }
+
+    @Test
+    void tornTailIsTruncatedOnStartAndCompleteEntriesReplayed() throws IOException {
+        String complete = line("job:result", "t1");
+        Files.writeString(spoolFile(), complete + "{\"key\":\"job:result\",\"payl", StandardCharsets.UTF_8);
+
+        spool.init();
+
+        assertEquals(complete, Files.readString(spoolFile()));
+        assertTrue(spool.drain());
+        assertEquals(List.of("job:result=[{taskId=t1}]"), pushed);
+        assertEquals(0, Files.size(spoolFile()));
+    }
+
+    @Test
+    void replayResumesFromPersistedOffset() throws IOException {
+        String first = line("job:result", "t1");
+        Files.writeString(spoolFile(), first + line("job:result", "t2"), StandardCharsets.UTF_8);
+        Files.writeString(dir.resolve("results.offset"), Integer.toString(first.length()));
+
+        spool.init();
+
+        assertTrue(spool.hasPending());
+        assertTrue(spool.drain());
+        assertEquals(List.of("job:result=[{taskId=t2}]"), pushed);
+        assertFalse(spool.hasPending());
+    }
+
+    @Test
+    void appendedEntriesAreDeliveredInOrderAndSpoolCompacted() throws IOException {
+        spool.init();
+
+        spool.append("job:result", Map.of("taskId", "t1"));
+        spool.append("job:result", Map.of("taskId", "t2"));
+        spool.append("job:result", Map.of("taskId", "t3"));
+        spool.append("workflow:result", Map.of("taskId", "w1"));
+
+        assertTrue(spool.drain());
+        assertEquals(List.of("{taskId=t1}", "{taskId=t2}", "{taskId=t3}", "{taskId=w1}"), deliveredPayloads());
+        assertTrue(pushed.get(pushed.size() - 1).startsWith("workflow:result="));
+        assertEquals(0, Files.size(spoolFile()));
+        assertEquals("0", Files.readString(dir.resolve("results.offset")));
+    }
+
+    @Test
+    void entriesStayPendingWhileRedisIsDown() throws IOException {
+        spool.init();
+        redisDown.set(true);
+
+        spool.append("job:result", Map.of("taskId", "t1"));
+        spool.append("job:result", Map.of("taskId", "t2"));
+
+        assertFalse(spool.drain());
+        assertTrue(spool.hasPending());
+        assertTrue(pushed.isEmpty());
+
+        redisDown.set(false);
+        assertTrue(spool.drain());
+        assertEquals(List.of("{taskId=t1}", "{taskId=t2}"), deliveredPayloads());
+        assertFalse(spool.hasPending());
+        assertEquals(0, Files.size(spoolFile()));
+    }
+
+    @Test
+    void corruptEntryIsSkipped() throws IOException {
+        Files.writeString(spoolFile(), line("job:result", "t1") + "not json\n" + line("job:result", "t2"),
+                StandardCharsets.UTF_8);
+
+        spool.init();
+
+        assertTrue(spool.drain());
+        assertEquals(List.of("{taskId=t1}", "{taskId=t2}"), deliveredPayloads());
+    }
+
+    private Path spoolFile() {
+        return dir.resolve("results.spool");
+    }
+
+    /**
+     * Payloads in delivery order, flattened across LPUSH calls
+     */
+    private List<String> deliveredPayloads() {
+        List<String> payloads = new ArrayList<>();
+        synchronized (pushed) {
+            for (String push : pushed) {
+                String values = push.substring(push.indexOf("=[") + 2, push.length() - 1);
+                for (String value : values.split(", (?=\\{)")) {
+                    payloads.add(value);
+                }
+            }
+        }
+        return payloads;
+    }
+
+    private static String line(String key, String taskId) {
+        return "{\"key\":\"" + key + "\",\"payload\":{\"taskId\":\"" + taskId + "\"}}\n";
+    }
+}
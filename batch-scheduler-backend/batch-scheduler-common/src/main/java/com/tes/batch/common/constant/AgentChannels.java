@@ -0,0 +1,17 @@
+package com.tes.batch.common.constant;
+
+/**
+ * Redis pub/sub channels shared by the Agent (publisher) and the Scheduler (subscriber).
+ */
+public final class AgentChannels {
+
+    /** Sub-second liveness pulse (message: queue name) */
+    public static final String PULSE_CHANNEL = "agent:pulse";
+
+    /** Announces a refreshed heartbeat and agent:info (message: queue name) */
+    public static final String HEARTBEAT_CHANNEL = "agent:heartbeat";
+
+    private AgentChannels() {
+        // Constants class
+    }
+}
@@ -35,6 +35,18 @@ public class ApiResponse<T> {
      */
     private Long total;
 
+    /**
+     * True if total stopped at the count cap; the real count is at least total.
+     */
+    @JsonProperty("total_capped")
+    private Boolean totalCapped;
+
+    /**
+     * Opaque cursor of the next page for keyset pagination; absent on the last page.
+     */
+    @JsonProperty("next_cursor")
+    private String nextCursor;
+
     /**
      * Error message if success is false.
      */
@@ -74,6 +86,19 @@ public class ApiResponse<T> {
         return success(data, total);
     }
 
+    /**
+     * Create a successful keyset-paginated response. total may be null (not requested).
+     */
+    public static <T> ApiResponse<T> successWithCursor(T data, Long total, boolean totalCapped, String nextCursor) {
+        return ApiResponse.<T>builder()
+                .success(true)
+                .data(data)
+                .total(total)
+                .totalCapped(totalCapped ? Boolean.TRUE : null)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
     /**
      * Create a successful response with data, total count, and status list.
      */
@@ -9,6 +9,7 @@ import lombok.NoArgsConstructor;
 
 import java.io.Serializable;
 import java.time.Duration;
+import java.util.List;
 
 /**
  * Message sent from Scheduler to Agent for job execution.
@@ -72,6 +73,11 @@ public class JobMessage implements Serializable {
      */
     private Integer retryDelay;
 
+    /**
+     * Attempt this delivery is for (0 = first run); set by the Agent when it re-queues a failed job.
+     */
+    private Integer attempt;
+
     /**
      * Workflow run ID if part of a workflow.
      */
@@ -107,6 +113,28 @@ public class JobMessage implements Serializable {
      */
     private Boolean manuallyRun;
 
+    /**
+     * Workflow jobs only: job IDs this job waits for.
+     * Null means it waits for every job of the previous priority group.
+     */
+    private List<String> dependsOn;
+
+    /**
+     * Workflow map steps only: one task per parameter, each with its own taskId and the
+     * parameter substituted. The step itself (its taskId) is the join of all tasks.
+     */
+    private List<JobMessage> mapTasks;
+
+    /**
+     * Workflow map steps only: tasks running at the same time (null = all).
+     */
+    private Integer maxParallelism;
+
+    /**
+     * Map tasks only: the parameter this task runs for.
+     */
+    private String mapParam;
+
     /**
      * Get max duration as Duration object.
      */
@@ -0,0 +1,142 @@
+package com.tes.batch.common.util;
+
+import com.tes.batch.common.dto.JobMessage;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parameters of fan-out (map) workflow steps, shared by Scheduler and Agent.
+ *
+ * A map step runs its job once per parameter, at most maxParallelism at a time, and completes
+ * when all of them have (the join). Parameter specs:
+ *   a,b,c                    list (commas or new lines)
+ *   1..31                    integer range, inclusive
+ *   2024-01-01..2024-01-31   daily date range, inclusive
+ *
+ * ${param} and ${index} (0-based) in the job's action, body and headers are replaced per task.
+ */
+public final class MapParameters {
+
+    public static final String PARAM_PLACEHOLDER = "${param}";
+    public static final String INDEX_PLACEHOLDER = "${index}";
+    /** Upper bound on tasks per map step */
+    public static final int MAX_TASKS = 1000;
+
+    private static final String RANGE_SEPARATOR = "..";
+
+    private MapParameters() {
+        // Utility class
+    }
+
+    /**
+     * Expand a parameter spec; throws IllegalArgumentException for invalid or oversized specs
+     */
+    public static List<String> expand(String spec) {
+        if (spec == null || spec.isBlank()) {
+            throw new IllegalArgumentException("Map parameters are empty");
+        }
+        String trimmed = spec.trim();
+        List<String> params = trimmed.contains(RANGE_SEPARATOR) && !trimmed.contains(",") && !trimmed.contains("\n")
+                ? expandRange(trimmed)
+                : expandList(trimmed);
+        if (params.isEmpty()) {
+            throw new IllegalArgumentException("Map parameters are empty");
+        }
+        return params;
+    }
+
+    /**
+     * Replace the placeholders of one task; null stays null
+     */
+    public static String substitute(String template, String param, int index) {
+        if (template == null) {
+            return null;
+        }
+        return template.replace(PARAM_PLACEHOLDER, param).replace(INDEX_PLACEHOLDER, String.valueOf(index));
+    }
+
+    /**
+     * Number of consecutive waves the step's tasks need at its parallelism (1 for ordinary steps)
+     */
+    public static int waves(JobMessage step) {
+        if (step.getMapTasks() == null || step.getMapTasks().isEmpty()) {
+            return 1;
+        }
+        int tasks = step.getMapTasks().size();
+        int parallelism = step.getMaxParallelism() != null && step.getMaxParallelism() > 0
+                ? Math.min(step.getMaxParallelism(), tasks) : tasks;
+        return (tasks + parallelism - 1) / parallelism;
+    }
+
+    /**
+     * Join summary of a finished map step
+     */
+    public static String summarize(int total, List<String> failedParams) {
+        int succeeded = total - failedParams.size();
+        String summary = "Map step: " + succeeded + "/" + total + " task(s) succeeded";
+        if (failedParams.isEmpty()) {
+            return summary;
+        }
+        List<String> shown = failedParams.size() > 20 ? failedParams.subList(0, 20) : failedParams;
+        return summary + "; failed: " + String.join(", ", shown) + (failedParams.size() > shown.size() ? ", ..." : "");
+    }
+
+    private static List<String> expandList(String spec) {
+        List<String> params = new ArrayList<>();
+        for (String part : spec.split("[,\\n]")) {
+            String param = part.trim();
+            if (!param.isEmpty()) {
+                params.add(param);
+            }
+        }
+        checkSize(params.size());
+        return params;
+    }
+
+    private static List<String> expandRange(String spec) {
+        int separator = spec.indexOf(RANGE_SEPARATOR);
+        String from = spec.substring(0, separator).trim();
+        String to = spec.substring(separator + RANGE_SEPARATOR.length()).trim();
+        List<String> params = new ArrayList<>();
+        try {
+            long start = Long.parseLong(from);
+            long end = Long.parseLong(to);
+            checkOrder(spec, start <= end);
+            checkSize(end - start + 1);
+            for (long i = start; i <= end; i++) {
+                params.add(String.valueOf(i));
+            }
+            return params;
+        } catch (NumberFormatException e) {
+            // Not an integer range, try dates
+        }
+        try {
+            LocalDate start = LocalDate.parse(from);
+            LocalDate end = LocalDate.parse(to);
+            checkOrder(spec, !start.isAfter(end));
+            checkSize(end.toEpochDay() - start.toEpochDay() + 1);
+            for (LocalDate day = start; !day.isAfter(end); day = day.plusDays(1)) {
+                params.add(day.toString());
+            }
+            return params;
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid map parameter range: " + spec
+                    + " (expected integers like 1..10 or dates like 2024-01-01..2024-01-31)");
+        }
+    }
+
+    private static void checkOrder(String spec, boolean ascending) {
+        if (!ascending) {
+            throw new IllegalArgumentException("Map parameter range is descending: " + spec);
+        }
+    }
+
+    private static void checkSize(long size) {
+        if (size > MAX_TASKS) {
+            throw new IllegalArgumentException("Map step expands to " + size + " tasks, the limit is " + MAX_TASKS);
+        }
+    }
+}
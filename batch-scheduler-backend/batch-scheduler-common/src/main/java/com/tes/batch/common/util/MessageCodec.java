@@ -0,0 +1,91 @@
+package com.tes.batch.common.util;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Encoding of Redis values shared by Scheduler and Agent.
+ *
+ * Frames, told apart by the first byte:
+ *   0x01          deflate-compressed frame wrapping one of the below ({@link PayloadCompression})
+ *   0x02          Smile (binary JSON), version 1 of this framing
+ *   anything else plain JSON, as written by GenericJackson2JsonRedisSerializer
+ *
+ * Readers accept every frame, so the write format can be switched without draining queues.
+ * Typed decoding reads straight into the target class instead of going through a Map.
+ */
+public class MessageCodec {
+
+    public enum Format { JSON, SMILE }
+
+    public static final byte HEADER_SMILE_V1 = 0x02;
+
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper smileMapper;
+    private final Format writeFormat;
+    private final int compressionThresholdBytes;
+
+    public MessageCodec(ObjectMapper jsonMapper, Format writeFormat, int compressionThresholdBytes) {
+        this.jsonMapper = jsonMapper.copy()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        this.smileMapper = new ObjectMapper(new SmileFactory())
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        this.writeFormat = writeFormat;
+        this.compressionThresholdBytes = compressionThresholdBytes;
+    }
+
+    public Format getWriteFormat() {
+        return writeFormat;
+    }
+
+    public byte[] encode(Object value) {
+        if (value == null) {
+            return new byte[0];
+        }
+        try {
+            byte[] payload;
+            if (writeFormat == Format.SMILE) {
+                byte[] smile = smileMapper.writeValueAsBytes(value);
+                payload = new byte[smile.length + 1];
+                payload[0] = HEADER_SMILE_V1;
+                System.arraycopy(smile, 0, payload, 1, smile.length);
+            } else {
+                payload = jsonMapper.writeValueAsBytes(value);
+            }
+            return PayloadCompression.compress(payload, compressionThresholdBytes);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not encode " + value.getClass().getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Decode into generic JSON types (Map, List, String, Number, Boolean)
+     */
+    public Object decode(byte[] data) {
+        return decode(data, Object.class);
+    }
+
+    public <T> T decode(byte[] data, Class<T> type) {
+        if (data == null || data.length == 0) {
+            return null;
+        }
+        byte[] payload = PayloadCompression.decompress(data);
+        try {
+            if (payload.length > 0 && payload[0] == HEADER_SMILE_V1) {
+                return smileMapper.readValue(payload, 1, payload.length - 1, type);
+            }
+            return jsonMapper.readValue(payload, type);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not decode " + type.getSimpleName() + " from "
+                    + Arrays.toString(Arrays.copyOf(payload, Math.min(8, payload.length))) + "...", e);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.tes.batch.common.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compression for Redis payloads shared by Scheduler and Agent.
+ * Payloads at or above a threshold are deflated and framed as
+ * [HEADER_DEFLATE][original length:int][deflate data]. JSON never starts with the header byte,
+ * so uncompressed payloads (small ones, or written by older versions) pass through unchanged.
+ */
+public final class PayloadCompression {
+
+    /** First byte of a compressed frame; a control character never valid as the start of JSON */
+    public static final byte HEADER_DEFLATE = 0x01;
+
+    private static final int FRAME_OVERHEAD = 5;
+    /** Guard against corrupt frames claiming huge sizes */
+    private static final int MAX_INFLATED_BYTES = 256 * 1024 * 1024;
+
+    private PayloadCompression() {
+        // Utility class
+    }
+
+    /**
+     * Compress if at least thresholdBytes long and compression actually saves space.
+     * A threshold of 0 or less disables compression.
+     */
+    public static byte[] compress(byte[] payload, int thresholdBytes) {
+        if (payload == null || thresholdBytes <= 0 || payload.length < thresholdBytes) {
+            return payload;
+        }
+        // BEST_SPEED: payloads are mostly logs and JSON, which compress well even at level 1
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(payload);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length / 4 + FRAME_OVERHEAD);
+            out.write(HEADER_DEFLATE);
+            out.write(ByteBuffer.allocate(4).putInt(payload.length).array(), 0, 4);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(chunk);
+                out.write(chunk, 0, n);
+                if (out.size() >= payload.length) {
+                    return payload;
+                }
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static boolean isCompressed(byte[] data) {
+        return data != null && data.length >= FRAME_OVERHEAD && data[0] == HEADER_DEFLATE;
+    }
+
+    /**
+     * Inverse of {@link #compress}; returns uncompressed input as is.
+     */
+    public static byte[] decompress(byte[] data) {
+        if (!isCompressed(data)) {
+            return data;
+        }
+        int length = ByteBuffer.wrap(data, 1, 4).getInt();
+        if (length < 0 || length > MAX_INFLATED_BYTES) {
+            throw new IllegalArgumentException("Invalid compressed payload length: " + length);
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, FRAME_OVERHEAD, data.length - FRAME_OVERHEAD);
+            byte[] result = new byte[length];
+            int offset = 0;
+            while (offset < length) {
+                int n = inflater.inflate(result, offset, length - offset);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    break;
+                }
+                offset += n;
+            }
+            if (offset != length) {
+                throw new IllegalArgumentException("Truncated compressed payload: " + offset + "/" + length + " bytes");
+            }
+            return result;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt compressed payload", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
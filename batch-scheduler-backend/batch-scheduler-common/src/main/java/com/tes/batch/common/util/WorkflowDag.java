@@ -0,0 +1,188 @@
+package com.tes.batch.common.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dependency graph of the jobs in a workflow, shared by Scheduler (validation) and Agent (execution).
+ *
+ * Nodes are the jobs of the priority groups in execution order, indexed by their position in that
+ * flattened order. A job with explicit dependencies depends on exactly those jobs; a job without
+ * depends on every job of the nearest earlier non-empty group, so plain priority-group workflows
+ * keep their group-by-group semantics. Dependencies on job ids that are not in the graph (e.g.
+ * jobs skipped because they are disabled) are treated as already satisfied.
+ */
+public final class WorkflowDag {
+
+    private final List<String> jobIds;
+    private final List<List<Integer>> predecessors;
+    private final List<List<Integer>> successors;
+    /** Topological order, or null if the graph has a cycle */
+    private final int[] order;
+
+    private WorkflowDag(List<String> jobIds, List<List<Integer>> predecessors) {
+        this.jobIds = jobIds;
+        this.predecessors = predecessors;
+        this.successors = new ArrayList<>(jobIds.size());
+        for (int i = 0; i < jobIds.size(); i++) {
+            successors.add(new ArrayList<>());
+        }
+        for (int i = 0; i < jobIds.size(); i++) {
+            for (int pred : predecessors.get(i)) {
+                successors.get(pred).add(i);
+            }
+        }
+        this.order = topologicalOrder();
+    }
+
+    /**
+     * @param groups    job ids per priority group, in execution order
+     * @param dependsOn explicit dependencies by job id; jobs without an entry (or with a null entry) use the implicit group edges
+     */
+    public static WorkflowDag build(List<? extends Collection<String>> groups, Map<String, ? extends Collection<String>> dependsOn) {
+        List<String> jobIds = new ArrayList<>();
+        Map<String, Integer> indexByJobId = new HashMap<>();
+        List<int[]> groupRanges = new ArrayList<>(groups.size());
+        for (Collection<String> group : groups) {
+            int start = jobIds.size();
+            for (String jobId : group) {
+                indexByJobId.putIfAbsent(jobId, jobIds.size());
+                jobIds.add(jobId);
+            }
+            groupRanges.add(new int[]{start, jobIds.size()});
+        }
+
+        List<List<Integer>> predecessors = new ArrayList<>(jobIds.size());
+        int[] previousGroup = null;
+        for (int[] range : groupRanges) {
+            for (int i = range[0]; i < range[1]; i++) {
+                Collection<String> explicit = dependsOn != null ? dependsOn.get(jobIds.get(i)) : null;
+                Set<Integer> preds = new LinkedHashSet<>();
+                if (explicit != null) {
+                    for (String dep : explicit) {
+                        Integer index = indexByJobId.get(dep);
+                        if (index != null && index != i) {
+                            preds.add(index);
+                        }
+                    }
+                } else if (previousGroup != null) {
+                    for (int p = previousGroup[0]; p < previousGroup[1]; p++) {
+                        preds.add(p);
+                    }
+                }
+                predecessors.add(new ArrayList<>(preds));
+            }
+            if (range[1] > range[0]) {
+                previousGroup = range;
+            }
+        }
+        return new WorkflowDag(jobIds, predecessors);
+    }
+
+    public int size() {
+        return jobIds.size();
+    }
+
+    public String jobId(int node) {
+        return jobIds.get(node);
+    }
+
+    public List<Integer> predecessors(int node) {
+        return predecessors.get(node);
+    }
+
+    public List<Integer> successors(int node) {
+        return successors.get(node);
+    }
+
+    public boolean isAcyclic() {
+        return order != null;
+    }
+
+    /**
+     * Job ids on, or blocked behind, a dependency cycle (empty if the graph is acyclic)
+     */
+    public List<String> cycleJobIds() {
+        if (order != null) {
+            return List.of();
+        }
+        int[] inDegree = inDegrees();
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int i = 0; i < inDegree.length; i++) {
+            if (inDegree[i] == 0) {
+                queue.add(i);
+            }
+        }
+        while (!queue.isEmpty()) {
+            for (int succ : successors.get(queue.poll())) {
+                if (--inDegree[succ] == 0) {
+                    queue.add(succ);
+                }
+            }
+        }
+        List<String> remaining = new ArrayList<>();
+        for (int i = 0; i < inDegree.length; i++) {
+            if (inDegree[i] > 0) {
+                remaining.add(jobIds.get(i));
+            }
+        }
+        return remaining;
+    }
+
+    /**
+     * Critical-path rank of every node: its own weight plus the heaviest chain of successors after it.
+     * Starting the highest-ranked ready job first shortens the makespan when workers are scarce.
+     */
+    public long[] criticalPathRanks(long[] weights) {
+        if (order == null) {
+            throw new IllegalStateException("Workflow dependencies contain a cycle: " + cycleJobIds());
+        }
+        long[] ranks = new long[jobIds.size()];
+        for (int k = order.length - 1; k >= 0; k--) {
+            int node = order[k];
+            long longestTail = 0;
+            for (int succ : successors.get(node)) {
+                longestTail = Math.max(longestTail, ranks[succ]);
+            }
+            ranks[node] = weights[node] + longestTail;
+        }
+        return ranks;
+    }
+
+    private int[] inDegrees() {
+        int[] inDegree = new int[jobIds.size()];
+        for (int i = 0; i < inDegree.length; i++) {
+            inDegree[i] = predecessors.get(i).size();
+        }
+        return inDegree;
+    }
+
+    private int[] topologicalOrder() {
+        int[] inDegree = inDegrees();
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int i = 0; i < inDegree.length; i++) {
+            if (inDegree[i] == 0) {
+                queue.add(i);
+            }
+        }
+        int[] result = new int[jobIds.size()];
+        int count = 0;
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            result[count++] = node;
+            for (int succ : successors.get(node)) {
+                if (--inDegree[succ] == 0) {
+                    queue.add(succ);
+                }
+            }
+        }
+        return count == result.length ? result : null;
+    }
+}
@@ -0,0 +1,77 @@
+package com.tes.batch.common.util;
+
+import com.tes.batch.common.dto.JobMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MapParametersTest {
+
+    @Test
+    void expandsListOnCommasAndNewLines() {
+        assertEquals(List.of("a", "b", "c", "d"), MapParameters.expand(" a, b\nc,,d "));
+    }
+
+    @Test
+    void expandsIntegerRangeInclusive() {
+        assertEquals(List.of("3", "4", "5"), MapParameters.expand("3..5"));
+    }
+
+    @Test
+    void expandsDateRangeInclusive() {
+        assertEquals(List.of("2024-02-28", "2024-02-29", "2024-03-01"), MapParameters.expand("2024-02-28..2024-03-01"));
+    }
+
+    @Test
+    void listWithDotsIsNotARange() {
+        assertEquals(List.of("1..2", "x"), MapParameters.expand("1..2,x"));
+    }
+
+    @Test
+    void rejectsEmptyDescendingInvalidAndOversizedSpecs() {
+        assertThrows(IllegalArgumentException.class, () -> MapParameters.expand(null));
+        assertThrows(IllegalArgumentException.class, () -> MapParameters.expand(" , "));
+        assertThrows(IllegalArgumentException.class, () -> MapParameters.expand("5..3"));
+        assertThrows(IllegalArgumentException.class, () -> MapParameters.expand("a..b"));
+        assertThrows(IllegalArgumentException.class, () -> MapParameters.expand("1..1001"));
+        assertEquals(MapParameters.MAX_TASKS, MapParameters.expand("1..1000").size());
+    }
+
+    @Test
+    void substitutesParamAndIndex() {
+        assertEquals("run.sh 2024-01-01 #3", MapParameters.substitute("run.sh ${param} #${index}", "2024-01-01", 3));
+        assertNull(MapParameters.substitute(null, "x", 0));
+    }
+
+    @Test
+    void wavesFollowParallelism() {
+        assertEquals(1, MapParameters.waves(step(0, null)));
+        assertEquals(1, MapParameters.waves(step(10, null)));
+        assertEquals(4, MapParameters.waves(step(10, 3)));
+        assertEquals(1, MapParameters.waves(step(10, 20)));
+    }
+
+    @Test
+    void summaryListsAtMostTwentyFailures() {
+        assertEquals("Map step: 3/3 task(s) succeeded", MapParameters.summarize(3, List.of()));
+        assertEquals("Map step: 1/3 task(s) succeeded; failed: a, b", MapParameters.summarize(3, List.of("a", "b")));
+
+        List<String> failed = IntStream.range(0, 25).mapToObj(String::valueOf).toList();
+        String summary = MapParameters.summarize(30, failed);
+        assertEquals("Map step: 5/30 task(s) succeeded; failed: "
+                + String.join(", ", failed.subList(0, 20)) + ", ...", summary);
+    }
+
+    private static JobMessage step(int tasks, Integer maxParallelism) {
+        JobMessage step = new JobMessage();
+        step.setMapTasks(tasks > 0 ? Collections.nCopies(tasks, new JobMessage()) : null);
+        step.setMaxParallelism(maxParallelism);
+        return step;
+    }
+}
@@ -0,0 +1,185 @@
+package com.tes.batch.common.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.tes.batch.common.dto.JobMessage;
+import com.tes.batch.common.dto.JobResult;
+import com.tes.batch.common.dto.WorkflowMessage;
+import com.tes.batch.common.enums.JobType;
+import com.tes.batch.common.enums.TaskStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Per-message size and CPU cost of the Redis value encodings, comparing {@link MessageCodec}
+ * against GenericJackson2JsonRedisSerializer, which wrote every value before the codec existed.
+ *
+ * Not part of the regular test run (surefire only picks up *Test classes); run it with
+ *   mvn -pl batch-scheduler-common test -Dtest=MessageCodecBenchmark
+ *
+ * CPU time is the benchmark thread's own CPU time per message, median of the measured rounds.
+ */
+class MessageCodecBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 7;
+    /** Bytes encoded per measured round, so large messages run fewer iterations */
+    private static final int BYTES_PER_ROUND = 1_000_000;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    /** Keeps the JIT from discarding the measured work */
+    private long sink;
+
+    @Test
+    void compareEncodings() {
+        Map<String, Object> messages = new LinkedHashMap<>();
+        messages.put("JobMessage", jobMessage(0));
+        messages.put("WorkflowMessage", workflowMessage());
+        messages.put("JobResult", jobResult("Exported 1200 rows to orders_2026-10-18.csv\n".repeat(5)));
+        messages.put("JobResult 64KB", jobResult("INFO  step 12/40 exported batch of 500 rows\n".repeat(1500)));
+
+        List<Encoding> encodings = List.of(
+                new Encoding("GenericJackson2Json", new GenericJackson2JsonRedisSerializer(MAPPER)),
+                new Encoding("codec json+deflate", new MessageCodec(MAPPER, MessageCodec.Format.JSON, 8192)),
+                new Encoding("codec smile", new MessageCodec(MAPPER, MessageCodec.Format.SMILE, 0)),
+                new Encoding("codec smile+deflate", new MessageCodec(MAPPER, MessageCodec.Format.SMILE, 8192)));
+
+        // One full pass first so every row is measured with the serializers already compiled
+        measure(messages, encodings);
+        System.out.println(measure(messages, encodings));
+    }
+
+    private String measure(Map<String, Object> messages, List<Encoding> encodings) {
+        StringBuilder report = new StringBuilder(String.format("%n%-16s %-20s %8s %12s %12s%n",
+                "message", "encoding", "bytes", "encode ns", "decode ns"));
+        for (Map.Entry<String, Object> message : messages.entrySet()) {
+            Object value = message.getValue();
+            for (Encoding encoding : encodings) {
+                byte[] encoded = encoding.encode.apply(value);
+                assertEquals(value, encoding.decode(encoded, value.getClass()), encoding.name);
+
+                int ops = Math.max(100, BYTES_PER_ROUND / encoding.encode.apply(value).length);
+                long encodeNs = cpuNanosPerOp(ops, () -> sink += encoding.encode.apply(value).length);
+                long decodeNs = cpuNanosPerOp(ops, () -> sink += encoding.decode(encoded, value.getClass()).hashCode());
+                report.append(String.format("%-16s %-20s %8d %12d %12d%n",
+                        message.getKey(), encoding.name, encoded.length, encodeNs, decodeNs));
+            }
+        }
+        return report.toString();
+    }
+
+    private long cpuNanosPerOp(int ops, Runnable op) {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            run(ops, op);
+        }
+        long[] samples = new long[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = threads.getCurrentThreadCpuTime();
+            run(ops, op);
+            samples[round] = (threads.getCurrentThreadCpuTime() - start) / ops;
+        }
+        Arrays.sort(samples);
+        return samples[ROUNDS / 2];
+    }
+
+    private static void run(int ops, Runnable op) {
+        for (int i = 0; i < ops; i++) {
+            op.run();
+        }
+    }
+
+    private static JobMessage jobMessage(int index) {
+        return JobMessage.builder()
+                .jobId("3f6c1a2e-5b7d-4e8f-9a0b-" + String.format("%012d", index))
+                .taskId("7d2e9c4b-1a3f-4b6e-8c5d-" + String.format("%012d", index))
+                .jobName("Export daily orders " + index)
+                .jobType(JobType.REST_API)
+                .jobAction("https://erp.example.com/api/v2/orders/export")
+                .jobBody("{\"date\":\"2026-10-18\",\"format\":\"csv\",\"includeCancelled\":false}")
+                .jobHeaders("{\"Content-Type\":\"application/json\",\"X-Request-Source\":\"batch-scheduler\"}")
+                .maxDurationSeconds(3600L)
+                .retryCount(3)
+                .retryDelay(60)
+                .attempt(0)
+                .priority(5)
+                .executionDelay(0)
+                .ignoreResult(false)
+                .queueName("job:queue:server-01")
+                .scheduledTime(1_760_745_600_000L)
+                .manuallyRun(false)
+                .build();
+    }
+
+    private static WorkflowMessage workflowMessage() {
+        List<WorkflowMessage.PriorityGroup> groups = new ArrayList<>();
+        for (int group = 0; group < 3; group++) {
+            List<JobMessage> jobs = new ArrayList<>();
+            for (int job = 0; job < 5; job++) {
+                jobs.add(jobMessage(group * 5 + job));
+            }
+            groups.add(WorkflowMessage.PriorityGroup.builder().priority(group + 1).ignoreResult(false).jobs(jobs).build());
+        }
+        return WorkflowMessage.builder()
+                .workflowId("9b1d4f7a-2c3e-4a5b-8d6f-000000000001")
+                .workflowRunId(421_337L)
+                .workflowName("Nightly order settlement")
+                .priorityGroups(groups)
+                .queueName("job:queue:server-01")
+                .build();
+    }
+
+    private static JobResult jobResult(String output) {
+        return JobResult.builder()
+                .jobId("3f6c1a2e-5b7d-4e8f-9a0b-000000000000")
+                .taskId("7d2e9c4b-1a3f-4b6e-8c5d-000000000000")
+                .status(TaskStatus.SUCCESS)
+                .output(output)
+                .startTime(1_760_745_600_120L)
+                .endTime(1_760_745_612_480L)
+                .durationMs(12_360L)
+                .retryAttempt(0)
+                .queueName("job:queue:server-01")
+                .build();
+    }
+
+    private static final class Encoding {
+        final String name;
+        final Function<Object, byte[]> encode;
+        private final GenericJackson2JsonRedisSerializer serializer;
+        private final MessageCodec codec;
+
+        Encoding(String name, GenericJackson2JsonRedisSerializer serializer) {
+            this.name = name;
+            this.serializer = serializer;
+            this.codec = null;
+            this.encode = serializer::serialize;
+        }
+
+        Encoding(String name, MessageCodec codec) {
+            this.name = name;
+            this.serializer = null;
+            this.codec = codec;
+            this.encode = codec::encode;
+        }
+
+        Object decode(byte[] data, Class<?> type) {
+            return codec != null ? codec.decode(data, type) : serializer.deserialize(data, type);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.tes.batch.common.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.tes.batch.common.dto.JobMessage;
+import com.tes.batch.common.dto.JobResult;
+import com.tes.batch.common.dto.WorkflowMessage;
+import com.tes.batch.common.enums.JobType;
+import com.tes.batch.common.enums.TaskStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageCodecTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    @Test
+    void smileFrameStartsWithVersionByteAndRoundTrips() {
+        MessageCodec codec = new MessageCodec(MAPPER, MessageCodec.Format.SMILE, 0);
+        JobMessage message = jobMessage();
+
+        byte[] encoded = codec.encode(message);
+
+        assertEquals(MessageCodec.HEADER_SMILE_V1, encoded[0]);
+        assertEquals(message, codec.decode(encoded, JobMessage.class));
+    }
+
+    @Test
+    void nestedWorkflowMessageRoundTrips() {
+        MessageCodec codec = new MessageCodec(MAPPER, MessageCodec.Format.SMILE, 0);
+        WorkflowMessage message = WorkflowMessage.builder()
+                .workflowId("wf-1")
+                .workflowRunId(7L)
+                .workflowName("nightly")
+                .queueName("job:queue:server-1")
+                .priorityGroups(List.of(
+                        WorkflowMessage.PriorityGroup.builder().priority(1).ignoreResult(false)
+                                .jobs(List.of(jobMessage())).build()))
+                .build();
+
+        assertEquals(message, codec.decode(codec.encode(message), WorkflowMessage.class));
+    }
+
+    @Test
+    void jsonFormatWritesPlainJson() {
+        MessageCodec codec = new MessageCodec(MAPPER, MessageCodec.Format.JSON, 0);
+        JobResult result = jobResult("done");
+
+        byte[] encoded = codec.encode(result);
+
+        assertEquals('{', encoded[0]);
+        assertEquals(result, codec.decode(encoded, JobResult.class));
+    }
+
+    @Test
+    void legacyJsonFromTheRedisSerializerIsStillRead() {
+        MessageCodec codec = new MessageCodec(MAPPER, MessageCodec.Format.SMILE, 8192);
+        JobMessage message = jobMessage();
+        byte[] legacy = new GenericJackson2JsonRedisSerializer(MAPPER).serialize(message);
+
+        assertEquals(message, codec.decode(legacy, JobMessage.class));
+        Object generic = codec.decode(legacy);
+        assertTrue(generic instanceof Map<?, ?>, String.valueOf(generic));
+        assertEquals("job-1", ((Map<?, ?>) generic).get("jobId"));
+    }
+
+    @Test
+    void unknownPropertiesFromNewerWritersAreIgnored() {
+        MessageCodec codec = new MessageCodec(MAPPER, MessageCodec.Format.SMILE, 0);
+        byte[] json = "{\"jobId\":\"job-1\",\"addedLater\":true}".getBytes(StandardCharsets.UTF_8);
+        byte[] smile = codec.encode(Map.of("jobId", "job-1", "addedLater", true));
+
+        assertEquals("job-1", codec.decode(json, JobMessage.class).getJobId());
+        assertEquals("job-1", codec.decode(smile, JobMessage.class).getJobId());
+    }
+
+    @Test
+    void largePayloadIsDeflatedAroundTheSmileFrame() {
+        MessageCodec codec = new MessageCodec(MAPPER, MessageCodec.Format.SMILE, 8192);
+        JobResult result = jobResult("line of job output\n".repeat(2000));
+
+        byte[] encoded = codec.encode(result);
+
+        assertEquals(PayloadCompression.HEADER_DEFLATE, encoded[0]);
+        assertEquals(MessageCodec.HEADER_SMILE_V1, PayloadCompression.decompress(encoded)[0]);
+        assertEquals(result, codec.decode(encoded, JobResult.class));
+    }
+
+    @Test
+    void readersAcceptEveryWriteFormat() {
+        JobResult result = jobResult("line of job output\n".repeat(2000));
+        MessageCodec reader = new MessageCodec(MAPPER, MessageCodec.Format.JSON, 0);
+
+        for (MessageCodec.Format format : MessageCodec.Format.values()) {
+            for (int threshold : new int[]{0, 8192}) {
+                byte[] encoded = new MessageCodec(MAPPER, format, threshold).encode(result);
+                assertEquals(result, reader.decode(encoded, JobResult.class), format + "/" + threshold);
+            }
+        }
+    }
+
+    @Test
+    void emptyValuesAndGarbage() {
+        MessageCodec codec = new MessageCodec(MAPPER, MessageCodec.Format.SMILE, 0);
+
+        assertArrayEquals(new byte[0], codec.encode(null));
+        assertNull(codec.decode(null, JobMessage.class));
+        assertNull(codec.decode(new byte[0], JobMessage.class));
+        assertThrows(IllegalArgumentException.class,
+                () -> codec.decode(new byte[]{MessageCodec.HEADER_SMILE_V1, 0x7F, 0x00}, JobMessage.class));
+        assertThrows(IllegalArgumentException.class,
+                () -> codec.decode("not json".getBytes(StandardCharsets.UTF_8), JobMessage.class));
+    }
+
+    private static JobMessage jobMessage() {
+        return JobMessage.builder()
+                .jobId("job-1")
+                .taskId("task-1")
+                .jobName("export orders")
+                .jobType(JobType.REST_API)
+                .jobAction("https://api.example.com/export")
+                .jobBody("{\"date\":\"2026-10-18\"}")
+                .maxDurationSeconds(600L)
+                .retryCount(3)
+                .attempt(0)
+                .priority(5)
+                .queueName("job:queue:server-1")
+                .scheduledTime(1_760_000_000_000L)
+                .dependsOn(List.of("job-0"))
+                .mapTasks(List.of(JobMessage.builder().jobId("job-1").taskId("task-1_map_0").mapParam("a").build()))
+                .build();
+    }
+
+    private static JobResult jobResult(String output) {
+        return JobResult.builder()
+                .jobId("job-1")
+                .taskId("task-1")
+                .status(TaskStatus.SUCCESS)
+                .output(output)
+                .startTime(1_760_000_000_000L)
+                .endTime(1_760_000_005_000L)
+                .durationMs(5000L)
+                .retryAttempt(0)
+                .queueName("job:queue:server-1")
+                .build();
+    }
+}
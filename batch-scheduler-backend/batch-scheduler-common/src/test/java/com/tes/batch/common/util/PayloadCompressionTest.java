@@ -0,0 +1,92 @@
+package com.tes.batch.common.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PayloadCompressionTest {
+
+    private static final byte[] LOG = "{\"line\":\"step finished\"}\n".repeat(200).getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void payloadAboveThresholdRoundTrips() {
+        byte[] compressed = PayloadCompression.compress(LOG, 1024);
+
+        assertTrue(PayloadCompression.isCompressed(compressed));
+        assertTrue(compressed.length < LOG.length / 4, "compressed to " + compressed.length);
+        assertEquals(LOG.length, ByteBuffer.wrap(compressed, 1, 4).getInt());
+        assertArrayEquals(LOG, PayloadCompression.decompress(compressed));
+    }
+
+    @Test
+    void payloadBelowThresholdOrWithCompressionDisabledPassesThrough() {
+        assertSame(LOG, PayloadCompression.compress(LOG, LOG.length + 1));
+        assertSame(LOG, PayloadCompression.compress(LOG, 0));
+        assertSame(LOG, PayloadCompression.decompress(LOG));
+    }
+
+    @Test
+    void incompressiblePayloadIsKeptAsIs() {
+        byte[] random = new byte[4096];
+        new Random(42).nextBytes(random);
+        // A random first byte could look like the header; JSON never does
+        random[0] = '{';
+
+        byte[] result = PayloadCompression.compress(random, 1024);
+        assertSame(random, result);
+        assertFalse(PayloadCompression.isCompressed(result));
+    }
+
+    @Test
+    void frameClaimingMoreThanTheCapIsRejected() {
+        byte[] frame = frame(256 * 1024 * 1024 + 1);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> PayloadCompression.decompress(frame));
+        assertTrue(e.getMessage().startsWith("Invalid compressed payload length"), e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> PayloadCompression.decompress(frame(-1)));
+    }
+
+    @Test
+    void truncatedFrameIsRejected() {
+        byte[] compressed = PayloadCompression.compress(LOG, 1024);
+        byte[] truncated = Arrays.copyOf(compressed, compressed.length / 2);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> PayloadCompression.decompress(truncated));
+        assertTrue(e.getMessage().startsWith("Truncated compressed payload"), e.getMessage());
+    }
+
+    @Test
+    void frameLongerThanItsDataIsRejected() {
+        byte[] compressed = PayloadCompression.compress(LOG, 1024);
+        ByteBuffer.wrap(compressed, 1, 4).putInt(LOG.length + 10);
+
+        assertThrows(IllegalArgumentException.class, () -> PayloadCompression.decompress(compressed));
+    }
+
+    @Test
+    void corruptDeflateDataIsRejected() {
+        byte[] frame = frame(100);
+        Arrays.fill(frame, 5, frame.length, (byte) 0xFF);
+
+        assertThrows(IllegalArgumentException.class, () -> PayloadCompression.decompress(frame));
+    }
+
+    /**
+     * Header and length prefix followed by a few bytes of filler
+     */
+    private static byte[] frame(int length) {
+        return ByteBuffer.allocate(16).put(PayloadCompression.HEADER_DEFLATE).putInt(length).array();
+    }
+}
@@ -0,0 +1,83 @@
+package com.tes.batch.common.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WorkflowDagTest {
+
+    @Test
+    void groupsWithoutExplicitDependenciesRunGroupByGroup() {
+        WorkflowDag dag = WorkflowDag.build(List.of(List.of("a", "b"), List.of("c"), List.of("d", "e")), Map.of());
+
+        assertEquals(List.of(), dag.predecessors(0));
+        assertEquals(List.of(0, 1), dag.predecessors(2));
+        assertEquals(List.of(2), dag.predecessors(3));
+        assertEquals(List.of(2), dag.predecessors(4));
+        assertEquals(List.of(3, 4), dag.successors(2));
+    }
+
+    @Test
+    void emptyGroupIsSkippedForImplicitEdges() {
+        WorkflowDag dag = WorkflowDag.build(List.of(List.of("a"), List.of(), List.of("b")), null);
+
+        assertEquals(2, dag.size());
+        assertEquals(List.of(0), dag.predecessors(1));
+    }
+
+    @Test
+    void explicitDependenciesReplaceGroupEdges() {
+        WorkflowDag dag = WorkflowDag.build(List.of(List.of("a", "b"), List.of("c", "d")),
+                Map.of("c", List.of("a"), "d", List.of()));
+
+        assertEquals(List.of(0), dag.predecessors(2));
+        // An empty list means no dependencies, not the implicit ones
+        assertEquals(List.of(), dag.predecessors(3));
+    }
+
+    @Test
+    void unknownAndSelfDependenciesAreIgnored() {
+        WorkflowDag dag = WorkflowDag.build(List.of(List.of("a"), List.of("b")),
+                Map.of("b", List.of("b", "disabled-job", "a", "a")));
+
+        assertEquals(List.of(0), dag.predecessors(1));
+        assertTrue(dag.isAcyclic());
+    }
+
+    @Test
+    void cycleIsReportedWithTheJobsBlockedBehindIt() {
+        WorkflowDag dag = WorkflowDag.build(List.of(List.of("a", "b", "c", "d")),
+                Map.of("a", List.of(), "b", List.of("c"), "c", List.of("b"), "d", List.of("c")));
+
+        assertFalse(dag.isAcyclic());
+        assertEquals(List.of("b", "c", "d"), dag.cycleJobIds());
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> dag.criticalPathRanks(new long[]{1, 1, 1, 1}));
+        assertTrue(e.getMessage().contains("[b, c, d]"), e.getMessage());
+    }
+
+    @Test
+    void acyclicGraphHasNoCycleJobs() {
+        WorkflowDag dag = WorkflowDag.build(List.of(List.of("a"), List.of("b")), Map.of());
+
+        assertEquals(List.of(), dag.cycleJobIds());
+    }
+
+    @Test
+    void criticalPathRankIsOwnWeightPlusHeaviestTail() {
+        //   a(1) -> b(5) -> d(1)
+        //   a(1) -> c(2) -> d(1)
+        //   e(10)
+        WorkflowDag dag = WorkflowDag.build(List.of(List.of("a", "b", "c", "d", "e")),
+                Map.of("a", List.of(), "b", List.of("a"), "c", List.of("a"), "d", List.of("b", "c"), "e", List.of()));
+
+        assertArrayEquals(new long[]{7, 6, 3, 1, 10}, dag.criticalPathRanks(new long[]{1, 5, 2, 1, 10}));
+    }
+}
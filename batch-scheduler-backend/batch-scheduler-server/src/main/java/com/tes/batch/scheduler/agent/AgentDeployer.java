@@ -861,6 +861,10 @@ public class AgentDeployer {
                     queue-capacity: 100
                     max-concurrent-jobs: 10
                     thread-name-prefix: job-executor-
+                  spool:
+                    directory: ${LOG_PATH:/app/logs}/spool
+                  pool:
+                    name: ${AGENT_POOL_NAME:}
 
                 scheduler:
                   api-url: ${SCHEDULER_API_URL}
@@ -893,6 +897,7 @@ public class AgentDeployer {
                 REDIS_PORT=%d
                 AGENT_QUEUE_NAME=%s
                 AGENT_SERVER_ID=%s
+                AGENT_POOL_NAME=%s
                 SCHEDULER_API_URL=%s
                 """.formatted(
                 server.getAgentPort() != null ? server.getAgentPort() : 8081,
@@ -900,6 +905,7 @@ public class AgentDeployer {
                 agentRedisPort,
                 server.getQueueName(),
                 server.getSystemId(),
+                server.getPoolName() != null ? server.getPoolName() : "",
                 schedulerExternalUrl
         );
     }
@@ -967,6 +973,7 @@ public class AgentDeployer {
                 AGENT_PORT=%d
                 AGENT_QUEUE_NAME=%s
                 AGENT_SERVER_ID=%s
+                AGENT_POOL_NAME=%s
                 """.formatted(
                 server.getSystemName(),
                 schedulerExternalUrl,
@@ -974,7 +981,8 @@ public class AgentDeployer {
                 agentRedisPort,
                 server.getAgentPort() != null ? server.getAgentPort() : 8081,
                 server.getQueueName(),
-                server.getSystemId()
+                server.getSystemId(),
+                server.getPoolName() != null ? server.getPoolName() : ""
         );
     }
 
@@ -1015,6 +1023,7 @@ services:
       - SPRING_DATA_REDIS_PORT=${REDIS_PORT}
       - AGENT_QUEUE_NAME=${AGENT_QUEUE_NAME}
       - AGENT_SERVER_ID=${AGENT_SERVER_ID}
+      - AGENT_POOL_NAME=${AGENT_POOL_NAME}
       - SCHEDULER_API_URL=${SCHEDULER_API_URL}
       - SERVER_PORT=${AGENT_PORT}
       - LOG_PATH=/app/logs
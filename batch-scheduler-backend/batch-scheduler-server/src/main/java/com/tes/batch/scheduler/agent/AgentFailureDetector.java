@@ -0,0 +1,161 @@
+package com.tes.batch.scheduler.agent;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Phi-accrual failure detector over agent pulses (agent:pulse).
+ *
+ * For each agent queue it keeps a window of pulse inter-arrival times and turns the time since the
+ * last pulse into a suspicion level phi = -log10(P(a pulse arrives this late)), assuming normally
+ * distributed intervals. phi 1 means a 10% chance the agent is fine, phi 8 one in 10^8.
+ *
+ * Two thresholds:
+ * - suspected: phi above app.agent.phi.suspect-threshold; dispatch skips the agent (about a second
+ *   of silence with 500ms pulses)
+ * - unhealthy: phi above app.agent.phi.unhealthy-threshold after allowing an extra
+ *   app.agent.phi.acceptable-pause; {@link AgentHealthChecker} then flips is_healthy and breaks runs
+ *
+ * Agents that never pulsed (older agents, pulse disabled) are never suspected; their health still
+ * follows the heartbeat key.
+ */
+@Slf4j
+@Component
+public class AgentFailureDetector {
+
+    @Value("${app.agent.phi.suspect-threshold:8.0}")
+    private double suspectThreshold;
+
+    @Value("${app.agent.phi.unhealthy-threshold:8.0}")
+    private double unhealthyThreshold;
+
+    @Value("${app.agent.phi.acceptable-pause:15000}")
+    private long acceptablePauseMs;
+
+    @Value("${app.agent.phi.min-std-deviation:100}")
+    private double minStdDeviationMs;
+
+    @Value("${app.agent.phi.window-size:100}")
+    private int windowSize;
+
+    /** Intervals needed before phi is trusted */
+    private static final int MIN_SAMPLES = 3;
+
+    private final Map<String, History> histories = new ConcurrentHashMap<>();
+
+    /**
+     * Record a pulse from the queue's agent
+     */
+    public void heartbeat(String queueName, long now) {
+        histories.computeIfAbsent(queueName, q -> new History(windowSize)).arrived(now, acceptablePauseMs);
+    }
+
+    /**
+     * Suspicion level of the queue's agent now; 0 if it has no pulse history
+     */
+    public double phi(String queueName, long now) {
+        History history = queueName != null ? histories.get(queueName) : null;
+        return history != null ? history.phi(now, 0, minStdDeviationMs) : 0.0;
+    }
+
+    /**
+     * True if dispatch should avoid the queue's agent
+     */
+    public boolean isSuspected(String queueName) {
+        return phi(queueName, System.currentTimeMillis()) > suspectThreshold;
+    }
+
+    /**
+     * True if the queue's agent has been silent long enough to be declared unhealthy
+     */
+    public boolean isUnhealthy(String queueName, long now) {
+        History history = queueName != null ? histories.get(queueName) : null;
+        return history != null && history.phi(now, acceptablePauseMs, minStdDeviationMs) > unhealthyThreshold;
+    }
+
+    /**
+     * Queues whose agents are past the unhealthy threshold
+     */
+    public List<String> unhealthyQueues(long now) {
+        List<String> queues = new ArrayList<>();
+        for (String queueName : histories.keySet()) {
+            if (isUnhealthy(queueName, now)) {
+                queues.add(queueName);
+            }
+        }
+        return queues;
+    }
+
+    void retainAll(Collection<String> queueNames) {
+        histories.keySet().retainAll(queueNames);
+    }
+
+    /**
+     * Phi for a normal distribution, using the logistic approximation of its CDF
+     */
+    static double phi(long elapsed, double mean, double stdDeviation) {
+        double y = (elapsed - mean) / stdDeviation;
+        double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+        return elapsed > mean ? -Math.log10(e / (1.0 + e)) : -Math.log10(1.0 - 1.0 / (1.0 + e));
+    }
+
+    /**
+     * Ring buffer of inter-arrival times with running sums
+     */
+    static class History {
+        private final long[] intervals;
+        private int count;
+        private int next;
+        private double sum;
+        private double squareSum;
+        private long lastArrival = -1;
+
+        History(int windowSize) {
+            this.intervals = new long[Math.max(MIN_SAMPLES, windowSize)];
+        }
+
+        synchronized void arrived(long now, long acceptablePauseMs) {
+            long interval = lastArrival >= 0 ? now - lastArrival : -1;
+            lastArrival = now;
+            if (interval < 0) {
+                return;
+            }
+            // A gap this long was an outage (restart, partition), not the agent's rhythm; start over
+            if (interval > acceptablePauseMs) {
+                count = 0;
+                next = 0;
+                sum = 0;
+                squareSum = 0;
+                return;
+            }
+            if (count == intervals.length) {
+                long evicted = intervals[next];
+                sum -= evicted;
+                squareSum -= (double) evicted * evicted;
+            } else {
+                count++;
+            }
+            intervals[next] = interval;
+            next = (next + 1) % intervals.length;
+            sum += interval;
+            squareSum += (double) interval * interval;
+        }
+
+        synchronized double phi(long now, long extraPauseMs, double minStdDeviationMs) {
+            if (count < MIN_SAMPLES) {
+                return 0.0;
+            }
+            double mean = sum / count;
+            double variance = Math.max(0.0, squareSum / count - mean * mean);
+            double stdDeviation = Math.max(Math.sqrt(variance), minStdDeviationMs);
+            return AgentFailureDetector.phi(now - lastArrival, mean + extraPauseMs, stdDeviation);
+        }
+    }
+}
@@ -1,122 +1,325 @@
 package com.tes.batch.scheduler.agent;
 
+import com.tes.batch.common.constant.AgentChannels;
 import com.tes.batch.scheduler.domain.job.mapper.JobMapper;
 import com.tes.batch.scheduler.domain.job.mapper.JobRunLogMapper;
 import com.tes.batch.scheduler.domain.server.mapper.JobServerMapper;
 import com.tes.batch.scheduler.domain.server.vo.JobServerVO;
 import com.tes.batch.scheduler.ssh.SshService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
- * Periodically checks Agent health status via Redis heartbeats.
+ * Tracks Agent health from Redis heartbeats.
  *
  * agent_status = user-controlled (Start/Stop actions)
  * is_healthy = actual heartbeat check result
  *
- * If agent_status=ONLINE but is_healthy=false, auto-sync config and restart.
+ * Event driven: agents publish their queue name on agent:heartbeat after refreshing
+ * agent:health:{queue}, and keyspace notifications report that key expiring or being deleted.
+ * Agents also publish a sub-second pulse on agent:pulse, which feeds {@link AgentFailureDetector};
+ * an agent whose pulses stop is declared unhealthy once its phi passes the conservative threshold,
+ * long before its health key expires.
+ * Liveness is kept in {@link AgentHealthTable}; the database is only written on transitions.
+ * A slow reconcile pass reads all health keys with one MGET, catching missed events and
+ * Redis servers where keyspace notifications cannot be enabled.
+ *
+ * If agent_status=ONLINE but is_healthy=false, auto-sync config and restart. The SSH sync runs on its
+ * own executor, so it neither holds the health lock nor blocks the shared pub/sub listener threads.
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class AgentHealthChecker {
+public class AgentHealthChecker implements MessageListener {
+
+    public static final String HEALTH_KEY_PREFIX = "agent:health:";
+    private static final String KEYSPACE_PATTERN = "__keyspace@*__:" + HEALTH_KEY_PREFIX + "*";
 
     private final JobServerMapper serverMapper;
     private final JobMapper jobMapper;
     private final JobRunLogMapper jobRunLogMapper;
     private final RedisTemplate<String, Object> redisTemplate;
     private final SshService sshService;
+    private final AgentLoadTracker agentLoadTracker;
+    private final AgentHealthTable healthTable;
+    private final AgentFailureDetector failureDetector;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${app.agent.health-keyspace-events:true}")
+    private boolean enableKeyspaceEvents;
 
     private static final long SYNC_COOLDOWN = 10000; // 10 seconds cooldown between sync attempts
 
     // Track last sync attempt time per server
-    private final java.util.Map<String, Long> lastSyncAttempt = new java.util.concurrent.ConcurrentHashMap<>();
+    private final Map<String, Long> lastSyncAttempt = new ConcurrentHashMap<>();
+    // Servers whose sync is queued or running, so a slow SSH session is not queued again
+    private final Set<String> syncInProgress = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService configSyncExecutor = Executors.newFixedThreadPool(2, r -> {
+        Thread thread = new Thread(r, "agent-config-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void subscribe() {
+        if (enableKeyspaceEvents) {
+            enableKeyspaceNotifications();
+        }
+        redisMessageListenerContainer.addMessageListener(this,
+                List.of(new ChannelTopic(AgentChannels.PULSE_CHANNEL), new ChannelTopic(AgentChannels.HEARTBEAT_CHANNEL),
+                        new PatternTopic(KEYSPACE_PATTERN)));
+        log.info("Subscribed to agent pulses, heartbeats and health key events");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        configSyncExecutor.shutdownNow();
+    }
 
     /**
-     * Check agent health every 3 seconds
+     * Add key-event classes K (keyspace), g (del) and x (expired) to notify-keyspace-events,
+     * keeping whatever else is configured. Managed Redis may refuse CONFIG; reconcile covers that.
      */
-    @Scheduled(fixedRate = 3000)
-    @Transactional
-    public void checkAgentHealth() {
-        List<JobServerVO> servers = serverMapper.findAll();
-
-        for (JobServerVO server : servers) {
-            try {
-                String queueName = server.getQueueName();
-                if (queueName == null || queueName.isEmpty()) {
-                    continue;
+    private void enableKeyspaceNotifications() {
+        try {
+            redisTemplate.execute((RedisCallback<Void>) connection -> {
+                Properties config = connection.serverCommands().getConfig("notify-keyspace-events");
+                String flags = config != null ? config.getProperty("notify-keyspace-events", "") : "";
+                StringBuilder merged = new StringBuilder(flags);
+                if (flags.indexOf('K') < 0) {
+                    merged.append('K');
+                }
+                if (flags.indexOf('A') < 0 && flags.indexOf('g') < 0) {
+                    merged.append('g');
                 }
+                if (flags.indexOf('A') < 0 && flags.indexOf('x') < 0) {
+                    merged.append('x');
+                }
+                if (!merged.toString().equals(flags)) {
+                    connection.serverCommands().setConfig("notify-keyspace-events", merged.toString());
+                    log.info("Redis notify-keyspace-events set to '{}' for agent health tracking", merged);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Could not enable Redis keyspace notifications ({}); agent loss is detected by the reconcile pass only",
+                    e.getMessage());
+        }
+    }
 
-                // Skip health check if user set to OFFLINE - no need to check
-                if ("OFFLINE".equals(server.getAgentStatus())) {
-                    // Ensure is_healthy is null/false for OFFLINE servers
-                    if (Boolean.TRUE.equals(server.getIsHealthy())) {
-                        serverMapper.updateHealthStatus(server.getSystemId(), null);
-                    }
-                    continue;
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            if (AgentChannels.PULSE_CHANNEL.equals(channel)) {
+                failureDetector.heartbeat(body, System.currentTimeMillis());
+                onHealthEvent(body, true);
+                return;
+            }
+            if (AgentChannels.HEARTBEAT_CHANNEL.equals(channel)) {
+                agentLoadTracker.refresh(body);
+                // A heartbeat does not revive an agent whose pulses have stopped
+                if (!failureDetector.isUnhealthy(body, System.currentTimeMillis())) {
+                    onHealthEvent(body, true);
                 }
+                return;
+            }
+            // __keyspace@{db}__:agent:health:{queue} with the event name as body
+            int keyStart = channel.indexOf(HEALTH_KEY_PREFIX);
+            if (keyStart >= 0 && ("expired".equals(body) || "del".equals(body))) {
+                onHealthEvent(channel.substring(keyStart + HEALTH_KEY_PREFIX.length()), false);
+            }
+        } catch (Exception e) {
+            log.error("Failed to process agent health event", e);
+        }
+    }
 
-                String healthKey = "agent:health:" + queueName;
-
-                // Use Redis key existence check instead of timestamp comparison
-                // This avoids issues with clock drift between servers
-                boolean isHealthy = Boolean.TRUE.equals(redisTemplate.hasKey(healthKey));
-
-                Boolean currentHealthy = server.getIsHealthy();
-                if (currentHealthy == null) currentHealthy = false;
-
-                // Update is_healthy if changed
-                if (isHealthy != currentHealthy) {
-                    serverMapper.updateHealthStatus(server.getSystemId(), isHealthy);
-                    log.info("Agent health changed: {} -> {} ({})",
-                            currentHealthy ? "healthy" : "unhealthy",
-                            isHealthy ? "healthy" : "unhealthy",
-                            server.getSystemName());
-
-                    // If became unhealthy, mark RUNNING jobs as BROKEN and reset job state
-                    if (!isHealthy && currentHealthy) {
-                        // 1. Mark job run logs as BROKEN
-                        int brokenCount = jobRunLogMapper.markRunningJobsAsBrokenBySystemId(
-                                server.getSystemId(),
-                                System.currentTimeMillis(),
-                                "Agent heartbeat lost"
-                        );
-                        if (brokenCount > 0) {
-                            log.warn("Marked {} running job log(s) as BROKEN due to agent unhealthy: {}",
-                                    brokenCount, server.getSystemName());
-                        }
-
-                        // 2. Reset job current_state to SCHEDULED
-                        int resetCount = jobMapper.resetStuckJobsBySystemId(server.getSystemId());
-                        if (resetCount > 0) {
-                            log.warn("Reset {} stuck job(s) to SCHEDULED due to agent unhealthy: {}",
-                                    resetCount, server.getSystemName());
-                        }
-                    }
+    /**
+     * Only a change of liveness reads the server row and writes
+     */
+    private void onHealthEvent(String queueName, boolean alive) {
+        if (queueName.isEmpty() || healthTable.matches(queueName, alive)) {
+            return;
+        }
+        synchronized (this) {
+            JobServerVO server = serverMapper.findByQueueName(queueName);
+            if (server == null) {
+                return;
+            }
+            applyHealth(server, alive);
+        }
+    }
+
+    /**
+     * Declare agents unhealthy whose pulses stopped, every second by default
+     */
+    @Scheduled(fixedDelayString = "${app.agent.phi.check-interval:1000}")
+    public void checkPulses() {
+        for (String queueName : failureDetector.unhealthyQueues(System.currentTimeMillis())) {
+            if (!healthTable.matches(queueName, false)) {
+                log.warn("Agent pulses stopped on queue {} (phi {}), declaring it unhealthy", queueName,
+                        String.format("%.1f", failureDetector.phi(queueName, System.currentTimeMillis())));
+                try {
+                    onHealthEvent(queueName, false);
+                } catch (Exception e) {
+                    log.error("Failed to mark agent unhealthy: {}", queueName, e);
                 }
+            }
+        }
+    }
 
-                // Auto-sync: If user set ONLINE but agent is not healthy, resync config
-                if (!isHealthy) {
-                    log.info("Agent {} is expected ONLINE but unhealthy, triggering config sync...",
-                            server.getSystemName());
-                    triggerConfigSync(server);
+    /**
+     * Reconcile every health key with one MGET, every 30 seconds by default
+     */
+    @Scheduled(fixedDelayString = "${app.agent.health-reconcile-interval:30000}")
+    public void reconcile() {
+        List<JobServerVO> servers = new ArrayList<>();
+        for (JobServerVO server : serverMapper.findAll()) {
+            if (server.getQueueName() != null && !server.getQueueName().isEmpty()) {
+                servers.add(server);
+            }
+        }
+        if (servers.isEmpty()) {
+            healthTable.retainAll(List.of());
+            failureDetector.retainAll(List.of());
+            agentLoadTracker.refresh(List.of());
+            return;
+        }
+
+        byte[][] keys = new byte[servers.size()][];
+        for (int i = 0; i < servers.size(); i++) {
+            keys[i] = (HEALTH_KEY_PREFIX + servers.get(i).getQueueName()).getBytes(StandardCharsets.UTF_8);
+        }
+        List<byte[]> values = redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                connection.stringCommands().mGet(keys));
+
+        List<String> queueNames = new ArrayList<>();
+        List<String> healthyQueues = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            for (int i = 0; i < servers.size(); i++) {
+                JobServerVO server = servers.get(i);
+                boolean alive = values != null && values.get(i) != null
+                        && !failureDetector.isUnhealthy(server.getQueueName(), now);
+                queueNames.add(server.getQueueName());
+                if (alive && !"OFFLINE".equals(server.getAgentStatus())) {
+                    healthyQueues.add(server.getQueueName());
+                }
+                try {
+                    applyHealth(server, alive);
+                } catch (Exception e) {
+                    log.error("Failed to check agent health for server: {}", server.getSystemId(), e);
                 }
+            }
+        }
+        healthTable.retainAll(queueNames);
+        failureDetector.retainAll(queueNames);
+
+        // Full refresh of the cached load view; heartbeats keep it current in between
+        try {
+            agentLoadTracker.refresh(healthyQueues);
+        } catch (Exception e) {
+            log.warn("Failed to refresh agent load metrics: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Record the agent's liveness and bring is_healthy in line with it
+     */
+    private void applyHealth(JobServerVO server, boolean isHealthy) {
+        String queueName = server.getQueueName();
+        healthTable.put(queueName, isHealthy);
+        if (!isHealthy) {
+            agentLoadTracker.remove(queueName);
+        }
 
-            } catch (Exception e) {
-                log.error("Failed to check agent health for server: {}", server.getSystemId(), e);
+        // Skip health check if user set to OFFLINE - no need to check
+        if ("OFFLINE".equals(server.getAgentStatus())) {
+            // Ensure is_healthy is null/false for OFFLINE servers
+            if (Boolean.TRUE.equals(server.getIsHealthy())) {
+                serverMapper.updateHealthStatus(server.getSystemId(), null);
             }
+            return;
         }
+
+        boolean currentHealthy = Boolean.TRUE.equals(server.getIsHealthy());
+
+        // Update is_healthy if changed
+        if (isHealthy != currentHealthy) {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                serverMapper.updateHealthStatus(server.getSystemId(), isHealthy);
+                server.setIsHealthy(isHealthy);
+                log.info("Agent health changed: {} -> {} ({})",
+                        currentHealthy ? "healthy" : "unhealthy",
+                        isHealthy ? "healthy" : "unhealthy",
+                        server.getSystemName());
+
+                // If became unhealthy, mark RUNNING jobs as BROKEN and reset job state
+                if (!isHealthy) {
+                    // 1. Mark job run logs as BROKEN
+                    int brokenCount = jobRunLogMapper.markRunningJobsAsBrokenBySystemId(
+                            server.getSystemId(),
+                            System.currentTimeMillis(),
+                            "Agent heartbeat lost"
+                    );
+                    if (brokenCount > 0) {
+                        log.warn("Marked {} running job log(s) as BROKEN due to agent unhealthy: {}",
+                                brokenCount, server.getSystemName());
+                    }
+
+                    // 2. Reset job current_state to SCHEDULED
+                    int resetCount = jobMapper.resetStuckJobsBySystemId(server.getSystemId());
+                    if (resetCount > 0) {
+                        log.warn("Reset {} stuck job(s) to SCHEDULED due to agent unhealthy: {}",
+                                resetCount, server.getSystemName());
+                    }
+                }
+            });
+        }
+
+        // Auto-sync: If user set ONLINE but agent is not healthy, resync config
+        // A drained agent exits on purpose; the restart/redeploy that requested it starts it again
+        if (!isHealthy && !isDrainRequested(queueName)) {
+            log.info("Agent {} is expected ONLINE but unhealthy, triggering config sync...",
+                    server.getSystemName());
+            triggerConfigSync(server);
+        }
+    }
+
+    private boolean isDrainRequested(String queueName) {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(AgentManager.DRAIN_KEY_PREFIX + queueName));
     }
 
     /**
      * Sync config and restart agent when status mismatch detected
-     * Applies cooldown to prevent repeated sync attempts
+     * Applies cooldown to prevent repeated sync attempts; the sync itself runs on configSyncExecutor
      */
     private void triggerConfigSync(JobServerVO server) {
         String serverId = server.getSystemId();
@@ -131,27 +334,44 @@ public class AgentHealthChecker {
             return;
         }
 
+        if (server.getHostIpAddr() == null || server.getFolderPath() == null) {
+            return;
+        }
+        if (!syncInProgress.add(serverId)) {
+            log.debug("Skipping config sync for {} - previous sync still running", server.getSystemName());
+            return;
+        }
+        // Record sync attempt time before trying
+        lastSyncAttempt.put(serverId, now);
         try {
-            if (server.getHostIpAddr() != null && server.getFolderPath() != null) {
-                // Record sync attempt time before trying
-                lastSyncAttempt.put(serverId, now);
-
-                // Upload config only (not full JAR) and restart
-                sshService.syncConfigAndRestart(
-                        server.getHostIpAddr(),
-                        server.getSshUser(),
-                        server.getSshPassword(),
-                        server.getFolderPath(),
-                        server.getQueueName(),
-                        server.getAgentPort()
-                );
-                log.info("Config sync triggered for: {} (next sync allowed in {} seconds)",
-                        server.getSystemName(), SYNC_COOLDOWN / 1000);
-            }
+            configSyncExecutor.execute(() -> syncConfig(server));
+        } catch (Exception e) {
+            syncInProgress.remove(serverId);
+            lastSyncAttempt.remove(serverId);
+            log.error("Failed to queue config sync for {}: {}", server.getSystemName(), e.getMessage());
+        }
+    }
+
+    private void syncConfig(JobServerVO server) {
+        String serverId = server.getSystemId();
+        try {
+            // Upload config only (not full JAR) and restart
+            sshService.syncConfigAndRestart(
+                    server.getHostIpAddr(),
+                    server.getSshUser(),
+                    server.getSshPassword(),
+                    server.getFolderPath(),
+                    server.getQueueName(),
+                    server.getAgentPort()
+            );
+            log.info("Config sync triggered for: {} (next sync allowed in {} seconds)",
+                    server.getSystemName(), SYNC_COOLDOWN / 1000);
         } catch (Exception e) {
             log.error("Failed to sync config for {}: {}", server.getSystemName(), e.getMessage());
             // Remove from cooldown map on failure so it can retry sooner
             lastSyncAttempt.remove(serverId);
+        } finally {
+            syncInProgress.remove(serverId);
         }
     }
 }
@@ -0,0 +1,41 @@
+package com.tes.batch.scheduler.agent;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory heartbeat liveness per agent queue, kept by {@link AgentHealthChecker} from heartbeat
+ * and key-expiry events. Read on every dispatch, so availability checks never query the database.
+ */
+@Component
+public class AgentHealthTable {
+
+    private final Map<String, Boolean> alive = new ConcurrentHashMap<>();
+
+    /**
+     * Heartbeat liveness of the queue's agent, or fallback if nothing has been observed for it yet
+     */
+    public boolean isAlive(String queueName, boolean fallback) {
+        Boolean value = queueName != null ? alive.get(queueName) : null;
+        return value != null ? value : fallback;
+    }
+
+    /**
+     * True if the queue is known and its liveness already equals the given value
+     */
+    public boolean matches(String queueName, boolean value) {
+        Boolean current = alive.get(queueName);
+        return current != null && current == value;
+    }
+
+    void put(String queueName, boolean value) {
+        alive.put(queueName, value);
+    }
+
+    void retainAll(Collection<String> queueNames) {
+        alive.keySet().retainAll(queueNames);
+    }
+}
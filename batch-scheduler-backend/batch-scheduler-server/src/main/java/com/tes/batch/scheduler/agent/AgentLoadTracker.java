@@ -0,0 +1,184 @@
+package com.tes.batch.scheduler.agent;
+
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cached view of agent load, refreshed from the load metrics agents publish in their heartbeats
+ * (agent:info:{queue}). Read on every dispatch, so lookups never touch Redis.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AgentLoadTracker {
+
+    private static final String INFO_KEY_PREFIX = "agent:info:";
+    private static final long STALE_AFTER_MS = 30000;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    private final Map<String, AgentLoad> loads = new ConcurrentHashMap<>();
+
+    /**
+     * Reload load metrics for the given queues in one pipelined round trip.
+     */
+    @SuppressWarnings("unchecked")
+    public void refresh(Collection<String> queueNames) {
+        if (queueNames.isEmpty()) {
+            loads.clear();
+            return;
+        }
+        List<String> queues = List.copyOf(queueNames);
+        List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (String queue : queues) {
+                    ops.opsForHash().entries(INFO_KEY_PREFIX + queue);
+                }
+                return null;
+            }
+        });
+
+        for (int i = 0; i < queues.size(); i++) {
+            Object result = results.get(i);
+            if (result instanceof Map<?, ?> info && info.containsKey("activeJobs")) {
+                update(queues.get(i), (Map<Object, Object>) info);
+            } else {
+                loads.remove(queues.get(i));
+            }
+        }
+        loads.keySet().retainAll(queues);
+    }
+
+    /**
+     * Reload one queue's load metrics, e.g. right after its heartbeat
+     */
+    public void refresh(String queueName) {
+        Map<Object, Object> info = redisTemplate.opsForHash().entries(INFO_KEY_PREFIX + queueName);
+        if (info.containsKey("activeJobs")) {
+            update(queueName, info);
+        } else {
+            loads.remove(queueName);
+        }
+    }
+
+    /**
+     * Refresh the cached entry in place, so dispatches counted since the last heartbeat survive reloads
+     */
+    private void update(String queueName, Map<Object, Object> info) {
+        loads.compute(queueName, (queue, load) -> {
+            AgentLoad updated = load != null ? load : new AgentLoad();
+            updated.update(info);
+            return updated;
+        });
+    }
+
+    /**
+     * Forget a queue whose agent is gone
+     */
+    public void remove(String queueName) {
+        loads.remove(queueName);
+    }
+
+    /**
+     * Current load for a queue, or null if the agent has not reported load recently
+     */
+    public AgentLoad getLoad(String queueName) {
+        AgentLoad load = queueName != null ? loads.get(queueName) : null;
+        if (load == null || System.currentTimeMillis() - load.getLastHeartbeat() > STALE_AFTER_MS) {
+            return null;
+        }
+        return load;
+    }
+
+    /**
+     * True if the agent's last heartbeat announced drain mode; it must not be sent new work
+     */
+    public boolean isDraining(String queueName) {
+        AgentLoad load = queueName != null ? loads.get(queueName) : null;
+        return load != null && load.isDraining();
+    }
+
+    /**
+     * Lower is better. Agents without fresh metrics sort last.
+     */
+    public double score(String queueName) {
+        AgentLoad load = getLoad(queueName);
+        return load != null ? load.score() : Double.MAX_VALUE;
+    }
+
+    /**
+     * Count a dispatch against the cached view so bursts between heartbeats spread across agents
+     */
+    public void recordDispatch(String queueName) {
+        AgentLoad load = queueName != null ? loads.get(queueName) : null;
+        if (load != null) {
+            load.getDispatchedSinceHeartbeat().incrementAndGet();
+        }
+    }
+
+    @Data
+    public static class AgentLoad {
+        private int activeJobs;
+        private int availablePermits;
+        private int maxConcurrentJobs;
+        private int executorQueueSize;
+        private int cpuCount;
+        private double loadAverage;
+        private long freeMemoryBytes;
+        private long lastHeartbeat;
+        private String status;
+        private final AtomicInteger dispatchedSinceHeartbeat = new AtomicInteger();
+
+        public boolean isDraining() {
+            return "DRAINING".equals(status) || "DRAINED".equals(status);
+        }
+
+        /**
+         * Slot utilization (including queued and just-dispatched work) plus a share of the per-CPU load average
+         */
+        public double score() {
+            double slots = Math.max(1, maxConcurrentJobs);
+            double utilization = (activeJobs + executorQueueSize + dispatchedSinceHeartbeat.get()) / slots;
+            double cpuLoad = loadAverage >= 0 && cpuCount > 0 ? loadAverage / cpuCount : 0;
+            return utilization + 0.5 * cpuLoad;
+        }
+
+        /**
+         * Take the metrics of the agent's latest heartbeat; a new heartbeat already counts the
+         * dispatches made before it, so only then does the optimistic count start over
+         */
+        void update(Map<Object, Object> info) {
+            long heartbeat = info.get("lastHeartbeat") instanceof Number n ? n.longValue() : 0;
+            if (heartbeat != lastHeartbeat) {
+                dispatchedSinceHeartbeat.set(0);
+            }
+            setActiveJobs(intValue(info.get("activeJobs")));
+            setAvailablePermits(intValue(info.get("availablePermits")));
+            setMaxConcurrentJobs(intValue(info.get("maxConcurrentJobs")));
+            setExecutorQueueSize(intValue(info.get("executorQueueSize")));
+            setCpuCount(intValue(info.get("cpuCount")));
+            setLoadAverage(info.get("loadAverage") instanceof Number n ? n.doubleValue() : -1);
+            setFreeMemoryBytes(info.get("freeMemoryBytes") instanceof Number n ? n.longValue() : 0);
+            setLastHeartbeat(heartbeat);
+            setStatus(info.get("status") instanceof String status ? status : null);
+        }
+
+        private static int intValue(Object value) {
+            return value instanceof Number n ? n.intValue() : 0;
+        }
+    }
+}
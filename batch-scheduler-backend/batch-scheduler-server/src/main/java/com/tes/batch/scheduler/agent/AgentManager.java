@@ -5,8 +5,12 @@ import com.tes.batch.scheduler.domain.server.mapper.JobServerMapper;
 import com.tes.batch.scheduler.domain.server.vo.JobServerVO;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Manages Agent lifecycle (deploy, start, stop)
  */
@@ -17,6 +21,13 @@ public class AgentManager {
 
     private final AgentDeployer agentDeployer;
     private final JobServerMapper serverMapper;
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    /** Drain control key polled by the agent (agent:drain:{queue}) */
+    public static final String DRAIN_KEY_PREFIX = "agent:drain:";
+
+    @Value("${app.agent.drain-timeout-seconds:600}")
+    private long drainTimeoutSeconds;
 
     /**
      * Validate server requirements before registration (e.g., Java for JAR deployment)
@@ -98,19 +109,44 @@ public class AgentManager {
     }
 
     /**
-     * Restart agent on server
+     * Ask the agent to drain: it stops taking messages, finishes in-flight jobs and exits.
+     * Blocks until the agent has exited or the drain timeout passes.
+     *
+     * @return true if the agent drained (or was not running), false on timeout
      */
-    public void restartAgent(String systemId, String privateKeyPath) {
-        stopAgent(systemId, privateKeyPath);
+    public boolean drainAgent(String systemId) {
+        JobServerVO server = serverMapper.findById(systemId);
+        if (server == null) {
+            throw new IllegalArgumentException("Server not found: " + systemId);
+        }
+        String queueName = server.getQueueName();
+        String healthKey = "agent:health:" + queueName;
+        if (!Boolean.TRUE.equals(redisTemplate.hasKey(healthKey))) {
+            log.info("Agent on {} is not running, nothing to drain", server.getSystemName());
+            return true;
+        }
 
-        // Wait a bit before starting
+        String drainKey = DRAIN_KEY_PREFIX + queueName;
+        // Outlives the wait so a slow drain is not cancelled by key expiry; the next agent start clears it
+        redisTemplate.opsForValue().set(drainKey, System.currentTimeMillis(), drainTimeoutSeconds + 300, TimeUnit.SECONDS);
+        log.info("Drain requested for agent on {} (timeout {}s)", server.getSystemName(), drainTimeoutSeconds);
+
+        long deadline = System.currentTimeMillis() + drainTimeoutSeconds * 1000;
         try {
-            Thread.sleep(3000);
+            while (System.currentTimeMillis() < deadline) {
+                Object status = redisTemplate.opsForHash().get("agent:info:" + queueName, "status");
+                if ("DRAINED".equals(status) || !Boolean.TRUE.equals(redisTemplate.hasKey(healthKey))) {
+                    log.info("Agent on {} drained", server.getSystemName());
+                    return true;
+                }
+                Thread.sleep(2000);
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
+            return false;
         }
-
-        startAgent(systemId, privateKeyPath);
+        log.warn("Agent on {} did not drain within {}s", server.getSystemName(), drainTimeoutSeconds);
+        return false;
     }
 
     /**
@@ -0,0 +1,236 @@
+package com.tes.batch.scheduler.agent;
+
+import com.tes.batch.scheduler.domain.job.vo.JobVO;
+import com.tes.batch.scheduler.domain.server.mapper.JobServerMapper;
+import com.tes.batch.scheduler.domain.server.vo.JobServerVO;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks the server a job is dispatched to from its primary/secondary/tertiary servers.
+ *
+ * priority     - first ONLINE and healthy server in primary -> secondary -> tertiary order
+ * least-loaded - eligible server with the lowest load score from heartbeats
+ * power-of-two - lower-scored of two random eligible servers
+ *
+ * Jobs with a pool_name are published to the shared pool queue; the selected member is only
+ * a provisional owner for the run log until the agent that picks the job up reports back.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ServerSelector {
+
+    public enum Policy { PRIORITY, LEAST_LOADED, POWER_OF_TWO }
+
+    /** Queue name prefix for pool-level queues (job:queue:pool:{poolName}) */
+    public static final String POOL_QUEUE_PREFIX = "pool:";
+
+    private final JobServerMapper serverMapper;
+    private final AgentLoadTracker loadTracker;
+    private final AgentHealthTable healthTable;
+    private final AgentFailureDetector failureDetector;
+
+    @Value("${app.scheduler.server-selection:priority}")
+    private String policyName;
+
+    private Policy policy;
+
+    @PostConstruct
+    public void init() {
+        try {
+            policy = Policy.valueOf(policyName.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Unknown app.scheduler.server-selection: " + policyName);
+        }
+        log.info("Server selection policy: {}", policy);
+    }
+
+    /**
+     * Select an available server for the job, or null if none of its servers is available
+     */
+    public JobServerVO select(JobVO job) {
+        return select(job, null);
+    }
+
+    /**
+     * Select against a {@link #snapshot()} of the servers instead of querying them per job.
+     * A null snapshot queries the servers.
+     */
+    public JobServerVO select(JobVO job, Map<String, JobServerVO> servers) {
+        if (job.getPoolName() != null) {
+            return selectPoolMember(job, servers);
+        }
+        List<JobServerVO> candidates = findAvailableServers(job, policy == Policy.PRIORITY, servers);
+        if (candidates.isEmpty()) {
+            return null;
+        }
+
+        JobServerVO selected = switch (policy) {
+            case PRIORITY -> candidates.get(0);
+            case LEAST_LOADED -> leastLoaded(candidates);
+            case POWER_OF_TWO -> powerOfTwo(candidates);
+        };
+
+        if (policy != Policy.PRIORITY) {
+            log.debug("Selected server {} for job {} by {} among {} candidate(s)",
+                    selected.getSystemName(), job.getJobId(), policy, candidates.size());
+        } else if (!selected.getSystemId().equals(job.getSystemId())) {
+            log.info("Failover to {} server {} for job {}",
+                    determineServerRole(job, selected.getSystemId()), selected.getSystemId(), job.getJobId());
+        }
+        return selected;
+    }
+
+    /**
+     * True if at least one of the job's servers is ONLINE and healthy
+     */
+    public boolean hasAvailableServer(JobVO job) {
+        return hasAvailableServer(job, null);
+    }
+
+    public boolean hasAvailableServer(JobVO job, Map<String, JobServerVO> servers) {
+        if (job.getPoolName() != null) {
+            return !findAvailablePoolMembers(job.getPoolName(), servers).isEmpty();
+        }
+        return !findAvailableServers(job, true, servers).isEmpty();
+    }
+
+    /**
+     * All servers by systemId in system name order, read in one query, for selecting servers for many jobs at once
+     */
+    public Map<String, JobServerVO> snapshot() {
+        Map<String, JobServerVO> servers = new LinkedHashMap<>();
+        for (JobServerVO server : serverMapper.findAll()) {
+            servers.put(server.getSystemId(), server);
+        }
+        return servers;
+    }
+
+    /**
+     * Queue the job is published to: the pool queue for pool jobs, otherwise the server's own queue
+     */
+    public String queueFor(JobVO job, JobServerVO server) {
+        return job.getPoolName() != null ? POOL_QUEUE_PREFIX + job.getPoolName() : server.getQueueName();
+    }
+
+    /**
+     * Record that a message was published to the queue
+     */
+    public void recordDispatch(String queueName) {
+        loadTracker.recordDispatch(queueName);
+    }
+
+    /**
+     * Check if server is available (ONLINE, healthy, not suspected by the failure detector and not draining)
+     */
+    public boolean isServerAvailable(JobServerVO server) {
+        if (server == null) {
+            return false;
+        }
+        boolean isOnline = "ONLINE".equals(server.getAgentStatus());
+        // Live heartbeat state; the is_healthy column only until the first heartbeat event or reconcile pass
+        boolean isHealthy = healthTable.isAlive(server.getQueueName(), Boolean.TRUE.equals(server.getIsHealthy()));
+        return isOnline && isHealthy && !failureDetector.isSuspected(server.getQueueName())
+                && !loadTracker.isDraining(server.getQueueName());
+    }
+
+    /**
+     * Determine the role of the selected server (primary, secondary, or tertiary)
+     */
+    public String determineServerRole(JobVO job, String selectedSystemId) {
+        if (job.getPoolName() != null) {
+            return "pool " + job.getPoolName();
+        } else if (selectedSystemId.equals(job.getSystemId())) {
+            return "primary";
+        } else if (selectedSystemId.equals(job.getSecondarySystemId())) {
+            return "secondary";
+        } else if (selectedSystemId.equals(job.getTertiarySystemId())) {
+            return "tertiary";
+        }
+        return "unknown";
+    }
+
+    /**
+     * Available servers in primary -> secondary -> tertiary order; stops at the first one if firstOnly
+     */
+    private List<JobServerVO> findAvailableServers(JobVO job, boolean firstOnly, Map<String, JobServerVO> servers) {
+        List<JobServerVO> candidates = new ArrayList<>(3);
+        String[] systemIds = {job.getSystemId(), job.getSecondarySystemId(), job.getTertiarySystemId()};
+        String[] roles = {"Primary", "Secondary", "Tertiary"};
+        for (int i = 0; i < systemIds.length; i++) {
+            if (systemIds[i] == null) {
+                continue;
+            }
+            JobServerVO server = servers != null ? servers.get(systemIds[i]) : serverMapper.findById(systemIds[i]);
+            if (isServerAvailable(server)) {
+                candidates.add(server);
+                if (firstOnly) {
+                    break;
+                }
+            } else {
+                log.info("{} server {} is unavailable for job {}", roles[i], systemIds[i], job.getJobId());
+            }
+        }
+        return candidates;
+    }
+
+    private JobServerVO selectPoolMember(JobVO job, Map<String, JobServerVO> servers) {
+        List<JobServerVO> members = findAvailablePoolMembers(job.getPoolName(), servers);
+        if (members.isEmpty()) {
+            log.info("No available member in server pool {} for job {}", job.getPoolName(), job.getJobId());
+            return null;
+        }
+        // Member order carries no preference in a pool, so PRIORITY falls back to least-loaded
+        return policy == Policy.POWER_OF_TWO ? powerOfTwo(members) : leastLoaded(members);
+    }
+
+    private List<JobServerVO> findAvailablePoolMembers(String poolName, Map<String, JobServerVO> servers) {
+        List<JobServerVO> members = servers != null
+                ? servers.values().stream()
+                        .filter(server -> poolName.equals(server.getPoolName()))
+                        .toList()
+                : serverMapper.findByPoolName(poolName);
+        return members.stream()
+                .filter(this::isServerAvailable)
+                .toList();
+    }
+
+    /**
+     * Ties keep priority order, so equal load still prefers the primary
+     */
+    private JobServerVO leastLoaded(List<JobServerVO> candidates) {
+        JobServerVO best = candidates.get(0);
+        double bestScore = loadTracker.score(best.getQueueName());
+        for (int i = 1; i < candidates.size(); i++) {
+            double score = loadTracker.score(candidates.get(i).getQueueName());
+            if (score < bestScore) {
+                best = candidates.get(i);
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private JobServerVO powerOfTwo(List<JobServerVO> candidates) {
+        if (candidates.size() <= 2) {
+            return leastLoaded(candidates);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int a = random.nextInt(candidates.size());
+        int b = random.nextInt(candidates.size() - 1);
+        if (b >= a) {
+            b++;
+        }
+        return leastLoaded(List.of(candidates.get(Math.min(a, b)), candidates.get(Math.max(a, b))));
+    }
+}
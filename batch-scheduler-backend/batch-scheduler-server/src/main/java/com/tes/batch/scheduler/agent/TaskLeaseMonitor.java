@@ -0,0 +1,173 @@
+package com.tes.batch.scheduler.agent;
+
+import com.tes.batch.common.dto.JobMessage;
+import com.tes.batch.common.dto.JobResult;
+import com.tes.batch.common.enums.TaskStatus;
+import com.tes.batch.common.util.MessageCodec;
+import com.tes.batch.scheduler.domain.job.mapper.JobMapper;
+import com.tes.batch.scheduler.domain.job.mapper.JobRunLogMapper;
+import com.tes.batch.scheduler.domain.job.vo.JobRunLogVO;
+import com.tes.batch.scheduler.domain.job.vo.JobVO;
+import com.tes.batch.scheduler.domain.server.vo.JobServerVO;
+import com.tes.batch.scheduler.message.RedisMessagePublisher;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reacts to lapsed task execution leases (task:lease:{taskId}:{attempt}, see the agent's
+ * TaskLeaseManager) reported by keyspace expiry events, which {@link AgentHealthChecker} enables.
+ *
+ * A lapsed lease means the agent died or the task hung past its time limit. If the task still
+ * has attempts left, its message (task:lease-msg:{taskId}) is published for the next attempt to
+ * another available server of the job, falling back to any available one, after the job's retry
+ * delay; otherwise the run fails. The agent that held the lapsed attempt is told to abandon that
+ * attempt, in case it is alive but hung or cut off from Redis, and JobResultListener drops any
+ * result it still sends.
+ * Outcomes are pushed to job:result like an agent's, so JobResultListener applies the usual
+ * run log, job state, reschedule and workflow handling.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TaskLeaseMonitor implements MessageListener {
+
+    private static final String LEASE_PREFIX = "task:lease:";
+    private static final String LEASE_MESSAGE_PREFIX = "task:lease-msg:";
+    private static final String KEYSPACE_PATTERN = "__keyspace@*__:" + LEASE_PREFIX + "*";
+    private static final String RESULT_LIST_KEY = "job:result";
+    private static final Set<String> ACTIVE_LOG_STATUSES = Set.of("PENDING", "RUNNING", "RETRY");
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private final MessageCodec messageCodec;
+    private final JobMapper jobMapper;
+    private final JobRunLogMapper jobRunLogMapper;
+    private final ServerSelector serverSelector;
+    private final RedisMessagePublisher messagePublisher;
+
+    @PostConstruct
+    public void subscribe() {
+        redisMessageListenerContainer.addMessageListener(this, new PatternTopic(KEYSPACE_PATTERN));
+        log.info("Subscribed to task execution lease expiry events");
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        // Deleted leases belong to finished tasks; only expiry matters
+        if (!"expired".equals(new String(message.getBody(), StandardCharsets.UTF_8))) {
+            return;
+        }
+        String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+        int keyStart = channel.indexOf(LEASE_PREFIX);
+        int attemptStart = channel.lastIndexOf(':');
+        if (keyStart < 0 || attemptStart <= keyStart + LEASE_PREFIX.length()) {
+            return;
+        }
+        String taskId = channel.substring(keyStart + LEASE_PREFIX.length(), attemptStart);
+        try {
+            onLeaseExpired(taskId, Integer.parseInt(channel.substring(attemptStart + 1)));
+        } catch (NumberFormatException e) {
+            log.warn("Unexpected lease key in expiry event: {}", channel);
+        } catch (Exception e) {
+            log.error("Failed to handle lapsed execution lease of task {}", taskId, e);
+        }
+    }
+
+    private void onLeaseExpired(String taskId, int attempt) {
+        JobMessage message = takeMessage(taskId);
+        JobRunLogVO runLog = jobRunLogMapper.findStateById(Long.parseLong(taskId));
+        if (runLog == null || !ACTIVE_LOG_STATUSES.contains(runLog.getStatus())) {
+            return; // The result made it; the agent just did not get to delete the lease
+        }
+        String reason = "Execution lease expired: agent " + runLog.getSystemName() + " stopped renewing it";
+        log.warn("{} (task {}, job {}, attempt {})", reason, taskId, runLog.getJobId(), attempt);
+
+        Map<String, JobServerVO> servers = serverSelector.snapshot();
+        abandonAttempt(taskId, attempt, runLog, message, servers);
+
+        int maxAttempts = message != null && message.getRetryCount() != null ? Math.max(1, message.getRetryCount()) : 1;
+        JobVO job = message != null && attempt < maxAttempts - 1 ? jobMapper.findById(message.getJobId()) : null;
+        JobServerVO server = job != null ? selectFailover(job, runLog.getSystemId(), servers) : null;
+        if (server == null) {
+            pushResult(runLog, taskId, TaskStatus.FAILED, attempt, reason);
+            return;
+        }
+
+        pushResult(runLog, taskId, TaskStatus.RETRY, attempt, reason + "; retrying on " + server.getSystemName());
+        String queueName = serverSelector.queueFor(job, server);
+        message.setAttempt(attempt + 1);
+        // The next attempt waits out the job's retry delay, as it would after a failure on the agent
+        message.setExecutionDelay(message.getRetryDelay());
+        message.setQueueName(queueName);
+        try {
+            messagePublisher.publishJob(queueName, message);
+            serverSelector.recordDispatch(queueName);
+            log.info("Retrying task {} (job {}) as attempt {} on {}", taskId, message.getJobId(), attempt + 1, queueName);
+        } catch (Exception e) {
+            pushResult(runLog, taskId, TaskStatus.FAILED, attempt + 1, "Failed to publish retry after lapsed lease: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Tell the agent that ran the lapsed attempt to stop it; later attempts of the task are not affected
+     */
+    private void abandonAttempt(String taskId, int attempt, JobRunLogVO runLog, JobMessage message,
+                                Map<String, JobServerVO> servers) {
+        JobServerVO lost = runLog.getSystemId() != null ? servers.get(runLog.getSystemId()) : null;
+        String queueName = message != null ? message.getQueueName() : null;
+        String poolName = queueName != null && queueName.startsWith(ServerSelector.POOL_QUEUE_PREFIX)
+                ? queueName.substring(ServerSelector.POOL_QUEUE_PREFIX.length()) : null;
+        if (lost == null && poolName == null) {
+            return;
+        }
+        try {
+            messagePublisher.publishAttemptCancel(taskId, attempt, lost != null ? lost.getQueueName() : null, poolName);
+        } catch (Exception e) {
+            log.warn("Failed to send abandon for task {} attempt {}: {}", taskId, attempt, e.getMessage());
+        }
+    }
+
+    /**
+     * Another available server of the job if there is one, else any available one (a hung task on a live agent)
+     */
+    private JobServerVO selectFailover(JobVO job, String lostSystemId, Map<String, JobServerVO> servers) {
+        JobServerVO lost = lostSystemId != null ? servers.remove(lostSystemId) : null;
+        JobServerVO server = serverSelector.select(job, servers);
+        if (server == null && lost != null) {
+            servers.put(lostSystemId, lost);
+            server = serverSelector.select(job, servers);
+        }
+        return server;
+    }
+
+    private JobMessage takeMessage(String taskId) {
+        byte[] key = (LEASE_MESSAGE_PREFIX + taskId).getBytes(StandardCharsets.UTF_8);
+        byte[] raw = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.stringCommands().getDel(key));
+        return raw != null ? messageCodec.decode(raw, JobMessage.class) : null;
+    }
+
+    private void pushResult(JobRunLogVO runLog, String taskId, TaskStatus status, int attempt, String error) {
+        JobResult result = JobResult.builder()
+                .jobId(runLog.getJobId())
+                .taskId(taskId)
+                .workflowRunId(runLog.getWorkflowRunId())
+                .status(status)
+                .error(error)
+                .endTime(System.currentTimeMillis())
+                .retryAttempt(attempt)
+                .build();
+        redisTemplate.opsForList().leftPush(RESULT_LIST_KEY, result);
+    }
+}
@@ -0,0 +1,36 @@
+package com.tes.batch.scheduler.config;
+
+import com.tes.batch.common.util.MessageCodec;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * Redis value serializer backed by {@link MessageCodec}: writes the configured format
+ * (compressed when large) and reads every format the codec knows.
+ */
+public class MessageCodecRedisSerializer implements RedisSerializer<Object> {
+
+    private final MessageCodec codec;
+
+    public MessageCodecRedisSerializer(MessageCodec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        try {
+            return codec.encode(value);
+        } catch (IllegalArgumentException e) {
+            throw new SerializationException("Could not write Redis value", e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        try {
+            return codec.decode(bytes);
+        } catch (IllegalArgumentException e) {
+            throw new SerializationException("Could not read Redis value", e);
+        }
+    }
+}
@@ -3,7 +3,9 @@ package com.tes.batch.scheduler.config;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.tes.batch.common.util.MessageCodec;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
@@ -26,13 +28,29 @@ public class RedisConfig {
         return objectMapper;
     }
 
+    @Bean
+    public MessageCodec messageCodec(ObjectMapper redisObjectMapper,
+                                     @Value("${app.redis.codec:smile}") String format,
+                                     @Value("${app.redis.compression-threshold-bytes:8192}") int compressionThresholdBytes) {
+        MessageCodec.Format writeFormat;
+        try {
+            writeFormat = MessageCodec.Format.valueOf(format.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Unknown app.redis.codec: " + format);
+        }
+        return new MessageCodec(redisObjectMapper, writeFormat, compressionThresholdBytes);
+    }
+
     @Bean
     public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory,
-                                                       ObjectMapper redisObjectMapper) {
+                                                       ObjectMapper redisObjectMapper,
+                                                       MessageCodec messageCodec) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
         template.setKeySerializer(new StringRedisSerializer());
-        template.setValueSerializer(new GenericJackson2JsonRedisSerializer(redisObjectMapper));
+        // [P10] Queue messages and results go through the binary codec, deflated when large;
+        // hash values stay JSON since they are small and read field by field
+        template.setValueSerializer(new MessageCodecRedisSerializer(messageCodec));
         template.setHashKeySerializer(new StringRedisSerializer());
         template.setHashValueSerializer(new GenericJackson2JsonRedisSerializer(redisObjectMapper));
         return template;
@@ -44,7 +62,7 @@ public class RedisConfig {
         RedisMessageListenerContainer container = new RedisMessageListenerContainer();
         container.setConnectionFactory(connectionFactory);
 
-        // Reduced thread pool - only used for log streaming (Pub/Sub)
+        // Reduced thread pool - only used for log streaming and agent health events (Pub/Sub)
         // Job/Workflow results now use Redis List (BRPOP) polling
         container.setSubscriptionExecutor(Executors.newFixedThreadPool(1));
         container.setTaskExecutor(Executors.newFixedThreadPool(2));
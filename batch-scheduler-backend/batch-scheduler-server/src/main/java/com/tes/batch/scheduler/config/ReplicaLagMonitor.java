@@ -0,0 +1,105 @@
+package com.tes.batch.scheduler.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Measures the replica's replication lag every app.datasource.replica.lag-check-interval.
+ *
+ * The replica is usable while the last check succeeded and the lag is at most
+ * app.datasource.replica.max-lag; otherwise read-only transactions fall back to the primary until
+ * it catches up. It starts unusable until the first check passes.
+ *
+ * A standby whose WAL receiver is not streaming (primary unreachable, replication broken) has
+ * replayed everything it received and would report no lag while falling ever further behind, so it is
+ * unusable too. Reading the receiver status needs pg_read_all_stats (or superuser) for the replica user;
+ * without it the replica is never used.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "app.datasource.replica", name = "url")
+public class ReplicaLagMonitor {
+
+    /**
+     * Lag in ms, NULL if the standby is not streaming from the primary; a streaming standby that has
+     * replayed everything it received is not lagging, however idle the primary
+     */
+    private static final String LAG_QUERY = """
+            SELECT CASE
+                WHEN NOT pg_is_in_recovery() THEN 0
+                WHEN NOT EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE status = 'streaming') THEN NULL
+                WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                ELSE COALESCE(EXTRACT(EPOCH FROM (now() - pg_last_xact_replay_timestamp())) * 1000, 0)
+            END::bigint""";
+
+    private final DataSource replicaDataSource;
+
+    @Value("${app.datasource.replica.max-lag:2000}")
+    private long maxLagMs;
+
+    private volatile boolean usable;
+    private volatile long lagMs = -1;
+
+    public ReplicaLagMonitor(@Qualifier("replicaDataSource") DataSource replicaDataSource) {
+        this.replicaDataSource = replicaDataSource;
+    }
+
+    public boolean isReplicaUsable() {
+        return usable;
+    }
+
+    /**
+     * Last measured lag in ms, -1 if the last check failed or the replica was not streaming
+     */
+    public long getLagMs() {
+        return lagMs;
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.replica.lag-check-interval:1000}")
+    public void check() {
+        long lag;
+        boolean streaming;
+        try (Connection connection = replicaDataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(LAG_QUERY)) {
+            rs.next();
+            lag = rs.getLong(1);
+            streaming = !rs.wasNull();
+        } catch (Exception e) {
+            lagMs = -1;
+            if (usable) {
+                usable = false;
+                log.warn("Replica unreachable, read-only transactions use the primary: {}", e.getMessage());
+            }
+            return;
+        }
+        if (!streaming) {
+            lagMs = -1;
+            if (usable) {
+                usable = false;
+                log.warn("Replica WAL receiver is not streaming (or its status is not readable without pg_read_all_stats), "
+                        + "read-only transactions use the primary");
+            }
+            return;
+        }
+        lagMs = lag;
+        boolean nowUsable = lag <= maxLagMs;
+        if (nowUsable != usable) {
+            usable = nowUsable;
+            if (nowUsable) {
+                log.info("Replica usable (lag {}ms), read-only transactions use the replica", lag);
+            } else {
+                log.warn("Replica lag {}ms exceeds {}ms, read-only transactions use the primary", lag, maxLagMs);
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.tes.batch.scheduler.domain;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque cursors for keyset pagination of list APIs.
+ *
+ * A cursor holds the sort key of the last row of a page; the next page continues strictly after it,
+ * so page N costs the same as page 1. Each key is base64url-encoded and the keys are joined with '.'.
+ * Counts that come with a page stop at {@link #COUNT_CAP} rows.
+ */
+public final class PageCursor {
+
+    /** Totals are counted up to this many rows */
+    public static final int COUNT_CAP = 10000;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private PageCursor() {
+    }
+
+    public static String encode(Object... keys) {
+        StringBuilder cursor = new StringBuilder();
+        for (Object key : keys) {
+            if (cursor.length() > 0) {
+                cursor.append('.');
+            }
+            cursor.append(ENCODER.encodeToString(String.valueOf(key).getBytes(StandardCharsets.UTF_8)));
+        }
+        return cursor.toString();
+    }
+
+    /**
+     * Keys of a cursor, or null if there is none
+     */
+    public static String[] decode(String cursor, int keyCount) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        String[] parts = cursor.split("\\.", -1);
+        if (parts.length != keyCount) {
+            throw new IllegalArgumentException("Invalid page cursor");
+        }
+        try {
+            String[] keys = new String[keyCount];
+            for (int i = 0; i < keyCount; i++) {
+                keys[i] = new String(DECODER.decode(parts[i]), StandardCharsets.UTF_8);
+            }
+            return keys;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid page cursor");
+        }
+    }
+
+    /**
+     * Single numeric key of a cursor, or null if there is none
+     */
+    public static Long decodeLong(String cursor) {
+        String[] keys = decode(cursor, 1);
+        if (keys == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(keys[0]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid page cursor");
+        }
+    }
+
+    public static boolean isCapped(long total) {
+        return total >= COUNT_CAP;
+    }
+}
@@ -0,0 +1,21 @@
+package com.tes.batch.scheduler.domain;
+
+/**
+ * Search terms of list APIs. Mappers match them with ILIKE ... ESCAPE '\', which the pg_trgm GIN
+ * indexes (V27 migration) serve for jobs, workflows and run logs.
+ */
+public final class TextSearch {
+
+    private TextSearch() {
+    }
+
+    /**
+     * Trimmed term with LIKE wildcards escaped, or null if blank
+     */
+    public static String escape(String input) {
+        if (input == null || input.isBlank()) {
+            return null;
+        }
+        return input.trim().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
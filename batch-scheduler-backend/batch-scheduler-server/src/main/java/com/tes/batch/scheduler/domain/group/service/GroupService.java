@@ -7,6 +7,7 @@ import com.tes.batch.scheduler.domain.group.vo.JobGroupVO;
 import com.tes.batch.scheduler.domain.job.mapper.JobMapper;
 import com.tes.batch.scheduler.domain.user.mapper.UserMapper;
 import com.tes.batch.scheduler.security.SecurityUtils;
+import com.tes.batch.scheduler.workflow.WorkflowPlanCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -25,6 +26,7 @@ public class GroupService {
     private final JobMapper jobMapper;
     private final UserMapper userMapper;
     private final SecurityUtils securityUtils;
+    private final WorkflowPlanCache planCache;
 
     @Transactional(readOnly = true)
     public List<JobGroupVO> getGroups(GroupFilterRequest request) {
@@ -118,6 +120,8 @@ public class GroupService {
         existing.setLastRegUserId(securityUtils.getCurrentId());
 
         groupMapper.update(existing);
+        // Group names are joined into cached workflow plans
+        planCache.invalidateAll();
         return existing;
     }
 
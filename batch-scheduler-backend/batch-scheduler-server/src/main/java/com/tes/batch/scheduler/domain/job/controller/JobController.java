@@ -38,9 +38,7 @@ public class JobController {
     @PostMapping("/filter")
     public ApiResponse<List<JobVO>> getJobs(@RequestBody JobFilterRequest request) {
         try {
-            List<JobVO> jobs = jobService.getJobs(request);
-            long total = jobService.countJobs(request);
-            return ApiResponse.success(jobs, total);
+            return jobService.filterJobs(request);
         } catch (Exception e) {
             log.error("Failed to get jobs", e);
             return ApiResponse.error(e.getMessage());
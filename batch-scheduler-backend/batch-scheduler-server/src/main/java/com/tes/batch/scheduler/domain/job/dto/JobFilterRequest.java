@@ -29,4 +29,9 @@ public class JobFilterRequest {
     private Integer page = 0;
     @JsonAlias("page_size")
     private Integer size = 20;
+    /** next_cursor of the previous page; when set, page_number is ignored */
+    private String cursor;
+    /** Total (capped) row count with the page */
+    @JsonAlias("include_total")
+    private Boolean includeTotal = true;
 }
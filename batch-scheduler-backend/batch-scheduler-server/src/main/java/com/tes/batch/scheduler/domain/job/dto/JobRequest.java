@@ -22,6 +22,9 @@ public class JobRequest {
     @JsonProperty("tertiary_system_id")
     private String tertiarySystemId;
 
+    @JsonProperty("pool_name")
+    private String poolName;
+
     @JsonProperty("group_id")
     private String groupId;
 
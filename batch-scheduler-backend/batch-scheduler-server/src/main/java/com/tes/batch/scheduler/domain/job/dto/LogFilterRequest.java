@@ -31,4 +31,11 @@ public class LogFilterRequest {
 
     @JsonAlias("page_size")
     private Integer size = 20;
+
+    /** next_cursor of the previous page; when set, page_number is ignored */
+    private String cursor;
+
+    /** Total (capped) row count with the page */
+    @JsonAlias("include_total")
+    private Boolean includeTotal = true;
 }
@@ -4,6 +4,7 @@ import com.tes.batch.scheduler.domain.job.vo.JobVO;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -37,6 +38,9 @@ public interface JobMapper {
             @Param("lastResult") String lastResult,
             @Param("lastStartDateFrom") Long lastStartDateFrom,
             @Param("lastStartDateTo") Long lastStartDateTo,
+            @Param("afterRank") Integer afterRank,
+            @Param("afterJobName") String afterJobName,
+            @Param("afterJobId") String afterJobId,
             @Param("limit") int limit,
             @Param("offset") int offset
     );
@@ -51,7 +55,8 @@ public interface JobMapper {
             @Param("wfRegistered") Boolean wfRegistered,
             @Param("lastResult") String lastResult,
             @Param("lastStartDateFrom") Long lastStartDateFrom,
-            @Param("lastStartDateTo") Long lastStartDateTo
+            @Param("lastStartDateTo") Long lastStartDateTo,
+            @Param("cap") Integer cap
     );
 
     List<JobVO> findByFiltersAndGroupIds(
@@ -61,6 +66,9 @@ public interface JobMapper {
             @Param("isEnabled") Boolean isEnabled,
             @Param("currentState") String currentState,
             @Param("textSearch") String textSearch,
+            @Param("afterRank") Integer afterRank,
+            @Param("afterJobName") String afterJobName,
+            @Param("afterJobId") String afterJobId,
             @Param("limit") int limit,
             @Param("offset") int offset
     );
@@ -71,7 +79,8 @@ public interface JobMapper {
             @Param("systemId") String systemId,
             @Param("isEnabled") Boolean isEnabled,
             @Param("currentState") String currentState,
-            @Param("textSearch") String textSearch
+            @Param("textSearch") String textSearch,
+            @Param("cap") Integer cap
     );
 
     int insert(JobVO job);
@@ -84,6 +93,19 @@ public interface JobMapper {
             @Param("nextRunDate") Long nextRunDate
     );
 
+    /**
+     * Set the state of several jobs in one statement, clearing next_run_date
+     */
+    int updateStateByIds(
+            @Param("jobIds") Collection<String> jobIds,
+            @Param("currentState") String currentState
+    );
+
+    /**
+     * Current run_count of several jobs (only jobId and runCount are populated)
+     */
+    List<JobVO> findRunCountsByIds(@Param("jobIds") Collection<String> jobIds);
+
     int updateStateWithLastStart(
             @Param("jobId") String jobId,
             @Param("currentState") String currentState,
@@ -107,7 +129,9 @@ public interface JobMapper {
             @Param("jobId") String jobId,
             @Param("workflowId") String workflowId,
             @Param("priorityGroupId") String priorityGroupId,
-            @Param("workflowDelay") Integer workflowDelay
+            @Param("workflowDelay") Integer workflowDelay,
+            @Param("workflowMapParams") String workflowMapParams,
+            @Param("workflowMaxParallelism") Integer workflowMaxParallelism
     );
 
     int clearWorkflowInfo(@Param("priorityGroupId") String priorityGroupId);
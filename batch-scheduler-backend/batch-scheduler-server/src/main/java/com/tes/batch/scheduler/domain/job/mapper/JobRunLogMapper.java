@@ -1,6 +1,7 @@
 package com.tes.batch.scheduler.domain.job.mapper;
 
 import com.tes.batch.scheduler.domain.job.vo.JobRunLogVO;
+import com.tes.batch.scheduler.domain.job.vo.RunDeadlineVO;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
@@ -13,12 +14,22 @@ public interface JobRunLogMapper {
 
     JobRunLogVO findById(@Param("logId") Long logId);
 
+    /**
+     * Log without output and error
+     */
+    JobRunLogVO findStateById(@Param("logId") Long logId);
+
     List<JobRunLogVO> findByJobId(@Param("jobId") String jobId);
 
     JobRunLogVO findLatestByJobId(@Param("jobId") String jobId);
 
     List<JobRunLogVO> findByWorkflowRunId(@Param("workflowRunId") Long workflowRunId);
 
+    /**
+     * Logs of a workflow run without output and error
+     */
+    List<JobRunLogVO> findStatesByWorkflowRunId(@Param("workflowRunId") Long workflowRunId);
+
     List<JobRunLogVO> findByFilters(
             @Param("jobId") String jobId,
             @Param("systemId") String systemId,
@@ -27,6 +38,8 @@ public interface JobRunLogMapper {
             @Param("status") String status,
             @Param("reqStartDateFrom") Long reqStartDateFrom,
             @Param("reqStartDateTo") Long reqStartDateTo,
+            @Param("textSearch") String textSearch,
+            @Param("afterLogId") Long afterLogId,
             @Param("limit") int limit,
             @Param("offset") int offset
     );
@@ -38,7 +51,9 @@ public interface JobRunLogMapper {
             @Param("operation") String operation,
             @Param("status") String status,
             @Param("reqStartDateFrom") Long reqStartDateFrom,
-            @Param("reqStartDateTo") Long reqStartDateTo
+            @Param("reqStartDateTo") Long reqStartDateTo,
+            @Param("textSearch") String textSearch,
+            @Param("cap") Integer cap
     );
 
     List<JobRunLogVO> findByFiltersAndGroupIds(
@@ -49,6 +64,8 @@ public interface JobRunLogMapper {
             @Param("status") String status,
             @Param("reqStartDateFrom") Long reqStartDateFrom,
             @Param("reqStartDateTo") Long reqStartDateTo,
+            @Param("textSearch") String textSearch,
+            @Param("afterLogId") Long afterLogId,
             @Param("limit") int limit,
             @Param("offset") int offset
     );
@@ -60,7 +77,9 @@ public interface JobRunLogMapper {
             @Param("operation") String operation,
             @Param("status") String status,
             @Param("reqStartDateFrom") Long reqStartDateFrom,
-            @Param("reqStartDateTo") Long reqStartDateTo
+            @Param("reqStartDateTo") Long reqStartDateTo,
+            @Param("textSearch") String textSearch,
+            @Param("cap") Integer cap
     );
 
     long countByJobIdAndStatus(
@@ -70,6 +89,21 @@ public interface JobRunLogMapper {
 
     int insert(JobRunLogVO log);
 
+    /**
+     * Insert several run logs with one multi-row statement; sets each element's logId
+     */
+    int insertBatch(@Param("logs") List<JobRunLogVO> logs);
+
+    /**
+     * Insert run logs that already carry a logId from {@link #allocateLogIds(int)}
+     */
+    int insertBatchWithIds(@Param("logs") List<JobRunLogVO> logs);
+
+    /**
+     * Reserve count log ids from the log_id sequence
+     */
+    List<Long> allocateLogIds(@Param("count") int count);
+
     int updateStatus(
             @Param("logId") Long logId,
             @Param("status") String status,
@@ -82,6 +116,20 @@ public interface JobRunLogMapper {
             @Param("output") String output
     );
 
+    /**
+     * Like updateStatus, but only while the log is RUNNING; returns 0 if it was settled already
+     */
+    int updateRunningStatus(
+            @Param("logId") Long logId,
+            @Param("status") String status,
+            @Param("operation") String operation,
+            @Param("actualStartDate") Long actualStartDate,
+            @Param("actualEndDate") Long actualEndDate,
+            @Param("runDuration") String runDuration,
+            @Param("errors") String errors,
+            @Param("output") String output
+    );
+
     int updateStatusWithJobName(
             @Param("logId") Long logId,
             @Param("jobName") String jobName,
@@ -108,6 +156,34 @@ public interface JobRunLogMapper {
             @Param("output") String output
     );
 
+    /**
+     * Attribute a run log to the server owning the given queue (pool or stolen jobs)
+     */
+    int updateSystemByQueueName(@Param("logId") Long logId, @Param("queueName") String queueName);
+
+    /**
+     * Jobs that completed successfully in a workflow run (the run's checkpoint)
+     */
+    List<String> findSucceededJobIdsByWorkflowRunId(@Param("workflowRunId") Long workflowRunId);
+
+    /**
+     * PENDING and RUNNING logs with their job's max run duration (rebuilds the deadline index)
+     */
+    List<RunDeadlineVO> findActiveRunDeadlines();
+
+    /**
+     * Move a workflow step out of WAITING; returns 0 if it already left WAITING (claimed elsewhere)
+     */
+    int updateWaitingStatus(
+            @Param("logId") Long logId,
+            @Param("status") String status,
+            @Param("operation") String operation,
+            @Param("reqStartDate") Long reqStartDate,
+            @Param("systemId") String systemId,
+            @Param("systemName") String systemName,
+            @Param("errors") String errors
+    );
+
     int delete(@Param("logId") Long logId);
 
     int deleteByJobId(@Param("jobId") String jobId);
@@ -133,6 +209,15 @@ public interface JobRunLogMapper {
      */
     JobRunLogVO selectByTaskId(@Param("taskId") String taskId);
 
+    /**
+     * Highest attempt recorded in the retry log entries ({taskId}_retry_{n}) of a run, null if none
+     */
+    Integer findLatestRetryAttempt(
+            @Param("jobId") String jobId,
+            @Param("taskId") String taskId,
+            @Param("scheduledTime") Long scheduledTime
+    );
+
     /**
      * Count recent agent-related failures for a specific server
      */
@@ -146,37 +231,6 @@ public interface JobRunLogMapper {
      */
     Long findLatestAgentFailureTimeBySystemId(@Param("systemId") String systemId);
 
-    /**
-     * [P1] Batch: count recent agent failures for multiple servers in one query
-     */
-    List<Map<String, Object>> batchCountRecentAgentFailures(
-            @Param("systemIds") List<String> systemIds,
-            @Param("sinceTimestamp") Long sinceTimestamp
-    );
-
-    /**
-     * [P1] Batch: find latest agent failure time for multiple servers in one query
-     */
-    List<Map<String, Object>> batchFindLatestAgentFailureTime(
-            @Param("systemIds") List<String> systemIds
-    );
-
-    /**
-     * Dashboard: aggregate log counts by day within date range
-     */
-    List<Map<String, Object>> aggregateByDay(
-            @Param("from") Long from,
-            @Param("to") Long to
-    );
-
-    /**
-     * Dashboard: aggregate log counts by hour for today
-     */
-    List<Map<String, Object>> aggregateByHour(
-            @Param("dayStart") Long dayStart,
-            @Param("dayEnd") Long dayEnd
-    );
-
     /**
      * Dashboard: get recent failed/running logs (limited)
      */
@@ -186,12 +240,4 @@ public interface JobRunLogMapper {
             @Param("to") Long to,
             @Param("limit") int limit
     );
-
-    /**
-     * Dashboard: status distribution for pie chart
-     */
-    List<Map<String, Object>> aggregateByStatus(
-            @Param("from") Long from,
-            @Param("to") Long to
-    );
 }
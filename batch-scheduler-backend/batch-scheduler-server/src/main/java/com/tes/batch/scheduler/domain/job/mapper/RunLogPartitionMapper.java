@@ -0,0 +1,33 @@
+package com.tes.batch.scheduler.domain.job.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Partition maintenance of scheduler_job_run_logs. Names are interpolated into DDL,
+ * so callers pass only names read from {@link #findMonthlyPartitions()} or validated.
+ */
+@Mapper
+public interface RunLogPartitionMapper {
+
+    /**
+     * Create the partition of the month containing the date; its name, or null if it existed
+     */
+    String ensurePartition(@Param("month") LocalDate month);
+
+    /**
+     * Monthly partitions (scheduler_job_run_logs_pYYYYMM) in name order, excluding the default partition
+     */
+    List<String> findMonthlyPartitions();
+
+    void detachPartition(@Param("name") String name);
+
+    void dropTable(@Param("name") String name);
+
+    void createSchema(@Param("schema") String schema);
+
+    void moveToSchema(@Param("name") String name, @Param("schema") String schema);
+}
@@ -0,0 +1,79 @@
+package com.tes.batch.scheduler.domain.job.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hourly rollups of scheduler_job_run_logs (V26 migration). Ranges are epoch ms; a bucket is counted
+ * if its hour starts within the range, so results have hour granularity.
+ */
+@Mapper
+public interface RunLogRollupMapper {
+
+    /**
+     * Transaction-scoped lock shared by fold and rebuild across Scheduler instances
+     */
+    boolean tryLock();
+
+    /**
+     * Move all pending deltas into the rollups; the number of deltas folded
+     */
+    int foldDeltas();
+
+    /**
+     * Recompute run counts of the buckets starting in [from, to) from the raw logs
+     */
+    void deleteRunRollups(@Param("from") long from, @Param("to") long to);
+
+    int rebuildRunRollups(@Param("from") long from, @Param("to") long to);
+
+    /**
+     * Recompute agent failures of the buckets starting in [from, to) from the raw logs
+     */
+    void deleteFailureRollups(@Param("from") long from, @Param("to") long to);
+
+    int rebuildFailureRollups(@Param("from") long from, @Param("to") long to);
+
+    /**
+     * Dashboard: run counts per day (Asia/Seoul)
+     */
+    List<Map<String, Object>> aggregateByDay(
+            @Param("from") Long from,
+            @Param("to") Long to
+    );
+
+    /**
+     * Dashboard: run counts per hour of a day (Asia/Seoul)
+     */
+    List<Map<String, Object>> aggregateByHour(
+            @Param("dayStart") Long dayStart,
+            @Param("dayEnd") Long dayEnd
+    );
+
+    /**
+     * Dashboard: status distribution
+     */
+    List<Map<String, Object>> aggregateByStatus(
+            @Param("from") Long from,
+            @Param("to") Long to
+    );
+
+    /**
+     * Agent failures per server since its last deploy, or since sinceTimestamp if never deployed.
+     * Exact at the cutoff: the hour holding it is counted from the raw logs.
+     */
+    List<Map<String, Object>> batchCountRecentAgentFailures(
+            @Param("systemIds") List<String> systemIds,
+            @Param("sinceTimestamp") Long sinceTimestamp
+    );
+
+    /**
+     * Latest agent failure time per server since its last deploy (null if none), read from the raw logs
+     */
+    List<Map<String, Object>> batchFindLatestAgentFailureTime(
+            @Param("systemIds") List<String> systemIds
+    );
+}
@@ -1,7 +1,11 @@
 package com.tes.batch.scheduler.domain.job.service;
 
+import com.tes.batch.common.dto.ApiResponse;
 import com.tes.batch.common.dto.JobMessage;
 import com.tes.batch.common.enums.JobType;
+import com.tes.batch.scheduler.agent.ServerSelector;
+import com.tes.batch.scheduler.domain.PageCursor;
+import com.tes.batch.scheduler.domain.TextSearch;
 import com.tes.batch.scheduler.domain.group.mapper.JobGroupMapper;
 import com.tes.batch.scheduler.domain.job.dto.JobFilterRequest;
 import com.tes.batch.scheduler.domain.job.dto.JobRequest;
@@ -12,14 +16,18 @@ import com.tes.batch.scheduler.domain.job.vo.JobVO;
 import com.tes.batch.scheduler.domain.server.mapper.JobServerMapper;
 import com.tes.batch.scheduler.domain.server.vo.JobServerVO;
 import com.tes.batch.scheduler.message.RedisMessagePublisher;
+import com.tes.batch.scheduler.scheduler.RunDeadlineIndex;
+import com.tes.batch.scheduler.scheduler.RunLogWriter;
 import com.tes.batch.scheduler.scheduler.SchedulerService;
 import com.tes.batch.scheduler.security.SecurityUtils;
+import com.tes.batch.scheduler.workflow.WorkflowPlanCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
@@ -37,27 +45,78 @@ public class JobService {
     private final JobServerMapper serverMapper;
     private final SecurityUtils securityUtils;
     private final RedisMessagePublisher redisMessagePublisher;
+    private final ServerSelector serverSelector;
+    private final WorkflowPlanCache planCache;
+    private final RunDeadlineIndex deadlineIndex;
+    private final RunLogWriter runLogWriter;
     @Lazy
     private final SchedulerService schedulerService;
 
     private static final int MAX_PAGE_SIZE = 500;
     private static final long MAX_DURATION_SECONDS = 86400L; // 24 hours
-
-    /** Escape SQL LIKE wildcard characters to prevent wildcard injection */
-    static String escapeLikeWildcards(String input) {
-        if (input == null) return null;
-        return input.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
-    }
+    /** Run log statuses of a run that may still be queued or executing on an agent */
+    private static final Set<String> ACTIVE_LOG_STATUSES = Set.of("WAITING", "PENDING", "RUNNING", "RETRY");
+    private static final String RETRY_TASK_SUFFIX = "_retry_";
 
     @Transactional(readOnly = true)
     public List<JobVO> getJobs(JobFilterRequest request) {
         // C1: Escape LIKE wildcards in text search
-        request.setTextSearch(escapeLikeWildcards(request.getTextSearch()));
+        request.setTextSearch(TextSearch.escape(request.getTextSearch()));
         // Frontend uses 1-indexed page_number
         int page = request.getPage() > 0 ? request.getPage() - 1 : 0;
         int pageSize = Math.min(request.getSize(), MAX_PAGE_SIZE);
-        int offset = page * pageSize;
+        return findJobs(request, null, pageSize, page * pageSize);
+    }
+
+    /**
+     * One page of jobs by name, or by search rank then name when text_search is set. With a cursor the
+     * page continues after the cursor's ([rank,] job_name, job_id) (keyset); without one, page_number is
+     * used as an offset. The total is capped at {@link PageCursor#COUNT_CAP} and skipped if include_total
+     * is false.
+     */
+    @Transactional(readOnly = true)
+    public ApiResponse<List<JobVO>> filterJobs(JobFilterRequest request) {
+        request.setTextSearch(TextSearch.escape(request.getTextSearch()));
+        boolean searching = request.getTextSearch() != null;
+        int pageSize = Math.max(1, Math.min(request.getSize(), MAX_PAGE_SIZE));
+        String[] after = PageCursor.decode(request.getCursor(), searching ? 3 : 2);
+        int page = after == null && request.getPage() > 0 ? request.getPage() - 1 : 0;
+
+        // One extra row tells whether there is a next page
+        List<JobVO> jobs = findJobs(request, after, pageSize + 1, page * pageSize);
+        String nextCursor = null;
+        if (jobs.size() > pageSize) {
+            jobs = new ArrayList<>(jobs.subList(0, pageSize));
+            JobVO last = jobs.get(pageSize - 1);
+            nextCursor = searching
+                    ? PageCursor.encode(last.getSearchRank(), last.getJobName(), last.getJobId())
+                    : PageCursor.encode(last.getJobName(), last.getJobId());
+        }
+
+        if (Boolean.FALSE.equals(request.getIncludeTotal())) {
+            return ApiResponse.successWithCursor(jobs, null, false, nextCursor);
+        }
+        long total = countJobs(request);
+        return ApiResponse.successWithCursor(jobs, total, PageCursor.isCapped(total), nextCursor);
+    }
 
+    private List<JobVO> findJobs(JobFilterRequest request, String[] after, int limit, int offset) {
+        Integer afterRank = null;
+        String afterJobName = null;
+        String afterJobId = null;
+        if (after != null) {
+            // Search cursors lead with the rank
+            int i = after.length - 2;
+            if (i > 0) {
+                try {
+                    afterRank = Integer.parseInt(after[0]);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid page cursor");
+                }
+            }
+            afterJobName = after[i];
+            afterJobId = after[i + 1];
+        }
         List<JobVO> jobs;
         if (securityUtils.isAdmin()) {
             jobs = jobMapper.findByFilters(
@@ -71,7 +130,10 @@ public class JobService {
                     request.getLastResult(),
                     request.getLastStartDateFrom(),
                     request.getLastStartDateTo(),
-                    pageSize,
+                    afterRank,
+                    afterJobName,
+                    afterJobId,
+                    limit,
                     offset
             );
         } else {
@@ -95,7 +157,10 @@ public class JobService {
                     request.getIsEnabled(),
                     request.getCurrentState(),
                     request.getTextSearch(),
-                    pageSize,
+                    afterRank,
+                    afterJobName,
+                    afterJobId,
+                    limit,
                     offset
             );
         }
@@ -189,6 +254,9 @@ public class JobService {
         }
     }
 
+    /**
+     * Jobs matching the filter, counted up to {@link PageCursor#COUNT_CAP}
+     */
     @Transactional(readOnly = true)
     public long countJobs(JobFilterRequest request) {
         if (securityUtils.isAdmin()) {
@@ -202,7 +270,8 @@ public class JobService {
                     request.getWfRegistered(),
                     request.getLastResult(),
                     request.getLastStartDateFrom(),
-                    request.getLastStartDateTo()
+                    request.getLastStartDateTo(),
+                    PageCursor.COUNT_CAP
             );
         } else {
             Set<String> groupIds = securityUtils.getCurrentGroupIds();
@@ -224,7 +293,8 @@ public class JobService {
                     request.getSystemId(),
                     request.getIsEnabled(),
                     request.getCurrentState(),
-                    request.getTextSearch()
+                    request.getTextSearch(),
+                    PageCursor.COUNT_CAP
             );
         }
     }
@@ -247,7 +317,7 @@ public class JobService {
             // Find the latest RUNNING or PENDING job run log for this job
             List<JobRunLogVO> logs = jobRunLogMapper.findByFilters(
                     jobId, null, null, null, null, // jobId filter only
-                    null, null, 10, 0 // Get recent logs
+                    null, null, null, null, 10, 0 // Get recent logs
             );
 
             if (logs != null && !logs.isEmpty()) {
@@ -285,6 +355,7 @@ public class JobService {
         if (request.getSystemId() != null && serverMapper.findById(request.getSystemId()) == null) {
             throw new IllegalArgumentException("Server not found: " + request.getSystemId());
         }
+        validatePoolName(request.getPoolName());
         if (request.getGroupId() != null && groupMapper.findById(request.getGroupId()) == null) {
             throw new IllegalArgumentException("Group not found: " + request.getGroupId());
         }
@@ -298,6 +369,7 @@ public class JobService {
                 .systemId(request.getSystemId())
                 .secondarySystemId(request.getSecondarySystemId())
                 .tertiarySystemId(request.getTertiarySystemId())
+                .poolName(blankToNull(request.getPoolName()))
                 .groupId(request.getGroupId())
                 .jobType(request.getJobType())
                 .jobAction(request.getJobAction())
@@ -368,6 +440,8 @@ public class JobService {
         existing.setSystemId(request.getSystemId());
         existing.setSecondarySystemId(request.getSecondarySystemId());
         existing.setTertiarySystemId(request.getTertiarySystemId());
+        validatePoolName(request.getPoolName());
+        existing.setPoolName(blankToNull(request.getPoolName()));
         existing.setGroupId(request.getGroupId());
         existing.setJobType(request.getJobType());
         existing.setJobAction(request.getJobAction());
@@ -416,6 +490,7 @@ public class JobService {
         }
 
         jobMapper.update(existing);
+        planCache.invalidate(existing.getWorkflowId());
 
         // Update Quartz schedule
         if (Boolean.TRUE.equals(existing.getIsEnabled()) && existing.getRepeatInterval() != null && !existing.getRepeatInterval().isEmpty()) {
@@ -476,6 +551,7 @@ public class JobService {
 
         // Delete the job
         jobMapper.delete(jobId);
+        planCache.invalidate(existing.getWorkflowId());
 
         log.info("Deleted job (logs preserved): {}", jobId);
     }
@@ -498,20 +574,20 @@ public class JobService {
             throw new IllegalStateException("Cannot execute disabled job. Please enable the job first.");
         }
 
-        // Get available server with failover support (primary -> secondary -> tertiary)
-        JobServerVO server = getAvailableServer(job);
+        // Get available server (failover order or load-based, per app.scheduler.server-selection)
+        JobServerVO server = serverSelector.select(job);
 
         if (server == null) {
             throw new IllegalStateException("No healthy server available (tried primary, secondary, tertiary)");
         }
 
-        String queueName = server.getQueueName();
+        String queueName = serverSelector.queueFor(job, server);
         if (queueName == null || queueName.isEmpty()) {
             throw new IllegalStateException("No queue configured for server: " + server.getSystemName());
         }
 
         // Log which server was selected
-        String serverRole = determineServerRole(job, server.getSystemId());
+        String serverRole = serverSelector.determineServerRole(job, server.getSystemId());
         log.info("Manual execution using {} server: {} ({})", serverRole, server.getSystemName(), server.getSystemId());
 
         // Create run log with all denormalized fields
@@ -536,7 +612,8 @@ public class JobService {
                 .userName(currentUserName) // user who manually executed the job
                 .build();
 
-        jobRunLogMapper.insert(runLog);
+        runLogWriter.write(runLog);
+        deadlineIndex.trackPending(runLog.getLogId(), now);
 
         // Update job state and lastStartDate
         jobMapper.updateStateWithLastStart(jobId, "RUNNING", null, now);
@@ -560,6 +637,7 @@ public class JobService {
                 .build();
 
         redisMessagePublisher.publishJob(queueName, message);
+        serverSelector.recordDispatch(server.getQueueName());
 
         log.info("Manually triggered job: {} (logId: {}, queue: {})", jobId, runLog.getLogId(), queueName);
         return runLog;
@@ -577,7 +655,7 @@ public class JobService {
 
         // Get latest run log and update status
         JobRunLogVO latestLog = jobRunLogMapper.findLatestByJobId(jobId);
-        if (latestLog != null && "RUNNING".equals(latestLog.getStatus())) {
+        if (latestLog != null && ACTIVE_LOG_STATUSES.contains(latestLog.getStatus())) {
             jobRunLogMapper.updateStatus(
                     latestLog.getLogId(),
                     "REVOKED",
@@ -589,11 +667,37 @@ public class JobService {
                     null,
                     null
             );
+            sendCancel(job, latestLog);
         }
 
         log.info("Force stopped job: {}", jobId);
     }
 
+    /**
+     * Tell the agent to kill the run. Failure to publish does not undo the stop; the agent
+     * then runs the job to completion and its result is recorded against the revoked log.
+     */
+    private void sendCancel(JobVO job, JobRunLogVO runLog) {
+        try {
+            JobServerVO server = runLog.getSystemId() != null ? serverMapper.findById(runLog.getSystemId()) : null;
+            redisMessagePublisher.publishCancel(resolveTaskId(runLog),
+                    server != null ? server.getQueueName() : null, job.getPoolName());
+        } catch (Exception e) {
+            log.error("Failed to send cancel for job {}: {}", job.getJobId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Agent task id of a run: the original log id, also for retry log entries ({logId}_retry_{n})
+     */
+    private String resolveTaskId(JobRunLogVO runLog) {
+        String taskName = runLog.getCeleryTaskName();
+        if (taskName != null && taskName.contains(RETRY_TASK_SUFFIX)) {
+            return taskName.substring(0, taskName.indexOf(RETRY_TASK_SUFFIX));
+        }
+        return String.valueOf(runLog.getLogId());
+    }
+
     @Transactional
     public void updateJobStatus(String jobId, Boolean isEnabled) {
         JobVO job = jobMapper.findById(jobId);
@@ -609,6 +713,7 @@ public class JobService {
         job.setLastRegUserId(securityUtils.getCurrentId());
 
         jobMapper.update(job);
+        planCache.invalidate(job.getWorkflowId());
 
         // Update Quartz schedule based on enabled status
         if (isEnabled && job.getRepeatInterval() != null && !job.getRepeatInterval().isEmpty()) {
@@ -622,70 +727,6 @@ public class JobService {
         log.info("Updated job status: jobId={}, isEnabled={}, newState={}", jobId, isEnabled, newState);
     }
 
-    /**
-     * Get available server with failover support.
-     * Tries primary -> secondary -> tertiary in order.
-     * Returns first server that is ONLINE and healthy.
-     */
-    private JobServerVO getAvailableServer(JobVO job) {
-        // Try primary server
-        if (job.getSystemId() != null) {
-            JobServerVO primary = serverMapper.findById(job.getSystemId());
-            if (isServerAvailable(primary)) {
-                return primary;
-            }
-            log.info("Primary server {} is unavailable for job {}", job.getSystemId(), job.getJobId());
-        }
-
-        // Try secondary server
-        if (job.getSecondarySystemId() != null) {
-            JobServerVO secondary = serverMapper.findById(job.getSecondarySystemId());
-            if (isServerAvailable(secondary)) {
-                log.info("Failover to secondary server {} for job {}", job.getSecondarySystemId(), job.getJobId());
-                return secondary;
-            }
-            log.info("Secondary server {} is unavailable for job {}", job.getSecondarySystemId(), job.getJobId());
-        }
-
-        // Try tertiary server
-        if (job.getTertiarySystemId() != null) {
-            JobServerVO tertiary = serverMapper.findById(job.getTertiarySystemId());
-            if (isServerAvailable(tertiary)) {
-                log.info("Failover to tertiary server {} for job {}", job.getTertiarySystemId(), job.getJobId());
-                return tertiary;
-            }
-            log.info("Tertiary server {} is unavailable for job {}", job.getTertiarySystemId(), job.getJobId());
-        }
-
-        return null;
-    }
-
-    /**
-     * Check if server is available (ONLINE and healthy)
-     */
-    private boolean isServerAvailable(JobServerVO server) {
-        if (server == null) {
-            return false;
-        }
-        boolean isOnline = "ONLINE".equals(server.getAgentStatus());
-        boolean isHealthy = Boolean.TRUE.equals(server.getIsHealthy());
-        return isOnline && isHealthy;
-    }
-
-    /**
-     * Determine the role of the selected server (primary, secondary, or tertiary)
-     */
-    private String determineServerRole(JobVO job, String selectedSystemId) {
-        if (selectedSystemId.equals(job.getSystemId())) {
-            return "primary";
-        } else if (selectedSystemId.equals(job.getSecondarySystemId())) {
-            return "secondary";
-        } else if (selectedSystemId.equals(job.getTertiarySystemId())) {
-            return "tertiary";
-        }
-        return "unknown";
-    }
-
     /**
      * Reload all enabled jobs from DB to Quartz scheduler
      * Use this when jobs are added directly to DB without API
@@ -725,4 +766,17 @@ public class JobService {
         log.info("Reloaded {} jobs to Quartz scheduler", reloadedCount);
         return reloadedCount;
     }
+
+    /**
+     * A job may only target a pool that has at least one member server
+     */
+    private void validatePoolName(String poolName) {
+        if (poolName != null && !poolName.isBlank() && serverMapper.findByPoolName(poolName.trim()).isEmpty()) {
+            throw new IllegalArgumentException("Server pool has no members: " + poolName);
+        }
+    }
+
+    private String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
 }
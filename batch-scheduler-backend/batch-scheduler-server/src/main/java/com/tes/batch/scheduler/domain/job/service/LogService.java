@@ -1,7 +1,11 @@
 package com.tes.batch.scheduler.domain.job.service;
 
+import com.tes.batch.common.dto.ApiResponse;
+import com.tes.batch.scheduler.domain.PageCursor;
+import com.tes.batch.scheduler.domain.TextSearch;
 import com.tes.batch.scheduler.domain.job.dto.LogFilterRequest;
 import com.tes.batch.scheduler.domain.job.mapper.JobRunLogMapper;
+import com.tes.batch.scheduler.domain.job.mapper.RunLogRollupMapper;
 import com.tes.batch.scheduler.domain.job.vo.JobRunLogVO;
 import com.tes.batch.scheduler.security.SecurityUtils;
 import lombok.RequiredArgsConstructor;
@@ -9,7 +13,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 @Slf4j
@@ -18,17 +25,40 @@ import java.util.Set;
 public class LogService {
 
     private final JobRunLogMapper logMapper;
+    private final RunLogRollupMapper rollupMapper;
     private final SecurityUtils securityUtils;
 
     private static final int MAX_PAGE_SIZE = 500;
 
+    /**
+     * One page of logs, newest first; text_search matches job name or error. With a cursor the page
+     * continues after the cursor's log_id (keyset); without one, page_number is used as an offset.
+     * The total is capped at {@link PageCursor#COUNT_CAP} and skipped if include_total is false.
+     */
     @Transactional(readOnly = true)
-    public List<JobRunLogVO> getLogs(LogFilterRequest request) {
+    public ApiResponse<List<JobRunLogVO>> filterLogs(LogFilterRequest request) {
+        request.setTextSearch(TextSearch.escape(request.getTextSearch()));
+        int pageSize = Math.max(1, Math.min(request.getSize(), MAX_PAGE_SIZE));
+        Long afterLogId = PageCursor.decodeLong(request.getCursor());
         // Frontend uses 1-indexed page_number
-        int page = request.getPage() > 0 ? request.getPage() - 1 : 0;
-        int pageSize = Math.min(request.getSize(), MAX_PAGE_SIZE);
-        int offset = page * pageSize;
+        int page = afterLogId == null && request.getPage() > 0 ? request.getPage() - 1 : 0;
 
+        // One extra row tells whether there is a next page
+        List<JobRunLogVO> logs = findLogs(request, afterLogId, pageSize + 1, page * pageSize);
+        String nextCursor = null;
+        if (logs.size() > pageSize) {
+            logs = new ArrayList<>(logs.subList(0, pageSize));
+            nextCursor = PageCursor.encode(logs.get(pageSize - 1).getLogId());
+        }
+
+        if (Boolean.FALSE.equals(request.getIncludeTotal())) {
+            return ApiResponse.successWithCursor(logs, null, false, nextCursor);
+        }
+        long total = countLogs(request);
+        return ApiResponse.successWithCursor(logs, total, PageCursor.isCapped(total), nextCursor);
+    }
+
+    private List<JobRunLogVO> findLogs(LogFilterRequest request, Long afterLogId, int limit, int offset) {
         if (securityUtils.isAdmin()) {
             return logMapper.findByFilters(
                     request.getJobId(),
@@ -38,7 +68,9 @@ public class LogService {
                     request.getStatus(),
                     request.getReqStartDateFrom(),
                     request.getReqStartDateTo(),
-                    pageSize,
+                    request.getTextSearch(),
+                    afterLogId,
+                    limit,
                     offset
             );
         } else {
@@ -54,14 +86,15 @@ public class LogService {
                     request.getStatus(),
                     request.getReqStartDateFrom(),
                     request.getReqStartDateTo(),
-                    pageSize,
+                    request.getTextSearch(),
+                    afterLogId,
+                    limit,
                     offset
             );
         }
     }
 
-    @Transactional(readOnly = true)
-    public long countLogs(LogFilterRequest request) {
+    private long countLogs(LogFilterRequest request) {
         if (securityUtils.isAdmin()) {
             return logMapper.countByFilters(
                     request.getJobId(),
@@ -70,7 +103,9 @@ public class LogService {
                     request.getOperation(),
                     request.getStatus(),
                     request.getReqStartDateFrom(),
-                    request.getReqStartDateTo()
+                    request.getReqStartDateTo(),
+                    request.getTextSearch(),
+                    PageCursor.COUNT_CAP
             );
         } else {
             Set<String> groupIds = securityUtils.getCurrentGroupIds();
@@ -84,7 +119,9 @@ public class LogService {
                     request.getOperation(),
                     request.getStatus(),
                     request.getReqStartDateFrom(),
-                    request.getReqStartDateTo()
+                    request.getReqStartDateTo(),
+                    request.getTextSearch(),
+                    PageCursor.COUNT_CAP
             );
         }
     }
@@ -109,4 +146,40 @@ public class LogService {
     public List<JobRunLogVO> getLogsByJobId(String jobId) {
         return logMapper.findByJobId(jobId);
     }
+
+    /**
+     * Dashboard summary: counts from the hourly run log rollups, recent logs from the raw logs
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getDashboardSummary(long from, long to) {
+        // Calculate today's range (Asia/Seoul timezone)
+        java.time.ZoneId seoulZone = java.time.ZoneId.of("Asia/Seoul");
+        java.time.ZonedDateTime now = java.time.ZonedDateTime.now(seoulZone);
+        long todayStart = now.toLocalDate().atStartOfDay(seoulZone).toInstant().toEpochMilli();
+        long todayEnd = now.toLocalDate().plusDays(1).atStartOfDay(seoulZone).toInstant().toEpochMilli() - 1;
+
+        Map<String, Object> result = new HashMap<>();
+
+        // Daily aggregation for chart (full date range)
+        result.put("daily", rollupMapper.aggregateByDay(from, to));
+
+        // Hourly aggregation for today only
+        result.put("hourly", rollupMapper.aggregateByHour(todayStart, todayEnd));
+
+        // Status distribution for pie chart (full date range)
+        result.put("statusDistribution", rollupMapper.aggregateByStatus(from, to));
+
+        // Today's status distribution (for summary cards)
+        result.put("todayStats", rollupMapper.aggregateByStatus(todayStart, todayEnd));
+
+        // Recent failed logs (top 5)
+        result.put("recentFailed", logMapper.findRecentByStatuses(
+                List.of("FAILED", "FAILURE", "BROKEN", "TIMEOUT"), from, to, 5));
+
+        // Currently running logs (top 5)
+        result.put("recentRunning", logMapper.findRecentByStatuses(
+                List.of("RUNNING"), from, to, 5));
+
+        return result;
+    }
 }
@@ -1,5 +1,6 @@
 package com.tes.batch.scheduler.domain.job.vo;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.*;
 
@@ -36,6 +37,12 @@ public class JobVO {
     @JsonProperty("tertiary_system_id")
     private String tertiarySystemId;
 
+    /**
+     * Target server pool; when set the job goes to the pool queue instead of a single server
+     */
+    @JsonProperty("pool_name")
+    private String poolName;
+
     /**
      * Group ID (FK)
      */
@@ -203,6 +210,12 @@ public class JobVO {
     @JsonProperty("workflow_name")
     private String workflowName;
 
+    /**
+     * Text search rank of the row (0 = exact name match); set only by searches, used for the page cursor
+     */
+    @JsonIgnore
+    private Integer searchRank;
+
     /**
      * Priority group ID in workflow
      */
@@ -214,6 +227,16 @@ public class JobVO {
     @Builder.Default
     private Integer workflowDelay = 0;
 
+    /**
+     * Map step parameters in workflow (list or range); null for an ordinary step
+     */
+    private String workflowMapParams;
+
+    /**
+     * Map step tasks running at the same time (null = all)
+     */
+    private Integer workflowMaxParallelism;
+
     /**
      * First registration date (epoch ms) - frontend uses 'jobCreateDate'
      */
@@ -266,6 +289,12 @@ public class JobVO {
      */
     private String creator;
 
+    /**
+     * Creator login ID - first reg user's user_id (workflow plans, written to run logs)
+     */
+    @JsonIgnore
+    private String creatorUserId;
+
     /**
      * Schedule string - derived from repeatInterval (e.g., "DAILY(1)")
      */
@@ -0,0 +1,19 @@
+package com.tes.batch.scheduler.domain.job.vo;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Timing of an active (PENDING or RUNNING) run log with its job's max run duration,
+ * used to rebuild the in-memory deadline index.
+ */
+@Data
+@NoArgsConstructor
+public class RunDeadlineVO {
+
+    private Long logId;
+    private String status;
+    private Long reqStartDate;
+    private Long actualStartDate;
+    private String maxRunDuration;
+}
@@ -28,6 +28,8 @@ public class ServerRequest {
     private DeploymentType deploymentType;
     @JsonAlias("mount_paths")
     private String mountPaths;
+    @JsonAlias("pool_name")
+    private String poolName;
     @JsonAlias("frst_reg_user_id")
     private String frstRegUserId;
     @JsonAlias("last_reg_user_id")
@@ -15,6 +15,8 @@ public interface JobServerMapper {
 
     JobServerVO findByQueueName(@Param("queueName") String queueName);
 
+    List<JobServerVO> findByPoolName(@Param("poolName") String poolName);
+
     boolean existsBySystemName(@Param("systemName") String systemName);
 
     JobServerVO findByHostAndPort(
@@ -3,7 +3,7 @@ package com.tes.batch.scheduler.domain.server.service;
 import com.tes.batch.common.enums.DeploymentType;
 import com.tes.batch.scheduler.crypto.CryptoService;
 import com.tes.batch.scheduler.domain.job.mapper.JobMapper;
-import com.tes.batch.scheduler.domain.job.mapper.JobRunLogMapper;
+import com.tes.batch.scheduler.domain.job.mapper.RunLogRollupMapper;
 import com.tes.batch.scheduler.domain.server.dto.ServerFilterRequest;
 import com.tes.batch.scheduler.domain.server.dto.ServerRequest;
 import com.tes.batch.scheduler.domain.server.mapper.JobServerMapper;
@@ -29,7 +29,7 @@ import java.util.stream.Collectors;
 public class ServerService {
 
     private final JobServerMapper serverMapper;
-    private final JobRunLogMapper jobRunLogMapper;
+    private final RunLogRollupMapper rollupMapper;
     private final JobMapper jobMapper;
     private final SecurityUtils securityUtils;
     private final SshService sshService;
@@ -41,6 +41,8 @@ public class ServerService {
             "^([a-zA-Z0-9._-]+@)?[a-zA-Z0-9][a-zA-Z0-9._-]*[a-zA-Z0-9]$"
     );
 
+    private static final Pattern POOL_NAME_PATTERN = Pattern.compile("^[a-zA-Z0-9_-]{1,100}$");
+
     @Transactional(readOnly = true)
     public List<JobServerVO> getServers(ServerFilterRequest request) {
         int offset = request.getPage() * request.getSize();
@@ -62,7 +64,8 @@ public class ServerService {
     }
 
     /**
-     * [P1] Enrich server list with failure statistics using batch queries (N+1 → 2 queries)
+     * [P1] Enrich server list with failure statistics from the hourly agent failure rollup and the
+     * agent failure index (2 queries)
      */
     private void enrichWithFailureStats(List<JobServerVO> servers) {
         if (servers == null || servers.isEmpty()) return;
@@ -75,7 +78,7 @@ public class ServerService {
         try {
             // Batch query: failure counts for all servers
             Map<String, Integer> failureCounts = new HashMap<>();
-            List<Map<String, Object>> countResults = jobRunLogMapper.batchCountRecentAgentFailures(systemIds, last24Hours);
+            List<Map<String, Object>> countResults = rollupMapper.batchCountRecentAgentFailures(systemIds, last24Hours);
             if (countResults != null) {
                 for (Map<String, Object> row : countResults) {
                     String sysId = (String) row.get("system_id");
@@ -86,7 +89,7 @@ public class ServerService {
 
             // Batch query: latest failure times for all servers
             Map<String, Long> failureTimes = new HashMap<>();
-            List<Map<String, Object>> timeResults = jobRunLogMapper.batchFindLatestAgentFailureTime(systemIds);
+            List<Map<String, Object>> timeResults = rollupMapper.batchFindLatestAgentFailureTime(systemIds);
             if (timeResults != null) {
                 for (Map<String, Object> row : timeResults) {
                     String sysId = (String) row.get("system_id");
@@ -172,6 +175,7 @@ public class ServerService {
                 .agentPort(agentPort)
                 .deploymentType(request.getDeploymentType())
                 .mountPaths(request.getMountPaths())
+                .poolName(request.getPoolName())
                 .agentStatus("UNKNOWN")
                 .frstRegDate(now)
                 .lastChgDate(now)
@@ -261,6 +265,8 @@ public class ServerService {
             existing.setDeploymentType(request.getDeploymentType());
         }
         existing.setMountPaths(request.getMountPaths());
+        // Pool membership reaches the agent on its next deploy/config sync
+        existing.setPoolName(request.getPoolName());
         existing.setLastChgDate(System.currentTimeMillis());
         existing.setLastRegUserId(securityUtils.getCurrentId());
 
@@ -350,17 +356,18 @@ public class ServerService {
     /**
      * Redeploy worker (stop, deploy, start) - also resets stuck jobs like start
      */
-    @Transactional
     public void redeployServer(String systemName) {
         redeployServer(systemName, null);
     }
 
     /**
-     * Redeploy worker with deployment type transition support
+     * Redeploy worker with deployment type transition support.
+     * Not transactional: the drain waits up to the drain timeout and the deployment runs over SSH,
+     * neither of which may hold a database connection; each status update commits on its own,
+     * so the OFFLINE status set on failure is kept.
      * @param systemName Server system name
      * @param previousDeploymentType Previous deployment type (for cleanup during type transition)
      */
-    @Transactional
     public void redeployServer(String systemName, DeploymentType previousDeploymentType) {
         JobServerVO server = serverMapper.findBySystemName(systemName);
         if (server == null) {
@@ -377,8 +384,9 @@ public class ServerService {
                     log.warn("Failed to cleanup previous deployment (may not exist): {}", e.getMessage());
                 }
             } else {
-                // Same deployment type - just stop current agent
+                // Same deployment type - drain in-flight jobs, then stop current agent
                 try {
+                    agentManager.drainAgent(server.getSystemId());
                     agentManager.stopAgent(server.getSystemId(), null);
                     Thread.sleep(2000); // Wait for clean shutdown
                 } catch (Exception e) {
@@ -457,5 +465,13 @@ public class ServerService {
         if (request.getMountPaths() != null) {
             request.setMountPaths(request.getMountPaths().trim());
         }
+        if (request.getPoolName() != null) {
+            String poolName = request.getPoolName().trim();
+            // Pool name becomes part of a Redis key (job:queue:pool:{name})
+            if (!poolName.isEmpty() && !POOL_NAME_PATTERN.matcher(poolName).matches()) {
+                throw new IllegalArgumentException("Invalid pool name (letters, digits, '-' and '_' only, max 100): " + poolName);
+            }
+            request.setPoolName(poolName.isEmpty() ? null : poolName);
+        }
     }
 }
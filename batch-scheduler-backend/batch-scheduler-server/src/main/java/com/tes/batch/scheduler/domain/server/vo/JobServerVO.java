@@ -99,6 +99,13 @@ public class JobServerVO {
     @JsonProperty("last_deploy_time")
     private Long lastDeployTime;
 
+    /**
+     * Server pool this agent belongs to (nullable).
+     * Pool members also consume the shared pool queue.
+     */
+    @JsonProperty("pool_name")
+    private String poolName;
+
     /**
      * First registration date (epoch ms)
      */
@@ -100,4 +100,19 @@ public class WorkflowController {
             return ApiResponse.error("Failed to execute workflow: " + e.getMessage());
         }
     }
+
+    /**
+     * Resume a failed workflow run: jobs that already succeeded in the run are skipped
+     * POST /workflow/run/resume/{runId}?system_id=... (system_id optional: run remaining jobs on that server)
+     */
+    @PostMapping("/run/resume/{runId}")
+    public ApiResponse<Long> resumeWorkflowRun(
+            @PathVariable Long runId,
+            @RequestParam(value = "system_id", required = false) String systemId) {
+        try {
+            return ApiResponse.success(workflowExecutionService.resumeWorkflowRun(runId, systemId));
+        } catch (Exception e) {
+            return ApiResponse.error("Failed to resume workflow run: " + e.getMessage());
+        }
+    }
 }
@@ -11,6 +11,8 @@ public class WorkflowFilterRequest {
     private String groupId;
     @JsonAlias("latest_status")
     private String latestStatus;
+    @JsonAlias("text_search")
+    private String textSearch;
     @JsonAlias("page_number")
     private Integer page = 1;
     @JsonAlias("page_size")
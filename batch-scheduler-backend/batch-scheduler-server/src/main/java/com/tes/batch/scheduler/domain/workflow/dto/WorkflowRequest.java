@@ -49,5 +49,25 @@ public class WorkflowRequest {
 
         @JsonProperty("workflow_delay")
         private Integer workflowDelay;
+
+        /**
+         * Job IDs of this workflow the job waits for.
+         * Omitted: waits for every job of the previous priority group.
+         */
+        @JsonProperty("depends_on")
+        private List<String> dependsOn;
+
+        /**
+         * Makes the job a map step: one task per parameter ("a,b,c", "1..31" or
+         * "2024-01-01..2024-01-31"), with ${param} and ${index} substituted in action, body and headers
+         */
+        @JsonProperty("map_params")
+        private String mapParams;
+
+        /**
+         * Map step tasks running at the same time (omitted = all)
+         */
+        @JsonProperty("max_parallelism")
+        private Integer maxParallelism;
     }
 }
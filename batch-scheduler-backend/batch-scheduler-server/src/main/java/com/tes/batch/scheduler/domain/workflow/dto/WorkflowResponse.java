@@ -75,6 +75,15 @@ public class WorkflowResponse {
 
         @JsonProperty("workflow_delay")
         private Integer workflowDelay;
+
+        @JsonProperty("depends_on")
+        private List<String> dependsOn;
+
+        @JsonProperty("map_params")
+        private String mapParams;
+
+        @JsonProperty("max_parallelism")
+        private Integer maxParallelism;
     }
 
     @Data
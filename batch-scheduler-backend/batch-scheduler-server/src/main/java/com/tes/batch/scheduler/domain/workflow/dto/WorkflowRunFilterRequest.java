@@ -30,4 +30,12 @@ public class WorkflowRunFilterRequest {
 
     @JsonProperty("group_id")
     private String groupId;
+
+    /** next_cursor of the previous page; when set, page_number is ignored */
+    @JsonProperty("cursor")
+    private String cursor;
+
+    /** Total (capped) row count with the page */
+    @JsonProperty("include_total")
+    private Boolean includeTotal = true;
 }
@@ -46,6 +46,7 @@ public interface WorkflowMapper {
             @Param("groupIds") Set<String> groupIds,
             @Param("workflowName") String workflowName,
             @Param("latestStatus") String latestStatus,
+            @Param("textSearch") String textSearch,
             @Param("limit") int limit,
             @Param("offset") int offset
     );
@@ -53,7 +54,8 @@ public interface WorkflowMapper {
     long countByFiltersAndGroupIds(
             @Param("groupIds") Set<String> groupIds,
             @Param("workflowName") String workflowName,
-            @Param("latestStatus") String latestStatus
+            @Param("latestStatus") String latestStatus,
+            @Param("textSearch") String textSearch
     );
 
     int insert(WorkflowVO workflow);
@@ -1,5 +1,6 @@
 package com.tes.batch.scheduler.domain.workflow.mapper;
 
+import com.tes.batch.scheduler.domain.workflow.vo.WorkflowJobDependencyVO;
 import com.tes.batch.scheduler.domain.workflow.vo.WorkflowPriorityGroupVO;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
@@ -15,6 +16,11 @@ public interface WorkflowPriorityGroupMapper {
 
     List<WorkflowPriorityGroupVO> findByWorkflowIdWithJobs(@Param("workflowId") String workflowId);
 
+    /**
+     * Priority groups in priority order, each with its jobs (group name and creator user_id joined)
+     */
+    List<WorkflowPriorityGroupVO> findWorkflowPlan(@Param("workflowId") String workflowId);
+
     int insert(WorkflowPriorityGroupVO priorityGroup);
 
     int update(WorkflowPriorityGroupVO priorityGroup);
@@ -37,4 +43,15 @@ public interface WorkflowPriorityGroupMapper {
     int deletePriorityGroupJobs(@Param("priorityGroupId") String priorityGroupId);
 
     List<String> findJobIdsByPriorityGroupId(@Param("priorityGroupId") String priorityGroupId);
+
+    // Job dependency edges (DAG)
+    int insertJobDependency(
+            @Param("workflowId") String workflowId,
+            @Param("jobId") String jobId,
+            @Param("dependsOnJobId") String dependsOnJobId
+    );
+
+    int deleteJobDependencies(@Param("workflowId") String workflowId);
+
+    List<WorkflowJobDependencyVO> findJobDependencies(@Param("workflowId") String workflowId);
 }
@@ -4,6 +4,7 @@ import com.tes.batch.scheduler.domain.workflow.vo.WorkflowRunVO;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 @Mapper
@@ -20,6 +21,7 @@ public interface WorkflowRunMapper {
             @Param("status") String status,
             @Param("startDateFrom") Long startDateFrom,
             @Param("startDateTo") Long startDateTo,
+            @Param("afterRunId") Long afterRunId,
             @Param("limit") int limit,
             @Param("offset") int offset
     );
@@ -28,7 +30,8 @@ public interface WorkflowRunMapper {
             @Param("workflowId") String workflowId,
             @Param("status") String status,
             @Param("startDateFrom") Long startDateFrom,
-            @Param("startDateTo") Long startDateTo
+            @Param("startDateTo") Long startDateTo,
+            @Param("cap") Integer cap
     );
 
     List<WorkflowRunVO> findRunningWorkflows();
@@ -43,6 +46,15 @@ public interface WorkflowRunMapper {
             @Param("errorMessage") String errorMessage
     );
 
+    /**
+     * RUNNING with a new start date, only if the run is in one of the given statuses; returns 0 if it is not
+     */
+    int claimForResume(
+            @Param("workflowRunId") Long workflowRunId,
+            @Param("startDate") Long startDate,
+            @Param("statuses") Collection<String> statuses
+    );
+
     int updateJobCounts(
             @Param("workflowRunId") Long workflowRunId,
             @Param("completedJobs") Integer completedJobs,
@@ -1,6 +1,10 @@
 package com.tes.batch.scheduler.domain.workflow.service;
 
 import com.tes.batch.common.dto.ApiResponse;
+import com.tes.batch.common.util.MapParameters;
+import com.tes.batch.common.util.WorkflowDag;
+import com.tes.batch.scheduler.domain.PageCursor;
+import com.tes.batch.scheduler.domain.TextSearch;
 import com.tes.batch.scheduler.domain.job.mapper.JobMapper;
 import com.tes.batch.scheduler.domain.job.mapper.JobRunLogMapper;
 import com.tes.batch.scheduler.domain.job.vo.JobRunLogVO;
@@ -9,12 +13,14 @@ import com.tes.batch.scheduler.domain.workflow.dto.*;
 import com.tes.batch.scheduler.domain.workflow.mapper.WorkflowMapper;
 import com.tes.batch.scheduler.domain.workflow.mapper.WorkflowPriorityGroupMapper;
 import com.tes.batch.scheduler.domain.workflow.mapper.WorkflowRunMapper;
+import com.tes.batch.scheduler.domain.workflow.vo.WorkflowJobDependencyVO;
 import com.tes.batch.scheduler.domain.workflow.vo.WorkflowPriorityGroupVO;
 import com.tes.batch.scheduler.domain.workflow.vo.WorkflowRunVO;
 import com.tes.batch.scheduler.domain.workflow.vo.WorkflowVO;
 import com.tes.batch.scheduler.scheduler.RRuleParser;
 import com.tes.batch.scheduler.scheduler.SchedulerService;
 import com.tes.batch.scheduler.security.SecurityUtils;
+import com.tes.batch.scheduler.workflow.WorkflowPlanCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
@@ -37,12 +43,16 @@ public class WorkflowService {
     private final JobRunLogMapper jobRunLogMapper;
     private final RRuleParser rruleParser;
     private final SecurityUtils securityUtils;
+    private final WorkflowPlanCache planCache;
     @Lazy
     private final SchedulerService schedulerService;
 
+    private static final int MAX_RUN_PAGE_SIZE = 500;
+
     @Transactional(readOnly = true)
     public ApiResponse<List<WorkflowResponse>> filter(WorkflowFilterRequest request) {
         int offset = (request.getPage() - 1) * request.getPageSize();
+        String textSearch = TextSearch.escape(request.getTextSearch());
 
         List<WorkflowVO> workflows;
         int total;
@@ -54,7 +64,7 @@ public class WorkflowService {
                     request.getWorkflowName(),
                     request.getGroupId(),
                     request.getLatestStatus(),
-                    null,  // textSearch
+                    textSearch,
                     request.getPageSize(),
                     offset
             );
@@ -63,7 +73,7 @@ public class WorkflowService {
                     request.getWorkflowName(),
                     request.getGroupId(),
                     request.getLatestStatus(),
-                    null  // textSearch
+                    textSearch
             );
         } else {
             Set<String> groupIds = securityUtils.getCurrentGroupIds();
@@ -86,6 +96,7 @@ public class WorkflowService {
                     groupIds,
                     request.getWorkflowName(),
                     request.getLatestStatus(),
+                    textSearch,
                     request.getPageSize(),
                     offset
             );
@@ -93,7 +104,8 @@ public class WorkflowService {
             total = (int) workflowMapper.countByFiltersAndGroupIds(
                     groupIds,
                     request.getWorkflowName(),
-                    request.getLatestStatus()
+                    request.getLatestStatus(),
+                    textSearch
             );
         }
 
@@ -121,6 +133,7 @@ public class WorkflowService {
         for (WorkflowPriorityGroupVO pg : priorityGroups) {
             jobsByGroupId.put(pg.getId(), jobMapper.findByPriorityGroupId(pg.getId()));
         }
+        Map<String, List<String>> dependsOn = findDependencies(workflowId);
 
         List<WorkflowResponse.PriorityGroupResponse> groupResponses = new ArrayList<>();
         List<WorkflowResponse.AssignedJobResponse> assignedJobs = new ArrayList<>();
@@ -134,6 +147,9 @@ public class WorkflowService {
                             .jobId(job.getJobId())
                             .jobName(job.getJobName())
                             .workflowDelay(job.getWorkflowDelay())
+                            .dependsOn(dependsOn.get(job.getJobId()))
+                            .mapParams(job.getWorkflowMapParams())
+                            .maxParallelism(job.getWorkflowMaxParallelism())
                             .build())
                     .collect(Collectors.toList());
 
@@ -171,6 +187,14 @@ public class WorkflowService {
         if (existing != null) {
             return ApiResponse.error("Workflow name already exists: " + request.getWorkflowName());
         }
+        String dependencyError = validateDependencies(request);
+        if (dependencyError != null) {
+            return ApiResponse.error(dependencyError);
+        }
+        String mapStepError = validateMapSteps(request);
+        if (mapStepError != null) {
+            return ApiResponse.error(mapStepError);
+        }
 
         // Calculate next run date
         Long nextRunDate = null;
@@ -224,7 +248,9 @@ public class WorkflowService {
                                 jobRequest.getJobId(),
                                 workflowId,
                                 pgId,
-                                jobRequest.getWorkflowDelay()
+                                jobRequest.getWorkflowDelay(),
+                                blankToNull(jobRequest.getMapParams()),
+                                jobRequest.getMaxParallelism()
                         );
                         // Also insert into mapping table
                         priorityGroupMapper.insertPriorityGroupJob(pgId, jobRequest.getJobId());
@@ -232,6 +258,7 @@ public class WorkflowService {
                 }
             }
         }
+        saveDependencies(workflowId, request);
 
         // Schedule with Quartz if has repeat interval
         if (workflow.getRepeatInterval() != null && !workflow.getRepeatInterval().isEmpty()) {
@@ -258,6 +285,14 @@ public class WorkflowService {
         if (nameCheck != null && !nameCheck.getId().equals(request.getId())) {
             return ApiResponse.error("Workflow name already exists: " + request.getWorkflowName());
         }
+        String dependencyError = validateDependencies(request);
+        if (dependencyError != null) {
+            return ApiResponse.error(dependencyError);
+        }
+        String mapStepError = validateMapSteps(request);
+        if (mapStepError != null) {
+            return ApiResponse.error(mapStepError);
+        }
 
         // Calculate next run date
         Long nextRunDate = null;
@@ -293,6 +328,7 @@ public class WorkflowService {
             jobMapper.clearWorkflowInfo(oldGroup.getId());
         }
         priorityGroupMapper.deleteByWorkflowId(request.getId());
+        priorityGroupMapper.deleteJobDependencies(request.getId());
 
         // Recreate priority groups
         if (request.getPriorityGroups() != null) {
@@ -314,7 +350,9 @@ public class WorkflowService {
                                 jobRequest.getJobId(),
                                 request.getId(),
                                 pgId,
-                                jobRequest.getWorkflowDelay()
+                                jobRequest.getWorkflowDelay(),
+                                blankToNull(jobRequest.getMapParams()),
+                                jobRequest.getMaxParallelism()
                         );
                         // Also insert into mapping table
                         priorityGroupMapper.insertPriorityGroupJob(pgId, jobRequest.getJobId());
@@ -322,6 +360,8 @@ public class WorkflowService {
                 }
             }
         }
+        saveDependencies(request.getId(), request);
+        planCache.invalidate(request.getId());
 
         // Update Quartz schedule
         if (existing.getRepeatInterval() != null && !existing.getRepeatInterval().isEmpty()) {
@@ -357,43 +397,61 @@ public class WorkflowService {
             jobMapper.clearWorkflowInfo(group.getId());
         }
 
-        // Delete priority groups
+        // Delete priority groups and dependency edges
         priorityGroupMapper.deleteByWorkflowId(workflowId);
+        priorityGroupMapper.deleteJobDependencies(workflowId);
 
         // Delete workflow runs
         workflowRunMapper.deleteByWorkflowId(workflowId);
 
         // Delete workflow
         workflowMapper.delete(workflowId);
+        planCache.invalidate(workflowId);
 
         return ApiResponse.success(null);
     }
 
+    /**
+     * One page of workflow runs, newest first: after the cursor's workflow_run_id if one is given
+     * (keyset), else by page_number. The total is capped at {@link PageCursor#COUNT_CAP}.
+     */
     @Transactional(readOnly = true)
     public ApiResponse<List<WorkflowRunResponse>> filterRuns(WorkflowRunFilterRequest request) {
-        int offset = (request.getPage() - 1) * request.getPageSize();
+        int pageSize = Math.max(1, Math.min(request.getPageSize(), MAX_RUN_PAGE_SIZE));
+        Long afterRunId = PageCursor.decodeLong(request.getCursor());
+        int offset = afterRunId == null && request.getPage() > 1 ? (request.getPage() - 1) * pageSize : 0;
 
+        // One extra row tells whether there is a next page
         List<WorkflowRunVO> runs = workflowRunMapper.findByFilters(
                 request.getWorkflowId(),
                 request.getStatus(),
                 request.getStartDateFrom(),
                 request.getStartDateTo(),
-                request.getPageSize(),
+                afterRunId,
+                pageSize + 1,
                 offset
         );
-
-        int total = (int) workflowRunMapper.countByFilters(
-                request.getWorkflowId(),
-                request.getStatus(),
-                request.getStartDateFrom(),
-                request.getStartDateTo()
-        );
+        String nextCursor = null;
+        if (runs.size() > pageSize) {
+            runs = runs.subList(0, pageSize);
+            nextCursor = PageCursor.encode(runs.get(pageSize - 1).getWorkflowRunId());
+        }
 
         List<WorkflowRunResponse> responses = runs.stream()
                 .map(WorkflowRunResponse::from)
                 .collect(Collectors.toList());
 
-        return ApiResponse.successWithTotal(responses, total);
+        if (Boolean.FALSE.equals(request.getIncludeTotal())) {
+            return ApiResponse.successWithCursor(responses, null, false, nextCursor);
+        }
+        long total = workflowRunMapper.countByFilters(
+                request.getWorkflowId(),
+                request.getStatus(),
+                request.getStartDateFrom(),
+                request.getStartDateTo(),
+                PageCursor.COUNT_CAP
+        );
+        return ApiResponse.successWithCursor(responses, total, PageCursor.isCapped(total), nextCursor);
     }
 
     @Transactional(readOnly = true)
@@ -412,6 +470,105 @@ public class WorkflowService {
         return ApiResponse.success(response);
     }
 
+    /**
+     * Explicit dependency edges by job ID
+     */
+    private Map<String, List<String>> findDependencies(String workflowId) {
+        return priorityGroupMapper.findJobDependencies(workflowId).stream()
+                .collect(Collectors.groupingBy(WorkflowJobDependencyVO::getJobId,
+                        Collectors.mapping(WorkflowJobDependencyVO::getDependsOnJobId, Collectors.toList())));
+    }
+
+    private void saveDependencies(String workflowId, WorkflowRequest request) {
+        for (WorkflowRequest.JobInGroupRequest jobRequest : requestJobs(request)) {
+            if (jobRequest.getDependsOn() == null) {
+                continue;
+            }
+            for (String dependsOnJobId : jobRequest.getDependsOn()) {
+                priorityGroupMapper.insertJobDependency(workflowId, jobRequest.getJobId(), dependsOnJobId);
+            }
+        }
+    }
+
+    /**
+     * Map steps need a valid parameter spec and a positive parallelism. Returns an error message or null.
+     */
+    private String validateMapSteps(WorkflowRequest request) {
+        for (WorkflowRequest.JobInGroupRequest job : requestJobs(request)) {
+            if (job.getMaxParallelism() != null && job.getMaxParallelism() < 1) {
+                return "Job " + job.getJobId() + ": max_parallelism must be at least 1";
+            }
+            if (blankToNull(job.getMapParams()) == null) {
+                continue;
+            }
+            try {
+                MapParameters.expand(job.getMapParams());
+            } catch (IllegalArgumentException e) {
+                return "Job " + job.getJobId() + ": " + e.getMessage();
+            }
+        }
+        return null;
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    /**
+     * Dependencies must point at other jobs of the same workflow and, together with the
+     * implicit priority-group edges, form an acyclic graph. Returns an error message or null.
+     */
+    private String validateDependencies(WorkflowRequest request) {
+        List<WorkflowRequest.JobInGroupRequest> jobs = requestJobs(request);
+        Set<String> jobIds = jobs.stream().map(WorkflowRequest.JobInGroupRequest::getJobId).collect(Collectors.toSet());
+        Map<String, List<String>> dependsOn = new HashMap<>();
+        for (WorkflowRequest.JobInGroupRequest job : jobs) {
+            if (job.getDependsOn() == null) {
+                continue;
+            }
+            for (String dep : job.getDependsOn()) {
+                if (dep == null || dep.equals(job.getJobId())) {
+                    return "Job " + job.getJobId() + " cannot depend on itself";
+                }
+                if (!jobIds.contains(dep)) {
+                    return "Job " + job.getJobId() + " depends on " + dep + ", which is not part of this workflow";
+                }
+            }
+            dependsOn.put(job.getJobId(), job.getDependsOn());
+        }
+        if (dependsOn.isEmpty()) {
+            return null;
+        }
+
+        List<List<String>> groups = sortedGroups(request).stream()
+                .map(pg -> pg.getJobs() != null
+                        ? pg.getJobs().stream().map(WorkflowRequest.JobInGroupRequest::getJobId).toList()
+                        : List.<String>of())
+                .toList();
+        WorkflowDag dag = WorkflowDag.build(groups, dependsOn);
+        if (!dag.isAcyclic()) {
+            return "Job dependencies contain a cycle involving: " + dag.cycleJobIds();
+        }
+        return null;
+    }
+
+    private List<WorkflowRequest.JobInGroupRequest> requestJobs(WorkflowRequest request) {
+        return sortedGroups(request).stream()
+                .filter(pg -> pg.getJobs() != null)
+                .flatMap(pg -> pg.getJobs().stream())
+                .toList();
+    }
+
+    private List<WorkflowRequest.PriorityGroupRequest> sortedGroups(WorkflowRequest request) {
+        if (request.getPriorityGroups() == null) {
+            return List.of();
+        }
+        return request.getPriorityGroups().stream()
+                .sorted(Comparator.comparing(WorkflowRequest.PriorityGroupRequest::getPriority,
+                        Comparator.nullsLast(Comparator.naturalOrder())))
+                .toList();
+    }
+
     /**
      * Clean up stuck workflow runs that have been RUNNING for too long
      */
@@ -0,0 +1,21 @@
+package com.tes.batch.scheduler.domain.workflow.vo;
+
+import lombok.*;
+
+/**
+ * Workflow Job Dependency VO.
+ * Edge of the workflow DAG: jobId starts once dependsOnJobId has finished.
+ * Maps to scheduler_workflow_job_dependencies table.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkflowJobDependencyVO {
+
+    private String workflowId;
+
+    private String jobId;
+
+    private String dependsOnJobId;
+}
@@ -1,23 +1,30 @@
 package com.tes.batch.scheduler.message;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tes.batch.common.dto.JobResult;
 import com.tes.batch.common.enums.TaskStatus;
+import com.tes.batch.common.util.MessageCodec;
 import com.tes.batch.scheduler.domain.job.mapper.JobMapper;
 import com.tes.batch.scheduler.domain.job.mapper.JobRunLogMapper;
 import com.tes.batch.scheduler.domain.job.vo.JobRunLogVO;
 import com.tes.batch.scheduler.domain.job.vo.JobVO;
+import com.tes.batch.scheduler.scheduler.RunDeadlineIndex;
+import com.tes.batch.scheduler.scheduler.RunLogWriter;
 import com.tes.batch.scheduler.scheduler.SchedulerService;
+import com.tes.batch.scheduler.workflow.WorkflowExecutionService;
+import com.tes.batch.scheduler.workflow.WorkflowOrchestrator;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.concurrent.TimeUnit;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Listens for job results from Agents via Redis List (BRPOP)
@@ -30,11 +37,18 @@ public class JobResultListener {
     private final RedisTemplate<String, Object> redisTemplate;
     private final JobMapper jobMapper;
     private final JobRunLogMapper jobRunLogMapper;
-    private final ObjectMapper objectMapper;
+    private final MessageCodec messageCodec;
     private final SchedulerService schedulerService;
     private final PlatformTransactionManager transactionManager;
+    private final WorkflowOrchestrator workflowOrchestrator;
+    private final RunDeadlineIndex deadlineIndex;
+    private final RunLogWriter runLogWriter;
 
     private static final String RESULT_LIST_KEY = "job:result";
+    private static final byte[] RAW_RESULT_LIST_KEY = RESULT_LIST_KEY.getBytes(StandardCharsets.UTF_8);
+    /** Run log statuses after which no further result applies */
+    private static final Set<String> TERMINAL_LOG_STATUSES =
+            Set.of("SUCCESS", "FAILURE", "FAILED", "TIMEOUT", "REVOKED", "BROKEN", "SKIPPED");
     private Thread consumerThread;
 
     @PostConstruct
@@ -46,11 +60,15 @@ public class JobResultListener {
             long backoffMs = 2000;
             while (!Thread.currentThread().isInterrupted()) {
                 try {
-                    Object message = redisTemplate.opsForList().rightPop(RESULT_LIST_KEY, 5, TimeUnit.SECONDS);
-                    if (message != null) {
-                        JobResult result = objectMapper.convertValue(message, JobResult.class);
+                    // Raw BRPOP so the value is decoded once, straight into JobResult
+                    List<byte[]> popped = redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                            connection.listCommands().bRPop(5, RAW_RESULT_LIST_KEY));
+                    if (popped != null && popped.size() >= 2) {
+                        JobResult result = messageCodec.decode(popped.get(1), JobResult.class);
                         log.info("Received job result: jobId={}, status={}", result.getJobId(), result.getStatus());
                         txTemplate.executeWithoutResult(status -> processResult(result));
+                        // After commit, so the orchestrator sees this step's outcome
+                        workflowOrchestrator.onJobResult(result);
                     }
                     backoffMs = 2000; // [P8] reset on success
                 } catch (Exception e) {
@@ -85,16 +103,53 @@ public class JobResultListener {
         String jobId = result.getJobId();
         TaskStatus status = result.getStatus();
 
+        // Agents deliver results at least once (spool replay) and the Scheduler may have ended the run
+        // itself (timeout, force stop); only a cancel confirmation still applies to a revoked log
+        JobRunLogVO runLog = findRunLog(result);
+        if (runLog != null && TERMINAL_LOG_STATUSES.contains(runLog.getStatus())
+                && !(status == TaskStatus.CANCELLED && "REVOKED".equals(runLog.getStatus()))) {
+            log.info("Ignoring {} result for run log {} of job {}: already {}", status, runLog.getLogId(),
+                    jobId, runLog.getStatus());
+            return;
+        }
+        // A lapsed lease's attempt may still report after the Scheduler moved on to the next attempt
+        if (runLog != null && isStaleAttempt(result, runLog)) {
+            log.info("Ignoring {} result of attempt {} for run log {} of job {}: a later attempt is under way",
+                    status, result.getRetryAttempt(), runLog.getLogId(), jobId);
+            return;
+        }
+
         // Get current job
         JobVO job = jobMapper.findById(jobId);
         if (job == null) {
             log.warn("Job not found for result: {}", jobId);
             return;
         }
+        trackDeadline(result, job);
+
+        // A map step task shares its step's job; the job's stats and state change once, at the join
+        boolean mapTask = runLog != null && runLog.getCeleryTaskName() != null
+                && runLog.getCeleryTaskName().contains(WorkflowExecutionService.MAP_TASK_ID_MARKER);
 
         // Handle RETRY status separately - just update log and retryCount, keep job RUNNING
         if (status == TaskStatus.RETRY) {
-            processRetryResult(result, job);
+            processRetryResult(result, job, !mapTask);
+            return;
+        }
+
+        if (mapTask) {
+            if (status == TaskStatus.RUNNING) {
+                attributeRunLogToAgent(result);
+            }
+            updateRunLog(result, status);
+            log.info("Processed map task result: {} (task {}) - {}", jobId, result.getTaskId(), status);
+            return;
+        }
+
+        // CANCELLED only follows a force stop, which already set the job state; just record the log
+        if (status == TaskStatus.CANCELLED) {
+            updateRunLog(result, status);
+            log.info("Agent confirmed cancellation of job {} (task {})", jobId, result.getTaskId());
             return;
         }
 
@@ -131,6 +186,7 @@ public class JobResultListener {
             // Update state to RUNNING so UI reflects actual execution
             jobMapper.updateState(jobId, "RUNNING", job.getNextRunDate());
             log.debug("Job {} is now RUNNING", jobId);
+            attributeRunLogToAgent(result);
         } else if (isWorkflowJob) {
             // Workflow jobs: check autoDrop first
             if (Boolean.TRUE.equals(job.getAutoDrop())) {
@@ -168,23 +224,70 @@ public class JobResultListener {
         log.info("Processed job result: {} - {}", jobId, status);
     }
 
+    private JobRunLogVO findRunLog(JobResult result) {
+        if (result.getTaskId() == null) {
+            return null;
+        }
+        try {
+            return jobRunLogMapper.findStateById(Long.parseLong(result.getTaskId()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * True if the run has already concluded the result's attempt: attempt 0 when the original log went
+     * to RETRY, a later attempt when its retry log entry ({taskId}_retry_{n}) exists
+     */
+    private boolean isStaleAttempt(JobResult result, JobRunLogVO runLog) {
+        if (!"RETRY".equals(runLog.getStatus())) {
+            return false;
+        }
+        int attempt = result.getRetryAttempt() != null ? result.getRetryAttempt() : 0;
+        if (attempt == 0) {
+            return true;
+        }
+        Integer latest = jobRunLogMapper.findLatestRetryAttempt(runLog.getJobId(), result.getTaskId(),
+                runLog.getReqStartDate());
+        return latest != null && attempt <= latest;
+    }
+
+    /**
+     * Pool and stolen jobs run on whichever agent picked them up; the agent reports its own queue
+     */
+    private void attributeRunLogToAgent(JobResult result) {
+        if (result.getTaskId() == null || result.getQueueName() == null) {
+            return;
+        }
+        try {
+            int updated = jobRunLogMapper.updateSystemByQueueName(Long.parseLong(result.getTaskId()), result.getQueueName());
+            if (updated > 0) {
+                log.info("Run log {} attributed to agent queue {}", result.getTaskId(), result.getQueueName());
+            }
+        } catch (NumberFormatException e) {
+            log.debug("Non-numeric taskId, skipping run log attribution: {}", result.getTaskId());
+        }
+    }
+
     /**
      * Handle RETRY status - create log entry for each retry attempt
      * Job name stays unchanged, only retry_attempt (RETRY COUNT) shows the attempt number
      */
-    private void processRetryResult(JobResult result, JobVO job) {
+    private void processRetryResult(JobResult result, JobVO job, boolean updateJobStats) {
         String jobId = result.getJobId();
         int retryAttempt = result.getRetryAttempt() != null ? result.getRetryAttempt() : 0;
 
-        // Increment cumulative retryCount in job stats
-        int cumulativeRetryCount = job.getRetryCount() != null ? job.getRetryCount() : 0;
-        cumulativeRetryCount++;
+        if (updateJobStats) {
+            // Increment cumulative retryCount in job stats
+            int cumulativeRetryCount = job.getRetryCount() != null ? job.getRetryCount() : 0;
+            cumulativeRetryCount++;
 
-        Long lastStartDate = result.getStartTime() != null ? result.getStartTime() : System.currentTimeMillis();
-        jobMapper.updateRunStats(jobId, lastStartDate,
-                job.getRunCount() != null ? job.getRunCount() : 0,
-                job.getFailureCount() != null ? job.getFailureCount() : 0,
-                cumulativeRetryCount);
+            Long lastStartDate = result.getStartTime() != null ? result.getStartTime() : System.currentTimeMillis();
+            jobMapper.updateRunStats(jobId, lastStartDate,
+                    job.getRunCount() != null ? job.getRunCount() : 0,
+                    job.getFailureCount() != null ? job.getFailureCount() : 0,
+                    cumulativeRetryCount);
+        }
 
         // Calculate duration
         String duration = null;
@@ -196,7 +299,7 @@ public class JobResultListener {
         if (result.getTaskId() != null) {
             try {
                 Long logId = Long.parseLong(result.getTaskId());
-                JobRunLogVO originalLog = jobRunLogMapper.findById(logId);
+                JobRunLogVO originalLog = jobRunLogMapper.findStateById(logId);
                 if (originalLog == null) {
                     log.warn("Original log not found for logId: {}", logId);
                     return;
@@ -247,7 +350,7 @@ public class JobResultListener {
                             .output(result.getOutput())
                             .userName(originalLog.getUserName())
                             .build();
-                    jobRunLogMapper.insert(retryLog);
+                    runLogWriter.write(retryLog);
                     log.info("Created retry log entry for job {} attempt {}, new logId={}",
                             jobId, retryAttempt, retryLog.getLogId());
                 }
@@ -260,6 +363,26 @@ public class JobResultListener {
                 jobId, retryAttempt, result.getError());
     }
 
+    /**
+     * A started run gets its max-run-duration deadline; any other result ends the current deadline
+     */
+    private void trackDeadline(JobResult result, JobVO job) {
+        if (result.getTaskId() == null) {
+            return;
+        }
+        try {
+            Long logId = Long.parseLong(result.getTaskId());
+            if (result.getStatus() == TaskStatus.RUNNING) {
+                long startTime = result.getStartTime() != null ? result.getStartTime() : System.currentTimeMillis();
+                deadlineIndex.trackRunning(logId, startTime, job.getMaxRunDuration());
+            } else {
+                deadlineIndex.untrack(logId);
+            }
+        } catch (NumberFormatException e) {
+            // Not a run log ID; updateRunLog reports it
+        }
+    }
+
     /**
      * Update run log entry based on result
      */
@@ -319,7 +442,7 @@ public class JobResultListener {
                     );
                 } else {
                     // Subsequent attempts: INSERT new log entry for this final attempt
-                    JobRunLogVO originalLog = jobRunLogMapper.findById(logId);
+                    JobRunLogVO originalLog = jobRunLogMapper.findStateById(logId);
                     if (originalLog != null) {
                         // Get base job name (strip any existing retry suffix)
                         String baseJobName = originalLog.getJobName();
@@ -350,7 +473,7 @@ public class JobResultListener {
                                 .output(result.getOutput())
                                 .userName(originalLog.getUserName())
                                 .build();
-                        jobRunLogMapper.insert(finalLog);
+                        runLogWriter.write(finalLog);
                         log.info("Created final log entry for job {} attempt {} with status {}, new logId={}",
                                 originalLog.getJobId(), retryAttempt, logStatus, finalLog.getLogId());
                     }
@@ -5,8 +5,11 @@ import com.tes.batch.common.dto.WorkflowMessage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+
 /**
  * Publishes job messages to Redis for Agent consumption
  */
@@ -16,6 +19,13 @@ import org.springframework.stereotype.Service;
 public class RedisMessagePublisher {
 
     private final RedisTemplate<String, Object> redisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    /** Per-agent control channel (agent:control:{queue}, agent:control:pool:{pool}) */
+    private static final String CONTROL_CHANNEL_PREFIX = "agent:control:";
+    /** Cancel marker checked by agents for tasks that missed the control message */
+    private static final String CANCEL_MARKER_PREFIX = "task:cancel:";
+    private static final Duration CANCEL_MARKER_TTL = Duration.ofHours(24);
 
     /**
      * Publish job to specific queue
@@ -45,6 +55,34 @@ public class RedisMessagePublisher {
         }
     }
 
+    /**
+     * Ask the agent(s) that may hold the task to cancel it.
+     * The marker covers tasks still queued or agents that miss the channel message.
+     */
+    public void publishCancel(String taskId, String queueName, String poolName) {
+        sendCancel(taskId, queueName, poolName);
+    }
+
+    /**
+     * Ask the agent to abandon one attempt of a task whose lease lapsed, leaving later attempts alone.
+     * The agent stops it and discards its outcome.
+     */
+    public void publishAttemptCancel(String taskId, int attempt, String queueName, String poolName) {
+        sendCancel(taskId + ":" + attempt, queueName, poolName);
+    }
+
+    private void sendCancel(String target, String queueName, String poolName) {
+        stringRedisTemplate.opsForValue().set(CANCEL_MARKER_PREFIX + target, "1", CANCEL_MARKER_TTL);
+        String command = "cancel:" + target;
+        if (queueName != null) {
+            stringRedisTemplate.convertAndSend(CONTROL_CHANNEL_PREFIX + queueName, command);
+        }
+        if (poolName != null) {
+            stringRedisTemplate.convertAndSend(CONTROL_CHANNEL_PREFIX + "pool:" + poolName, command);
+        }
+        log.info("Published cancel for task {} (queue: {}, pool: {})", target, queueName, poolName);
+    }
+
     /**
      * Check if agent is online for given queue
      */
@@ -2,13 +2,12 @@ package com.tes.batch.scheduler.scheduler;
 
 import com.tes.batch.common.dto.JobMessage;
 import com.tes.batch.common.enums.JobType;
+import com.tes.batch.scheduler.agent.ServerSelector;
 import com.tes.batch.scheduler.domain.group.mapper.JobGroupMapper;
 import com.tes.batch.scheduler.domain.group.vo.JobGroupVO;
 import com.tes.batch.scheduler.domain.job.mapper.JobMapper;
-import com.tes.batch.scheduler.domain.job.mapper.JobRunLogMapper;
 import com.tes.batch.scheduler.domain.job.vo.JobRunLogVO;
 import com.tes.batch.scheduler.domain.job.vo.JobVO;
-import com.tes.batch.scheduler.domain.server.mapper.JobServerMapper;
 import com.tes.batch.scheduler.domain.server.vo.JobServerVO;
 import com.tes.batch.scheduler.domain.user.mapper.UserMapper;
 import com.tes.batch.scheduler.domain.user.vo.UserVO;
@@ -33,13 +32,13 @@ public class BatchJobExecutor implements Job {
     private JobMapper jobMapper;
 
     @Autowired
-    private JobRunLogMapper jobRunLogMapper;
+    private RunLogWriter runLogWriter;
 
     @Autowired
     private JobGroupMapper groupMapper;
 
     @Autowired
-    private JobServerMapper serverMapper;
+    private ServerSelector serverSelector;
 
     @Autowired
     private UserMapper userMapper;
@@ -50,6 +49,9 @@ public class BatchJobExecutor implements Job {
     @Autowired
     private RedisMessagePublisher redisMessagePublisher;
 
+    @Autowired
+    private RunDeadlineIndex deadlineIndex;
+
     @Override
     public void execute(JobExecutionContext context) throws JobExecutionException {
         String jobId = context.getJobDetail().getJobDataMap().getString("jobId");
@@ -79,8 +81,8 @@ public class BatchJobExecutor implements Job {
                 return;
             }
 
-            // Get available server with failover support (primary -> secondary -> tertiary)
-            JobServerVO server = getAvailableServer(job);
+            // Get available server (failover order or load-based, per app.scheduler.server-selection)
+            JobServerVO server = serverSelector.select(job);
 
             if (server == null) {
                 log.warn("No healthy server available for job: {} (tried primary, secondary, tertiary)", jobId);
@@ -88,14 +90,14 @@ public class BatchJobExecutor implements Job {
                 return;
             }
 
-            String queueName = server.getQueueName();
+            String queueName = serverSelector.queueFor(job, server);
             if (queueName == null || queueName.isEmpty()) {
                 log.warn("No queue configured for server: {}", server.getSystemId());
                 return;
             }
 
             // Log which server was selected
-            String serverRole = determineServerRole(job, server.getSystemId());
+            String serverRole = serverSelector.determineServerRole(job, server.getSystemId());
             log.info("Selected {} server for job {}: {} ({})",
                     serverRole, jobId, server.getSystemName(), server.getSystemId());
 
@@ -135,7 +137,8 @@ public class BatchJobExecutor implements Job {
                     .userName(creatorUserId) // job creator
                     .build();
 
-            jobRunLogMapper.insert(runLog);
+            runLogWriter.write(runLog);
+            deadlineIndex.trackPending(runLog.getLogId(), now);
 
             // Update job state to RUNNING and set last_start_date at Scheduler trigger time
             jobMapper.updateStateWithLastStart(jobId, "RUNNING", null, now);
@@ -158,6 +161,7 @@ public class BatchJobExecutor implements Job {
                     .build();
 
             redisMessagePublisher.publishJob(queueName, message);
+            serverSelector.recordDispatch(server.getQueueName());
 
             // NOTE: Do NOT reschedule here - state must stay RUNNING until job completes
             // Rescheduling happens in JobResultListener when result is received from agent
@@ -170,70 +174,6 @@ public class BatchJobExecutor implements Job {
         }
     }
 
-    /**
-     * Get available server with failover support.
-     * Tries primary -> secondary -> tertiary in order.
-     * Returns first server that is ONLINE and healthy.
-     */
-    private JobServerVO getAvailableServer(JobVO job) {
-        // Try primary server
-        if (job.getSystemId() != null) {
-            JobServerVO primary = serverMapper.findById(job.getSystemId());
-            if (isServerAvailable(primary)) {
-                return primary;
-            }
-            log.info("Primary server {} is unavailable for job {}", job.getSystemId(), job.getJobId());
-        }
-
-        // Try secondary server
-        if (job.getSecondarySystemId() != null) {
-            JobServerVO secondary = serverMapper.findById(job.getSecondarySystemId());
-            if (isServerAvailable(secondary)) {
-                log.info("Failover to secondary server {} for job {}", job.getSecondarySystemId(), job.getJobId());
-                return secondary;
-            }
-            log.info("Secondary server {} is unavailable for job {}", job.getSecondarySystemId(), job.getJobId());
-        }
-
-        // Try tertiary server
-        if (job.getTertiarySystemId() != null) {
-            JobServerVO tertiary = serverMapper.findById(job.getTertiarySystemId());
-            if (isServerAvailable(tertiary)) {
-                log.info("Failover to tertiary server {} for job {}", job.getTertiarySystemId(), job.getJobId());
-                return tertiary;
-            }
-            log.info("Tertiary server {} is unavailable for job {}", job.getTertiarySystemId(), job.getJobId());
-        }
-
-        return null;
-    }
-
-    /**
-     * Check if server is available (ONLINE and healthy)
-     */
-    private boolean isServerAvailable(JobServerVO server) {
-        if (server == null) {
-            return false;
-        }
-        boolean isOnline = "ONLINE".equals(server.getAgentStatus());
-        boolean isHealthy = Boolean.TRUE.equals(server.getIsHealthy());
-        return isOnline && isHealthy;
-    }
-
-    /**
-     * Determine the role of the selected server (primary, secondary, or tertiary)
-     */
-    private String determineServerRole(JobVO job, String selectedSystemId) {
-        if (selectedSystemId.equals(job.getSystemId())) {
-            return "primary";
-        } else if (selectedSystemId.equals(job.getSecondarySystemId())) {
-            return "secondary";
-        } else if (selectedSystemId.equals(job.getTertiarySystemId())) {
-            return "tertiary";
-        }
-        return "unknown";
-    }
-
     /**
      * Parse maxRunDuration string to seconds.
      * Formats: "3600" (seconds), "01:00:00" (HH:mm:ss), "PT1H" (ISO-8601)
@@ -0,0 +1,120 @@
+package com.tes.batch.scheduler.scheduler;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * In-memory deadlines of active run logs, so timeouts are found without scanning the log table.
+ *
+ * A log is tracked when it is dispatched (PENDING: scheduled time + pending timeout) and again when
+ * its agent reports it started (RUNNING: start time + the job's max run duration); a final result
+ * untracks it. Deadlines sit in a min-heap; re-tracking or untracking only updates the map and the
+ * outdated heap entry is dropped when it surfaces, so every operation is O(log n).
+ *
+ * The index is a hint: {@link TimeoutCheckScheduler} re-reads each due log before acting on it and
+ * rebuilds the index from the database on startup and periodically.
+ */
+@Slf4j
+@Component
+public class RunDeadlineIndex {
+
+    /** A PENDING log not started within this time is failed (server unavailable) */
+    public static final long PENDING_TIMEOUT_MS = 5 * 60 * 1000L;
+    /** Max run duration of jobs without one */
+    public static final long DEFAULT_MAX_RUN_MS = 60 * 60 * 1000L;
+
+    private record Entry(long deadline, long logId) { }
+
+    private final PriorityQueue<Entry> heap = new PriorityQueue<>(
+            (a, b) -> a.deadline != b.deadline ? Long.compare(a.deadline, b.deadline) : Long.compare(a.logId, b.logId));
+    /** Current deadline per log; heap entries that disagree are outdated */
+    private final Map<Long, Long> deadlines = new HashMap<>();
+
+    public void trackPending(Long logId, Long scheduledAt) {
+        if (logId != null && scheduledAt != null) {
+            track(logId, pendingDeadline(scheduledAt));
+        }
+    }
+
+    public void trackRunning(Long logId, Long startedAt, String maxRunDuration) {
+        if (logId != null && startedAt != null) {
+            track(logId, runningDeadline(startedAt, maxRunDuration));
+        }
+    }
+
+    public synchronized void track(long logId, long deadline) {
+        Long current = deadlines.put(logId, deadline);
+        if (current == null || current != deadline) {
+            heap.add(new Entry(deadline, logId));
+        }
+    }
+
+    public synchronized void untrack(Long logId) {
+        if (logId != null) {
+            deadlines.remove(logId);
+        }
+    }
+
+    /**
+     * Remove and return the logs whose deadline is at or before now
+     */
+    public synchronized List<Long> pollDue(long now) {
+        List<Long> due = new ArrayList<>();
+        while (!heap.isEmpty() && heap.peek().deadline <= now) {
+            Entry entry = heap.poll();
+            Long current = deadlines.get(entry.logId);
+            if (current != null && current == entry.deadline) {
+                deadlines.remove(entry.logId);
+                due.add(entry.logId);
+            }
+        }
+        // Outdated entries pile up if logs are re-tracked far ahead of their old deadline
+        if (heap.size() > 2 * deadlines.size() + 1024) {
+            heap.clear();
+            deadlines.forEach((logId, deadline) -> heap.add(new Entry(deadline, logId)));
+        }
+        return due;
+    }
+
+    public synchronized int size() {
+        return deadlines.size();
+    }
+
+    public static long pendingDeadline(long scheduledAt) {
+        return scheduledAt + PENDING_TIMEOUT_MS;
+    }
+
+    public static long runningDeadline(long startedAt, String maxRunDuration) {
+        long maxDurationMs = parseDurationToMillis(maxRunDuration);
+        return startedAt + (maxDurationMs > 0 ? maxDurationMs : DEFAULT_MAX_RUN_MS);
+    }
+
+    /**
+     * Parse duration string (HH:MM:SS) to milliseconds; 0 if missing or invalid
+     */
+    public static long parseDurationToMillis(String duration) {
+        if (duration == null || duration.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            String[] parts = duration.split(":");
+            if (parts.length == 3) {
+                long hours = Long.parseLong(parts[0]);
+                long minutes = Long.parseLong(parts[1]);
+                long seconds = Long.parseLong(parts[2]);
+                return (hours * 3600 + minutes * 60 + seconds) * 1000;
+            }
+        } catch (NumberFormatException e) {
+            log.warn("Invalid duration format: {}", duration);
+        }
+
+        return 0;
+    }
+}
@@ -0,0 +1,136 @@
+package com.tes.batch.scheduler.scheduler;
+
+import com.tes.batch.scheduler.domain.job.mapper.RunLogPartitionMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Maintains the monthly partitions of scheduler_job_run_logs (V25 migration, UTC months on scheduled_time).
+ *
+ * - Creates the partitions of the current and next app.run-log.partition.months-ahead months
+ * - Retention: partitions older than app.run-log.retention.months whole months are detached and
+ *   dropped (mode drop) or moved to app.run-log.retention.archive-schema (mode archive), instead
+ *   of deleting rows. 0 keeps everything.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RunLogPartitionMaintainer {
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("scheduler_job_run_logs_p(\\d{6})");
+    private static final Pattern SCHEMA_NAME = Pattern.compile("[a-z_][a-z0-9_]*");
+    private static final DateTimeFormatter PARTITION_MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private final RunLogPartitionMapper partitionMapper;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${app.run-log.partition.months-ahead:3}")
+    private int monthsAhead;
+
+    @Value("${app.run-log.retention.months:0}")
+    private int retentionMonths;
+
+    @Value("${app.run-log.retention.mode:drop}")
+    private String retentionMode;
+
+    @Value("${app.run-log.retention.archive-schema:archive}")
+    private String archiveSchema;
+
+    @PostConstruct
+    public void validate() {
+        if (monthsAhead < 1) {
+            throw new IllegalStateException("app.run-log.partition.months-ahead must be at least 1");
+        }
+        if (retentionMonths < 0) {
+            throw new IllegalStateException("app.run-log.retention.months must not be negative");
+        }
+        if (!"drop".equals(retentionMode) && !"archive".equals(retentionMode)) {
+            throw new IllegalStateException("Unknown app.run-log.retention.mode: " + retentionMode);
+        }
+        if (!SCHEMA_NAME.matcher(archiveSchema).matches()) {
+            throw new IllegalStateException("Invalid app.run-log.retention.archive-schema: " + archiveSchema);
+        }
+    }
+
+    /**
+     * Make sure this month's partition exists before the first logs of the day are written
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        maintain();
+    }
+
+    /**
+     * Every 6 hours by default
+     */
+    @Scheduled(fixedDelayString = "${app.run-log.partition.maintenance-interval:21600000}",
+            initialDelayString = "${app.run-log.partition.maintenance-interval:21600000}")
+    public void maintain() {
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        try {
+            ensurePartitions(current);
+        } catch (Exception e) {
+            log.error("Failed to create run log partitions", e);
+        }
+        if (retentionMonths > 0) {
+            try {
+                applyRetention(current.minusMonths(retentionMonths));
+            } catch (Exception e) {
+                log.error("Failed to apply run log retention", e);
+            }
+        }
+    }
+
+    private void ensurePartitions(YearMonth current) {
+        for (int i = 0; i <= monthsAhead; i++) {
+            String created = partitionMapper.ensurePartition(current.plusMonths(i).atDay(1));
+            if (created != null) {
+                log.info("Created run log partition {}", created);
+            }
+        }
+    }
+
+    /**
+     * Detach and drop or archive every monthly partition before the cutoff month
+     */
+    private void applyRetention(YearMonth cutoff) {
+        boolean archive = "archive".equals(retentionMode);
+        if (archive) {
+            partitionMapper.createSchema(archiveSchema);
+        }
+        for (String name : partitionMapper.findMonthlyPartitions()) {
+            Matcher matcher = PARTITION_NAME.matcher(name);
+            if (!matcher.matches() || !YearMonth.parse(matcher.group(1), PARTITION_MONTH).isBefore(cutoff)) {
+                continue;
+            }
+            try {
+                new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                    partitionMapper.detachPartition(name);
+                    if (archive) {
+                        partitionMapper.moveToSchema(name, archiveSchema);
+                    } else {
+                        partitionMapper.dropTable(name);
+                    }
+                });
+                log.info("Run log retention: {} partition {} (older than {} months)",
+                        archive ? "archived" : "dropped", name, retentionMonths);
+            } catch (Exception e) {
+                log.error("Failed to remove run log partition {}", name, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.tes.batch.scheduler.scheduler;
+
+import com.tes.batch.scheduler.domain.job.mapper.RunLogRollupMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Keeps the hourly run log rollups (V26 migration) current.
+ *
+ * - Fold: every app.run-log.rollup.fold-interval, moves the deltas captured by the run log trigger
+ *   into the rollups. Dashboard and server failure stats lag by at most this interval.
+ * - Rebuild: every app.run-log.rollup.rebuild-interval, recomputes the last
+ *   app.run-log.rollup.rebuild-hours hours from the raw logs, repairing any drift.
+ *
+ * Both run under one transaction-scoped advisory lock, so only one Scheduler instance works at a time.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RunLogRollupMaintainer {
+
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+
+    private final RunLogRollupMapper rollupMapper;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${app.run-log.rollup.rebuild-hours:48}")
+    private int rebuildHours;
+
+    @Scheduled(fixedDelayString = "${app.run-log.rollup.fold-interval:5000}")
+    public void fold() {
+        try {
+            Integer folded = new TransactionTemplate(transactionManager).execute(status ->
+                    rollupMapper.tryLock() ? rollupMapper.foldDeltas() : 0);
+            if (folded != null && folded > 0) {
+                log.debug("Folded {} run log rollup deltas", folded);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to fold run log rollup deltas: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Every hour by default
+     */
+    @Scheduled(fixedDelayString = "${app.run-log.rollup.rebuild-interval:3600000}",
+            initialDelayString = "${app.run-log.rollup.rebuild-interval:3600000}")
+    public void rebuildRecent() {
+        if (rebuildHours <= 0) {
+            return;
+        }
+        long to = (System.currentTimeMillis() / HOUR_MS + 1) * HOUR_MS;
+        try {
+            rebuild(to - rebuildHours * HOUR_MS, to);
+        } catch (Exception e) {
+            log.warn("Failed to rebuild run log rollups: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Recompute the rollup buckets starting in [from, to) from the raw logs; false if another
+     * instance held the lock. Logs already removed by partition retention are not restored.
+     */
+    public boolean rebuild(long from, long to) {
+        if (from >= to) {
+            throw new IllegalArgumentException("Rebuild range is empty");
+        }
+        // One snapshot for the fold and the recount: deltas committed after it stay pending
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        Boolean rebuilt = template.execute(status -> {
+            if (!rollupMapper.tryLock()) {
+                return false;
+            }
+            rollupMapper.foldDeltas();
+            rollupMapper.deleteRunRollups(from, to);
+            int runBuckets = rollupMapper.rebuildRunRollups(from, to);
+            rollupMapper.deleteFailureRollups(from, to);
+            int failureBuckets = rollupMapper.rebuildFailureRollups(from, to);
+            log.info("Rebuilt run log rollups [{}, {}): {} run buckets, {} failure buckets",
+                    from, to, runBuckets, failureBuckets);
+            return true;
+        });
+        return Boolean.TRUE.equals(rebuilt);
+    }
+}
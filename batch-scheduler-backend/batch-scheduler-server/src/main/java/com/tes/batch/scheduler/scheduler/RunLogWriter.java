@@ -0,0 +1,249 @@
+package com.tes.batch.scheduler.scheduler;
+
+import com.tes.batch.scheduler.domain.job.mapper.JobRunLogMapper;
+import com.tes.batch.scheduler.domain.job.vo.JobRunLogVO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Writer of new run logs for every dispatch path: scheduled ({@link BatchJobExecutor}), manual runs,
+ * workflow runs and the retry entries of the result listener.
+ *
+ * A log gets its id (the task id sent to the agent) from blocks of app.run-log.writer.id-block-size
+ * ids reserved from the log_id sequence, without a round trip per run. Outside a transaction, queued
+ * logs are written by one thread as a multi-row INSERT in one transaction: as soon as the previous
+ * flush is done, after lingering up to app.run-log.writer.linger ms for more rows, at most
+ * app.run-log.writer.max-batch rows at a time. {@link #write} returns once its row is committed, so no
+ * message is published for a log that is not in the database, while concurrent dispatches share one commit.
+ *
+ * Inside a transaction the rows are inserted on the caller's own connection instead, as multi-row
+ * INSERTs with ids from the same blocks, and commit with the rest of its work. Waiting for the writer
+ * thread there would keep the caller's pooled connection idle while the writer needs another one,
+ * which can exhaust the pool under load.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RunLogWriter {
+
+    /** Bind parameters per row of insertBatchWithIds; PostgreSQL allows 32767 per statement */
+    private static final int PARAMS_PER_ROW = 23;
+
+    private final JobRunLogMapper jobRunLogMapper;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${app.run-log.writer.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.run-log.writer.id-block-size:100}")
+    private int idBlockSize;
+
+    @Value("${app.run-log.writer.max-batch:500}")
+    private int maxBatch;
+
+    @Value("${app.run-log.writer.linger:2}")
+    private long lingerMs;
+
+    @Value("${app.run-log.writer.flush-timeout:10000}")
+    private long flushTimeoutMs;
+
+    private final Deque<Long> reservedIds = new ArrayDeque<>();
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+
+    private Thread flusher;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        if (idBlockSize < 1) {
+            throw new IllegalStateException("app.run-log.writer.id-block-size must be at least 1");
+        }
+        if (maxBatch < 1 || (long) maxBatch * PARAMS_PER_ROW > Short.MAX_VALUE) {
+            throw new IllegalStateException("app.run-log.writer.max-batch must be between 1 and "
+                    + Short.MAX_VALUE / PARAMS_PER_ROW);
+        }
+        if (lingerMs < 0 || flushTimeoutMs < 1) {
+            throw new IllegalStateException("app.run-log.writer.linger must not be negative and flush-timeout must be positive");
+        }
+        if (!enabled) {
+            log.info("Run log writer disabled; run logs are inserted one by one");
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::flushLoop, "run-log-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Run log writer started: id blocks of {}, batches of up to {} rows, linger {}ms",
+                idBlockSize, maxBatch, lingerMs);
+    }
+
+    /**
+     * Write a new run log; sets and returns its logId. Outside a transaction it returns once the row is
+     * committed, inside one once the row is inserted in that transaction.
+     */
+    public long write(JobRunLogVO runLog) {
+        writeAll(List.of(runLog));
+        return runLog.getLogId();
+    }
+
+    /**
+     * Write new run logs like {@link #write}, sharing one commit (or one statement per max-batch rows
+     * inside a transaction); sets their logIds in order
+     */
+    public void writeAll(List<JobRunLogVO> runLogs) {
+        if (runLogs.isEmpty()) {
+            return;
+        }
+        if (!running) {
+            insertWithGeneratedIds(runLogs);
+            return;
+        }
+        List<Long> ids = nextLogIds(runLogs.size());
+        for (int i = 0; i < runLogs.size(); i++) {
+            runLogs.get(i).setLogId(ids.get(i));
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            for (int from = 0; from < runLogs.size(); from += maxBatch) {
+                jobRunLogMapper.insertBatchWithIds(runLogs.subList(from, Math.min(from + maxBatch, runLogs.size())));
+            }
+            return;
+        }
+
+        List<PendingWrite> pending = new ArrayList<>(runLogs.size());
+        for (JobRunLogVO runLog : runLogs) {
+            pending.add(new PendingWrite(runLog, new CompletableFuture<>()));
+        }
+        queue.addAll(pending);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushTimeoutMs);
+        for (PendingWrite write : pending) {
+            Long logId = write.runLog().getLogId();
+            try {
+                write.done().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Failed to write run log " + logId
+                        + ": " + e.getCause().getMessage(), e.getCause());
+            } catch (TimeoutException e) {
+                throw new IllegalStateException("Timed out writing run log " + logId);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while writing run log " + logId);
+            }
+        }
+    }
+
+    /**
+     * Writer disabled: one statement per row, or per max-batch rows, with ids generated by the insert
+     */
+    private void insertWithGeneratedIds(List<JobRunLogVO> runLogs) {
+        if (runLogs.size() == 1) {
+            jobRunLogMapper.insert(runLogs.get(0));
+            return;
+        }
+        for (int from = 0; from < runLogs.size(); from += maxBatch) {
+            jobRunLogMapper.insertBatch(runLogs.subList(from, Math.min(from + maxBatch, runLogs.size())));
+        }
+    }
+
+    private List<Long> nextLogIds(int count) {
+        synchronized (reservedIds) {
+            if (reservedIds.size() < count) {
+                // One round trip even when a workflow run needs more than a block
+                List<Long> ids = new ArrayList<>(jobRunLogMapper.allocateLogIds(
+                        Math.max(idBlockSize, count - reservedIds.size())));
+                // Hand ids out in order so that log_id keeps following dispatch order
+                ids.sort(null);
+                reservedIds.addAll(ids);
+            }
+            List<Long> ids = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                ids.add(reservedIds.poll());
+            }
+            return ids;
+        }
+    }
+
+    private void flushLoop() {
+        List<PendingWrite> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - batch.size());
+                long lingerUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+                while (batch.size() < maxBatch) {
+                    long wait = lingerUntil - System.nanoTime();
+                    PendingWrite next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatch - batch.size());
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                // Shutdown: keep draining until the queue is empty
+            } catch (Exception e) {
+                log.error("Run log writer failed", e);
+                batch.forEach(pending -> pending.done().completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        List<JobRunLogVO> rows = batch.stream().map(PendingWrite::runLog).toList();
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                    jobRunLogMapper.insertBatchWithIds(rows));
+            batch.forEach(pending -> pending.done().complete(null));
+        } catch (Exception e) {
+            if (batch.size() == 1) {
+                batch.get(0).done().completeExceptionally(e);
+                return;
+            }
+            // One bad row fails the whole statement; retry row by row so only that one fails
+            log.warn("Failed to write {} run logs in one batch, retrying one by one: {}", batch.size(), e.getMessage());
+            for (PendingWrite pending : batch) {
+                flush(List.of(pending));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (flusher == null) {
+            return;
+        }
+        running = false;
+        try {
+            flusher.join(flushTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record PendingWrite(JobRunLogVO runLog, CompletableFuture<Void> done) {
+    }
+}
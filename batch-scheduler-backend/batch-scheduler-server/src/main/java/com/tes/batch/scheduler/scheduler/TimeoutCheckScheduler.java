@@ -4,20 +4,28 @@ import com.tes.batch.scheduler.domain.job.mapper.JobMapper;
 import com.tes.batch.scheduler.domain.job.mapper.JobRunLogMapper;
 import com.tes.batch.scheduler.domain.job.vo.JobRunLogVO;
 import com.tes.batch.scheduler.domain.job.vo.JobVO;
+import com.tes.batch.scheduler.domain.job.vo.RunDeadlineVO;
 import com.tes.batch.scheduler.domain.workflow.mapper.WorkflowMapper;
 import com.tes.batch.scheduler.domain.workflow.mapper.WorkflowRunMapper;
 import com.tes.batch.scheduler.domain.workflow.vo.WorkflowRunVO;
+import com.tes.batch.scheduler.workflow.WorkflowExecutionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
 
 /**
- * Scheduler that periodically checks for timed-out jobs and workflows.
+ * Scheduler that checks for timed-out jobs and workflows.
  * This handles cases where Agent fails to send results due to crashes or network issues.
+ * Job run logs are timed out from the {@link RunDeadlineIndex} within a second of their deadline;
+ * workflow runs are checked every minute.
  */
 @Slf4j
 @Component
@@ -29,88 +37,68 @@ public class TimeoutCheckScheduler {
     private final WorkflowRunMapper workflowRunMapper;
     private final WorkflowMapper workflowMapper;
     private final SchedulerService schedulerService;
+    private final RunDeadlineIndex deadlineIndex;
+    private final PlatformTransactionManager transactionManager;
 
     // Grace period for stuck workflow detection (30 seconds - detect quickly after all jobs complete)
     private static final long STUCK_WORKFLOW_GRACE_PERIOD = 30 * 1000L;
 
-    // Timeout for PENDING jobs (5 minutes - if job doesn't start within this time, server is likely unavailable)
-    private static final long PENDING_JOB_TIMEOUT = 5 * 60 * 1000L;
+    /**
+     * Rebuild the deadline index once the application is up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuildDeadlines();
+    }
 
     /**
-     * Check for timed-out jobs every 1 minute
+     * Re-add active logs the index missed (e.g. outcomes recorded while a result was lost)
      */
-    @Scheduled(fixedDelay = 60000, initialDelay = 60000)
-    @Transactional
-    public void checkTimeouts() {
-        log.debug("Checking for timed-out jobs and workflows...");
+    @Scheduled(fixedDelayString = "${app.timeout.reconcile-interval:600000}", initialDelayString = "${app.timeout.reconcile-interval:600000}")
+    public void rebuildDeadlines() {
+        try {
+            List<RunDeadlineVO> active = jobRunLogMapper.findActiveRunDeadlines();
+            for (RunDeadlineVO run : active) {
+                if ("RUNNING".equals(run.getStatus())) {
+                    Long startTime = run.getActualStartDate() != null ? run.getActualStartDate() : run.getReqStartDate();
+                    deadlineIndex.trackRunning(run.getLogId(), startTime, run.getMaxRunDuration());
+                } else {
+                    deadlineIndex.trackPending(run.getLogId(), run.getReqStartDate());
+                }
+            }
+            log.debug("Deadline index rebuilt from {} active run log(s), tracking {}", active.size(), deadlineIndex.size());
+        } catch (Exception e) {
+            log.error("Failed to rebuild run deadline index", e);
+        }
+    }
 
+    /**
+     * Time out run logs whose deadline passed; only due logs are read
+     */
+    @Scheduled(fixedDelayString = "${app.timeout.check-interval:1000}", initialDelay = 5000)
+    public void checkDeadlines() {
         long now = System.currentTimeMillis();
-        int timeoutCount = 0;
-
-        // Check job run logs that are RUNNING
-        List<JobRunLogVO> runningLogs = jobRunLogMapper.findByFilters(
-                null, null, null, null, "RUNNING",
-                null, null, 1000, 0
-        );
-
-        for (JobRunLogVO runLog : runningLogs) {
-            if (isLogTimedOut(runLog, now)) {
-                log.warn("Job run log {} timed out (job: {}, started: {})",
-                        runLog.getLogId(), runLog.getJobId(), runLog.getReqStartDate());
-
-                jobRunLogMapper.updateStatus(
-                        runLog.getLogId(),
-                        "TIMEOUT",
-                        "BROKEN",
-                        runLog.getActualStartDate(),
-                        now,
-                        formatDuration(now - (runLog.getActualStartDate() != null ? runLog.getActualStartDate() : runLog.getReqStartDate())),
-                        "Job exceeded maximum run duration",
-                        null,
-                        null
-                );
-
-                // Update job state to BROKEN
-                jobMapper.updateState(runLog.getJobId(), "BROKEN", null);
-                timeoutCount++;
+        // One transaction per log, so its timeout, job state and workflow run update commit together
+        TransactionTemplate txTemplate = new TransactionTemplate(transactionManager);
+        for (Long logId : deadlineIndex.pollDue(now)) {
+            try {
+                txTemplate.executeWithoutResult(status -> expire(logId, now));
+            } catch (Exception e) {
+                log.error("Failed to time out run log {}", logId, e);
             }
         }
+    }
 
-        // Check job run logs that are PENDING for too long (server unavailable)
-        List<JobRunLogVO> pendingLogs = jobRunLogMapper.findByFilters(
-                null, null, null, null, "PENDING",
-                null, null, 1000, 0
-        );
-
-        for (JobRunLogVO runLog : pendingLogs) {
-            if (runLog.getReqStartDate() != null && (now - runLog.getReqStartDate()) > PENDING_JOB_TIMEOUT) {
-                log.warn("Job run log {} stuck in PENDING for over 5 minutes (job: {}, scheduled: {}). Server may be unavailable.",
-                        runLog.getLogId(), runLog.getJobId(), runLog.getReqStartDate());
-
-                jobRunLogMapper.updateStatus(
-                        runLog.getLogId(),
-                        "FAILED",
-                        "BROKEN",
-                        null,
-                        now,
-                        null,
-                        "Job stuck in PENDING for over 5 minutes - server unavailable or agent not responding",
-                        null,
-                        null
-                );
-
-                // Update job state to BROKEN
-                jobMapper.updateState(runLog.getJobId(), "BROKEN", null);
-
-                // If this is part of a workflow, fail the workflow too
-                if (runLog.getWorkflowRunId() != null) {
-                    failStuckWorkflowRun(runLog.getWorkflowRunId(), now,
-                            "Job '" + runLog.getJobName() + "' stuck in PENDING - server unavailable");
-                }
+    /**
+     * Check for timed-out workflows every 1 minute
+     */
+    @Scheduled(fixedDelay = 60000, initialDelay = 60000)
+    @Transactional
+    public void checkTimeouts() {
+        log.debug("Checking for timed-out workflows...");
 
-                timeoutCount++;
-            }
-        }
+        long now = System.currentTimeMillis();
+        int timeoutCount = 0;
 
         // Check workflow runs that are RUNNING
         List<WorkflowRunVO> runningWorkflows = workflowRunMapper.findRunningWorkflows();
@@ -140,7 +128,7 @@ public class TimeoutCheckScheduler {
         timeoutCount += stuckCount;
 
         if (timeoutCount > 0) {
-            log.info("Marked {} jobs/workflows as timed out or stuck", timeoutCount);
+            log.info("Marked {} workflows as timed out or stuck", timeoutCount);
         }
     }
 
@@ -157,11 +145,12 @@ public class TimeoutCheckScheduler {
                 continue;
             }
 
-            // Check if there are any RUNNING or PENDING logs for this workflow run
-            List<JobRunLogVO> workflowLogs = jobRunLogMapper.findByWorkflowRunId(run.getWorkflowRunId());
+            // Check if there are any RUNNING, PENDING or WAITING (step not dispatched yet) logs for this workflow run
+            List<JobRunLogVO> workflowLogs = jobRunLogMapper.findStatesByWorkflowRunId(run.getWorkflowRunId());
 
             boolean hasActiveJobs = workflowLogs.stream()
-                    .anyMatch(log -> "RUNNING".equals(log.getStatus()) || "PENDING".equals(log.getStatus()));
+                    .anyMatch(log -> "RUNNING".equals(log.getStatus()) || "PENDING".equals(log.getStatus())
+                            || "WAITING".equals(log.getStatus()));
 
             if (!hasActiveJobs && !workflowLogs.isEmpty()) {
                 // All jobs have completed - determine final status based on job results
@@ -249,52 +238,96 @@ public class TimeoutCheckScheduler {
     }
 
     /**
-     * Check if a job run log has timed out based on max_run_duration
+     * Re-read a due log and time it out if it is still active and past its deadline;
+     * a log that moved on (e.g. PENDING -> RUNNING) is tracked again with its new deadline
      */
-    private boolean isLogTimedOut(JobRunLogVO runLog, long now) {
-        // Get job to check max_run_duration
-        JobVO job = jobMapper.findById(runLog.getJobId());
-        if (job == null) {
-            return false;
+    private void expire(Long logId, long now) {
+        JobRunLogVO runLog = jobRunLogMapper.findStateById(logId);
+        if (runLog == null) {
+            return;
         }
 
-        // Parse max run duration (default 1 hour if not set)
-        long maxDurationMs = parseDurationToMillis(job.getMaxRunDuration());
-        if (maxDurationMs == 0) {
-            maxDurationMs = 3600000L; // 1 hour default
-        }
-
-        // Check if elapsed time exceeds max duration
-        Long startTime = runLog.getActualStartDate() != null ? runLog.getActualStartDate() : runLog.getReqStartDate();
-        if (startTime == null) {
-            return false;
-        }
+        if ("RUNNING".equals(runLog.getStatus())) {
+            JobVO job = jobMapper.findById(runLog.getJobId());
+            // A map step's join log spans all of its tasks; the tasks are timed out one by one
+            if (job == null || isMapJoinLog(runLog, job)) {
+                return;
+            }
+            Long startTime = runLog.getActualStartDate() != null ? runLog.getActualStartDate() : runLog.getReqStartDate();
+            if (startTime == null) {
+                return;
+            }
+            long deadline = RunDeadlineIndex.runningDeadline(startTime, job.getMaxRunDuration());
+            if (deadline > now) {
+                deadlineIndex.track(logId, deadline);
+                return;
+            }
 
-        long elapsedMs = now - startTime;
-        return elapsedMs > maxDurationMs;
-    }
+            log.warn("Job run log {} timed out (job: {}, started: {})",
+                    runLog.getLogId(), runLog.getJobId(), startTime);
+
+            jobRunLogMapper.updateStatus(
+                    runLog.getLogId(),
+                    "TIMEOUT",
+                    "BROKEN",
+                    runLog.getActualStartDate(),
+                    now,
+                    formatDuration(now - startTime),
+                    "Job exceeded maximum run duration",
+                    null,
+                    null
+            );
+
+            // Update job state to BROKEN; a map task only fails its step, whose join sets the job state
+            if (!isMapTaskLog(runLog)) {
+                jobMapper.updateState(runLog.getJobId(), "BROKEN", null);
+            }
+        } else if ("PENDING".equals(runLog.getStatus())) {
+            if (runLog.getReqStartDate() == null) {
+                return;
+            }
+            long deadline = RunDeadlineIndex.pendingDeadline(runLog.getReqStartDate());
+            if (deadline > now) {
+                deadlineIndex.track(logId, deadline);
+                return;
+            }
 
-    /**
-     * Parse duration string (HH:MM:SS) to milliseconds
-     */
-    private long parseDurationToMillis(String duration) {
-        if (duration == null || duration.isEmpty()) {
-            return 0;
-        }
+            // Server unavailable
+            log.warn("Job run log {} stuck in PENDING for over 5 minutes (job: {}, scheduled: {}). Server may be unavailable.",
+                    runLog.getLogId(), runLog.getJobId(), runLog.getReqStartDate());
+
+            jobRunLogMapper.updateStatus(
+                    runLog.getLogId(),
+                    "FAILED",
+                    "BROKEN",
+                    null,
+                    now,
+                    null,
+                    "Job stuck in PENDING for over 5 minutes - server unavailable or agent not responding",
+                    null,
+                    null
+            );
+
+            // Update job state to BROKEN (left to the join for map tasks)
+            if (!isMapTaskLog(runLog)) {
+                jobMapper.updateState(runLog.getJobId(), "BROKEN", null);
+            }
 
-        try {
-            String[] parts = duration.split(":");
-            if (parts.length == 3) {
-                long hours = Long.parseLong(parts[0]);
-                long minutes = Long.parseLong(parts[1]);
-                long seconds = Long.parseLong(parts[2]);
-                return (hours * 3600 + minutes * 60 + seconds) * 1000;
+            // If this is part of a workflow, fail the workflow too
+            if (runLog.getWorkflowRunId() != null) {
+                failStuckWorkflowRun(runLog.getWorkflowRunId(), now,
+                        "Job '" + runLog.getJobName() + "' stuck in PENDING - server unavailable");
             }
-        } catch (NumberFormatException e) {
-            log.warn("Invalid duration format: {}", duration);
         }
+    }
+
+    private boolean isMapJoinLog(JobRunLogVO runLog, JobVO job) {
+        return runLog.getWorkflowRunId() != null && job.getWorkflowMapParams() != null && !isMapTaskLog(runLog);
+    }
 
-        return 0;
+    private boolean isMapTaskLog(JobRunLogVO runLog) {
+        return runLog.getCeleryTaskName() != null
+                && runLog.getCeleryTaskName().contains(WorkflowExecutionService.MAP_TASK_ID_MARKER);
     }
 
     /**
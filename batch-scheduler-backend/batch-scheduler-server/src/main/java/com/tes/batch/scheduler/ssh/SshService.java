@@ -300,6 +300,8 @@ public class SshService {
                     queue-capacity: 100
                     max-concurrent-jobs: 10
                     thread-name-prefix: job-executor-
+                  pool:
+                    name: ${AGENT_POOL_NAME:}
 
                 scheduler:
                   api-url: %s
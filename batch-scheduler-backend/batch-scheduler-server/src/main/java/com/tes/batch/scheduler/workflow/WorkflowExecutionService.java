@@ -3,24 +3,22 @@ package com.tes.batch.scheduler.workflow;
 import com.tes.batch.common.dto.JobMessage;
 import com.tes.batch.common.dto.WorkflowMessage;
 import com.tes.batch.common.enums.JobType;
-import com.tes.batch.scheduler.domain.group.mapper.JobGroupMapper;
-import com.tes.batch.scheduler.domain.group.vo.JobGroupVO;
+import com.tes.batch.common.util.MapParameters;
+import com.tes.batch.scheduler.agent.ServerSelector;
 import com.tes.batch.scheduler.domain.job.mapper.JobMapper;
 import com.tes.batch.scheduler.domain.job.mapper.JobRunLogMapper;
 import com.tes.batch.scheduler.domain.job.vo.JobRunLogVO;
 import com.tes.batch.scheduler.domain.job.vo.JobVO;
-import com.tes.batch.scheduler.domain.server.mapper.JobServerMapper;
 import com.tes.batch.scheduler.domain.server.vo.JobServerVO;
-import com.tes.batch.scheduler.domain.user.mapper.UserMapper;
-import com.tes.batch.scheduler.domain.user.vo.UserVO;
 import com.tes.batch.scheduler.domain.workflow.mapper.WorkflowMapper;
-import com.tes.batch.scheduler.domain.workflow.mapper.WorkflowPriorityGroupMapper;
 import com.tes.batch.scheduler.domain.workflow.mapper.WorkflowRunMapper;
 import com.tes.batch.scheduler.domain.workflow.vo.WorkflowPriorityGroupVO;
 import com.tes.batch.scheduler.domain.workflow.vo.WorkflowRunVO;
 import com.tes.batch.scheduler.domain.workflow.vo.WorkflowVO;
 import com.tes.batch.scheduler.message.RedisMessagePublisher;
 import com.tes.batch.scheduler.scheduler.RRuleParser;
+import com.tes.batch.scheduler.scheduler.RunDeadlineIndex;
+import com.tes.batch.scheduler.scheduler.RunLogWriter;
 import com.tes.batch.scheduler.scheduler.SchedulerService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -29,8 +27,10 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.ZoneId;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Service for executing workflows
@@ -41,16 +41,23 @@ import java.util.List;
 public class WorkflowExecutionService {
 
     private final WorkflowMapper workflowMapper;
-    private final WorkflowPriorityGroupMapper priorityGroupMapper;
     private final WorkflowRunMapper workflowRunMapper;
     private final JobMapper jobMapper;
     private final JobRunLogMapper jobRunLogMapper;
-    private final JobGroupMapper groupMapper;
-    private final JobServerMapper serverMapper;
-    private final UserMapper userMapper;
     private final RedisMessagePublisher messagePublisher;
     private final RRuleParser rruleParser;
     private final SchedulerService schedulerService;
+    private final ServerSelector serverSelector;
+    private final WorkflowOrchestrator workflowOrchestrator;
+    private final WorkflowPlanCache planCache;
+    private final RunDeadlineIndex deadlineIndex;
+    private final RunLogWriter runLogWriter;
+
+    /** In the task_id of map step task logs ({runId}_{jobId}_map_{index}); such logs are not checkpoints */
+    public static final String MAP_TASK_ID_MARKER = "_map_";
+
+    /** Runs that ended without success and can be resumed */
+    private static final Set<String> RESUMABLE_RUN_STATUSES = Set.of("FAILED", "TIMEOUT", "CANCELLED");
 
     /**
      * Execute a workflow by ID
@@ -73,8 +80,10 @@ public class WorkflowExecutionService {
         log.info("Starting workflow execution: {}", workflow.getWorkflowName());
 
         // Pre-check: Verify all jobs have at least one healthy server available
-        List<WorkflowPriorityGroupVO> priorityGroups = priorityGroupMapper.findByWorkflowId(workflow.getId());
-        String preCheckError = preCheckServerAvailability(priorityGroups);
+        WorkflowPlanCache.Plan plan = planCache.get(workflow.getId());
+        Map<String, Integer> runCounts = planCache.freshRunCounts(plan);
+        Map<String, JobServerVO> servers = serverSelector.snapshot();
+        String preCheckError = preCheckServerAvailability(plan, runCounts, servers);
         if (preCheckError != null) {
             log.error("Workflow pre-check failed: {}", preCheckError);
             // Create failed workflow run record
@@ -107,13 +116,7 @@ public class WorkflowExecutionService {
                 .status("RUNNING")
                 .build();
 
-        // Count total jobs
-        int totalJobs = 0;
-        for (WorkflowPriorityGroupVO pg : priorityGroups) {
-            List<JobVO> jobs = jobMapper.findByPriorityGroupId(pg.getId());
-            totalJobs += jobs.size();
-        }
-        workflowRun.setTotalJobs(totalJobs);
+        workflowRun.setTotalJobs(plan.getJobs().size());
 
         workflowRunMapper.insert(workflowRun);
         Long workflowRunId = workflowRun.getWorkflowRunId();
@@ -121,166 +124,228 @@ public class WorkflowExecutionService {
         // Update workflow status
         workflowMapper.updateStatus(workflow.getId(), "RUNNING", System.currentTimeMillis(), null);
 
-        // Build workflow message
-        WorkflowMessage message = buildWorkflowMessage(workflow, workflowRunId, priorityGroups);
-
-        // Determine target queue (use first job's server queue)
-        String targetQueue = determineTargetQueue(priorityGroups);
-        if (targetQueue == null) {
-            log.error("No target queue found for workflow: {}", workflow.getWorkflowName());
-            workflowRunMapper.updateStatus(workflowRunId, "FAILED", System.currentTimeMillis(),
-                    System.currentTimeMillis() - workflowRun.getStartDate(), "No target queue found");
-            workflowMapper.updateStatus(workflow.getId(), "FAILED", System.currentTimeMillis(), null);
-            return workflowRunId;
+        if (startRun(workflow, workflowRun, plan, runCounts, servers, Set.of(), null)) {
+            log.info("Workflow execution started: {} (runId: {})", workflow.getWorkflowName(), workflowRunId);
         }
+        return workflowRunId;
+    }
 
-        message.setQueueName(targetQueue);
+    /**
+     * Resume a failed workflow run from its checkpoint: jobs that already succeeded in the run are
+     * skipped and every other job runs again under the same workflowRunId, in the usual dependency
+     * order. targetSystemId optionally sends all remaining jobs to one specific server.
+     */
+    @Transactional
+    public Long resumeWorkflowRun(Long workflowRunId, String targetSystemId) {
+        WorkflowRunVO run = workflowRunMapper.findById(workflowRunId);
+        if (run == null) {
+            throw new IllegalArgumentException("Workflow run not found: " + workflowRunId);
+        }
+        if (!RESUMABLE_RUN_STATUSES.contains(run.getStatus())) {
+            throw new IllegalStateException("Only failed workflow runs can be resumed, run " + workflowRunId + " is " + run.getStatus());
+        }
+        WorkflowVO workflow = workflowMapper.findById(run.getWorkflowId());
+        if (workflow == null) {
+            throw new IllegalArgumentException("Workflow not found: " + run.getWorkflowId());
+        }
+        if ("RUNNING".equals(workflow.getLatestStatus())) {
+            throw new IllegalStateException("Workflow " + workflow.getWorkflowName() + " is already running");
+        }
 
-        // Update all workflow jobs state to WAITING (queued for workflow execution)
-        // Actual RUNNING state is set when agent reports each job starting
-        for (WorkflowPriorityGroupVO pg : priorityGroups) {
-            List<JobVO> jobs = jobMapper.findByPriorityGroupId(pg.getId());
-            for (JobVO job : jobs) {
-                jobMapper.updateState(job.getJobId(), "WAITING", null);
+        Map<String, JobServerVO> servers = serverSelector.snapshot();
+        JobServerVO targetServer = null;
+        if (targetSystemId != null && !targetSystemId.isEmpty()) {
+            targetServer = servers.get(targetSystemId);
+            if (targetServer == null) {
+                throw new IllegalArgumentException("Server not found: " + targetSystemId);
+            }
+            if (!serverSelector.isServerAvailable(targetServer)) {
+                throw new IllegalStateException("Server " + targetServer.getSystemName() + " is not available");
             }
         }
 
-        // Publish workflow message to agent
-        messagePublisher.publishWorkflow(targetQueue, message);
+        WorkflowPlanCache.Plan plan = planCache.get(workflow.getId());
+        Map<String, Integer> runCounts = planCache.freshRunCounts(plan);
+        if (targetServer == null) {
+            String preCheckError = preCheckServerAvailability(plan, runCounts, servers);
+            if (preCheckError != null) {
+                throw new IllegalStateException(preCheckError);
+            }
+        }
+
+        Set<String> completedJobIds = new HashSet<>(jobRunLogMapper.findSucceededJobIdsByWorkflowRunId(workflowRunId));
+        log.info("Resuming workflow run {} of {}: {} job(s) already succeeded{}", workflowRunId,
+                workflow.getWorkflowName(), completedJobIds.size(),
+                targetServer != null ? ", remaining jobs on " + targetServer.getSystemName() : "");
+
+        // Claimed by a conditional update, so of two concurrent resumes only one dispatches the remaining jobs;
+        // the run gets a new start so that the 24h workflow timeout counts from the resume
+        long now = System.currentTimeMillis();
+        if (workflowRunMapper.claimForResume(workflowRunId, now, RESUMABLE_RUN_STATUSES) == 0) {
+            throw new IllegalStateException("Workflow run " + workflowRunId + " is already being resumed");
+        }
+        workflowMapper.updateStatus(workflow.getId(), "RUNNING", now, null);
+        run.setStatus("RUNNING");
+        run.setStartDate(now);
+        run.setEndDate(null);
+        run.setDurationMs(null);
 
-        log.info("Workflow execution started: {} (runId: {})", workflow.getWorkflowName(), workflowRunId);
+        startRun(workflow, run, plan, runCounts, servers, completedJobIds, targetServer);
         return workflowRunId;
     }
 
     /**
-     * Build workflow message from workflow and priority groups
+     * Create the run's job logs and hand the run to the orchestrator or an agent.
+     * Returns false if no agent could be found for an agent-orchestrated run (which is then failed).
      */
-    private WorkflowMessage buildWorkflowMessage(WorkflowVO workflow, Long workflowRunId,
-                                                   List<WorkflowPriorityGroupVO> priorityGroups) {
-        List<WorkflowMessage.PriorityGroup> pgMessages = new ArrayList<>();
-        long now = System.currentTimeMillis();
+    private boolean startRun(WorkflowVO workflow, WorkflowRunVO workflowRun, WorkflowPlanCache.Plan plan,
+                             Map<String, Integer> runCounts, Map<String, JobServerVO> servers,
+                             Set<String> completedJobIds, JobServerVO targetServer) {
+        Long workflowRunId = workflowRun.getWorkflowRunId();
 
-        // Sort by priority
-        priorityGroups.sort(Comparator.comparing(WorkflowPriorityGroupVO::getPriority));
+        // Build workflow message; server-orchestrated steps wait as WAITING until dispatched
+        boolean serverOrchestrated = workflowOrchestrator.isEnabled();
+        WorkflowMessage message = buildWorkflowMessage(workflow, workflowRunId, plan, runCounts, servers,
+                serverOrchestrated ? "WAITING" : "PENDING", completedJobIds);
+
+        // Agent orchestration: the whole workflow goes to the first job's server queue
+        String targetQueue = targetServer != null ? targetServer.getQueueName() : null;
+        if (!serverOrchestrated && targetQueue == null) {
+            targetQueue = determineTargetQueue(plan, servers);
+            if (targetQueue == null) {
+                log.error("No target queue found for workflow: {}", workflow.getWorkflowName());
+                workflowRunMapper.updateStatus(workflowRunId, "FAILED", System.currentTimeMillis(),
+                        System.currentTimeMillis() - workflowRun.getStartDate(), "No target queue found");
+                workflowMapper.updateStatus(workflow.getId(), "FAILED", System.currentTimeMillis(), null);
+                return false;
+            }
+        }
+        // With server orchestration a queue on the plan pins every step to that server
+        message.setQueueName(targetQueue);
 
-        for (WorkflowPriorityGroupVO pg : priorityGroups) {
-            List<JobVO> jobs = jobMapper.findByPriorityGroupId(pg.getId());
-            List<JobMessage> jobMessages = new ArrayList<>();
+        // Update workflow jobs state to WAITING (queued for workflow execution), jobs that reached maxRun to COMPLETED
+        // Actual RUNNING state is set when agent reports each job starting
+        List<String> waitingJobIds = new ArrayList<>();
+        List<String> completedStateJobIds = new ArrayList<>();
+        for (JobVO job : plan.getJobs()) {
+            if (!completedJobIds.contains(job.getJobId())) {
+                (reachedMaxRun(job, runCounts) ? completedStateJobIds : waitingJobIds).add(job.getJobId());
+            }
+        }
+        if (!waitingJobIds.isEmpty()) {
+            jobMapper.updateStateByIds(waitingJobIds, "WAITING");
+        }
+        if (!completedStateJobIds.isEmpty()) {
+            jobMapper.updateStateByIds(completedStateJobIds, "COMPLETED");
+        }
 
-            for (JobVO job : jobs) {
-                // Get group/server info for denormalization (with failover support)
-                JobGroupVO group = job.getGroupId() != null ? groupMapper.findById(job.getGroupId()) : null;
-                JobServerVO server = getAvailableServer(job);
-
-                // Get job creator's user ID for logging
-                String creatorUserId = null;
-                if (job.getFrstRegUserId() != null) {
-                    UserVO creator = userMapper.findById(job.getFrstRegUserId());
-                    if (creator != null) {
-                        creatorUserId = creator.getUserId();
-                    }
+        if (serverOrchestrated) {
+            // Each step is published to its own job's server as its dependencies complete
+            workflowOrchestrator.start(message);
+        } else {
+            // Publish workflow message to agent
+            messagePublisher.publishWorkflow(targetQueue, message);
+            serverSelector.recordDispatch(targetQueue);
+        }
+        return true;
+    }
+
+    /**
+     * Build workflow message from the workflow plan; runLogStatus is the initial status of executed jobs' logs.
+     * Jobs in completedJobIds already succeeded in this run and are left out (satisfied dependencies).
+     * All run logs are inserted with batch statements and ids from the run log writer's reserved blocks, so the
+     * database round trips do not grow with the job count.
+     */
+    private WorkflowMessage buildWorkflowMessage(WorkflowVO workflow, Long workflowRunId, WorkflowPlanCache.Plan plan,
+                                                   Map<String, Integer> runCounts, Map<String, JobServerVO> servers,
+                                                   String runLogStatus, Set<String> completedJobIds) {
+        long now = System.currentTimeMillis();
+        List<JobRunLogVO> runLogs = new ArrayList<>();
+        // Per priority group: jobs to execute with their run logs
+        List<List<PlannedStep>> plannedGroups = new ArrayList<>();
+
+        for (WorkflowPriorityGroupVO pg : plan.getGroups()) {
+            List<PlannedStep> groupSteps = new ArrayList<>();
+
+            for (JobVO job : pg.getJobs()) {
+                if (completedJobIds.contains(job.getJobId())) {
+                    continue; // Checkpoint: succeeded earlier in this run
                 }
 
+                // Server info for denormalization (with failover support)
+                JobServerVO server = getAvailableServer(job, servers);
+
                 // Skip disabled jobs - create log entry with SKIPPED status
                 if (!Boolean.TRUE.equals(job.getIsEnabled())) {
-                    JobRunLogVO skippedLog = JobRunLogVO.builder()
-                            .jobId(job.getJobId())
-                            .jobName(job.getJobName())
-                            .systemId(job.getSystemId())
-                            .systemName(server != null ? server.getSystemName() : null)
-                            .groupId(job.getGroupId())
-                            .groupName(group != null ? group.getGroupName() : null)
-                            .batchType("Auto")
-                            .operation("SKIPPED")
-                            .status("SKIPPED")
-                            .reqStartDate(now)
-                            .actualStartDate(now)
-                            .actualEndDate(now)
-                            .runDuration("00:00:00")
-                            .retryCount(0)
-                            .workflowRunId(workflowRunId)
-                            .workflowPriority(pg.getPriority())
-                            .userName(creatorUserId)
-                            .additionalInfo("Job is disabled")
-                            .build();
-
-                    jobRunLogMapper.insert(skippedLog);
-                    log.info("Skipped disabled job in workflow: logId={}, jobId={}, workflowRunId={}",
-                            skippedLog.getLogId(), job.getJobId(), workflowRunId);
+                    runLogs.add(skippedLog(job, server, pg, workflowRunId, now, "Job is disabled"));
                     continue; // Don't add to job messages - skip execution
                 }
 
-                // Skip jobs that reached maxRun - create log entry with SKIPPED status
-                if (job.getMaxRun() != null && job.getMaxRun() > 0 &&
-                    job.getRunCount() != null && job.getRunCount() >= job.getMaxRun()) {
-                    JobRunLogVO skippedLog = JobRunLogVO.builder()
-                            .jobId(job.getJobId())
-                            .jobName(job.getJobName())
-                            .systemId(job.getSystemId())
-                            .systemName(server != null ? server.getSystemName() : null)
-                            .groupId(job.getGroupId())
-                            .groupName(group != null ? group.getGroupName() : null)
-                            .batchType("Auto")
-                            .operation("SKIPPED")
-                            .status("SKIPPED")
-                            .reqStartDate(now)
-                            .actualStartDate(now)
-                            .actualEndDate(now)
-                            .runDuration("00:00:00")
-                            .retryCount(0)
-                            .workflowRunId(workflowRunId)
-                            .workflowPriority(pg.getPriority())
-                            .userName(creatorUserId)
-                            .additionalInfo(String.format("Max run count reached (%d/%d)",
-                                    job.getRunCount(), job.getMaxRun()))
-                            .build();
-
-                    jobRunLogMapper.insert(skippedLog);
-                    // Update job state to COMPLETED
-                    jobMapper.updateState(job.getJobId(), "COMPLETED", null);
-                    log.info("Skipped job in workflow (maxRun reached): logId={}, jobId={}, runCount={}, maxRun={}, workflowRunId={}",
-                            skippedLog.getLogId(), job.getJobId(), job.getRunCount(), job.getMaxRun(), workflowRunId);
+                // Skip jobs that reached maxRun - create log entry with SKIPPED status (job state becomes COMPLETED)
+                if (reachedMaxRun(job, runCounts)) {
+                    runLogs.add(skippedLog(job, server, pg, workflowRunId, now, String.format("Max run count reached (%d/%d)",
+                            runCounts.get(job.getJobId()), job.getMaxRun())));
                     continue; // Don't add to job messages - skip execution
                 }
 
-                // Create job run log entry with workflow_run_id (using failover server if applicable)
-                JobRunLogVO runLog = JobRunLogVO.builder()
-                        .jobId(job.getJobId())
-                        .jobName(job.getJobName())
-                        .systemId(server != null ? server.getSystemId() : job.getSystemId())
-                        .systemName(server != null ? server.getSystemName() : null)
-                        .groupId(job.getGroupId())
-                        .groupName(group != null ? group.getGroupName() : null)
-                        .batchType("Auto")
-                        .operation("RUN")
-                        .status("PENDING")
-                        .reqStartDate(now)
-                        .retryCount(0)
-                        .workflowRunId(workflowRunId)
-                        .workflowPriority(pg.getPriority())
-                        .userName(creatorUserId)
-                        .build();
-
-                jobRunLogMapper.insert(runLog);
-                log.info("Created workflow job run log: logId={}, jobId={}, workflowRunId={}, priority={}",
-                        runLog.getLogId(), job.getJobId(), workflowRunId, pg.getPriority());
+                // Create job run log entry with workflow_run_id (using failover server if applicable);
+                // for a map step this is the join entry and each task gets its own entry
+                PlannedStep step = new PlannedStep(job, stepLog(job, server, pg, workflowRunId, now,
+                        job.getWorkflowMapParams() != null ? "MAP" : "RUN", runLogStatus));
+                runLogs.add(step.runLog);
+                if (job.getWorkflowMapParams() != null) {
+                    step.mapParams = MapParameters.expand(job.getWorkflowMapParams());
+                    for (int index = 0; index < step.mapParams.size(); index++) {
+                        // Tasks wait as WAITING until the join dispatches or starts them within the parallelism limit
+                        JobRunLogVO taskLog = stepLog(job, server, pg, workflowRunId, now, "RUN", "WAITING");
+                        taskLog.setJobName(job.getJobName() + "[" + step.mapParams.get(index) + "]");
+                        taskLog.setCeleryTaskName(workflowRunId + "_" + job.getJobId() + MAP_TASK_ID_MARKER + index);
+                        step.taskLogs.add(taskLog);
+                        runLogs.add(taskLog);
+                    }
+                }
+                groupSteps.add(step);
+            }
+            plannedGroups.add(groupSteps);
+        }
 
+        runLogWriter.writeAll(runLogs);
+        for (JobRunLogVO runLog : runLogs) {
+            if ("PENDING".equals(runLog.getStatus())) {
+                deadlineIndex.trackPending(runLog.getLogId(), now);
+            } else if ("SKIPPED".equals(runLog.getStatus())) {
+                log.info("Skipped job in workflow: logId={}, jobId={}, workflowRunId={} ({})",
+                        runLog.getLogId(), runLog.getJobId(), workflowRunId, runLog.getAdditionalInfo());
+            }
+        }
+        log.info("Created {} workflow job run log(s) for workflowRunId={}", runLogs.size(), workflowRunId);
+
+        List<WorkflowMessage.PriorityGroup> pgMessages = new ArrayList<>();
+        for (int i = 0; i < plan.getGroups().size(); i++) {
+            WorkflowPriorityGroupVO pg = plan.getGroups().get(i);
+            List<JobMessage> jobMessages = new ArrayList<>();
+            for (PlannedStep step : plannedGroups.get(i)) {
+                JobVO job = step.job;
                 // Set taskId to logId so agent sends it back for status updates
-                JobMessage jobMessage = JobMessage.builder()
-                        .jobId(job.getJobId())
-                        .taskId(String.valueOf(runLog.getLogId()))
-                        .jobName(job.getJobName())
-                        .jobType(JobType.valueOf(job.getJobType()))
-                        .jobAction(job.getJobAction())
-                        .jobBody(job.getJobBody())
-                        .jobHeaders(job.getJobHeaders())
-                        .maxDurationSeconds(parseDurationToSeconds(job.getMaxRunDuration()))
-                        .retryCount(0)
-                        .workflowRunId(workflowRunId)
-                        .priority(job.getPriority())
-                        .executionDelay(job.getWorkflowDelay())
-                        .ignoreResult(job.getIgnoreResult())
-                        .build();
+                JobMessage jobMessage = jobMessage(job, step.runLog, workflowRunId);
+                jobMessage.setExecutionDelay(job.getWorkflowDelay());
+                jobMessage.setIgnoreResult(job.getIgnoreResult());
+                jobMessage.setDependsOn(plan.getDependsOn().get(job.getJobId()));
+                if (step.mapParams != null) {
+                    List<JobMessage> tasks = new ArrayList<>();
+                    for (int index = 0; index < step.mapParams.size(); index++) {
+                        String param = step.mapParams.get(index);
+                        JobMessage task = jobMessage(job, step.taskLogs.get(index), workflowRunId);
+                        task.setJobName(step.taskLogs.get(index).getJobName());
+                        task.setJobAction(MapParameters.substitute(job.getJobAction(), param, index));
+                        task.setJobBody(MapParameters.substitute(job.getJobBody(), param, index));
+                        task.setJobHeaders(MapParameters.substitute(job.getJobHeaders(), param, index));
+                        task.setMapParam(param);
+                        tasks.add(task);
+                    }
+                    jobMessage.setMapTasks(tasks);
+                    jobMessage.setMaxParallelism(job.getWorkflowMaxParallelism());
+                }
 
                 jobMessages.add(jobMessage);
             }
@@ -302,121 +367,130 @@ public class WorkflowExecutionService {
                 .build();
     }
 
+    private JobRunLogVO stepLog(JobVO job, JobServerVO server, WorkflowPriorityGroupVO pg, Long workflowRunId,
+                                long now, String operation, String status) {
+        return JobRunLogVO.builder()
+                .jobId(job.getJobId())
+                .jobName(job.getJobName())
+                .systemId(server != null ? server.getSystemId() : job.getSystemId())
+                .systemName(server != null ? server.getSystemName() : null)
+                .groupId(job.getGroupId())
+                .groupName(job.getGroupName())
+                .batchType("Auto")
+                .operation(operation)
+                .status(status)
+                .reqStartDate(now)
+                .retryCount(0)
+                .workflowRunId(workflowRunId)
+                .workflowPriority(pg.getPriority())
+                .userName(job.getCreatorUserId())
+                .build();
+    }
+
+    private JobMessage jobMessage(JobVO job, JobRunLogVO runLog, Long workflowRunId) {
+        return JobMessage.builder()
+                .jobId(job.getJobId())
+                .taskId(String.valueOf(runLog.getLogId()))
+                .jobName(job.getJobName())
+                .jobType(JobType.valueOf(job.getJobType()))
+                .jobAction(job.getJobAction())
+                .jobBody(job.getJobBody())
+                .jobHeaders(job.getJobHeaders())
+                .maxDurationSeconds(parseDurationToSeconds(job.getMaxRunDuration()))
+                .retryCount(0)
+                .workflowRunId(workflowRunId)
+                .priority(job.getPriority())
+                .build();
+    }
+
     /**
-     * Determine target queue from jobs in priority groups (with failover support)
+     * Log entry for a workflow job that is not executed in this run
      */
-    private String determineTargetQueue(List<WorkflowPriorityGroupVO> priorityGroups) {
-        for (WorkflowPriorityGroupVO pg : priorityGroups) {
-            List<JobVO> jobs = jobMapper.findByPriorityGroupId(pg.getId());
-            for (JobVO job : jobs) {
-                JobServerVO server = getAvailableServer(job);
-                if (server != null && server.getQueueName() != null) {
-                    return server.getQueueName();
-                }
-            }
-        }
-        return null;
+    private JobRunLogVO skippedLog(JobVO job, JobServerVO server, WorkflowPriorityGroupVO pg, Long workflowRunId,
+                                   long now, String reason) {
+        return JobRunLogVO.builder()
+                .jobId(job.getJobId())
+                .jobName(job.getJobName())
+                .systemId(job.getSystemId())
+                .systemName(server != null ? server.getSystemName() : null)
+                .groupId(job.getGroupId())
+                .groupName(job.getGroupName())
+                .batchType("Auto")
+                .operation("SKIPPED")
+                .status("SKIPPED")
+                .reqStartDate(now)
+                .actualStartDate(now)
+                .actualEndDate(now)
+                .runDuration("00:00:00")
+                .retryCount(0)
+                .workflowRunId(workflowRunId)
+                .workflowPriority(pg.getPriority())
+                .userName(job.getCreatorUserId())
+                .additionalInfo(reason)
+                .build();
     }
 
     /**
-     * Get available server with failover support.
-     * Tries primary -> secondary -> tertiary in order.
-     * Returns first server that is ONLINE and healthy.
+     * True if the job has a maxRun limit and its current run count reached it
      */
-    private JobServerVO getAvailableServer(JobVO job) {
-        // Try primary server
-        if (job.getSystemId() != null) {
-            JobServerVO primary = serverMapper.findById(job.getSystemId());
-            if (isServerAvailable(primary)) {
-                return primary;
-            }
-            log.info("Primary server {} is unavailable for job {}", job.getSystemId(), job.getJobId());
-        }
+    private boolean reachedMaxRun(JobVO job, Map<String, Integer> runCounts) {
+        return job.getMaxRun() != null && job.getMaxRun() > 0
+                && runCounts.getOrDefault(job.getJobId(), 0) >= job.getMaxRun();
+    }
 
-        // Try secondary server
-        if (job.getSecondarySystemId() != null) {
-            JobServerVO secondary = serverMapper.findById(job.getSecondarySystemId());
-            if (isServerAvailable(secondary)) {
-                log.info("Failover to secondary server {} for job {}", job.getSecondarySystemId(), job.getJobId());
-                return secondary;
+    /**
+     * Determine target queue from jobs in priority groups (with failover support)
+     */
+    private String determineTargetQueue(WorkflowPlanCache.Plan plan, Map<String, JobServerVO> servers) {
+        for (JobVO job : plan.getJobs()) {
+            JobServerVO server = getAvailableServer(job, servers);
+            if (server != null && server.getQueueName() != null) {
+                return server.getQueueName();
             }
-            log.info("Secondary server {} is unavailable for job {}", job.getSecondarySystemId(), job.getJobId());
         }
+        return null;
+    }
 
-        // Try tertiary server
-        if (job.getTertiarySystemId() != null) {
-            JobServerVO tertiary = serverMapper.findById(job.getTertiarySystemId());
-            if (isServerAvailable(tertiary)) {
-                log.info("Failover to tertiary server {} for job {}", job.getTertiarySystemId(), job.getJobId());
-                return tertiary;
-            }
-            log.info("Tertiary server {} is unavailable for job {}", job.getTertiarySystemId(), job.getJobId());
+    /**
+     * Get available server via the configured selection policy.
+     * Falls back to the primary server even if unhealthy.
+     */
+    private JobServerVO getAvailableServer(JobVO job, Map<String, JobServerVO> servers) {
+        JobServerVO server = serverSelector.select(job, servers);
+        if (server != null) {
+            return server;
         }
 
         // Fallback: return primary server even if unhealthy (let the workflow fail with clear error)
         if (job.getSystemId() != null) {
-            return serverMapper.findById(job.getSystemId());
+            return servers.get(job.getSystemId());
         }
 
         return null;
     }
 
-    /**
-     * Check if server is available (ONLINE and healthy)
-     */
-    private boolean isServerAvailable(JobServerVO server) {
-        if (server == null) {
-            return false;
-        }
-        boolean isOnline = "ONLINE".equals(server.getAgentStatus());
-        boolean isHealthy = Boolean.TRUE.equals(server.getIsHealthy());
-        return isOnline && isHealthy;
-    }
-
     /**
      * Pre-check server availability for all jobs in the workflow.
      * Returns error message if any job has no healthy server, null if all OK.
      */
-    private String preCheckServerAvailability(List<WorkflowPriorityGroupVO> priorityGroups) {
-        for (WorkflowPriorityGroupVO pg : priorityGroups) {
-            List<JobVO> jobs = jobMapper.findByPriorityGroupId(pg.getId());
-            for (JobVO job : jobs) {
-                // Skip disabled jobs
-                if (!Boolean.TRUE.equals(job.getIsEnabled())) {
-                    continue;
-                }
-                // Skip jobs that reached maxRun
-                if (job.getMaxRun() != null && job.getMaxRun() > 0 &&
-                    job.getRunCount() != null && job.getRunCount() >= job.getMaxRun()) {
-                    continue;
-                }
+    private String preCheckServerAvailability(WorkflowPlanCache.Plan plan, Map<String, Integer> runCounts,
+                                              Map<String, JobServerVO> servers) {
+        for (JobVO job : plan.getJobs()) {
+            // Skip disabled jobs
+            if (!Boolean.TRUE.equals(job.getIsEnabled())) {
+                continue;
+            }
+            // Skip jobs that reached maxRun
+            if (reachedMaxRun(job, runCounts)) {
+                continue;
+            }
 
-                // Check if any server is available for this job
-                boolean hasHealthyServer = false;
+            // Check if any server is available for this job
+            boolean hasHealthyServer = serverSelector.hasAvailableServer(job, servers);
 
-                if (job.getSystemId() != null) {
-                    JobServerVO primary = serverMapper.findById(job.getSystemId());
-                    if (isServerAvailable(primary)) {
-                        hasHealthyServer = true;
-                    }
-                }
-                if (!hasHealthyServer && job.getSecondarySystemId() != null) {
-                    JobServerVO secondary = serverMapper.findById(job.getSecondarySystemId());
-                    if (isServerAvailable(secondary)) {
-                        hasHealthyServer = true;
-                    }
-                }
-                if (!hasHealthyServer && job.getTertiarySystemId() != null) {
-                    JobServerVO tertiary = serverMapper.findById(job.getTertiarySystemId());
-                    if (isServerAvailable(tertiary)) {
-                        hasHealthyServer = true;
-                    }
-                }
-
-                if (!hasHealthyServer) {
-                    return String.format("No healthy server available for job '%s'. Please check server status or add backup servers.",
-                            job.getJobName());
-                }
+            if (!hasHealthyServer) {
+                return String.format("No healthy server available for job '%s'. Please check server status or add backup servers.",
+                        job.getJobName());
             }
         }
         return null; // All jobs have healthy servers
@@ -448,25 +522,21 @@ public class WorkflowExecutionService {
 
             // Reset workflow jobs to SCHEDULED after workflow completes
             // But keep jobs that reached maxRun as COMPLETED
-            List<WorkflowPriorityGroupVO> priorityGroups = priorityGroupMapper.findByWorkflowId(workflowId);
-            int resetCount = 0;
-            int completedCount = 0;
-            for (WorkflowPriorityGroupVO pg : priorityGroups) {
-                List<JobVO> jobs = jobMapper.findByPriorityGroupId(pg.getId());
-                for (JobVO job : jobs) {
-                    // Check if job reached maxRun - keep as COMPLETED
-                    if (job.getMaxRun() != null && job.getMaxRun() > 0 &&
-                        job.getRunCount() != null && job.getRunCount() >= job.getMaxRun()) {
-                        jobMapper.updateState(job.getJobId(), "COMPLETED", null);
-                        completedCount++;
-                        log.debug("Job {} stays COMPLETED (maxRun reached: {}/{})",
-                                job.getJobId(), job.getRunCount(), job.getMaxRun());
-                    } else {
-                        jobMapper.updateState(job.getJobId(), "SCHEDULED", null);
-                        resetCount++;
-                    }
-                }
+            WorkflowPlanCache.Plan plan = planCache.get(workflowId);
+            Map<String, Integer> runCounts = planCache.freshRunCounts(plan);
+            List<String> resetJobIds = new ArrayList<>();
+            List<String> completedJobIds = new ArrayList<>();
+            for (JobVO job : plan.getJobs()) {
+                (reachedMaxRun(job, runCounts) ? completedJobIds : resetJobIds).add(job.getJobId());
+            }
+            if (!resetJobIds.isEmpty()) {
+                jobMapper.updateStateByIds(resetJobIds, "SCHEDULED");
             }
+            if (!completedJobIds.isEmpty()) {
+                jobMapper.updateStateByIds(completedJobIds, "COMPLETED");
+            }
+            int resetCount = resetJobIds.size();
+            int completedCount = completedJobIds.size();
             log.info("Workflow {} completed with status {}, reset {} job(s) to SCHEDULED, {} job(s) stay COMPLETED (maxRun reached)",
                     workflowId, status, resetCount, completedCount);
 
@@ -501,4 +571,19 @@ public class WorkflowExecutionService {
 
         return 3600L; // Default 1 hour
     }
+
+    /**
+     * A job of the run being built, with its run log and, for map steps, its parameters and task logs
+     */
+    private static class PlannedStep {
+        private final JobVO job;
+        private final JobRunLogVO runLog;
+        private List<String> mapParams;
+        private final List<JobRunLogVO> taskLogs = new ArrayList<>();
+
+        private PlannedStep(JobVO job, JobRunLogVO runLog) {
+            this.job = job;
+            this.runLog = runLog;
+        }
+    }
 }
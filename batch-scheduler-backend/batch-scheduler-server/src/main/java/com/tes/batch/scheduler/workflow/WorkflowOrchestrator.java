@@ -0,0 +1,544 @@
+package com.tes.batch.scheduler.workflow;
+
+import com.tes.batch.common.dto.JobMessage;
+import com.tes.batch.common.dto.JobResult;
+import com.tes.batch.common.dto.WorkflowMessage;
+import com.tes.batch.common.enums.TaskStatus;
+import com.tes.batch.common.util.MapParameters;
+import com.tes.batch.common.util.MessageCodec;
+import com.tes.batch.common.util.WorkflowDag;
+import com.tes.batch.scheduler.agent.ServerSelector;
+import com.tes.batch.scheduler.domain.job.mapper.JobMapper;
+import com.tes.batch.scheduler.domain.job.mapper.JobRunLogMapper;
+import com.tes.batch.scheduler.domain.job.vo.JobRunLogVO;
+import com.tes.batch.scheduler.domain.job.vo.JobVO;
+import com.tes.batch.scheduler.domain.server.mapper.JobServerMapper;
+import com.tes.batch.scheduler.domain.server.vo.JobServerVO;
+import com.tes.batch.scheduler.domain.workflow.mapper.WorkflowRunMapper;
+import com.tes.batch.scheduler.domain.workflow.vo.WorkflowRunVO;
+import com.tes.batch.scheduler.message.RedisMessagePublisher;
+import com.tes.batch.scheduler.scheduler.RunDeadlineIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Server-side workflow orchestration (app.workflow.orchestration=server).
+ * Each workflow step is published as an ordinary job message to the queue of its own job's
+ * server, so a workflow spreads over the fleet instead of running on a single agent.
+ *
+ * State:
+ *   workflow:plan:{runId}  the WorkflowMessage (steps and dependencies), deleted when the run finishes
+ *   workflow:orchestrated  ids of runs being orchestrated, walked by the reconcile pass
+ *   run logs               step status; steps not dispatched yet are WAITING and are claimed
+ *                          WAITING -> PENDING by a conditional update, so concurrent advances never
+ *                          dispatch a step twice. A map step's own log is its join: claimed
+ *                          WAITING -> RUNNING, it dispatches its task logs the same way and is
+ *                          settled once all of them are
+ *
+ * A run advances on every job result and on a periodic reconcile pass, which also picks up step
+ * outcomes recorded by the Scheduler itself (timeouts, force stops, agents lost). The final outcome
+ * is pushed to workflow:result exactly like an agent would, so WorkflowResultListener completes it.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WorkflowOrchestrator {
+
+    public static final String PLAN_KEY_PREFIX = "workflow:plan:";
+    public static final String ACTIVE_RUNS_KEY = "workflow:orchestrated";
+    private static final String RESULT_LIST_KEY = "workflow:result";
+    /** Outlives the 24h workflow timeout */
+    private static final Duration PLAN_TTL = Duration.ofDays(2);
+    private static final long DEFAULT_STEP_WEIGHT_SECONDS = 3600;
+
+    private static final Set<String> FAILED_LOG_STATUSES = Set.of("FAILURE", "FAILED", "TIMEOUT", "REVOKED", "BROKEN");
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final MessageCodec messageCodec;
+    private final JobMapper jobMapper;
+    private final JobRunLogMapper jobRunLogMapper;
+    private final WorkflowRunMapper workflowRunMapper;
+    private final JobServerMapper serverMapper;
+    private final ServerSelector serverSelector;
+    private final RedisMessagePublisher messagePublisher;
+    private final RunDeadlineIndex deadlineIndex;
+
+    @Value("${app.workflow.orchestration:server}")
+    private String orchestration;
+
+    /**
+     * True if new workflow runs are orchestrated here rather than sent whole to one agent
+     */
+    public boolean isEnabled() {
+        return "server".equalsIgnoreCase(orchestration.trim());
+    }
+
+    /**
+     * Take over a new run whose step logs were created WAITING.
+     * Dispatching starts once the caller's transaction has committed them.
+     */
+    public void start(WorkflowMessage message) {
+        Long runId = message.getWorkflowRunId();
+        redisTemplate.opsForValue().set(planKey(runId), message, PLAN_TTL);
+        stringRedisTemplate.opsForSet().add(ACTIVE_RUNS_KEY, String.valueOf(runId));
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    advanceSafely(runId);
+                }
+            });
+        } else {
+            advanceSafely(runId);
+        }
+    }
+
+    /**
+     * Called after a job result has been recorded
+     */
+    public void onJobResult(JobResult result) {
+        if (result.getWorkflowRunId() == null || result.getStatus() == TaskStatus.RUNNING
+                || result.getStatus() == TaskStatus.RETRY) {
+            return;
+        }
+        advanceSafely(result.getWorkflowRunId());
+    }
+
+    /**
+     * Safety net for results that did not name their workflow run and outcomes recorded by the Scheduler
+     */
+    @Scheduled(fixedDelayString = "${app.workflow.reconcile-interval:15000}", initialDelay = 15000)
+    public void reconcile() {
+        Set<String> runIds = stringRedisTemplate.opsForSet().members(ACTIVE_RUNS_KEY);
+        if (runIds == null) {
+            return;
+        }
+        for (String runId : runIds) {
+            try {
+                advanceSafely(Long.parseLong(runId));
+            } catch (NumberFormatException e) {
+                stringRedisTemplate.opsForSet().remove(ACTIVE_RUNS_KEY, runId);
+            }
+        }
+    }
+
+    private void advanceSafely(Long runId) {
+        try {
+            advance(runId);
+        } catch (Exception e) {
+            // Left for the next result or reconcile pass
+            log.error("Failed to advance workflow run {}", runId, e);
+        }
+    }
+
+    /**
+     * Dispatch every step whose dependencies are done, or finish the run when nothing is left to do
+     */
+    private void advance(Long runId) {
+        WorkflowMessage plan = loadPlan(runId);
+        if (plan == null) {
+            stringRedisTemplate.opsForSet().remove(ACTIVE_RUNS_KEY, String.valueOf(runId));
+            return;
+        }
+
+        List<Step> steps = new ArrayList<>();
+        List<List<String>> groupJobIds = new ArrayList<>();
+        Map<String, List<String>> dependsOn = new HashMap<>();
+        plan.getPriorityGroups().stream()
+                .sorted(Comparator.comparing(WorkflowMessage.PriorityGroup::getPriority))
+                .forEach(group -> {
+                    List<String> jobIds = new ArrayList<>();
+                    if (group.getJobs() != null) {
+                        for (JobMessage job : group.getJobs()) {
+                            steps.add(new Step(job, group));
+                            jobIds.add(job.getJobId());
+                            if (job.getDependsOn() != null) {
+                                dependsOn.put(job.getJobId(), job.getDependsOn());
+                            }
+                        }
+                    }
+                    groupJobIds.add(jobIds);
+                });
+        WorkflowDag dag = WorkflowDag.build(groupJobIds, dependsOn);
+
+        Map<String, JobRunLogVO> logsByTaskId = new HashMap<>();
+        for (JobRunLogVO runLog : jobRunLogMapper.findStatesByWorkflowRunId(runId)) {
+            logsByTaskId.put(String.valueOf(runLog.getLogId()), runLog);
+        }
+        for (Step step : steps) {
+            step.runLog = logsByTaskId.get(step.job.getTaskId());
+            if (step.isMap()) {
+                for (JobMessage task : step.job.getMapTasks()) {
+                    step.taskLogs.add(logsByTaskId.get(task.getTaskId()));
+                }
+            }
+        }
+
+        WorkflowRunVO run = workflowRunMapper.findById(runId);
+        if (run == null || !"RUNNING".equals(run.getStatus())) {
+            // Ended elsewhere (timeout check, stuck-run cleanup): stop dispatching
+            log.info("Workflow run {} is no longer RUNNING, releasing its remaining steps", runId);
+            release(plan, steps, "Not started: workflow run ended");
+            return;
+        }
+        if (!dag.isAcyclic()) {
+            finish(plan, run, steps, "Job dependencies contain a cycle involving: " + dag.cycleJobIds());
+            return;
+        }
+
+        // Running map steps start their next tasks, or join once all of them have finished
+        for (Step step : steps) {
+            if (step.isMap() && "RUNNING".equals(step.status())) {
+                progressMap(plan, step, null);
+            }
+        }
+
+        // Failed steps block everything downstream of them
+        boolean[] blocked = new boolean[steps.size()];
+        String failure = null;
+        for (int i = 0; i < steps.size(); i++) {
+            Step step = steps.get(i);
+            if (step.isFailed() && !step.ignoresFailure()) {
+                if (failure == null) {
+                    failure = "Priority group " + step.group.getPriority() + " failed (job " + step.job.getJobId() + ")";
+                }
+                block(dag, i, blocked);
+            }
+        }
+
+        long[] weights = new long[steps.size()];
+        for (int i = 0; i < steps.size(); i++) {
+            JobMessage job = steps.get(i).job;
+            long delay = job.getExecutionDelay() != null ? Math.max(0, job.getExecutionDelay()) : 0;
+            long duration = job.getMaxDurationSeconds() != null ? job.getMaxDurationSeconds() : DEFAULT_STEP_WEIGHT_SECONDS;
+            weights[i] = duration * MapParameters.waves(job) + delay;
+        }
+        long[] ranks = dag.criticalPathRanks(weights);
+
+        List<Integer> ready = new ArrayList<>();
+        boolean inFlight = false;
+        for (int i = 0; i < steps.size(); i++) {
+            Step step = steps.get(i);
+            if (!step.isWaiting()) {
+                inFlight |= !step.isSettled();
+                continue;
+            }
+            if (blocked[i]) {
+                continue;
+            }
+            boolean dependenciesDone = dag.predecessors(i).stream()
+                    .map(steps::get)
+                    .allMatch(pred -> pred.isSettled() && !(pred.isFailed() && !pred.ignoresFailure()));
+            if (dependenciesDone) {
+                ready.add(i);
+            } else {
+                // A pending dependency that is neither blocked nor settled is itself waiting or running
+                inFlight = true;
+            }
+        }
+
+        // Highest critical-path rank first, so the longest chain gets a server first
+        ready.sort(Comparator.<Integer>comparingLong(i -> -ranks[i]).thenComparingInt(i -> i));
+        boolean redo = false;
+        for (int index : ready) {
+            Step step = steps.get(index);
+            DispatchOutcome outcome = step.isMap() ? startMap(plan, step) : dispatch(plan, step.job, step.group);
+            if (outcome == DispatchOutcome.FAILED) {
+                redo = true;
+            } else {
+                inFlight = true;
+            }
+        }
+        if (redo) {
+            // Steps that could not be dispatched failed; re-evaluate with their outcome
+            advance(runId);
+            return;
+        }
+
+        if (!inFlight) {
+            finish(plan, run, steps, failure);
+        }
+    }
+
+    private enum DispatchOutcome { DISPATCHED, FAILED, CLAIMED_ELSEWHERE }
+
+    /**
+     * Claim a ready map step (its join log goes WAITING -> RUNNING) and start its first tasks
+     */
+    private DispatchOutcome startMap(WorkflowMessage plan, Step step) {
+        if (jobRunLogMapper.updateWaitingStatus(Long.parseLong(step.job.getTaskId()), "RUNNING", "MAP",
+                System.currentTimeMillis(), null, null, null) == 0) {
+            return DispatchOutcome.CLAIMED_ELSEWHERE;
+        }
+        step.runLog.setStatus("RUNNING");
+        // Task results leave the job alone; the step as a whole is what runs
+        jobMapper.updateState(step.job.getJobId(), "RUNNING", null);
+        log.info("Starting map step {} of {} (runId: {}): {} task(s), parallelism {}", step.job.getJobId(),
+                plan.getWorkflowName(), plan.getWorkflowRunId(), step.job.getMapTasks().size(),
+                step.job.getMaxParallelism() != null ? step.job.getMaxParallelism() : "unlimited");
+        progressMap(plan, step, step.job.getExecutionDelay());
+        return step.isFailed() ? DispatchOutcome.FAILED : DispatchOutcome.DISPATCHED;
+    }
+
+    /**
+     * Dispatch the map step's WAITING tasks that fit its parallelism, or record the join once all tasks are done.
+     * A task is only dispatched while fewer than maxParallelism tasks before it are unfinished; tasks finish but
+     * never restart, so concurrent advances cannot push the step past its limit.
+     */
+    private void progressMap(WorkflowMessage plan, Step step, Integer executionDelay) {
+        List<JobMessage> tasks = step.job.getMapTasks();
+        int parallelism = step.job.getMaxParallelism() != null && step.job.getMaxParallelism() > 0
+                ? step.job.getMaxParallelism() : tasks.size();
+        int unfinished = 0;
+        for (int i = 0; i < tasks.size() && unfinished < parallelism; i++) {
+            JobRunLogVO taskLog = step.taskLogs.get(i);
+            if (taskLog != null && "WAITING".equals(taskLog.getStatus())) {
+                JobMessage task = tasks.get(i);
+                task.setExecutionDelay(executionDelay);
+                DispatchOutcome outcome = dispatch(plan, task, step.group);
+                taskLog.setStatus(outcome == DispatchOutcome.FAILED ? "FAILED" : "PENDING");
+            }
+            if (!isTaskSettled(taskLog)) {
+                unfinished++;
+            }
+        }
+        if (unfinished > 0) {
+            return;
+        }
+
+        // Join: the step succeeds only if every task did
+        List<String> failedParams = new ArrayList<>();
+        long startTime = Long.MAX_VALUE;
+        for (int i = 0; i < tasks.size(); i++) {
+            JobRunLogVO taskLog = step.taskLogs.get(i);
+            if (taskLog == null || !"SUCCESS".equals(taskLog.getStatus())) {
+                failedParams.add(tasks.get(i).getMapParam());
+            }
+            if (taskLog != null && taskLog.getActualStartDate() != null) {
+                startTime = Math.min(startTime, taskLog.getActualStartDate());
+            }
+        }
+        long now = System.currentTimeMillis();
+        if (startTime == Long.MAX_VALUE) {
+            startTime = now;
+        }
+        boolean succeeded = failedParams.isEmpty();
+        String status = succeeded ? "SUCCESS" : "FAILURE";
+        int joined = jobRunLogMapper.updateRunningStatus(Long.parseLong(step.job.getTaskId()), status,
+                succeeded ? "COMPLETED" : "BROKEN", startTime, now, formatDuration(now - startTime),
+                succeeded ? null : failedParams.size() + " of " + tasks.size() + " map task(s) failed",
+                MapParameters.summarize(tasks.size(), failedParams));
+        step.runLog.setStatus(status);
+        if (joined == 0) {
+            return; // Joined by a concurrent advance, or the run was released
+        }
+        recordStepRun(step.job.getJobId(), succeeded, startTime);
+        log.info("Map step {} of {} (runId: {}) joined: {}/{} task(s) succeeded", step.job.getJobId(),
+                plan.getWorkflowName(), plan.getWorkflowRunId(), tasks.size() - failedParams.size(), tasks.size());
+    }
+
+    /**
+     * Count a joined map step as one run of its job and set the job's state, as JobResultListener
+     * does for an ordinary workflow step
+     */
+    private void recordStepRun(String jobId, boolean succeeded, long startTime) {
+        JobVO job = jobMapper.findById(jobId);
+        if (job == null || "COMPLETED".equals(job.getCurrentState()) || "DELETED".equals(job.getCurrentState())) {
+            return;
+        }
+        int runCount = job.getRunCount() != null ? job.getRunCount() : 0;
+        int failureCount = job.getFailureCount() != null ? job.getFailureCount() : 0;
+        jobMapper.updateRunStats(jobId, startTime, succeeded ? runCount + 1 : runCount,
+                succeeded ? failureCount : failureCount + 1, job.getRetryCount() != null ? job.getRetryCount() : 0);
+        if (Boolean.TRUE.equals(job.getAutoDrop())) {
+            jobMapper.updateState(jobId, "COMPLETED", null);
+        } else {
+            jobMapper.updateState(jobId, succeeded ? "SCHEDULED" : "BROKEN", null);
+        }
+    }
+
+    private static boolean isTaskSettled(JobRunLogVO taskLog) {
+        return taskLog == null || FAILED_LOG_STATUSES.contains(taskLog.getStatus())
+                || "SUCCESS".equals(taskLog.getStatus()) || "SKIPPED".equals(taskLog.getStatus());
+    }
+
+    /**
+     * Publish one step (or map task) to the queue of its own job's server
+     */
+    private DispatchOutcome dispatch(WorkflowMessage plan, JobMessage message, WorkflowMessage.PriorityGroup group) {
+        Long logId = Long.parseLong(message.getTaskId());
+        long now = System.currentTimeMillis();
+
+        JobVO job = jobMapper.findById(message.getJobId());
+        JobServerVO server = null;
+        if (job != null && plan.getQueueName() != null) {
+            // Run pinned to one server (resumed on a chosen agent)
+            JobServerVO pinned = serverMapper.findByQueueName(plan.getQueueName());
+            server = serverSelector.isServerAvailable(pinned) ? pinned : null;
+        } else if (job != null) {
+            server = serverSelector.select(job);
+        }
+        if (server == null) {
+            String error = job == null ? "Job no longer exists" : "No healthy server available for job '" + job.getJobName() + "'";
+            log.warn("Workflow {} (runId: {}): {}", plan.getWorkflowName(), plan.getWorkflowRunId(), error);
+            return jobRunLogMapper.updateWaitingStatus(logId, "FAILED", "BROKEN", now, null, null, error) > 0
+                    ? DispatchOutcome.FAILED : DispatchOutcome.CLAIMED_ELSEWHERE;
+        }
+
+        if (jobRunLogMapper.updateWaitingStatus(logId, "PENDING", "RUN", now,
+                server.getSystemId(), server.getSystemName(), null) == 0) {
+            return DispatchOutcome.CLAIMED_ELSEWHERE;
+        }
+        deadlineIndex.trackPending(logId, now);
+
+        String queueName = plan.getQueueName() != null ? plan.getQueueName() : serverSelector.queueFor(job, server);
+        message.setQueueName(queueName);
+        try {
+            messagePublisher.publishJob(queueName, message);
+        } catch (Exception e) {
+            jobRunLogMapper.updateStatus(logId, "FAILED", "BROKEN", null, System.currentTimeMillis(),
+                    null, "Failed to publish workflow step: " + e.getMessage(), null, null);
+            return DispatchOutcome.FAILED;
+        }
+        serverSelector.recordDispatch(queueName);
+        log.info("Dispatched workflow step {} (priority group {}) of {} (runId: {}) to {}",
+                message.getJobId(), group.getPriority(), plan.getWorkflowName(), plan.getWorkflowRunId(), queueName);
+        return DispatchOutcome.DISPATCHED;
+    }
+
+    /**
+     * Report the outcome once; whoever deletes the plan owns the completion
+     */
+    private void finish(WorkflowMessage plan, WorkflowRunVO run, List<Step> steps, String failure) {
+        if (!release(plan, steps, "Not started: a dependency failed")) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long startTime = run.getStartDate() != null ? run.getStartDate() : now;
+        Map<String, Object> result = new HashMap<>();
+        result.put("workflowId", plan.getWorkflowId());
+        result.put("workflowRunId", plan.getWorkflowRunId());
+        result.put("status", failure != null ? TaskStatus.FAILED.name() : TaskStatus.SUCCESS.name());
+        result.put("errorMessage", failure != null ? failure : "");
+        result.put("startTime", startTime);
+        result.put("endTime", now);
+        result.put("durationMs", now - startTime);
+        redisTemplate.opsForList().leftPush(RESULT_LIST_KEY, result);
+        log.info("Workflow {} (runId: {}) finished: {}", plan.getWorkflowName(), plan.getWorkflowRunId(),
+                failure != null ? failure : "SUCCESS");
+    }
+
+    /**
+     * Drop the plan and mark steps that never started as SKIPPED. Returns false if another caller already did.
+     */
+    private boolean release(WorkflowMessage plan, List<Step> steps, String reason) {
+        if (!Boolean.TRUE.equals(redisTemplate.delete(planKey(plan.getWorkflowRunId())))) {
+            return false;
+        }
+        stringRedisTemplate.opsForSet().remove(ACTIVE_RUNS_KEY, String.valueOf(plan.getWorkflowRunId()));
+        long now = System.currentTimeMillis();
+        for (Step step : steps) {
+            if (step.isWaiting()) {
+                jobRunLogMapper.updateWaitingStatus(Long.parseLong(step.job.getTaskId()), "SKIPPED", "SKIPPED",
+                        now, null, null, reason);
+            }
+            if (step.isMap()) {
+                for (JobMessage task : step.job.getMapTasks()) {
+                    jobRunLogMapper.updateWaitingStatus(Long.parseLong(task.getTaskId()), "SKIPPED", "SKIPPED",
+                            now, null, null, reason);
+                }
+                if ("RUNNING".equals(step.status())) {
+                    // Tasks already dispatched finish on their own, but nobody joins them any more
+                    jobRunLogMapper.updateStatus(Long.parseLong(step.job.getTaskId()), "REVOKED", "REVOKED", null, now,
+                            null, "Workflow run ended before all map tasks finished", null, null);
+                }
+            }
+        }
+        return true;
+    }
+
+    private static String formatDuration(long durationMs) {
+        long seconds = durationMs / 1000;
+        return String.format("%02d:%02d:%02d", seconds / 3600, (seconds % 3600) / 60, seconds % 60);
+    }
+
+    private void block(WorkflowDag dag, int failed, boolean[] blocked) {
+        Deque<Integer> stack = new ArrayDeque<>(dag.successors(failed));
+        while (!stack.isEmpty()) {
+            int node = stack.pop();
+            if (!blocked[node]) {
+                blocked[node] = true;
+                stack.addAll(dag.successors(node));
+            }
+        }
+    }
+
+    private WorkflowMessage loadPlan(Long runId) {
+        byte[] key = planKey(runId).getBytes(StandardCharsets.UTF_8);
+        byte[] raw = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.stringCommands().get(key));
+        return raw != null ? messageCodec.decode(raw, WorkflowMessage.class) : null;
+    }
+
+    private static String planKey(Long runId) {
+        return PLAN_KEY_PREFIX + runId;
+    }
+
+    private static class Step {
+        private final JobMessage job;
+        private final WorkflowMessage.PriorityGroup group;
+        private JobRunLogVO runLog;
+        /** Map steps only: run logs of the tasks, in task order (null if missing) */
+        private final List<JobRunLogVO> taskLogs = new ArrayList<>();
+
+        private Step(JobMessage job, WorkflowMessage.PriorityGroup group) {
+            this.job = job;
+            this.group = group;
+        }
+
+        private String status() {
+            return runLog != null ? runLog.getStatus() : null;
+        }
+
+        private boolean isMap() {
+            return job.getMapTasks() != null && !job.getMapTasks().isEmpty();
+        }
+
+        private boolean isWaiting() {
+            return "WAITING".equals(status());
+        }
+
+        /** A step whose run log is missing counts as failed */
+        private boolean isFailed() {
+            return runLog == null || FAILED_LOG_STATUSES.contains(status());
+        }
+
+        private boolean isSettled() {
+            return isFailed() || "SUCCESS".equals(status()) || "SKIPPED".equals(status());
+        }
+
+        private boolean ignoresFailure() {
+            return Boolean.TRUE.equals(job.getIgnoreResult()) || Boolean.TRUE.equals(group.getIgnoreResult());
+        }
+    }
+}
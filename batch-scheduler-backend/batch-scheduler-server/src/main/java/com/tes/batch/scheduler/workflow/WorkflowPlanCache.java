@@ -0,0 +1,139 @@
+package com.tes.batch.scheduler.workflow;
+
+import com.tes.batch.scheduler.domain.job.mapper.JobMapper;
+import com.tes.batch.scheduler.domain.job.vo.JobVO;
+import com.tes.batch.scheduler.domain.workflow.mapper.WorkflowPriorityGroupMapper;
+import com.tes.batch.scheduler.domain.workflow.vo.WorkflowJobDependencyVO;
+import com.tes.batch.scheduler.domain.workflow.vo.WorkflowPriorityGroupVO;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Compiled workflow plans: priority groups with their jobs (group name and creator joined) and
+ * dependency edges, loaded in one query each and kept per workflow.
+ *
+ * Entries are dropped on workflow and job edits (again after commit, so a load racing the edit
+ * cannot keep stale data) and expire after app.workflow.plan-cache-ttl as a fallback for edits
+ * that do not invalidate, like group renames. run_count changes on every run and is not cached;
+ * callers that need it use {@link #freshRunCounts}. Server status is never part of a plan.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WorkflowPlanCache {
+
+    private final WorkflowPriorityGroupMapper priorityGroupMapper;
+    private final JobMapper jobMapper;
+
+    @Value("${app.workflow.plan-cache-ttl:600000}")
+    private long ttlMs;
+
+    private final Map<String, Plan> plans = new ConcurrentHashMap<>();
+
+    /**
+     * Plan of the workflow, loaded if not cached or expired
+     */
+    public Plan get(String workflowId) {
+        Plan plan = plans.get(workflowId);
+        if (plan != null && System.currentTimeMillis() - plan.loadedAt < ttlMs) {
+            return plan;
+        }
+        plan = load(workflowId);
+        plans.put(workflowId, plan);
+        return plan;
+    }
+
+    /**
+     * Drop the workflow's plan, now and once the current transaction commits
+     */
+    public void invalidate(String workflowId) {
+        if (workflowId == null) {
+            return;
+        }
+        plans.remove(workflowId);
+        afterCommit(() -> plans.remove(workflowId));
+    }
+
+    /**
+     * Drop all plans, e.g. when data joined into every plan changed
+     */
+    public void invalidateAll() {
+        plans.clear();
+        afterCommit(plans::clear);
+    }
+
+    /**
+     * Current run_count of the plan's jobs that have a maxRun limit; one query, none if no job has a limit
+     */
+    public Map<String, Integer> freshRunCounts(Plan plan) {
+        List<String> limited = plan.getJobs().stream()
+                .filter(job -> job.getMaxRun() != null && job.getMaxRun() > 0)
+                .map(JobVO::getJobId)
+                .toList();
+        if (limited.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, Integer> runCounts = new HashMap<>();
+        for (JobVO job : jobMapper.findRunCountsByIds(limited)) {
+            runCounts.put(job.getJobId(), job.getRunCount() != null ? job.getRunCount() : 0);
+        }
+        return runCounts;
+    }
+
+    private Plan load(String workflowId) {
+        List<WorkflowPriorityGroupVO> groups = priorityGroupMapper.findWorkflowPlan(workflowId);
+        Map<String, List<String>> dependsOn = priorityGroupMapper.findJobDependencies(workflowId).stream()
+                .collect(Collectors.groupingBy(WorkflowJobDependencyVO::getJobId,
+                        Collectors.mapping(WorkflowJobDependencyVO::getDependsOnJobId, Collectors.toList())));
+        Plan plan = new Plan(groups, dependsOn);
+        log.debug("Loaded workflow plan {}: {} group(s), {} job(s)", workflowId, groups.size(), plan.getJobs().size());
+        return plan;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }
+    }
+
+    /**
+     * Immutable view of a workflow for building runs; shared between callers, do not modify
+     */
+    @Getter
+    public static class Plan {
+        /** Priority groups in priority order, each with its jobs in job name order */
+        private final List<WorkflowPriorityGroupVO> groups;
+        /** Explicit dependencies: jobId -> job IDs it depends on */
+        private final Map<String, List<String>> dependsOn;
+        /** All jobs of all groups in group order */
+        private final List<JobVO> jobs;
+        private final long loadedAt = System.currentTimeMillis();
+
+        Plan(List<WorkflowPriorityGroupVO> groups, Map<String, List<String>> dependsOn) {
+            this.groups = List.copyOf(groups);
+            this.dependsOn = Map.copyOf(dependsOn);
+            List<JobVO> all = new ArrayList<>();
+            for (WorkflowPriorityGroupVO group : groups) {
+                all.addAll(group.getJobs());
+            }
+            this.jobs = List.copyOf(all);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+-- Server pools: identical worker hosts sharing a pool-level queue (job:queue:pool:{pool_name})
+-- A server joins a pool via pool_name; a job targets a pool instead of specific servers via pool_name
+
+ALTER TABLE scheduler_job_servers ADD COLUMN IF NOT EXISTS pool_name VARCHAR(100);
+ALTER TABLE scheduler_jobs ADD COLUMN IF NOT EXISTS pool_name VARCHAR(100);
+
+CREATE INDEX IF NOT EXISTS idx_job_servers_pool_name ON scheduler_job_servers(pool_name) WHERE pool_name IS NOT NULL;
+
+COMMENT ON COLUMN scheduler_job_servers.pool_name IS 'Server pool this agent belongs to; members also consume the pool queue';
+COMMENT ON COLUMN scheduler_jobs.pool_name IS 'Target server pool; when set the job is dispatched to the pool queue instead of a single server';
@@ -0,0 +1,11 @@
+-- Job-level dependency edges within a workflow: job_id starts once depends_on_job_id has finished.
+-- Jobs without edges keep priority-group semantics (they depend on every job of the previous group).
+
+CREATE TABLE IF NOT EXISTS scheduler_workflow_job_dependencies (
+    workflow_id VARCHAR(36) NOT NULL REFERENCES scheduler_workflow(id) ON DELETE CASCADE,
+    job_id VARCHAR(36) NOT NULL REFERENCES scheduler_jobs(job_id) ON DELETE CASCADE,
+    depends_on_job_id VARCHAR(36) NOT NULL REFERENCES scheduler_jobs(job_id) ON DELETE CASCADE,
+    PRIMARY KEY (workflow_id, job_id, depends_on_job_id)
+);
+
+COMMENT ON TABLE scheduler_workflow_job_dependencies IS 'Explicit DAG edges between jobs of a workflow';
@@ -0,0 +1,9 @@
+-- Fan-out (map) workflow steps: the job runs once per parameter of workflow_map_params
+-- (list "a,b,c", range "1..31" or "2024-01-01..2024-01-31"), at most workflow_max_parallelism at a time.
+-- Kept on the job like workflow_delay, since a job belongs to at most one workflow.
+
+ALTER TABLE scheduler_jobs ADD COLUMN IF NOT EXISTS workflow_map_params TEXT;
+ALTER TABLE scheduler_jobs ADD COLUMN IF NOT EXISTS workflow_max_parallelism INTEGER;
+
+COMMENT ON COLUMN scheduler_jobs.workflow_map_params IS 'Map step parameters within the workflow (NULL = ordinary step)';
+COMMENT ON COLUMN scheduler_jobs.workflow_max_parallelism IS 'Map step tasks running at the same time (NULL = all)';
@@ -0,0 +1,95 @@
+-- Monthly range partitioning of scheduler_job_run_logs on scheduled_time (epoch ms, UTC months).
+-- Date-filtered log lists and dashboard aggregates only touch the partitions in range, and
+-- retention detaches whole partitions instead of deleting rows (RunLogPartitionMaintainer).
+--
+-- Partitions are named scheduler_job_run_logs_pYYYYMM. scheduler_ensure_run_log_partition(month)
+-- creates one; the server calls it on startup and periodically for the coming months. Rows outside
+-- every partition land in scheduler_job_run_logs_default and move out when their month is created.
+
+-- 1. Keep the existing table and its log_id sequence aside
+ALTER TABLE scheduler_job_run_logs RENAME TO scheduler_job_run_logs_legacy;
+ALTER SEQUENCE scheduler_job_run_logs_log_id_seq OWNED BY NONE;
+
+-- The partition key must be part of the primary key and cannot be NULL
+UPDATE scheduler_job_run_logs_legacy
+SET scheduled_time = COALESCE(start_time, frst_reg_date, end_time, 0)
+WHERE scheduled_time IS NULL;
+
+-- 2. Partitioned table with the same columns in the same order
+CREATE TABLE scheduler_job_run_logs (
+    LIKE scheduler_job_run_logs_legacy INCLUDING DEFAULTS
+) PARTITION BY RANGE (scheduled_time);
+
+ALTER TABLE scheduler_job_run_logs ALTER COLUMN log_id SET DEFAULT nextval('scheduler_job_run_logs_log_id_seq');
+ALTER TABLE scheduler_job_run_logs ALTER COLUMN scheduled_time SET NOT NULL;
+ALTER SEQUENCE scheduler_job_run_logs_log_id_seq OWNED BY scheduler_job_run_logs.log_id;
+ALTER TABLE scheduler_job_run_logs
+    ADD CONSTRAINT fk_job_run_logs_job_id FOREIGN KEY (job_id) REFERENCES scheduler_jobs(job_id);
+
+CREATE TABLE scheduler_job_run_logs_default PARTITION OF scheduler_job_run_logs DEFAULT;
+
+-- 3. Create (or move out of the default partition) the partition of the month containing p_month.
+--    Returns the partition name, or NULL if it already existed.
+CREATE OR REPLACE FUNCTION scheduler_ensure_run_log_partition(p_month DATE) RETURNS TEXT AS $$
+DECLARE
+    v_start DATE := date_trunc('month', p_month)::DATE;
+    v_end DATE := (date_trunc('month', p_month) + INTERVAL '1 month')::DATE;
+    v_name TEXT := 'scheduler_job_run_logs_p' || to_char(p_month, 'YYYYMM');
+    v_from BIGINT := (EXTRACT(EPOCH FROM v_start::TIMESTAMP) * 1000)::BIGINT;
+    v_to BIGINT := (EXTRACT(EPOCH FROM v_end::TIMESTAMP) * 1000)::BIGINT;
+BEGIN
+    IF to_regclass(v_name) IS NOT NULL THEN
+        RETURN NULL;
+    END IF;
+    EXECUTE format('CREATE TABLE %I (LIKE scheduler_job_run_logs INCLUDING DEFAULTS)', v_name);
+    EXECUTE format('ALTER TABLE %I ADD CONSTRAINT %I CHECK (scheduled_time >= %s AND scheduled_time < %s)',
+                   v_name, v_name || '_range', v_from, v_to);
+    -- Attaching a range that has rows in the default partition would fail; move them first
+    EXECUTE format('WITH moved AS (DELETE FROM scheduler_job_run_logs_default WHERE scheduled_time >= %s AND scheduled_time < %s RETURNING *) '
+                   || 'INSERT INTO %I SELECT * FROM moved', v_from, v_to, v_name);
+    EXECUTE format('ALTER TABLE scheduler_job_run_logs ATTACH PARTITION %I FOR VALUES FROM (%s) TO (%s)',
+                   v_name, v_from, v_to);
+    -- The check constraint only spared ATTACH a validation scan
+    EXECUTE format('ALTER TABLE %I DROP CONSTRAINT %I', v_name, v_name || '_range');
+    RETURN v_name;
+END;
+$$ LANGUAGE plpgsql;
+
+-- 4. Partitions from the oldest log (at most ten years back) through three months ahead
+DO $$
+DECLARE
+    v_month DATE;
+    v_last DATE := (date_trunc('month', now() AT TIME ZONE 'UTC') + INTERVAL '3 months')::DATE;
+BEGIN
+    SELECT date_trunc('month', to_timestamp(MIN(scheduled_time) / 1000.0) AT TIME ZONE 'UTC')::DATE
+    INTO v_month
+    FROM scheduler_job_run_logs_legacy
+    WHERE scheduled_time > 0;
+    v_month := LEAST(COALESCE(v_month, v_last), date_trunc('month', now() AT TIME ZONE 'UTC')::DATE);
+    -- Anything older than ten years (or with a bogus time) stays in the default partition
+    v_month := GREATEST(v_month, (date_trunc('month', now() AT TIME ZONE 'UTC') - INTERVAL '10 years')::DATE);
+    WHILE v_month <= v_last LOOP
+        PERFORM scheduler_ensure_run_log_partition(v_month);
+        v_month := (v_month + INTERVAL '1 month')::DATE;
+    END LOOP;
+END $$;
+
+-- 5. Copy the logs, drop the old table, then build keys and indexes once
+INSERT INTO scheduler_job_run_logs SELECT * FROM scheduler_job_run_logs_legacy;
+DROP TABLE scheduler_job_run_logs_legacy;
+
+ALTER TABLE scheduler_job_run_logs ADD CONSTRAINT scheduler_job_run_logs_pkey PRIMARY KEY (log_id, scheduled_time);
+
+CREATE INDEX IF NOT EXISTS idx_job_run_logs_log_id ON scheduler_job_run_logs(log_id);
+CREATE INDEX IF NOT EXISTS idx_job_run_logs_job_id ON scheduler_job_run_logs(job_id);
+CREATE INDEX IF NOT EXISTS idx_job_run_logs_start_time ON scheduler_job_run_logs(start_time DESC);
+CREATE INDEX IF NOT EXISTS idx_job_run_logs_scheduled_time ON scheduler_job_run_logs(scheduled_time DESC);
+CREATE INDEX IF NOT EXISTS idx_job_run_logs_operation ON scheduler_job_run_logs(operation);
+CREATE INDEX IF NOT EXISTS idx_job_run_logs_batch_type ON scheduler_job_run_logs(batch_type);
+CREATE INDEX IF NOT EXISTS idx_job_run_logs_group_id ON scheduler_job_run_logs(group_id);
+CREATE INDEX IF NOT EXISTS idx_job_run_logs_system_id ON scheduler_job_run_logs(system_id);
+CREATE INDEX IF NOT EXISTS idx_job_run_logs_workflow_run_id ON scheduler_job_run_logs(workflow_run_id);
+CREATE INDEX IF NOT EXISTS idx_job_run_logs_status ON scheduler_job_run_logs(status);
+CREATE INDEX IF NOT EXISTS idx_job_run_logs_job_status ON scheduler_job_run_logs(job_id, status);
+
+ANALYZE scheduler_job_run_logs;
@@ -0,0 +1,135 @@
+-- Hourly rollups of scheduler_job_run_logs for the dashboard and server failure stats.
+--
+-- A row trigger on the run log table appends one -1 delta for the old row and one +1 delta for the new
+-- row whenever a log is inserted, deleted, or changes status/server/group/time. Appending never
+-- contends on hot rollup rows; RunLogRollupMaintainer folds the deltas into the rollups every few
+-- seconds and periodically rebuilds recent hours from the raw logs. Detaching or dropping partitions
+-- (retention) fires no trigger, so rollups keep the history of removed months.
+--
+-- Buckets are UTC hours in epoch ms. Empty strings stand for NULL system/group ids.
+
+-- 1. Run counts per hour (of scheduled_time), status, server and group
+CREATE TABLE IF NOT EXISTS scheduler_run_log_rollup (
+    bucket_time BIGINT NOT NULL,
+    status VARCHAR(50) NOT NULL,
+    system_id VARCHAR(100) NOT NULL,
+    group_id VARCHAR(100) NOT NULL,
+    run_count BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (bucket_time, status, system_id, group_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_run_log_rollup_system ON scheduler_run_log_rollup(system_id, bucket_time);
+
+-- 2. Agent failures (BROKEN by heartbeat/agent/connection loss) per hour of end_time and server
+CREATE TABLE IF NOT EXISTS scheduler_agent_failure_rollup (
+    bucket_time BIGINT NOT NULL,
+    system_id VARCHAR(100) NOT NULL,
+    failure_count BIGINT NOT NULL DEFAULT 0,
+    last_failure_time BIGINT,
+    PRIMARY KEY (system_id, bucket_time)
+);
+
+-- 3. Pending changes, appended by the trigger and folded by the server
+CREATE TABLE IF NOT EXISTS scheduler_run_log_rollup_delta (
+    delta_id BIGSERIAL PRIMARY KEY,
+    bucket_time BIGINT NOT NULL,
+    status VARCHAR(50) NOT NULL,
+    system_id VARCHAR(100) NOT NULL,
+    group_id VARCHAR(100) NOT NULL,
+    failure_time BIGINT,
+    run_delta INTEGER NOT NULL
+);
+
+-- End time of an agent failure log, NULL for any other log (same rule the server list used on raw logs)
+CREATE OR REPLACE FUNCTION scheduler_run_log_agent_failure_time(p_status TEXT, p_end_time BIGINT, p_error TEXT)
+RETURNS BIGINT AS $$
+    SELECT CASE
+        WHEN p_status = 'BROKEN' AND p_end_time IS NOT NULL
+             AND (p_error LIKE '%heartbeat%' OR p_error LIKE '%agent%' OR p_error LIKE '%connection%')
+        THEN p_end_time
+    END
+$$ LANGUAGE sql IMMUTABLE;
+
+CREATE OR REPLACE FUNCTION scheduler_run_log_rollup_capture() RETURNS TRIGGER AS $$
+DECLARE
+    v_old_failure BIGINT;
+    v_new_failure BIGINT;
+BEGIN
+    -- Rows moved between partitions by scheduler_ensure_run_log_partition are not changes
+    IF current_setting('scheduler.rollup_capture', true) = 'off' THEN
+        RETURN NULL;
+    END IF;
+    IF TG_OP <> 'INSERT' THEN
+        v_old_failure := scheduler_run_log_agent_failure_time(OLD.status, OLD.end_time, OLD.error);
+    END IF;
+    IF TG_OP <> 'DELETE' THEN
+        v_new_failure := scheduler_run_log_agent_failure_time(NEW.status, NEW.end_time, NEW.error);
+    END IF;
+    -- Output, duration and the like change often; only the rollup keys matter
+    IF TG_OP = 'UPDATE'
+       AND OLD.status IS NOT DISTINCT FROM NEW.status
+       AND OLD.system_id IS NOT DISTINCT FROM NEW.system_id
+       AND OLD.group_id IS NOT DISTINCT FROM NEW.group_id
+       AND OLD.scheduled_time = NEW.scheduled_time
+       AND v_old_failure IS NOT DISTINCT FROM v_new_failure THEN
+        RETURN NULL;
+    END IF;
+    IF TG_OP <> 'INSERT' THEN
+        INSERT INTO scheduler_run_log_rollup_delta (bucket_time, status, system_id, group_id, failure_time, run_delta)
+        VALUES (OLD.scheduled_time - MOD(OLD.scheduled_time, 3600000), COALESCE(OLD.status, ''),
+                COALESCE(OLD.system_id, ''), COALESCE(OLD.group_id, ''), v_old_failure, -1);
+    END IF;
+    IF TG_OP <> 'DELETE' THEN
+        INSERT INTO scheduler_run_log_rollup_delta (bucket_time, status, system_id, group_id, failure_time, run_delta)
+        VALUES (NEW.scheduled_time - MOD(NEW.scheduled_time, 3600000), COALESCE(NEW.status, ''),
+                COALESCE(NEW.system_id, ''), COALESCE(NEW.group_id, ''), v_new_failure, 1);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Cloned to every current and future partition
+CREATE TRIGGER trg_job_run_logs_rollup
+    AFTER INSERT OR UPDATE OR DELETE ON scheduler_job_run_logs
+    FOR EACH ROW EXECUTE FUNCTION scheduler_run_log_rollup_capture();
+
+-- 4. Same as V25, but the rows moved out of the default partition are not captured twice
+CREATE OR REPLACE FUNCTION scheduler_ensure_run_log_partition(p_month DATE) RETURNS TEXT AS $$
+DECLARE
+    v_start DATE := date_trunc('month', p_month)::DATE;
+    v_end DATE := (date_trunc('month', p_month) + INTERVAL '1 month')::DATE;
+    v_name TEXT := 'scheduler_job_run_logs_p' || to_char(p_month, 'YYYYMM');
+    v_from BIGINT := (EXTRACT(EPOCH FROM v_start::TIMESTAMP) * 1000)::BIGINT;
+    v_to BIGINT := (EXTRACT(EPOCH FROM v_end::TIMESTAMP) * 1000)::BIGINT;
+BEGIN
+    IF to_regclass(v_name) IS NOT NULL THEN
+        RETURN NULL;
+    END IF;
+    EXECUTE format('CREATE TABLE %I (LIKE scheduler_job_run_logs INCLUDING DEFAULTS)', v_name);
+    EXECUTE format('ALTER TABLE %I ADD CONSTRAINT %I CHECK (scheduled_time >= %s AND scheduled_time < %s)',
+                   v_name, v_name || '_range', v_from, v_to);
+    -- Attaching a range that has rows in the default partition would fail; move them first
+    PERFORM set_config('scheduler.rollup_capture', 'off', true);
+    EXECUTE format('WITH moved AS (DELETE FROM scheduler_job_run_logs_default WHERE scheduled_time >= %s AND scheduled_time < %s RETURNING *) '
+                   || 'INSERT INTO %I SELECT * FROM moved', v_from, v_to, v_name);
+    PERFORM set_config('scheduler.rollup_capture', 'on', true);
+    EXECUTE format('ALTER TABLE scheduler_job_run_logs ATTACH PARTITION %I FOR VALUES FROM (%s) TO (%s)',
+                   v_name, v_from, v_to);
+    -- The check constraint only spared ATTACH a validation scan
+    EXECUTE format('ALTER TABLE %I DROP CONSTRAINT %I', v_name, v_name || '_range');
+    RETURN v_name;
+END;
+$$ LANGUAGE plpgsql;
+
+-- 5. Backfill from the existing logs
+INSERT INTO scheduler_run_log_rollup (bucket_time, status, system_id, group_id, run_count)
+SELECT scheduled_time - MOD(scheduled_time, 3600000), COALESCE(status, ''),
+       COALESCE(system_id, ''), COALESCE(group_id, ''), COUNT(*)
+FROM scheduler_job_run_logs
+GROUP BY 1, 2, 3, 4;
+
+INSERT INTO scheduler_agent_failure_rollup (bucket_time, system_id, failure_count, last_failure_time)
+SELECT end_time - MOD(end_time, 3600000), COALESCE(system_id, ''), COUNT(*), MAX(end_time)
+FROM scheduler_job_run_logs
+WHERE scheduler_run_log_agent_failure_time(status, end_time, error) IS NOT NULL
+GROUP BY 1, 2;
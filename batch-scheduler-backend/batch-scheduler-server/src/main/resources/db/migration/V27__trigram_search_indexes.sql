@@ -0,0 +1,14 @@
+-- Trigram (pg_trgm) GIN indexes for the text search of job, workflow and run log lists.
+-- The list queries match with "col ILIKE '%term%'", which these indexes serve for any substring
+-- of three or more characters instead of scanning the table.
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS idx_jobs_job_name_trgm ON scheduler_jobs USING gin (job_name gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_jobs_job_comments_trgm ON scheduler_jobs USING gin (job_comments gin_trgm_ops);
+
+CREATE INDEX IF NOT EXISTS idx_workflow_name_trgm ON scheduler_workflow USING gin (workflow_name gin_trgm_ops);
+
+-- Created on every partition; partitions attached later get them on ATTACH
+CREATE INDEX IF NOT EXISTS idx_job_run_logs_job_name_trgm ON scheduler_job_run_logs USING gin (job_name gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_job_run_logs_error_trgm ON scheduler_job_run_logs USING gin (error gin_trgm_ops);
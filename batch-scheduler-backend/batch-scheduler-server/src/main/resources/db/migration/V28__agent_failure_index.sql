@@ -0,0 +1,10 @@
+-- Server list agent failure stats cut exactly at a server's last deploy (or the last 24 hours).
+-- Whole hours after the cutoff come from scheduler_agent_failure_rollup; the partial hour that holds the
+-- cutoff and the latest failure time are read from the raw logs through this index. Agent failures are
+-- rare, so it stays small. The predicate matches the queries in RunLogRollupMapper.xml.
+CREATE INDEX IF NOT EXISTS idx_job_run_logs_agent_failure ON scheduler_job_run_logs (system_id, end_time)
+    WHERE scheduler_run_log_agent_failure_time(status, end_time, error) IS NOT NULL;
+
+-- Could only grow: folding a failure out of a bucket (log re-classified or deleted) left it pointing at
+-- that failure. The latest failure time is read from the raw logs instead.
+ALTER TABLE scheduler_agent_failure_rollup DROP COLUMN IF EXISTS last_failure_time;
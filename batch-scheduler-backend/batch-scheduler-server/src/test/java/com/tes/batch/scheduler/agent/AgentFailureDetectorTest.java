@@ -0,0 +1,79 @@
+package com.tes.batch.scheduler.agent;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AgentFailureDetectorTest {
+
+    private static final long PAUSE_MS = 15000;
+    private static final double MIN_STD_MS = 100;
+
+    @Test
+    void phiAtTheMeanIsLog10Of2() {
+        assertEquals(Math.log10(2), AgentFailureDetector.phi(500, 500, 100), 1e-9);
+    }
+
+    @Test
+    void phiGrowsWithElapsedTime() {
+        double previous = AgentFailureDetector.phi(0, 500, 100);
+        for (long elapsed = 100; elapsed <= 3000; elapsed += 100) {
+            double phi = AgentFailureDetector.phi(elapsed, 500, 100);
+            assertTrue(phi >= previous, "phi decreased at " + elapsed + "ms");
+            previous = phi;
+        }
+    }
+
+    @Test
+    void historyIsUntrustedBelowThreeIntervals() {
+        AgentFailureDetector.History history = pulses(new AgentFailureDetector.History(100), 0, 500, 3);
+
+        assertEquals(0.0, history.phi(60000, 0, MIN_STD_MS));
+    }
+
+    @Test
+    void historyCrossesThresholdWhenPulsesStop() {
+        AgentFailureDetector.History history = pulses(new AgentFailureDetector.History(100), 0, 500, 10);
+        long last = 9 * 500;
+
+        assertTrue(history.phi(last + 500, 0, MIN_STD_MS) < 1.0);
+        assertTrue(history.phi(last + 2000, 0, MIN_STD_MS) > 8.0);
+        // The acceptable pause postpones the unhealthy verdict
+        assertTrue(history.phi(last + 2000, PAUSE_MS, MIN_STD_MS) < 1.0);
+    }
+
+    @Test
+    void historyEvictsOldestIntervals() {
+        AgentFailureDetector.History history = new AgentFailureDetector.History(3);
+        pulses(history, 0, 100, 4);
+        pulses(history, 1300, 1000, 3);
+        long last = 300 + 3000;
+
+        // Only the three 1000ms intervals remain, so a 1000ms gap sits at the mean
+        assertEquals(AgentFailureDetector.phi(1000, 1000, MIN_STD_MS), history.phi(last + 1000, 0, MIN_STD_MS), 1e-9);
+    }
+
+    @Test
+    void historyStartsOverAfterLongPause() {
+        AgentFailureDetector.History history = pulses(new AgentFailureDetector.History(100), 0, 500, 10);
+        long resumed = 9 * 500 + PAUSE_MS + 1;
+        history.arrived(resumed, PAUSE_MS);
+
+        assertEquals(0.0, history.phi(resumed + 60000, 0, MIN_STD_MS));
+
+        pulses(history, resumed + 500, 500, 3);
+        assertTrue(history.phi(resumed + 1500 + 2000, 0, MIN_STD_MS) > 8.0);
+    }
+
+    /**
+     * Record count pulses at start, start + interval, ...
+     */
+    private static AgentFailureDetector.History pulses(AgentFailureDetector.History history, long start,
+                                                       long interval, int count) {
+        for (int i = 0; i < count; i++) {
+            history.arrived(start + i * interval, PAUSE_MS);
+        }
+        return history;
+    }
+}
@@ -0,0 +1,85 @@
+package com.tes.batch.scheduler.agent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AgentLoadTrackerTest {
+
+    @Test
+    void scoreIsSlotUtilizationPlusHalfTheCpuLoad() {
+        AgentLoadTracker.AgentLoad load = load(2, 1, 4, 2.0, 4, 1000);
+
+        // (2 active + 1 queued) / 4 slots + 0.5 * (2.0 / 4 cpus)
+        assertEquals(0.75 + 0.25, load.score(), 1e-9);
+    }
+
+    @Test
+    void unknownLoadAverageIsIgnored() {
+        AgentLoadTracker.AgentLoad load = load(1, 0, 2, -1, 4, 1000);
+
+        assertEquals(0.5, load.score(), 1e-9);
+    }
+
+    @Test
+    void zeroSlotsCountAsOne() {
+        AgentLoadTracker.AgentLoad load = load(3, 0, 0, -1, 0, 1000);
+
+        assertEquals(3.0, load.score(), 1e-9);
+    }
+
+    @Test
+    void dispatchesRaiseTheScoreUntilTheNextHeartbeat() {
+        AgentLoadTracker.AgentLoad load = load(0, 0, 4, -1, 4, 1000);
+        load.getDispatchedSinceHeartbeat().incrementAndGet();
+        load.getDispatchedSinceHeartbeat().incrementAndGet();
+        assertEquals(0.5, load.score(), 1e-9);
+
+        // A reload of the same heartbeat keeps the optimistic count
+        load.update(info(0, 0, 4, -1, 4, 1000, "ONLINE"));
+        assertEquals(0.5, load.score(), 1e-9);
+
+        // A new heartbeat already includes those dispatches
+        load.update(info(2, 0, 4, -1, 4, 2000, "ONLINE"));
+        assertEquals(0, load.getDispatchedSinceHeartbeat().get());
+        assertEquals(0.5, load.score(), 1e-9);
+    }
+
+    @Test
+    void drainingStatusesAreRecognized() {
+        AgentLoadTracker.AgentLoad load = new AgentLoadTracker.AgentLoad();
+        load.update(info(0, 0, 4, -1, 4, 1000, "DRAINING"));
+        assertTrue(load.isDraining());
+
+        load.update(info(0, 0, 4, -1, 4, 2000, "DRAINED"));
+        assertTrue(load.isDraining());
+
+        load.update(info(0, 0, 4, -1, 4, 3000, "ONLINE"));
+        assertFalse(load.isDraining());
+    }
+
+    private static AgentLoadTracker.AgentLoad load(int active, int queued, int slots, double loadAverage,
+                                                   int cpus, long heartbeat) {
+        AgentLoadTracker.AgentLoad load = new AgentLoadTracker.AgentLoad();
+        load.update(info(active, queued, slots, loadAverage, cpus, heartbeat, "ONLINE"));
+        return load;
+    }
+
+    static Map<Object, Object> info(int active, int queued, int slots, double loadAverage, int cpus,
+                                    long heartbeat, String status) {
+        Map<Object, Object> info = new HashMap<>();
+        info.put("activeJobs", active);
+        info.put("executorQueueSize", queued);
+        info.put("maxConcurrentJobs", slots);
+        info.put("loadAverage", loadAverage);
+        info.put("cpuCount", cpus);
+        info.put("lastHeartbeat", heartbeat);
+        info.put("status", status);
+        return info;
+    }
+}
@@ -0,0 +1,183 @@
+package com.tes.batch.scheduler.agent;
+
+import com.tes.batch.scheduler.domain.job.vo.JobVO;
+import com.tes.batch.scheduler.domain.server.mapper.JobServerMapper;
+import com.tes.batch.scheduler.domain.server.vo.JobServerVO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ServerSelectorTest {
+
+    private final Map<String, JobServerVO> servers = new LinkedHashMap<>();
+    private HashOperations<String, Object, Object> hashOps;
+    private AgentLoadTracker loadTracker;
+    private AgentFailureDetector failureDetector;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+        hashOps = mock(HashOperations.class);
+        when(redisTemplate.opsForHash()).thenReturn((HashOperations) hashOps);
+        loadTracker = new AgentLoadTracker(redisTemplate);
+        failureDetector = mock(AgentFailureDetector.class);
+
+        server("s1", "ONLINE", null);
+        server("s2", "ONLINE", null);
+        server("s3", "ONLINE", null);
+    }
+
+    @Test
+    void priorityPicksPrimaryWhileItIsAvailable() {
+        reportLoad("s1", 4);
+        reportLoad("s2", 0);
+
+        assertEquals("s1", selector("priority").select(job(), servers).getSystemId());
+    }
+
+    @Test
+    void priorityFailsOverInOrder() {
+        servers.get("s1").setAgentStatus("OFFLINE");
+        when(failureDetector.isSuspected("queue-s2")).thenReturn(true);
+
+        ServerSelector selector = selector("priority");
+        assertEquals("s3", selector.select(job(), servers).getSystemId());
+        assertEquals("tertiary", selector.determineServerRole(job(), "s3"));
+    }
+
+    @Test
+    void noAvailableServerSelectsNothing() {
+        servers.values().forEach(server -> server.setAgentStatus("OFFLINE"));
+
+        ServerSelector selector = selector("least-loaded");
+        assertNull(selector.select(job(), servers));
+        assertFalse(selector.hasAvailableServer(job(), servers));
+    }
+
+    @Test
+    void leastLoadedPicksLowestScore() {
+        reportLoad("s1", 3);
+        reportLoad("s2", 1);
+        reportLoad("s3", 2);
+
+        assertEquals("s2", selector("least-loaded").select(job(), servers).getSystemId());
+    }
+
+    @Test
+    void leastLoadedTiesAndMissingMetricsPreferPriorityOrder() {
+        reportLoad("s2", 1);
+        reportLoad("s3", 1);
+
+        // s1 has no metrics and sorts last; s2 and s3 tie, so the secondary wins
+        assertEquals("s2", selector("least-loaded").select(job(), servers).getSystemId());
+    }
+
+    @Test
+    void dispatchesSpreadABurstBetweenHeartbeats() {
+        reportLoad("s1", 0);
+        reportLoad("s2", 0);
+        ServerSelector selector = selector("least-loaded");
+
+        JobServerVO first = selector.select(job(), servers);
+        selector.recordDispatch(first.getQueueName());
+        JobServerVO second = selector.select(job(), servers);
+
+        assertEquals("s1", first.getSystemId());
+        assertEquals("s2", second.getSystemId());
+    }
+
+    @Test
+    void drainingServerIsSkipped() {
+        reportLoad("s1", 0);
+        reportLoad("s2", 2);
+        when(hashOps.entries("agent:info:queue-s1"))
+                .thenReturn(AgentLoadTrackerTest.info(0, 0, 4, -1, 4, System.currentTimeMillis(), "DRAINING"));
+        loadTracker.refresh("queue-s1");
+
+        assertEquals("s2", selector("least-loaded").select(job(), servers).getSystemId());
+    }
+
+    @Test
+    void powerOfTwoNeverPicksTheMostLoadedOfThree() {
+        reportLoad("s1", 1);
+        reportLoad("s2", 2);
+        reportLoad("s3", 3);
+        ServerSelector selector = selector("power-of-two");
+
+        for (int i = 0; i < 200; i++) {
+            assertNotEquals("s3", selector.select(job(), servers).getSystemId());
+        }
+    }
+
+    @Test
+    void poolJobsUseLeastLoadedMemberUnderPriority() {
+        server("p1", "ONLINE", "pool-a");
+        server("p2", "ONLINE", "pool-a");
+        server("p3", "OFFLINE", "pool-a");
+        reportLoad("p1", 3);
+        reportLoad("p2", 1);
+        reportLoad("p3", 0);
+        JobVO job = JobVO.builder().jobId("job-1").poolName("pool-a").build();
+
+        ServerSelector selector = selector("priority");
+        JobServerVO selected = selector.select(job, servers);
+        assertEquals("p2", selected.getSystemId());
+        assertEquals("pool:pool-a", selector.queueFor(job, selected));
+    }
+
+    @Test
+    void unknownPolicyIsRejected() {
+        assertThrows(IllegalStateException.class, () -> selector("round-robin"));
+    }
+
+    private ServerSelector selector(String policy) {
+        AgentHealthTable healthTable = mock(AgentHealthTable.class);
+        when(healthTable.isAlive(anyString(), anyBoolean())).thenReturn(true);
+        ServerSelector selector = new ServerSelector(mock(JobServerMapper.class), loadTracker, healthTable,
+                failureDetector);
+        ReflectionTestUtils.setField(selector, "policyName", policy);
+        selector.init();
+        return selector;
+    }
+
+    private void server(String systemId, String status, String poolName) {
+        servers.put(systemId, JobServerVO.builder()
+                .systemId(systemId)
+                .systemName(systemId)
+                .queueName("queue-" + systemId)
+                .agentStatus(status)
+                .isHealthy(true)
+                .poolName(poolName)
+                .build());
+    }
+
+    /**
+     * Publish a fresh heartbeat with the given active jobs on 4 slots
+     */
+    private void reportLoad(String systemId, int activeJobs) {
+        String queue = "queue-" + systemId;
+        when(hashOps.entries("agent:info:" + queue))
+                .thenReturn(AgentLoadTrackerTest.info(activeJobs, 0, 4, -1, 4, System.currentTimeMillis(), "ONLINE"));
+        loadTracker.refresh(queue);
+    }
+
+    private static JobVO job() {
+        return JobVO.builder().jobId("job-1").systemId("s1").secondarySystemId("s2").tertiarySystemId("s3").build();
+    }
+}
@@ -0,0 +1,48 @@
+package com.tes.batch.scheduler.domain;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PageCursorTest {
+
+    @Test
+    void roundTripsKeysWithSeparatorsAndNonAscii() {
+        String cursor = PageCursor.encode("job.name/with+chars", 1712345678901L, "배치 작업", "");
+
+        assertArrayEquals(new String[]{"job.name/with+chars", "1712345678901", "배치 작업", ""},
+                PageCursor.decode(cursor, 4));
+    }
+
+    @Test
+    void roundTripsSingleLong() {
+        assertEquals(42L, PageCursor.decodeLong(PageCursor.encode(42L)));
+    }
+
+    @Test
+    void missingCursorDecodesToNull() {
+        assertNull(PageCursor.decode(null, 2));
+        assertNull(PageCursor.decode("", 2));
+        assertNull(PageCursor.decodeLong(null));
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        String cursor = PageCursor.encode("a", "b");
+
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(cursor, 3));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("not base64!", 1));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decodeLong(PageCursor.encode("abc")));
+    }
+
+    @Test
+    void countsAreCapped() {
+        assertFalse(PageCursor.isCapped(PageCursor.COUNT_CAP - 1));
+        assertTrue(PageCursor.isCapped(PageCursor.COUNT_CAP));
+    }
+}
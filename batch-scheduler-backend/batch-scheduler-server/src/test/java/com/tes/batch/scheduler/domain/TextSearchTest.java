@@ -0,0 +1,70 @@
+package com.tes.batch.scheduler.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TextSearchTest {
+
+    @Test
+    void blankTermsAreDropped() {
+        assertNull(TextSearch.escape(null));
+        assertNull(TextSearch.escape(""));
+        assertNull(TextSearch.escape("  \t"));
+    }
+
+    @Test
+    void plainTermIsTrimmedOnly() {
+        assertEquals("daily export", TextSearch.escape("  daily export "));
+    }
+
+    @Test
+    void wildcardsAndEscapeCharacterAreEscaped() {
+        assertEquals("50\\%\\_off", TextSearch.escape("50%_off"));
+        assertEquals("C:\\\\batch\\\\run", TextSearch.escape("C:\\batch\\run"));
+        // The backslash is escaped first, so escapes added for wildcards are not doubled
+        assertEquals("\\\\\\%", TextSearch.escape("\\%"));
+    }
+
+    @Test
+    void escapedTermMatchesOnlyLiterally() {
+        String term = TextSearch.escape("50%_off");
+
+        assertTrue(ilike("Coupon 50%_OFF batch", "%" + term + "%"));
+        assertFalse(ilike("Coupon 50 percent x off", "%" + term + "%"));
+        assertFalse(ilike("Coupon 500_off", "%" + term + "%"));
+    }
+
+    @Test
+    void escapedBackslashMatchesABackslash() {
+        String term = TextSearch.escape("dir\\_tmp");
+
+        assertTrue(ilike("rm -rf dir\\_tmp", "%" + term + "%"));
+        assertFalse(ilike("rm -rf dirX_tmp", "%" + term + "%"));
+    }
+
+    /**
+     * value ILIKE pattern ESCAPE '\', as the mappers run it
+     */
+    private static boolean ilike(String value, String pattern) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\\' && i + 1 < pattern.length()) {
+                regex.append(Pattern.quote(String.valueOf(pattern.charAt(++i))));
+            } else if (c == '%') {
+                regex.append(".*");
+            } else if (c == '_') {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.DOTALL).matcher(value).matches();
+    }
+}
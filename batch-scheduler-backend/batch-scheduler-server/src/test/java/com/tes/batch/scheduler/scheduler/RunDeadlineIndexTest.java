@@ -0,0 +1,77 @@
+package com.tes.batch.scheduler.scheduler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RunDeadlineIndexTest {
+
+    @Test
+    void pollsDueLogsInDeadlineOrder() {
+        RunDeadlineIndex index = new RunDeadlineIndex();
+        index.track(3L, 300);
+        index.track(1L, 100);
+        index.track(2L, 200);
+        index.track(4L, 400);
+
+        assertEquals(List.of(1L, 2L, 3L), index.pollDue(300));
+        assertEquals(1, index.size());
+        assertTrue(index.pollDue(300).isEmpty());
+        assertEquals(List.of(4L), index.pollDue(400));
+    }
+
+    @Test
+    void retrackReplacesTheDeadline() {
+        RunDeadlineIndex index = new RunDeadlineIndex();
+        index.track(1L, 100);
+        index.track(1L, 500);
+
+        assertTrue(index.pollDue(100).isEmpty());
+        assertEquals(List.of(1L), index.pollDue(500));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void untrackedLogsAreNotPolled() {
+        RunDeadlineIndex index = new RunDeadlineIndex();
+        index.track(1L, 100);
+        index.track(2L, 100);
+        index.untrack(1L);
+
+        assertEquals(List.of(2L), index.pollDue(1000));
+    }
+
+    @Test
+    void pendingAndRunningDeadlines() {
+        RunDeadlineIndex index = new RunDeadlineIndex();
+        index.trackPending(1L, 1000L);
+        index.trackRunning(2L, 1000L, "00:00:30");
+        index.trackRunning(3L, 1000L, null);
+
+        assertEquals(List.of(2L), index.pollDue(1000 + 30000));
+        assertEquals(List.of(1L), index.pollDue(1000 + RunDeadlineIndex.PENDING_TIMEOUT_MS));
+        assertEquals(List.of(3L), index.pollDue(1000 + RunDeadlineIndex.DEFAULT_MAX_RUN_MS));
+    }
+
+    @Test
+    void parsesHoursMinutesSeconds() {
+        assertEquals(3723000L, RunDeadlineIndex.parseDurationToMillis("01:02:03"));
+        assertEquals(0L, RunDeadlineIndex.parseDurationToMillis(null));
+        assertEquals(0L, RunDeadlineIndex.parseDurationToMillis("90"));
+        assertEquals(0L, RunDeadlineIndex.parseDurationToMillis("aa:bb:cc"));
+    }
+
+    @Test
+    void manyRetracksKeepOneEntryPerLog() {
+        RunDeadlineIndex index = new RunDeadlineIndex();
+        for (int i = 0; i < 5000; i++) {
+            index.track(1L, 1000 + i);
+        }
+
+        assertTrue(index.pollDue(999).isEmpty());
+        assertEquals(List.of(1L), index.pollDue(10000));
+    }
+}
@@ -0,0 +1,138 @@
+package com.tes.batch.scheduler.scheduler;
+
+import com.tes.batch.scheduler.domain.job.mapper.JobRunLogMapper;
+import com.tes.batch.scheduler.domain.job.vo.JobRunLogVO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RunLogWriterTest {
+
+    private final List<Integer> insertedBatchSizes = new ArrayList<>();
+    private JobRunLogMapper mapper;
+    private PlatformTransactionManager transactionManager;
+    private RunLogWriter writer;
+    private long nextId = 1000;
+
+    @BeforeEach
+    void setUp() {
+        mapper = mock(JobRunLogMapper.class);
+        when(mapper.allocateLogIds(anyInt())).thenAnswer(invocation -> {
+            int count = invocation.getArgument(0);
+            // The sequence hands ids out in any order within a block
+            List<Long> ids = new ArrayList<>(LongStream.range(nextId, nextId + count).boxed().toList());
+            Collections.reverse(ids);
+            nextId += count;
+            return ids;
+        });
+        when(mapper.insertBatchWithIds(anyList())).thenAnswer(invocation -> {
+            insertedBatchSizes.add(((List<?>) invocation.getArgument(0)).size());
+            return insertedBatchSizes.get(insertedBatchSizes.size() - 1);
+        });
+        transactionManager = mock(PlatformTransactionManager.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (writer != null) {
+            writer.stop();
+        }
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+
+    @Test
+    void queuedWritesCommitInTheWritersTransaction() {
+        writer = writer(true, 4, 500);
+
+        assertEquals(1000, writer.write(new JobRunLogVO()));
+        assertEquals(1001, writer.write(new JobRunLogVO()));
+
+        verify(mapper, times(1)).allocateLogIds(4);
+        verify(transactionManager, times(2)).commit(any());
+        verify(mapper, never()).insert(any());
+    }
+
+    @Test
+    void insideATransactionRowsGoIntoTheCallersConnection() {
+        writer = writer(true, 4, 3);
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        List<JobRunLogVO> logs = logs(7);
+
+        writer.writeAll(logs);
+
+        assertEquals(List.of(1000L, 1001L, 1002L, 1003L, 1004L, 1005L, 1006L),
+                logs.stream().map(JobRunLogVO::getLogId).toList());
+        // A run needing more ids than a block still reserves them in one round trip
+        verify(mapper, times(1)).allocateLogIds(7);
+        assertEquals(List.of(3, 3, 1), insertedBatchSizes);
+        // No commit of its own: the rows commit with the caller's transaction
+        verify(transactionManager, never()).getTransaction(any());
+    }
+
+    @Test
+    void reservedIdsAreSharedByBothPaths() {
+        writer = writer(true, 10, 500);
+
+        writer.write(new JobRunLogVO());
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        JobRunLogVO inTransaction = new JobRunLogVO();
+        writer.write(inTransaction);
+
+        assertEquals(1001, inTransaction.getLogId());
+        verify(mapper, times(1)).allocateLogIds(anyInt());
+    }
+
+    @Test
+    void disabledWriterInsertsWithGeneratedIds() {
+        writer = writer(false, 10, 2);
+        // MyBatis fills in the generated key
+        when(mapper.insert(any())).thenAnswer(invocation -> {
+            ((JobRunLogVO) invocation.getArgument(0)).setLogId(nextId++);
+            return 1;
+        });
+
+        assertEquals(1000, writer.write(new JobRunLogVO()));
+        writer.writeAll(logs(5));
+
+        verify(mapper, times(1)).insert(any());
+        verify(mapper, times(3)).insertBatch(anyList());
+        verify(mapper, never()).allocateLogIds(anyInt());
+    }
+
+    private RunLogWriter writer(boolean enabled, int idBlockSize, int maxBatch) {
+        RunLogWriter runLogWriter = new RunLogWriter(mapper, transactionManager);
+        ReflectionTestUtils.setField(runLogWriter, "enabled", enabled);
+        ReflectionTestUtils.setField(runLogWriter, "idBlockSize", idBlockSize);
+        ReflectionTestUtils.setField(runLogWriter, "maxBatch", maxBatch);
+        ReflectionTestUtils.setField(runLogWriter, "lingerMs", 0L);
+        ReflectionTestUtils.setField(runLogWriter, "flushTimeoutMs", 5000L);
+        runLogWriter.start();
+        return runLogWriter;
+    }
+
+    private static List<JobRunLogVO> logs(int count) {
+        List<JobRunLogVO> logs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            logs.add(new JobRunLogVO());
+        }
+        return logs;
+    }
+}
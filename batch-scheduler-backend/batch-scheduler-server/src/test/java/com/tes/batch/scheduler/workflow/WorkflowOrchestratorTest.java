@@ -0,0 +1,386 @@
+package com.tes.batch.scheduler.workflow;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tes.batch.common.dto.JobMessage;
+import com.tes.batch.common.dto.JobResult;
+import com.tes.batch.common.dto.WorkflowMessage;
+import com.tes.batch.common.enums.TaskStatus;
+import com.tes.batch.common.util.MessageCodec;
+import com.tes.batch.scheduler.agent.ServerSelector;
+import com.tes.batch.scheduler.domain.job.mapper.JobMapper;
+import com.tes.batch.scheduler.domain.job.mapper.JobRunLogMapper;
+import com.tes.batch.scheduler.domain.job.vo.JobRunLogVO;
+import com.tes.batch.scheduler.domain.job.vo.JobVO;
+import com.tes.batch.scheduler.domain.server.mapper.JobServerMapper;
+import com.tes.batch.scheduler.domain.server.vo.JobServerVO;
+import com.tes.batch.scheduler.domain.workflow.mapper.WorkflowRunMapper;
+import com.tes.batch.scheduler.domain.workflow.vo.WorkflowRunVO;
+import com.tes.batch.scheduler.message.RedisMessagePublisher;
+import com.tes.batch.scheduler.scheduler.RunDeadlineIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.ListOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WorkflowOrchestratorTest {
+
+    private static final long RUN_ID = 42L;
+    private static final MessageCodec CODEC = new MessageCodec(new ObjectMapper(), MessageCodec.Format.SMILE, 0);
+
+    /** Run log status by log id; the mapper mocks read and claim from it like the conditional updates do */
+    private final Map<Long, String> statuses = new LinkedHashMap<>();
+    /** Job ids in publish order */
+    private final List<String> published = new ArrayList<>();
+    /** Task ids (run log ids) in publish order */
+    private final List<String> publishedTasks = new ArrayList<>();
+    private final List<WorkflowMessage.PriorityGroup> groups = new ArrayList<>();
+
+    private RedisTemplate<String, Object> redisTemplate;
+    private ListOperations<String, Object> listOps;
+    private JobMapper jobMapper;
+    private JobRunLogMapper jobRunLogMapper;
+    private WorkflowRunMapper workflowRunMapper;
+    private ServerSelector serverSelector;
+    private WorkflowOrchestrator orchestrator;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(RedisTemplate.class);
+        listOps = mock(ListOperations.class);
+        when(redisTemplate.opsForList()).thenReturn(listOps);
+        when(redisTemplate.execute(any(RedisCallback.class))).thenAnswer(invocation -> CODEC.encode(plan()));
+        when(redisTemplate.delete(anyString())).thenReturn(true);
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        when(stringRedisTemplate.opsForSet()).thenReturn(mock(SetOperations.class));
+
+        jobMapper = mock(JobMapper.class);
+        when(jobMapper.findById(anyString())).thenAnswer(invocation -> {
+            String jobId = invocation.getArgument(0);
+            return JobVO.builder().jobId(jobId).jobName(jobId).currentState("SCHEDULED").build();
+        });
+
+        jobRunLogMapper = mock(JobRunLogMapper.class);
+        when(jobRunLogMapper.findStatesByWorkflowRunId(RUN_ID)).thenAnswer(invocation -> {
+            List<JobRunLogVO> logs = new ArrayList<>();
+            statuses.forEach((logId, status) -> logs.add(JobRunLogVO.builder().logId(logId).status(status).build()));
+            return logs;
+        });
+        when(jobRunLogMapper.updateWaitingStatus(anyLong(), anyString(), anyString(), anyLong(), any(), any(), any()))
+                .thenAnswer(invocation -> transition(invocation.getArgument(0), "WAITING", invocation.getArgument(1)));
+        when(jobRunLogMapper.updateRunningStatus(anyLong(), anyString(), anyString(), anyLong(), anyLong(), any(),
+                any(), any()))
+                .thenAnswer(invocation -> transition(invocation.getArgument(0), "RUNNING", invocation.getArgument(1)));
+
+        workflowRunMapper = mock(WorkflowRunMapper.class);
+        running();
+
+        serverSelector = mock(ServerSelector.class);
+        JobServerVO server = JobServerVO.builder().systemId("s1").systemName("s1").queueName("job:queue:s1").build();
+        when(serverSelector.select(any(JobVO.class))).thenReturn(server);
+        when(serverSelector.queueFor(any(), any())).thenReturn("job:queue:s1");
+
+        RedisMessagePublisher messagePublisher = mock(RedisMessagePublisher.class);
+        doAnswer(invocation -> {
+            JobMessage message = invocation.getArgument(1);
+            published.add(message.getJobId());
+            return publishedTasks.add(message.getTaskId());
+        }).when(messagePublisher).publishJob(anyString(), any(JobMessage.class));
+
+        orchestrator = new WorkflowOrchestrator(redisTemplate, stringRedisTemplate, CODEC, jobMapper, jobRunLogMapper,
+                workflowRunMapper, mock(JobServerMapper.class), serverSelector, messagePublisher,
+                mock(RunDeadlineIndex.class));
+    }
+
+    @Test
+    void readyStepsAreDispatchedLongestChainFirst() {
+        // short -> after; long has no dependents but outweighs the short chain
+        group(1, null, step("short", 1, 60L), step("long", 2, 7200L));
+        group(2, null, step("after", 3, 60L, "short"));
+
+        advance();
+
+        assertEquals(List.of("long", "short"), published);
+        assertEquals("WAITING", statuses.get(3L));
+        verify(listOps, never()).leftPush(anyString(), any());
+    }
+
+    @Test
+    void criticalPathCountsTheStepsBehindAReadyStep() {
+        group(1, null, step("head", 1, 600L), step("single", 2, 900L));
+        group(2, null, step("tail", 3, 600L, "head"));
+
+        advance();
+
+        // head + tail (1200s) outranks single (900s)
+        assertEquals(List.of("head", "single"), published);
+    }
+
+    @Test
+    void stepIsDispatchedOnceItsDependenciesSucceed() {
+        group(1, null, step("a", 1, null), step("b", 2, null));
+        group(2, null, step("c", 3, null));
+        statuses.put(1L, "SUCCESS");
+        statuses.put(2L, "RUNNING");
+
+        advance();
+        assertEquals(List.of(), published);
+
+        statuses.put(2L, "SUCCESS");
+        advance();
+        assertEquals(List.of("c"), published);
+        assertEquals("PENDING", statuses.get(3L));
+    }
+
+    @Test
+    void failedStepSkipsItsDependentsAndFailsTheRun() {
+        group(1, null, step("a", 1, null), step("b", 2, null));
+        group(2, null, step("c", 3, null, "a"), step("d", 4, null, "b"));
+        statuses.put(1L, "FAILED");
+        statuses.put(2L, "SUCCESS");
+        statuses.put(4L, "SUCCESS");
+
+        advance();
+
+        assertEquals(List.of(), published);
+        assertEquals("SKIPPED", statuses.get(3L));
+        Map<String, Object> result = workflowResult();
+        assertEquals(TaskStatus.FAILED.name(), result.get("status"));
+        assertEquals("Priority group 1 failed (job a)", result.get("errorMessage"));
+    }
+
+    @Test
+    void ignoredFailureDoesNotBlock() {
+        group(1, true, step("a", 1, null));
+        group(2, null, step("b", 2, null));
+        statuses.put(1L, "FAILED");
+
+        advance();
+
+        assertEquals(List.of("b"), published);
+    }
+
+    @Test
+    void runSucceedsOnceEveryStepSucceeded() {
+        group(1, null, step("a", 1, null));
+        group(2, null, step("b", 2, null));
+        statuses.put(1L, "SUCCESS");
+        statuses.put(2L, "SUCCESS");
+
+        advance();
+
+        Map<String, Object> result = workflowResult();
+        assertEquals(TaskStatus.SUCCESS.name(), result.get("status"));
+        assertEquals(RUN_ID, result.get("workflowRunId"));
+    }
+
+    @Test
+    void stepWithoutAServerFailsAndTheRunIsReEvaluated() {
+        group(1, null, step("a", 1, null));
+        group(2, null, step("b", 2, null));
+        when(serverSelector.select(any(JobVO.class))).thenReturn(null);
+
+        advance();
+
+        assertEquals("FAILED", statuses.get(1L));
+        assertEquals("SKIPPED", statuses.get(2L));
+        assertEquals(TaskStatus.FAILED.name(), workflowResult().get("status"));
+    }
+
+    @Test
+    void cycleFailsTheRun() {
+        group(1, null, step("a", 1, null, "b"), step("b", 2, null, "a"));
+
+        advance();
+
+        assertEquals(List.of(), published);
+        assertTrue(String.valueOf(workflowResult().get("errorMessage")).contains("cycle"));
+    }
+
+    @Test
+    void runEndedElsewhereReleasesWaitingStepsWithoutAResult() {
+        group(1, null, step("a", 1, null));
+        when(workflowRunMapper.findById(RUN_ID)).thenReturn(WorkflowRunVO.builder().status("FAILED").build());
+
+        advance();
+
+        assertEquals(List.of(), published);
+        assertEquals("SKIPPED", statuses.get(1L));
+        verify(listOps, never()).leftPush(anyString(), any());
+    }
+
+    @Test
+    void runningResultsDoNotAdvance() {
+        group(1, null, step("a", 1, null));
+
+        orchestrator.onJobResult(JobResult.builder().workflowRunId(RUN_ID).status(TaskStatus.RUNNING).build());
+
+        verify(jobRunLogMapper, never()).findStatesByWorkflowRunId(anyLong());
+    }
+
+    @Test
+    void mapStepStartsNoMoreTasksThanItsParallelism() {
+        group(1, null, mapStep("m", 10, 2, "a", "b", "c"));
+
+        advance();
+
+        assertEquals("RUNNING", statuses.get(10L));
+        assertEquals(List.of("11", "12"), publishedTasks);
+        assertEquals("WAITING", statuses.get(13L));
+        verify(jobMapper).updateState("m", "RUNNING", null);
+    }
+
+    @Test
+    void finishedMapTaskFreesASlot() {
+        group(1, null, mapStep("m", 10, 2, "a", "b", "c"));
+        statuses.put(10L, "RUNNING");
+        statuses.put(11L, "RUNNING");
+        statuses.put(12L, "PENDING");
+
+        advance();
+        assertEquals(List.of(), publishedTasks);
+
+        statuses.put(11L, "SUCCESS");
+        advance();
+        assertEquals(List.of("13"), publishedTasks);
+    }
+
+    @Test
+    void mapStepJoinsOnceAllTasksSucceedAndCountsAsOneRun() {
+        group(1, null, mapStep("m", 10, null, "a", "b"));
+        statuses.put(10L, "RUNNING");
+        statuses.put(11L, "SUCCESS");
+        statuses.put(12L, "SUCCESS");
+
+        advance();
+
+        assertEquals("SUCCESS", statuses.get(10L));
+        verify(jobMapper).updateRunStats(eq("m"), anyLong(), eq(1), eq(0), eq(0));
+        verify(jobMapper).updateState("m", "SCHEDULED", null);
+        assertEquals(TaskStatus.SUCCESS.name(), workflowResult().get("status"));
+    }
+
+    @Test
+    void failedMapTaskFailsTheJoin() {
+        group(1, null, mapStep("m", 10, null, "a", "b", "c"));
+        statuses.put(10L, "RUNNING");
+        statuses.put(11L, "SUCCESS");
+        statuses.put(12L, "TIMEOUT");
+        statuses.put(13L, "SUCCESS");
+
+        advance();
+
+        assertEquals("FAILURE", statuses.get(10L));
+        verify(jobRunLogMapper).updateRunningStatus(eq(10L), eq("FAILURE"), eq("BROKEN"), anyLong(), anyLong(), any(),
+                eq("1 of 3 map task(s) failed"), any());
+        verify(jobMapper).updateRunStats(eq("m"), anyLong(), eq(0), eq(1), eq(0));
+        assertEquals(TaskStatus.FAILED.name(), workflowResult().get("status"));
+    }
+
+    @Test
+    void endedRunRevokesARunningMapStep() {
+        group(1, null, mapStep("m", 10, 1, "a", "b"));
+        statuses.put(10L, "RUNNING");
+        statuses.put(11L, "RUNNING");
+        when(workflowRunMapper.findById(RUN_ID)).thenReturn(WorkflowRunVO.builder().status("TIMEOUT").build());
+
+        advance();
+
+        assertEquals("SKIPPED", statuses.get(12L));
+        verify(jobRunLogMapper).updateStatus(eq(10L), eq("REVOKED"), eq("REVOKED"), isNull(), anyLong(), isNull(),
+                anyString(), isNull(), isNull());
+    }
+
+    // --- fixture ---
+
+    private void advance() {
+        orchestrator.onJobResult(JobResult.builder().workflowRunId(RUN_ID).status(TaskStatus.SUCCESS).build());
+    }
+
+    private void running() {
+        when(workflowRunMapper.findById(RUN_ID))
+                .thenReturn(WorkflowRunVO.builder().status("RUNNING").startDate(System.currentTimeMillis()).build());
+    }
+
+    private void group(int priority, Boolean ignoreResult, JobMessage... jobs) {
+        groups.add(WorkflowMessage.PriorityGroup.builder()
+                .priority(priority).ignoreResult(ignoreResult).jobs(Arrays.asList(jobs)).build());
+    }
+
+    /**
+     * A step whose run log starts WAITING; no dependsOn means the implicit priority group edges
+     */
+    private JobMessage step(String jobId, long logId, Long maxDurationSeconds, String... dependsOn) {
+        statuses.put(logId, "WAITING");
+        return JobMessage.builder()
+                .jobId(jobId)
+                .taskId(String.valueOf(logId))
+                .maxDurationSeconds(maxDurationSeconds)
+                .workflowRunId(RUN_ID)
+                .dependsOn(dependsOn.length > 0 ? List.of(dependsOn) : null)
+                .build();
+    }
+
+    /**
+     * A map step with run log stepLogId and one task per param, logged at stepLogId + 1, + 2, ...
+     */
+    private JobMessage mapStep(String jobId, long stepLogId, Integer maxParallelism, String... params) {
+        List<JobMessage> tasks = new ArrayList<>();
+        for (int i = 0; i < params.length; i++) {
+            JobMessage task = step(jobId, stepLogId + 1 + i, null);
+            task.setMapParam(params[i]);
+            tasks.add(task);
+        }
+        JobMessage step = step(jobId, stepLogId, null);
+        step.setMapTasks(tasks);
+        step.setMaxParallelism(maxParallelism);
+        return step;
+    }
+
+    private WorkflowMessage plan() {
+        return WorkflowMessage.builder()
+                .workflowId("wf")
+                .workflowRunId(RUN_ID)
+                .workflowName("wf")
+                .priorityGroups(groups)
+                .build();
+    }
+
+    private int transition(Long logId, String from, String to) {
+        if (!from.equals(statuses.get(logId))) {
+            return 0;
+        }
+        statuses.put(logId, to);
+        return 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> workflowResult() {
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(listOps).leftPush(eq("workflow:result"), captor.capture());
+        return (Map<String, Object>) captor.getValue();
+    }
+}
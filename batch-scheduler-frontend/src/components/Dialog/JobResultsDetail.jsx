@@ -8,6 +8,7 @@ import {
   Tabs,
 } from '@mui/material';
 import React, { useState } from 'react';
+import useSWR from 'swr';
 
 import CloseIcon from '@mui/icons-material/Close';
 import { useTranslation } from 'react-i18next';
@@ -15,11 +16,18 @@ import { timestampFormat } from '../../utils/helper';
 import BaseTextField from '../CustomInput/BaseTextField';
 import BaseTextArea from '../CustomInput/BaseTextArea';
 import RealtimeLogViewer from '../Log/RealtimeLogViewer';
+import api from '../../services/api';
 
 function JobResultsDetail({ open, onClose, data }) {
   const { t } = useTranslation();
   const [tabIndex, setTabIndex] = useState(0);
 
+  // List rows only carry truncated errors/output; load the full log when opened
+  const { data: detail } = useSWR(
+    open && data?.log_id ? `/logs/detail/${data.log_id}` : null,
+    (url) => api.get(url).then((response) => response.data?.data),
+  );
+
   const handleChangeTab = (event, newValue) => {
     setTabIndex(newValue);
   };
@@ -174,14 +182,14 @@ function JobResultsDetail({ open, onClose, data }) {
             />
             <BaseTextField
               disabled
-              value={data.errors || ''}
+              value={(detail || data).errors || ''}
               content={t('errors')}
               inputprops={{ style: { padding: '10px' } }}
             />
             <BaseTextArea
               disabled
               isRawInput
-              value={data.output || ''}
+              value={(detail || data).output || ''}
               content={t('output')}
               inputprops={{ style: { padding: '10px' } }}
               className="col-span-2"